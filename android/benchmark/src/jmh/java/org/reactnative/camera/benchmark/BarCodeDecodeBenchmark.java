@@ -0,0 +1,74 @@
+package org.reactnative.camera.benchmark;
+
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.Result;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.reactnative.camera.utils.BarCodeDecoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one BarCodeScannerAsyncTask frame, for codes found by each of the four passes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BarCodeDecodeBenchmark {
+
+  @Param({"720p", "1080p"})
+  public String resolution;
+
+  @Param({"NONE", "NORMAL", "ROTATED", "INVERTED", "INVERTED_ROTATED"})
+  public Frames.Scene scene;
+
+  private byte[] mFrame;
+  private int mWidth;
+  private int mHeight;
+  private MultiFormatReader mReader;
+  private BarCodeDecoder mDecoder;
+  private BarCodeDecoder mAdaptiveDecoder;
+
+  @Setup
+  public void setUp() {
+    mWidth = Frames.width(resolution);
+    mHeight = Frames.height(resolution);
+    mFrame = Frames.nv21(mWidth, mHeight, scene);
+    mReader = new MultiFormatReader();
+    mReader.setHints(null);
+    mDecoder = new BarCodeDecoder(mReader);
+    mAdaptiveDecoder = new BarCodeDecoder(mReader);
+    mAdaptiveDecoder.setAdaptive(true);
+
+    boolean expectCode = scene != Frames.Scene.NONE;
+    if ((decode() != null) != expectCode || (decodeReference() != null) != expectCode) {
+      throw new IllegalStateException("Unexpected decode result for " + scene);
+    }
+  }
+
+  @Benchmark
+  public Result decode() {
+    return mDecoder.decode(mFrame, mWidth, mHeight);
+  }
+
+  /**
+   * Steady state of the adaptive pass order: the successful pass runs first, and empty frames
+   * only pay for one pass each.
+   */
+  @Benchmark
+  public Result decodeAdaptive() {
+    return mAdaptiveDecoder.decode(mFrame, mWidth, mHeight);
+  }
+
+  @Benchmark
+  public Result decodeReference() {
+    return ReferenceImplementations.decodeFourPass(mReader, mFrame, mWidth, mHeight);
+  }
+}
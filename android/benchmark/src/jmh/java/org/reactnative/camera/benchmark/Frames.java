@@ -0,0 +1,79 @@
+package org.reactnative.camera.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.oned.Code128Writer;
+
+import java.util.Random;
+
+/**
+ * Synthetic inputs shared by the benchmarks.
+ */
+public final class Frames {
+
+  /**
+   * What a preview frame contains, named after the decode pass that is expected to find it.
+   */
+  public enum Scene {
+    /** No barcode, every pass runs and fails. */
+    NONE,
+    NORMAL,
+    ROTATED,
+    INVERTED,
+    INVERTED_ROTATED
+  }
+
+  private Frames() {
+  }
+
+  static int width(String resolution) {
+    return "1080p".equals(resolution) ? 1920 : 1280;
+  }
+
+  static int height(String resolution) {
+    return "1080p".equals(resolution) ? 1080 : 720;
+  }
+
+  /**
+   * Builds an NV21 frame with sensor-like noise and, depending on {@code scene}, a Code 128
+   * barcode that only the matching decode pass can read. One dimensional codes are used since
+   * ZXing finds QR codes in any orientation, which would hide the rotated passes.
+   */
+  static byte[] nv21(int width, int height, Scene scene) {
+    byte[] frame = new byte[width * height * 3 / 2];
+    Random random = new Random(42);
+    for (int i = 0; i < width * height; i++) {
+      frame[i] = (byte) (112 + random.nextInt(32));
+    }
+    for (int i = width * height; i < frame.length; i++) {
+      frame[i] = (byte) 128;
+    }
+    if (scene == Scene.NONE) {
+      return frame;
+    }
+
+    boolean rotated = scene == Scene.ROTATED || scene == Scene.INVERTED_ROTATED;
+    boolean inverted = scene == Scene.INVERTED || scene == Scene.INVERTED_ROTATED;
+    int codeWidth = (rotated ? height : width) * 2 / 3;
+    int codeHeight = (rotated ? width : height) / 4;
+    BitMatrix code;
+    try {
+      code = new Code128Writer().encode("RNCAMERA-1234567890", BarcodeFormat.CODE_128, codeWidth, codeHeight);
+    } catch (WriterException e) {
+      throw new IllegalStateException(e);
+    }
+
+    int left = (width - (rotated ? code.getHeight() : code.getWidth())) / 2;
+    int top = (height - (rotated ? code.getWidth() : code.getHeight())) / 2;
+    for (int y = 0; y < code.getHeight(); y++) {
+      for (int x = 0; x < code.getWidth(); x++) {
+        boolean black = code.get(x, y) != inverted;
+        int frameX = rotated ? left + y : left + x;
+        int frameY = rotated ? top + x : top + y;
+        frame[frameY * width + frameX] = (byte) (black ? 16 : 235);
+      }
+    }
+    return frame;
+  }
+}
@@ -0,0 +1,79 @@
+package org.reactnative.camera.benchmark;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * Straightforward versions of the hot paths, as they were before being optimized. They are the
+ * baseline the library implementations are measured against and must not be "fixed".
+ */
+final class ReferenceImplementations {
+
+  private ReferenceImplementations() {
+  }
+
+  /**
+   * Four-pass decode allocating a rotated copy of the whole frame for each rotated pass and
+   * binarizing an inverted source for each inverted pass.
+   */
+  static Result decodeFourPass(MultiFormatReader reader, byte[] imageData, int width, int height) {
+    try {
+      return reader.decodeWithState(bitmap(imageData, width, height, false));
+    } catch (NotFoundException e) {
+      try {
+        return reader.decodeWithState(bitmap(rotateImage(imageData, width, height), height, width, false));
+      } catch (NotFoundException e1) {
+        try {
+          return reader.decodeWithState(bitmap(imageData, width, height, true));
+        } catch (NotFoundException e2) {
+          try {
+            return reader.decodeWithState(bitmap(rotateImage(imageData, width, height), height, width, true));
+          } catch (NotFoundException e3) {
+            return null;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Naive clockwise rotation into a newly allocated frame.
+   */
+  static byte[] rotateImage(byte[] imageData, int width, int height) {
+    byte[] rotated = new byte[imageData.length];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        rotated[x * height + height - y - 1] = imageData[x + y * width];
+      }
+    }
+    return rotated;
+  }
+
+  /**
+   * Rotation of RCTCameraViewFinder.ReaderAsyncTask, which walks the frame column by column and
+   * bounds-checks every pixel.
+   */
+  static byte[] rotateImageViewFinder(byte[] imageData, int width, int height) {
+    byte[] rotated = new byte[imageData.length];
+    for (int y = 0; y < width; y++) {
+      for (int x = 0; x < height; x++) {
+        int sourceIx = x + y * height;
+        int destIx = x * width + width - y - 1;
+        if (sourceIx >= 0 && sourceIx < imageData.length && destIx >= 0 && destIx < imageData.length) {
+          rotated[destIx] = imageData[sourceIx];
+        }
+      }
+    }
+    return rotated;
+  }
+
+  private static BinaryBitmap bitmap(byte[] imageData, int width, int height, boolean inverse) {
+    PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(
+        imageData, width, height, 0, 0, width, height, false);
+    return new BinaryBitmap(new HybridBinarizer(inverse ? source.invert() : source));
+  }
+}
@@ -0,0 +1,54 @@
+package org.reactnative.camera.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.reactnative.camera.utils.LuminanceUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rotating a preview frame by 90 degrees before handing it to ZXing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RotateImageBenchmark {
+
+  @Param({"720p", "1080p"})
+  public String resolution;
+
+  private byte[] mFrame;
+  private byte[] mRotated;
+  private int mWidth;
+  private int mHeight;
+
+  @Setup
+  public void setUp() {
+    mWidth = Frames.width(resolution);
+    mHeight = Frames.height(resolution);
+    mFrame = Frames.nv21(mWidth, mHeight, Frames.Scene.NONE);
+    mRotated = new byte[mWidth * mHeight];
+  }
+
+  @Benchmark
+  public byte[] rotateTiled() {
+    LuminanceUtils.rotateClockwise(mFrame, mWidth, mHeight, mRotated);
+    return mRotated;
+  }
+
+  @Benchmark
+  public byte[] rotateReference() {
+    return ReferenceImplementations.rotateImage(mFrame, mWidth, mHeight);
+  }
+
+  @Benchmark
+  public byte[] rotateViewFinder() {
+    return ReferenceImplementations.rotateImageViewFinder(mFrame, mWidth, mHeight);
+  }
+}
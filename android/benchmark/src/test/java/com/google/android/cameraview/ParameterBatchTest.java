@@ -0,0 +1,160 @@
+package com.google.android.cameraview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParameterBatchTest {
+
+  private final Object mLock = new Object();
+  private FakeCamera mCamera;
+  private FakeScheduler mScheduler;
+  private ParameterBatch mBatch;
+
+  @Before
+  public void setUp() {
+    mCamera = new FakeCamera();
+    mScheduler = new FakeScheduler();
+    mBatch = new ParameterBatch(mLock, mCamera, mScheduler, 16);
+    mBatch.reset("zoom=0;flash-mode=off");
+    mCamera.mParameters = "zoom=0;flash-mode=off";
+  }
+
+  @Test
+  public void appliesABatchOfChangesOnce() {
+    mCamera.mParameters = "zoom=5;flash-mode=off";
+    mBatch.schedule();
+    mCamera.mParameters = "zoom=5;flash-mode=torch";
+    mBatch.schedule();
+
+    assertEquals(1, mScheduler.mPosted.size());
+    assertEquals(16, mScheduler.mDelayMillis);
+    assertEquals(0, mCamera.mApplied.size());
+
+    mScheduler.runAll();
+    assertEquals(1, mCamera.mApplied.size());
+    assertEquals("zoom=5;flash-mode=torch", mCamera.mApplied.get(0));
+    assertFalse(mBatch.isScheduled());
+  }
+
+  @Test
+  public void skipsParametersTheCameraAlreadyHas() {
+    mCamera.mParameters = "zoom=5;flash-mode=off";
+    mBatch.schedule();
+    // changed back before the batch is applied
+    mCamera.mParameters = "zoom=0;flash-mode=off";
+    mScheduler.runAll();
+
+    assertEquals(0, mCamera.mApplied.size());
+
+    mBatch.apply(false);
+    assertEquals(0, mCamera.mApplied.size());
+  }
+
+  @Test
+  public void appliesRightAwayInsteadOfTheScheduledBatch() {
+    mCamera.mParameters = "zoom=5;flash-mode=off";
+    mBatch.schedule();
+    mBatch.apply(false);
+
+    assertEquals(1, mCamera.mApplied.size());
+    assertFalse(mBatch.isScheduled());
+    assertEquals(1, mScheduler.mRemoved);
+    // the scheduled apply was dropped, and would find nothing to do anyway
+    mBatch.apply(false);
+    assertEquals(1, mCamera.mApplied.size());
+  }
+
+  @Test
+  public void forcesAnApplyAfterTheParametersWereTouchedElsewhere() {
+    mBatch.apply(true);
+    assertEquals(1, mCamera.mApplied.size());
+
+    mBatch.invalidate();
+    mBatch.apply(false);
+    assertEquals(2, mCamera.mApplied.size());
+  }
+
+  @Test
+  public void retriesParametersTheCameraRejected() {
+    mCamera.mParameters = "zoom=99;flash-mode=off";
+    mCamera.mRejects = true;
+    mBatch.apply(false);
+    assertEquals(1, mCamera.mApplied.size());
+
+    mCamera.mRejects = false;
+    mBatch.apply(false);
+    assertEquals(2, mCamera.mApplied.size());
+  }
+
+  @Test
+  public void doesNothingWithoutACamera() {
+    mCamera.mParameters = null;
+    mBatch.schedule();
+    mScheduler.runAll();
+    mBatch.apply(true);
+
+    assertEquals(0, mCamera.mApplied.size());
+  }
+
+  @Test
+  public void forgetsTheScheduledBatchWhenTheCameraIsReleased() {
+    mCamera.mParameters = "zoom=5;flash-mode=off";
+    mBatch.schedule();
+    mBatch.reset(null);
+
+    assertFalse(mBatch.isScheduled());
+    assertEquals(1, mScheduler.mRemoved);
+    assertTrue(mScheduler.mPosted.isEmpty());
+  }
+
+  private static class FakeCamera implements ParameterBatch.Target {
+    String mParameters;
+    boolean mRejects;
+    final List<String> mApplied = new ArrayList<>();
+
+    @Override
+    public String flatten() {
+      return mParameters;
+    }
+
+    @Override
+    public boolean apply() {
+      mApplied.add(mParameters);
+      return !mRejects;
+    }
+  }
+
+  private static class FakeScheduler implements ParameterBatch.Scheduler {
+    final List<Runnable> mPosted = new ArrayList<>();
+    long mDelayMillis;
+    int mRemoved;
+
+    @Override
+    public void postDelayed(Runnable runnable, long delayMillis) {
+      mPosted.add(runnable);
+      mDelayMillis = delayMillis;
+    }
+
+    @Override
+    public void removeCallbacks(Runnable runnable) {
+      if (mPosted.remove(runnable)) {
+        mRemoved++;
+      }
+    }
+
+    void runAll() {
+      List<Runnable> posted = new ArrayList<>(mPosted);
+      mPosted.clear();
+      for (Runnable runnable : posted) {
+        runnable.run();
+      }
+    }
+  }
+}
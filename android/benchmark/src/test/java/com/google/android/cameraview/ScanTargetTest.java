@@ -0,0 +1,56 @@
+package com.google.android.cameraview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanTargetTest {
+
+  @Test
+  public void togglesTheTargetOfAPreviewSession() {
+    ScanTarget target = new ScanTarget();
+    target.onPreviewSession(false);
+
+    assertEquals(ScanTarget.ADD, target.update(true));
+    assertTrue(target.isTargeted());
+    assertEquals(ScanTarget.REMOVE, target.update(false));
+    assertFalse(target.isTargeted());
+  }
+
+  @Test
+  public void leavesTheRequestAloneWhenNothingChanges() {
+    ScanTarget target = new ScanTarget();
+    target.onPreviewSession(true);
+
+    // e.g. scanning turned off while zero shutter lag still needs the frames
+    assertEquals(ScanTarget.UNCHANGED, target.update(true));
+    assertEquals(ScanTarget.REMOVE, target.update(false));
+    assertEquals(ScanTarget.UNCHANGED, target.update(false));
+  }
+
+  @Test
+  public void waitsForTheNextPreviewSessionWhileRecording() {
+    ScanTarget target = new ScanTarget();
+    target.onPreviewSession(true);
+    target.onSessionWithoutOutput();
+
+    assertEquals(ScanTarget.UNCHANGED, target.update(false));
+    assertEquals(ScanTarget.UNCHANGED, target.update(true));
+    assertFalse(target.isTargeted());
+
+    // the preview session after recording is created with the current flag
+    target.onPreviewSession(true);
+    assertEquals(ScanTarget.UNCHANGED, target.update(true));
+    assertEquals(ScanTarget.REMOVE, target.update(false));
+  }
+
+  @Test
+  public void ignoresTogglesBeforeTheFirstSession() {
+    ScanTarget target = new ScanTarget();
+
+    assertEquals(ScanTarget.UNCHANGED, target.update(true));
+    assertFalse(target.isTargeted());
+  }
+}
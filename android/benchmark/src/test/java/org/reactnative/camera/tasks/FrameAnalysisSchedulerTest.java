@@ -0,0 +1,301 @@
+package org.reactnative.camera.tasks;
+
+import org.reactnative.camera.utils.FrameBufferPool;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FrameAnalysisSchedulerTest {
+  private static final int FRAME_SIZE = 16;
+  private static final long TIMEOUT_SECONDS = 5;
+
+  private final ExecutorService mExecutor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void shutdownExecutor() {
+    mExecutor.shutdownNow();
+  }
+
+  @Test
+  public void analyzesOnlyTheLatestFrame() throws Exception {
+    FrameAnalysisScheduler scheduler = new FrameAnalysisScheduler(2);
+    FrameBufferPool pool = new FrameBufferPool(8);
+    BlockingAnalyzer analyzer = new BlockingAnalyzer();
+    scheduler.setAnalyzer("scanner", analyzer);
+    scheduler.setAnalyzerEnabled("scanner", true);
+
+    byte[] first = submit(scheduler, pool);
+    analyzer.awaitStarted(1);
+    submit(scheduler, pool);
+    submit(scheduler, pool);
+    byte[] latest = submit(scheduler, pool);
+    // the first frame is being analyzed, the latest one waits, the two in between are released
+    assertEquals(2, pool.getInUseCount());
+
+    analyzer.unblock();
+    awaitAnalyzed(scheduler, "scanner", 2);
+
+    assertEquals(2, analyzer.frames().size());
+    assertSame(first, analyzer.frames().get(0));
+    assertSame(latest, analyzer.frames().get(1));
+    FrameAnalysisScheduler.AnalyzerStats stats = scheduler.getStats("scanner");
+    assertEquals(4, stats.getSubmitted());
+    assertEquals(2, stats.getDropped());
+    awaitReleased(pool);
+  }
+
+  @Test
+  public void keepsAnalyzersApart() throws Exception {
+    FrameAnalysisScheduler scheduler = new FrameAnalysisScheduler(mExecutor);
+    FrameBufferPool pool = new FrameBufferPool(8);
+    BlockingAnalyzer slow = new BlockingAnalyzer();
+    RecordingAnalyzer fast = new RecordingAnalyzer();
+    RecordingListener listener = new RecordingListener();
+    scheduler.setListener(listener);
+    scheduler.setAnalyzer("slow", slow);
+    scheduler.setAnalyzer("fast", fast);
+    scheduler.setAnalyzer("failing", new FrameAnalysisScheduler.Analyzer() {
+      @Override
+      public void analyze(byte[] data, int width, int height, int rotation, FrameBufferPool pool) {
+        throw new IllegalStateException("broken analyzer");
+      }
+    });
+    scheduler.setAnalyzerEnabled("slow", true);
+    scheduler.setAnalyzerEnabled("fast", true);
+    scheduler.setAnalyzerEnabled("failing", true);
+
+    submit(scheduler, pool);
+    slow.awaitStarted(1);
+    for (int i = 1; i <= 5; i++) {
+      if (i > 1) {
+        submit(scheduler, pool);
+      }
+      awaitAnalyzed(scheduler, "fast", i);
+      awaitFailed(scheduler, "failing", i);
+    }
+
+    // the slow analyzer only holds back its own frames, failures only count for the failing one
+    assertEquals(5, fast.count());
+    assertEquals(0, scheduler.getStats("fast").getDropped());
+    assertEquals(0, scheduler.getStats("fast").getFailed());
+    assertEquals(3, scheduler.getStats("slow").getDropped());
+    assertEquals(0, scheduler.getStats("failing").getAnalyzed());
+    assertEquals(0, scheduler.getStats("failing").getDropped());
+    listener.await(5);
+    assertEquals("failing", listener.lastName());
+
+    slow.unblock();
+    awaitAnalyzed(scheduler, "slow", 2);
+    awaitReleased(pool);
+  }
+
+  @Test
+  public void dropsPendingFramesOnShutdown() throws Exception {
+    FrameAnalysisScheduler scheduler = new FrameAnalysisScheduler(mExecutor);
+    FrameBufferPool pool = new FrameBufferPool(8);
+    BlockingAnalyzer analyzer = new BlockingAnalyzer();
+    scheduler.setAnalyzer("scanner", analyzer);
+    scheduler.setAnalyzerEnabled("scanner", true);
+
+    submit(scheduler, pool);
+    analyzer.awaitStarted(1);
+    submit(scheduler, pool);
+    assertEquals(2, pool.getInUseCount());
+
+    scheduler.shutdown();
+    assertFalse(scheduler.hasEnabledAnalyzers());
+    // the pending frame is dropped right away, the running one is finished
+    assertEquals(1, pool.getInUseCount());
+    assertEquals(1, scheduler.getStats("scanner").getDropped());
+
+    analyzer.unblock();
+    awaitAnalyzed(scheduler, "scanner", 1);
+    // what shutdown does to an owned thread pool
+    mExecutor.shutdown();
+    assertTrue(mExecutor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(0, pool.getInUseCount());
+
+    // frames submitted after shutdown are not analyzed, not even when re-enabled
+    submit(scheduler, pool);
+    scheduler.setAnalyzerEnabled("scanner", true);
+    submit(scheduler, pool);
+    assertEquals(1, analyzer.frames().size());
+    assertEquals(2, scheduler.getStats("scanner").getDropped());
+    awaitReleased(pool);
+  }
+
+  @Test
+  public void keepsFramesTheAnalyzerRetained() throws Exception {
+    FrameAnalysisScheduler scheduler = new FrameAnalysisScheduler(mExecutor);
+    FrameBufferPool pool = new FrameBufferPool(8);
+    final List<byte[]> retained = new ArrayList<>();
+    scheduler.setAnalyzer("detector", new FrameAnalysisScheduler.Analyzer() {
+      @Override
+      public void analyze(byte[] data, int width, int height, int rotation, FrameBufferPool pool) {
+        // finishes the detection asynchronously, like the Google Vision tasks
+        pool.retain(data);
+        synchronized (retained) {
+          retained.add(data);
+        }
+      }
+    });
+    scheduler.setAnalyzerEnabled("detector", true);
+
+    byte[] frame = submit(scheduler, pool);
+    awaitAnalyzed(scheduler, "detector", 1);
+    // what the scheduler held is released right after the analyzer returns
+    awaitInUse(pool, 1);
+    synchronized (retained) {
+      assertSame(frame, retained.get(0));
+    }
+    // so the next frame does not overwrite the one still being detected
+    byte[] next = pool.acquire(FRAME_SIZE);
+    assertNotSame(frame, next);
+    pool.release(next);
+
+    pool.release(frame);
+    assertEquals(0, pool.getInUseCount());
+  }
+
+  private static byte[] submit(FrameAnalysisScheduler scheduler, FrameBufferPool pool) {
+    byte[] frame = pool.acquire(FRAME_SIZE);
+    scheduler.submit(frame, 4, 4, 0, pool);
+    // the scheduler holds its own references, drop the one of the camera
+    pool.release(frame);
+    return frame;
+  }
+
+  private static void awaitAnalyzed(FrameAnalysisScheduler scheduler, String name, long count)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+    while (scheduler.getStats(name).getAnalyzed() < count) {
+      assertTrue(name + " analyzed " + scheduler.getStats(name).getAnalyzed() + " of " + count + " frames",
+          System.nanoTime() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
+  private static void awaitFailed(FrameAnalysisScheduler scheduler, String name, long count)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+    while (scheduler.getStats(name).getFailed() < count) {
+      assertTrue(name + " failed " + scheduler.getStats(name).getFailed() + " of " + count + " frames",
+          System.nanoTime() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
+  /**
+   * Frames are released right after the analyzer returns, so wait for the pool to catch up.
+   */
+  private static void awaitReleased(FrameBufferPool pool) throws InterruptedException {
+    awaitInUse(pool, 0);
+  }
+
+  private static void awaitInUse(FrameBufferPool pool, int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+    while (pool.getInUseCount() > count) {
+      assertTrue(pool.getInUseCount() + " frames were not released", System.nanoTime() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
+  private static class RecordingAnalyzer implements FrameAnalysisScheduler.Analyzer {
+    private final List<byte[]> mFrames = new ArrayList<>();
+
+    @Override
+    public void analyze(byte[] data, int width, int height, int rotation, FrameBufferPool pool) {
+      synchronized (this) {
+        mFrames.add(data);
+      }
+    }
+
+    synchronized List<byte[]> frames() {
+      return new ArrayList<>(mFrames);
+    }
+
+    synchronized int count() {
+      return mFrames.size();
+    }
+  }
+
+  /**
+   * Blocks every frame until {@link #unblock()} is called.
+   */
+  private static class BlockingAnalyzer extends RecordingAnalyzer {
+    private final CountDownLatch mUnblocked = new CountDownLatch(1);
+    private final Object mStartedLock = new Object();
+    private int mStarted;
+
+    @Override
+    public void analyze(byte[] data, int width, int height, int rotation, FrameBufferPool pool) {
+      super.analyze(data, width, height, rotation, pool);
+      synchronized (mStartedLock) {
+        mStarted++;
+        mStartedLock.notifyAll();
+      }
+      try {
+        mUnblocked.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    void awaitStarted(int count) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+      synchronized (mStartedLock) {
+        while (mStarted < count) {
+          long remaining = deadline - System.currentTimeMillis();
+          assertTrue("analyzer did not start", remaining > 0);
+          mStartedLock.wait(remaining);
+        }
+      }
+    }
+
+    void unblock() {
+      mUnblocked.countDown();
+    }
+  }
+
+  private static class RecordingListener implements FrameAnalysisScheduler.Listener {
+    private int mCount;
+    private String mLastName;
+
+    @Override
+    public synchronized void onAnalyzerFailed(String name, RuntimeException e) {
+      mCount++;
+      mLastName = name;
+      notifyAll();
+    }
+
+    /**
+     * The listener is called after the failure was counted, so it may lag behind the stats.
+     */
+    synchronized void await(int count) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+      while (mCount < count) {
+        long remaining = deadline - System.currentTimeMillis();
+        assertTrue("listener was told about " + mCount + " of " + count + " failures", remaining > 0);
+        wait(remaining);
+      }
+      assertEquals(count, mCount);
+    }
+
+    synchronized String lastName() {
+      return mLastName;
+    }
+  }
+}
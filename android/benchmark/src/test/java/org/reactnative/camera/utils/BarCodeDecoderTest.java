@@ -0,0 +1,271 @@
+package org.reactnative.camera.utils;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.oned.Code128Writer;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BarCodeDecoderTest {
+  private static final int WIDTH = 640;
+  private static final int HEIGHT = 480;
+  private static final String TEXT = "react-native-camera";
+  private static final String CODE_128_TEXT = "RNCAMERA-1234";
+  private static final int CODE_THICKNESS = 120;
+
+  @Test
+  public void decodesInvertedCodesAtMediumContrast() throws Exception {
+    assertInvertedDecodes(80, 170, 15);
+    // hard for ZXing even without inversion, only has to match the reference
+    assertInvertedDecodes(100, 150, 0);
+  }
+
+  @Test
+  public void invertedPassesDoNotFindNormalCodes() throws Exception {
+    byte[] frame = qrFrame(60, 190, false, 1);
+    assertNull(decoder(BarCodeDecoder.PASS_INVERTED).decode(frame, WIDTH, HEIGHT));
+    assertNotNull(decoder(BarCodeDecoder.PASS_NORMAL).decode(frame, WIDTH, HEIGHT));
+  }
+
+  @Test
+  public void translatesResultPointsOfACroppedRegion() throws Exception {
+    byte[] frame = qrFrame(60, 190, false, 1);
+    Result full = decoder(BarCodeDecoder.PASS_NORMAL).decode(frame, WIDTH, HEIGHT);
+    Result cropped = decoder(BarCodeDecoder.PASS_NORMAL).decode(frame, WIDTH, HEIGHT, 100, 60, 440, 360);
+    assertNotNull(full);
+    assertNotNull(cropped);
+    assertEquals(full.getResultPoints()[0].getX(), cropped.getResultPoints()[0].getX(), 1f);
+    assertEquals(full.getResultPoints()[0].getY(), cropped.getResultPoints()[0].getY(), 1f);
+  }
+
+  @Test
+  public void translatesResultPointsOfTheRotatedPass() throws Exception {
+    // a 1D code with horizontal bars, which only the rotated pass can read
+    byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+    int codeLeft = 200;
+    int codeTop = 80;
+    int length = drawVerticalCode(frame, codeLeft, codeTop);
+    BarCodeDecoder normal = new BarCodeDecoder(reader(BarcodeFormat.CODE_128));
+    normal.setEnabledPasses(BarCodeDecoder.PASS_NORMAL);
+    assertNull(normal.decode(frame, WIDTH, HEIGHT));
+
+    BarCodeDecoder rotated = new BarCodeDecoder(reader(BarcodeFormat.CODE_128));
+    rotated.setEnabledPasses(BarCodeDecoder.PASS_ROTATED);
+    Result full = rotated.decode(frame, WIDTH, HEIGHT);
+    Result cropped = rotated.decode(frame, WIDTH, HEIGHT, 150, 40, 300, 400);
+    assertNotNull(full);
+    assertNotNull(cropped);
+    assertEquals(CODE_128_TEXT, cropped.getText());
+
+    // points are in the frame rotated clockwise: x runs along the original rows from the bottom,
+    // y along the original columns
+    for (Result result : new Result[]{full, cropped}) {
+      for (ResultPoint point : result.getResultPoints()) {
+        assertTrue("x " + point.getX(), point.getX() >= HEIGHT - codeTop - length - 1
+            && point.getX() <= HEIGHT - codeTop + 1);
+        assertTrue("y " + point.getY(), point.getY() >= codeLeft && point.getY() < codeLeft + CODE_THICKNESS);
+      }
+    }
+    for (int i = 0; i < full.getResultPoints().length; i++) {
+      assertEquals(full.getResultPoints()[i].getX(), cropped.getResultPoints()[i].getX(), 1f);
+    }
+  }
+
+  @Test
+  public void triesTheLastSuccessfulPassFirst() throws Exception {
+    byte[] inverted = qrFrame(60, 190, true, 1);
+    BarCodeDecoder decoder = decoder(BarCodeDecoder.ALL_PASSES);
+    decoder.setAdaptive(true);
+
+    assertNotNull(decoder.decode(inverted, WIDTH, HEIGHT));
+    assertArrayEquals(new long[]{1, 1, 1, 0}, attempts(decoder));
+    // the inverted pass moved to the front, so it is the only one to run
+    assertNotNull(decoder.decode(inverted, WIDTH, HEIGHT));
+    assertArrayEquals(new long[]{1, 1, 2, 0}, attempts(decoder));
+    assertEquals(2, decoder.getStats().get(2).getHits());
+
+    // without adaptive mode the order is reset
+    decoder.setAdaptive(false);
+    assertNotNull(decoder.decode(inverted, WIDTH, HEIGHT));
+    assertArrayEquals(new long[]{2, 2, 3, 0}, attempts(decoder));
+  }
+
+  @Test
+  public void runsOnePassPerFrameOnceIdle() throws Exception {
+    byte[] empty = new byte[WIDTH * HEIGHT * 3 / 2];
+    BarCodeDecoder decoder = decoder(BarCodeDecoder.ALL_PASSES);
+    decoder.setAdaptive(true);
+
+    for (int i = 0; i < BarCodeDecoder.IDLE_FRAME_COUNT; i++) {
+      assertNull(decoder.decode(empty, WIDTH, HEIGHT));
+    }
+    long idle = BarCodeDecoder.IDLE_FRAME_COUNT;
+    assertArrayEquals(new long[]{idle, idle, idle, idle}, attempts(decoder));
+
+    // the passes take turns, one per frame
+    for (int pass = 0; pass < 4; pass++) {
+      assertNull(decoder.decode(empty, WIDTH, HEIGHT));
+      long[] expected = {idle, idle, idle, idle};
+      for (int i = 0; i <= pass; i++) {
+        expected[i]++;
+      }
+      assertArrayEquals(expected, attempts(decoder));
+    }
+
+    // a code is found once its pass comes up, after which every pass runs again
+    byte[] code = qrFrame(60, 190, false, 1);
+    assertNotNull(decoder.decode(code, WIDTH, HEIGHT));
+    assertArrayEquals(new long[]{idle + 2, idle + 1, idle + 1, idle + 1}, attempts(decoder));
+    assertNull(decoder.decode(empty, WIDTH, HEIGHT));
+    assertArrayEquals(new long[]{idle + 3, idle + 2, idle + 2, idle + 2}, attempts(decoder));
+
+    // outside adaptive mode every pass runs on every frame
+    BarCodeDecoder plain = decoder(BarCodeDecoder.ALL_PASSES);
+    for (int i = 0; i <= BarCodeDecoder.IDLE_FRAME_COUNT; i++) {
+      plain.decode(empty, WIDTH, HEIGHT);
+    }
+    assertEquals(BarCodeDecoder.IDLE_FRAME_COUNT + 1, attempts(plain)[3]);
+  }
+
+  @Test
+  public void keepsAtLeastTheNormalPass() {
+    BarCodeDecoder decoder = new BarCodeDecoder(null);
+    decoder.setEnabledPasses(0);
+    assertEquals(BarCodeDecoder.PASS_NORMAL, decoder.getEnabledPasses());
+    decoder.setEnabledPasses(1 << 6);
+    assertEquals(BarCodeDecoder.PASS_NORMAL, decoder.getEnabledPasses());
+    decoder.setEnabledPasses(BarCodeDecoder.PASS_ROTATED | 1 << 6);
+    assertEquals(BarCodeDecoder.PASS_ROTATED, decoder.getEnabledPasses());
+
+    List<BarCodeDecoder.PassStats> stats = decoder.getStats();
+    assertFalse(stats.get(0).isEnabled());
+    assertTrue(stats.get(1).isEnabled());
+    // no reader, nothing is tried
+    assertNull(decoder.decode(new byte[WIDTH * HEIGHT], WIDTH, HEIGHT));
+    assertEquals(0, decoder.getFrameCount());
+  }
+
+  /**
+   * The inverted pass has to find exactly the codes ZXing finds in the inverted source.
+   */
+  private static void assertInvertedDecodes(int dark, int light, int minDecoded) throws Exception {
+    int decoded = 0;
+    for (int seed = 0; seed < 20; seed++) {
+      byte[] frame = qrFrame(dark, light, true, seed);
+      Result result = decoder(BarCodeDecoder.PASS_INVERTED).decode(frame, WIDTH, HEIGHT);
+      Result expected = decodeInvertedSource(frame);
+      assertEquals("seed " + seed, expected != null, result != null);
+      if (result != null) {
+        assertEquals(TEXT, result.getText());
+        decoded++;
+      }
+    }
+    assertTrue("inverted codes decoded at " + dark + "/" + light + ": " + decoded, decoded >= minDecoded);
+  }
+
+  private static Result decodeInvertedSource(byte[] frame) {
+    PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(frame, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, false);
+    try {
+      return reader().decodeWithState(new BinaryBitmap(new HybridBinarizer(source.invert())));
+    } catch (NotFoundException e) {
+      return null;
+    }
+  }
+
+  private static MultiFormatReader reader() {
+    return reader(BarcodeFormat.QR_CODE);
+  }
+
+  private static MultiFormatReader reader(BarcodeFormat format) {
+    Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+    hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+    hints.put(DecodeHintType.POSSIBLE_FORMATS, Collections.singletonList(format));
+    MultiFormatReader reader = new MultiFormatReader();
+    reader.setHints(hints);
+    return reader;
+  }
+
+  private static BarCodeDecoder decoder(int passes) {
+    BarCodeDecoder decoder = new BarCodeDecoder(reader());
+    decoder.setEnabledPasses(passes);
+    return decoder;
+  }
+
+  private static long[] attempts(BarCodeDecoder decoder) {
+    List<BarCodeDecoder.PassStats> stats = decoder.getStats();
+    long[] attempts = new long[stats.size()];
+    for (int i = 0; i < attempts.length; i++) {
+      attempts[i] = stats.get(i).getAttempts();
+    }
+    return attempts;
+  }
+
+  /**
+   * Draws a Code 128 code reading upwards, so its bars are rows of the frame, with its top left
+   * corner at {@code left}, {@code top}.
+   *
+   * @return The length of the code along the frame's columns.
+   */
+  private static int drawVerticalCode(byte[] frame, int left, int top) throws Exception {
+    Arrays.fill(frame, 0, WIDTH * HEIGHT, (byte) 235);
+    BitMatrix code = new Code128Writer().encode(CODE_128_TEXT, BarcodeFormat.CODE_128, 300, 1);
+    int length = code.getWidth();
+    for (int p = 0; p < length; p++) {
+      if (!code.get(p, 0)) {
+        continue;
+      }
+      int y = top + length - 1 - p;
+      for (int x = left; x < left + CODE_THICKNESS; x++) {
+        frame[y * WIDTH + x] = (byte) 16;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Luminance plane with a little noise and a QR code drawn with {@code dark} modules on a
+   * {@code light} background, or the other way round if {@code inverted}.
+   */
+  private static byte[] qrFrame(int dark, int light, boolean inverted, int seed) throws Exception {
+    BitMatrix code = new QRCodeWriter().encode(TEXT, BarcodeFormat.QR_CODE, 0, 0);
+    Random random = new Random(seed);
+    byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+    int module = 8;
+    int size = code.getWidth() * module;
+    int left = (WIDTH - size) / 2 + random.nextInt(21) - 10;
+    int top = (HEIGHT - size) / 2 + random.nextInt(21) - 10;
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        int cx = (x - left) / module;
+        int cy = (y - top) / module;
+        boolean set = x >= left && y >= top && cx < code.getWidth() && cy < code.getHeight() && code.get(cx, cy);
+        int value = set != inverted ? dark : light;
+        frame[y * WIDTH + x] = (byte) Math.max(0, Math.min(255, value + random.nextInt(9) - 4));
+      }
+    }
+    return frame;
+  }
+}
@@ -0,0 +1,115 @@
+package org.reactnative.camera.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BitmapTransformGeometryTest {
+  private static final int WIDTH = 6;
+  private static final int HEIGHT = 4;
+  private static final float EPSILON = 1e-4f;
+
+  @Test
+  public void movesEveryPixelWhereARotationAndFlipWouldPutIt() {
+    for (int rotation = 0; rotation < 360; rotation += 90) {
+      for (boolean mirror : new boolean[]{false, true}) {
+        String message = rotation + (mirror ? ", mirrored" : "");
+        BitmapTransformGeometry geometry = new BitmapTransformGeometry(WIDTH, HEIGHT, rotation, mirror, 0);
+        boolean transposed = rotation == 90 || rotation == 270;
+        assertEquals(message, transposed ? HEIGHT : WIDTH, geometry.getWidth());
+        assertEquals(message, transposed ? WIDTH : HEIGHT, geometry.getHeight());
+        assertFalse(message, geometry.isScaled());
+
+        for (int y = 0; y < HEIGHT; y++) {
+          for (int x = 0; x < WIDTH; x++) {
+            int[] expected = expectedPixel(x, y, rotation, mirror);
+            float[] center = geometry.map(x + 0.5f, y + 0.5f);
+            assertEquals(message + ": x of " + x + "," + y, expected[0] + 0.5f, center[0], EPSILON);
+            assertEquals(message + ": y of " + x + "," + y, expected[1] + 0.5f, center[1], EPSILON);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void scalesToTheTargetWidthKeepingTheAspectRatio() {
+    BitmapTransformGeometry geometry = new BitmapTransformGeometry(4000, 3000, 90, false, 1000);
+
+    assertEquals(1000, geometry.getWidth());
+    assertEquals(1333, geometry.getHeight());
+    assertTrue(geometry.isScaled());
+    assertFalse(geometry.isIdentity());
+    // the source fills the destination exactly
+    assertBounds(geometry, 4000, 3000);
+
+    BitmapTransformGeometry mirrored = new BitmapTransformGeometry(4000, 3000, 270, true, 1000);
+    assertBounds(mirrored, 4000, 3000);
+  }
+
+  @Test
+  public void keepsAtLeastOnePixel() {
+    BitmapTransformGeometry geometry = new BitmapTransformGeometry(4000, 10, 0, false, 100);
+
+    assertEquals(100, geometry.getWidth());
+    assertEquals(1, geometry.getHeight());
+  }
+
+  @Test
+  public void normalizesTheRotation() {
+    assertArrayEquals(new BitmapTransformGeometry(WIDTH, HEIGHT, 270, false, 0).getValues(),
+        new BitmapTransformGeometry(WIDTH, HEIGHT, -90, false, 0).getValues(), EPSILON);
+    assertArrayEquals(new BitmapTransformGeometry(WIDTH, HEIGHT, 90, true, 0).getValues(),
+        new BitmapTransformGeometry(WIDTH, HEIGHT, 450, true, 0).getValues(), EPSILON);
+  }
+
+  @Test
+  public void leavesPlainCopiesAlone() {
+    assertTrue(new BitmapTransformGeometry(WIDTH, HEIGHT, 0, false, 0).isIdentity());
+    assertTrue(new BitmapTransformGeometry(WIDTH, HEIGHT, 360, false, WIDTH).isIdentity());
+    assertFalse(new BitmapTransformGeometry(WIDTH, HEIGHT, 0, true, 0).isIdentity());
+    assertFalse(new BitmapTransformGeometry(WIDTH, HEIGHT, 180, false, 0).isIdentity());
+    assertFalse(new BitmapTransformGeometry(WIDTH, HEIGHT, 0, false, WIDTH / 2).isIdentity());
+  }
+
+  private static void assertBounds(BitmapTransformGeometry geometry, int width, int height) {
+    float minX = Float.MAX_VALUE;
+    float minY = Float.MAX_VALUE;
+    float maxX = -Float.MAX_VALUE;
+    float maxY = -Float.MAX_VALUE;
+    for (float[] corner : new float[][]{{0, 0}, {width, 0}, {0, height}, {width, height}}) {
+      float[] mapped = geometry.map(corner[0], corner[1]);
+      minX = Math.min(minX, mapped[0]);
+      minY = Math.min(minY, mapped[1]);
+      maxX = Math.max(maxX, mapped[0]);
+      maxY = Math.max(maxY, mapped[1]);
+    }
+    assertEquals(0, minX, EPSILON);
+    assertEquals(0, minY, EPSILON);
+    assertEquals(geometry.getWidth(), maxX, EPSILON);
+    assertEquals(geometry.getHeight(), maxY, EPSILON);
+  }
+
+  /**
+   * Where pixel {@code x, y} ends up after a clockwise rotation followed by a horizontal flip.
+   */
+  private static int[] expectedPixel(int x, int y, int rotation, boolean mirror) {
+    int width = WIDTH;
+    int height = HEIGHT;
+    for (int turns = rotation / 90; turns > 0; turns--) {
+      int turnedX = height - 1 - y;
+      y = x;
+      x = turnedX;
+      int swap = width;
+      width = height;
+      height = swap;
+    }
+    if (mirror) {
+      x = width - 1 - x;
+    }
+    return new int[]{x, y};
+  }
+}
@@ -0,0 +1,148 @@
+package org.reactnative.camera.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the Exif orientation geometry on small pictures whose pixels are numbered, so every
+ * pixel can be followed from the stored picture to the upright one.
+ */
+public class ExifOrientationTest {
+  private static final int WIDTH = 7;
+  private static final int HEIGHT = 5;
+
+  @Test
+  public void showsEveryOrientationUpright() {
+    // what the stored picture of each orientation looks like, for an upright 2x3 picture
+    int[][] upright = {{1, 2}, {3, 4}, {5, 6}};
+    int[][][] stored = {
+        null,
+        {{1, 2}, {3, 4}, {5, 6}},
+        {{2, 1}, {4, 3}, {6, 5}},
+        {{6, 5}, {4, 3}, {2, 1}},
+        {{5, 6}, {3, 4}, {1, 2}},
+        {{1, 3, 5}, {2, 4, 6}},
+        {{2, 4, 6}, {1, 3, 5}},
+        {{6, 4, 2}, {5, 3, 1}},
+        {{5, 3, 1}, {6, 4, 2}},
+    };
+    for (int orientation = 1; orientation <= 8; orientation++) {
+      int[][] shown = transform(stored[orientation], ExifOrientation.getRotation(orientation),
+          ExifOrientation.isMirrored(orientation));
+      assertArrayEquals("orientation " + orientation, upright, shown);
+      assertEquals("orientation " + orientation, stored[orientation].length != upright.length,
+          ExifOrientation.isTransposed(orientation));
+    }
+  }
+
+  @Test
+  public void treatsUnknownOrientationsAsUpright() {
+    for (int orientation : new int[]{0, 9, -1}) {
+      assertEquals(0, ExifOrientation.getRotation(orientation));
+      assertFalse(ExifOrientation.isMirrored(orientation));
+      assertFalse(ExifOrientation.isTransposed(orientation));
+    }
+    assertArrayEquals(new int[]{1, 2, 3, 4},
+        ExifOrientation.toSourceRect(0, false, WIDTH, HEIGHT, 1, 2, 3, 4));
+  }
+
+  @Test
+  public void mapsCropsBackToTheStoredPicture() {
+    Random random = new Random(7);
+    int[][] stored = numbered(WIDTH, HEIGHT);
+    for (int orientation = 1; orientation <= 8; orientation++) {
+      for (boolean mirror : new boolean[]{false, true}) {
+        String message = "orientation " + orientation + (mirror ? ", mirrored" : "");
+        int rotation = ExifOrientation.getRotation(orientation);
+        boolean flip = ExifOrientation.isMirrored(orientation) != mirror;
+        int[][] upright = transform(stored, rotation, flip);
+        int width = upright[0].length;
+        int height = upright.length;
+        assertEquals(message, ExifOrientation.isTransposed(orientation) ? HEIGHT : WIDTH, width);
+
+        for (int i = 0; i < 50; i++) {
+          int x = random.nextInt(width);
+          int y = random.nextInt(height);
+          int w = 1 + random.nextInt(width - x);
+          int h = 1 + random.nextInt(height - y);
+          int[] rect = ExifOrientation.toSourceRect(orientation, mirror, width, height, x, y, w, h);
+
+          // what MutableImage.cropToPreview does: decode the region, then orient it
+          int[][] region = crop(stored, rect[0], rect[1], rect[2], rect[3]);
+          assertArrayEquals(message + ", crop " + x + "," + y + " " + w + "x" + h,
+              crop(upright, x, y, w, h), transform(region, rotation, flip));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void staysWithinTheStoredPicture() {
+    for (int orientation = 1; orientation <= 8; orientation++) {
+      boolean transposed = ExifOrientation.isTransposed(orientation);
+      int width = transposed ? HEIGHT : WIDTH;
+      int height = transposed ? WIDTH : HEIGHT;
+      for (boolean mirror : new boolean[]{false, true}) {
+        int[] rect = ExifOrientation.toSourceRect(orientation, mirror, width, height, 0, 0, width, height);
+        assertArrayEquals("orientation " + orientation, new int[]{0, 0, WIDTH, HEIGHT}, rect);
+
+        int[] corner = ExifOrientation.toSourceRect(orientation, mirror, width, height, width - 1, height - 1, 1, 1);
+        assertTrue(corner[0] >= 0 && corner[0] < WIDTH);
+        assertTrue(corner[1] >= 0 && corner[1] < HEIGHT);
+      }
+    }
+  }
+
+  private static int[][] numbered(int width, int height) {
+    int[][] pixels = new int[height][width];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        pixels[y][x] = y * width + x;
+      }
+    }
+    return pixels;
+  }
+
+  private static int[][] crop(int[][] pixels, int x, int y, int w, int h) {
+    int[][] cropped = new int[h][w];
+    for (int row = 0; row < h; row++) {
+      System.arraycopy(pixels[y + row], x, cropped[row], 0, w);
+    }
+    return cropped;
+  }
+
+  /**
+   * Rotates clockwise, then flips horizontally, like BitmapTransforms.
+   */
+  private static int[][] transform(int[][] pixels, int rotation, boolean mirror) {
+    int[][] result = pixels;
+    for (int turns = rotation / 90; turns > 0; turns--) {
+      int height = result.length;
+      int width = result[0].length;
+      int[][] turned = new int[width][height];
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          turned[x][height - 1 - y] = result[y][x];
+        }
+      }
+      result = turned;
+    }
+    if (mirror) {
+      int width = result[0].length;
+      int[][] flipped = new int[result.length][width];
+      for (int y = 0; y < result.length; y++) {
+        for (int x = 0; x < width; x++) {
+          flipped[y][width - 1 - x] = result[y][x];
+        }
+      }
+      result = flipped;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,171 @@
+package org.reactnative.camera.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FrameBufferPoolTest {
+
+  @Test
+  public void reusesReleasedBuffers() {
+    FrameBufferPool pool = new FrameBufferPool(3);
+    byte[] buffer = pool.acquire(100);
+    assertEquals(100, buffer.length);
+    assertTrue(pool.release(buffer));
+
+    assertSame(buffer, pool.acquire(100));
+    assertEquals(1, pool.getAllocationCount());
+    assertEquals(1, pool.getReuseCount());
+    assertEquals(1, pool.getBufferCount());
+  }
+
+  @Test
+  public void keepsRetainedBuffersUntilTheLastRelease() {
+    FrameBufferPool pool = new FrameBufferPool(3);
+    CountingListener listener = new CountingListener();
+    pool.setListener(listener);
+
+    byte[] buffer = pool.acquire(100);
+    assertTrue(pool.retain(buffer));
+    assertTrue(pool.release(buffer));
+    assertEquals(1, pool.getInUseCount());
+    assertEquals(0, listener.mCount);
+    assertNotSame(buffer, pool.acquire(100));
+
+    assertTrue(pool.release(buffer));
+    assertEquals(1, pool.getInUseCount());
+    assertEquals(1, pool.getFreeCount());
+    assertEquals(1, listener.mCount);
+  }
+
+  @Test
+  public void ignoresASecondRelease() {
+    FrameBufferPool pool = new FrameBufferPool(3);
+    CountingListener listener = new CountingListener();
+    pool.setListener(listener);
+
+    byte[] buffer = pool.acquire(100);
+    assertTrue(pool.release(buffer));
+    assertFalse(pool.release(buffer));
+    assertFalse(pool.retain(buffer));
+    assertEquals(1, pool.getFreeCount());
+    assertEquals(1, listener.mCount);
+
+    // the buffer is on the free list only once
+    byte[] first = pool.acquire(100);
+    byte[] second = pool.acquire(100);
+    assertSame(buffer, first);
+    assertNotSame(first, second);
+    assertEquals(2, pool.getAllocationCount());
+  }
+
+  @Test
+  public void ignoresForeignBuffers() {
+    FrameBufferPool pool = new FrameBufferPool(3);
+    pool.acquire(100);
+    assertFalse(pool.retain(new byte[100]));
+    assertFalse(pool.release(new byte[100]));
+    assertFalse(pool.retain(null));
+    assertFalse(pool.release(null));
+    assertEquals(1, pool.getInUseCount());
+  }
+
+  @Test
+  public void evictsFreeBuffersOfAnotherSizeAtCapacity() {
+    FrameBufferPool pool = new FrameBufferPool(2);
+    byte[] first = pool.acquire(100);
+    byte[] second = pool.acquire(100);
+    pool.release(first);
+    pool.release(second);
+    assertEquals(2, pool.getFreeCount());
+
+    // the preview size changed: both old buffers make room for the new size
+    byte[] large = pool.acquire(200);
+    byte[] large2 = pool.acquire(200);
+    assertEquals(200, large.length);
+    assertEquals(200, large2.length);
+    assertEquals(2, pool.getBufferCount());
+    assertEquals(0, pool.getFreeCount());
+
+    pool.release(large);
+    assertSame(large, pool.acquire(200));
+  }
+
+  @Test
+  public void countsExhaustionAndBuffersThatWereNeverReleased() {
+    FrameBufferPool pool = new FrameBufferPool(2);
+    byte[] first = pool.acquire(100);
+    byte[] leaked = pool.acquire(100);
+    assertNotNull(leaked);
+
+    assertNull(pool.acquire(100));
+    // buffers of another size cannot be evicted while they are referenced either
+    assertNull(pool.acquire(200));
+    assertEquals(2, pool.getExhaustedCount());
+    assertEquals(2, pool.getInUseCount());
+
+    pool.release(first);
+    assertEquals(1, pool.getInUseCount());
+    assertEquals(1, pool.getFreeCount());
+    assertSame(first, pool.acquire(100));
+    assertEquals(2, pool.getAllocationCount());
+    assertEquals(1, pool.getReuseCount());
+  }
+
+  @Test
+  public void forgetsEveryBufferOnClear() {
+    FrameBufferPool pool = new FrameBufferPool(2);
+    byte[] inUse = pool.acquire(100);
+    pool.release(pool.acquire(100));
+
+    pool.clear();
+    assertEquals(0, pool.getBufferCount());
+    assertEquals(0, pool.getInUseCount());
+    assertFalse(pool.release(inUse));
+
+    assertNotNull(pool.acquire(100));
+    assertNotNull(pool.acquire(100));
+    assertEquals(0, pool.getExhaustedCount());
+  }
+
+  @Test
+  public void letsTheListenerAcquireRightAway() {
+    final FrameBufferPool pool = new FrameBufferPool(1);
+    final List<byte[]> acquired = new ArrayList<>();
+    pool.setListener(new FrameBufferPool.Listener() {
+      @Override
+      public void onBufferAvailable(FrameBufferPool source) {
+        acquired.add(source.acquire(100));
+      }
+    });
+
+    byte[] buffer = pool.acquire(100);
+    pool.release(buffer);
+    assertEquals(1, acquired.size());
+    assertSame(buffer, acquired.get(0));
+    assertEquals(1, pool.getInUseCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsAnEmptyPool() {
+    new FrameBufferPool(0);
+  }
+
+  private static class CountingListener implements FrameBufferPool.Listener {
+    int mCount;
+
+    @Override
+    public void onBufferAvailable(FrameBufferPool pool) {
+      mCount++;
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package org.reactnative.camera.utils;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FrameReplayerTest {
+  private static final int WIDTH = 4;
+  private static final int HEIGHT = 2;
+  private static final int FRAME_SIZE = WIDTH * HEIGHT * 3 / 2;
+  private static final long TIMEOUT_SECONDS = 5;
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private FrameReplayer mReplayer;
+
+  @After
+  public void stopReplayer() {
+    if (mReplayer != null) {
+      mReplayer.stop();
+    }
+  }
+
+  @Test
+  public void replaysTheRecordingInALoop() throws Exception {
+    FrameBufferPool pool = new FrameBufferPool(2);
+    RecordingListener listener = new RecordingListener(7);
+    mReplayer = replayer(record(3, 0), 0, listener);
+    mReplayer.setFrameBufferPool(pool);
+    assertEquals(WIDTH, mReplayer.getWidth());
+    assertEquals(HEIGHT, mReplayer.getHeight());
+
+    mReplayer.start();
+    listener.awaitFrames();
+    mReplayer.stop();
+
+    assertFalse(mReplayer.isRunning());
+    assertEquals(Arrays.asList(0, 1, 2, 0, 1, 2, 0), listener.frames().subList(0, 7));
+    assertEquals(0, listener.dropped());
+    assertNull(listener.error());
+    // every frame went back to the pool before the next one was read
+    assertEquals(0, pool.getInUseCount());
+    assertEquals(1, pool.getAllocationCount());
+  }
+
+  @Test
+  public void skipsFramesNobodyConsumes() throws Exception {
+    RecordingListener listener = new RecordingListener(5) {
+      private int mCalls;
+
+      @Override
+      public boolean isConsumingFrames() {
+        return mCalls++ % 2 == 0;
+      }
+    };
+    mReplayer = replayer(record(3, 0), 0, listener);
+
+    mReplayer.start();
+    listener.awaitFrames();
+    mReplayer.stop();
+
+    assertEquals(Arrays.asList(0, 2, 1, 0, 2), listener.frames().subList(0, 5));
+    assertEquals(0, listener.dropped());
+  }
+
+  @Test
+  public void dropsFramesWhileEveryBufferIsHeld() throws Exception {
+    final FrameBufferPool pool = new FrameBufferPool(1);
+    final byte[][] held = new byte[1][];
+    RecordingListener listener = new RecordingListener(3) {
+      @Override
+      public void onFrame(FrameRecording.Frame frame) {
+        if (held[0] == null) {
+          // a consumer that keeps the frame beyond the callback
+          pool.retain(frame.data);
+          held[0] = frame.data;
+        }
+        super.onFrame(frame);
+      }
+    };
+    mReplayer = replayer(record(3, 0), 0, listener);
+    mReplayer.setFrameBufferPool(pool);
+
+    mReplayer.start();
+    listener.awaitDropped(3);
+    assertEquals(1, listener.frames().size());
+
+    pool.release(held[0]);
+    listener.awaitFrames();
+    mReplayer.stop();
+    assertEquals(0, pool.getInUseCount());
+  }
+
+  @Test
+  public void dropsFramesWhoseSlotPassed() throws Exception {
+    RecordingListener listener = new RecordingListener(2) {
+      @Override
+      public void onFrame(FrameRecording.Frame frame) {
+        if (frames().isEmpty()) {
+          // five slots at 100 fps
+          sleep(55);
+        }
+        super.onFrame(frame);
+      }
+    };
+    mReplayer = replayer(record(3, 0), 100, listener);
+
+    mReplayer.start();
+    listener.awaitFrames();
+    mReplayer.stop();
+
+    assertTrue("dropped " + listener.dropped(), listener.dropped() >= 3);
+  }
+
+  @Test
+  public void deliversThePicturesInTurn() throws Exception {
+    RecordingListener listener = new RecordingListener(0);
+    mReplayer = replayer(record(3, 2), 50, listener);
+    assertTrue(mReplayer.hasPictures());
+
+    mReplayer.start();
+    for (int i = 1; i <= 3; i++) {
+      mReplayer.requestPicture();
+      listener.awaitPictures(i);
+    }
+    mReplayer.stop();
+
+    List<byte[]> pictures = listener.pictures();
+    assertArrayEquals(picture(0), pictures.get(0));
+    assertArrayEquals(picture(1), pictures.get(1));
+    assertArrayEquals(picture(0), pictures.get(2));
+  }
+
+  private static FrameReplayer replayer(File recording, float fps, FrameReplayer.Listener listener)
+      throws IOException {
+    return new FrameReplayer(new FrameRecording.Reader(recording), fps, listener);
+  }
+
+  /**
+   * Records {@code frameCount} frames whose first byte is their index, and {@code pictureCount}
+   * pictures.
+   */
+  private File record(int frameCount, int pictureCount) throws IOException {
+    File directory = mFolder.newFolder();
+    FrameRecording.Writer writer = new FrameRecording.Writer(directory);
+    try {
+      for (int i = 0; i < frameCount; i++) {
+        byte[] frame = new byte[FRAME_SIZE];
+        frame[0] = (byte) i;
+        writer.writeFrame(frame, frame.length, WIDTH, HEIGHT, 90, i * 33000000L);
+      }
+      for (int i = 0; i < pictureCount; i++) {
+        writer.writePicture(picture(i));
+      }
+    } finally {
+      writer.close();
+    }
+    return directory;
+  }
+
+  private static byte[] picture(int index) {
+    return new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) index, (byte) 0xFF, (byte) 0xD9};
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class RecordingListener implements FrameReplayer.Listener {
+    private final int mExpectedFrames;
+    private final List<Integer> mFrames = new ArrayList<>();
+    private final List<byte[]> mPictures = new ArrayList<>();
+    private int mDropped;
+    private IOException mError;
+
+    RecordingListener(int expectedFrames) {
+      mExpectedFrames = expectedFrames;
+    }
+
+    @Override
+    public boolean isConsumingFrames() {
+      return true;
+    }
+
+    @Override
+    public synchronized void onFrame(FrameRecording.Frame frame) {
+      assertEquals(WIDTH, frame.width);
+      assertEquals(HEIGHT, frame.height);
+      assertEquals(90, frame.rotation);
+      mFrames.add((int) frame.data[0]);
+      notifyAll();
+    }
+
+    @Override
+    public synchronized void onFrameDropped() {
+      mDropped++;
+      notifyAll();
+    }
+
+    @Override
+    public synchronized void onPicture(byte[] jpeg) {
+      mPictures.add(jpeg);
+      notifyAll();
+    }
+
+    @Override
+    public synchronized void onError(IOException e) {
+      mError = e;
+    }
+
+    synchronized List<Integer> frames() {
+      return new ArrayList<>(mFrames);
+    }
+
+    synchronized List<byte[]> pictures() {
+      return new ArrayList<>(mPictures);
+    }
+
+    synchronized int dropped() {
+      return mDropped;
+    }
+
+    synchronized IOException error() {
+      return mError;
+    }
+
+    synchronized void awaitFrames() throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+      while (mFrames.size() < mExpectedFrames) {
+        waitUntil(deadline, "replayed " + mFrames.size() + " of " + mExpectedFrames + " frames");
+      }
+    }
+
+    synchronized void awaitDropped(int count) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+      while (mDropped < count) {
+        waitUntil(deadline, "dropped " + mDropped + " of " + count + " frames");
+      }
+    }
+
+    synchronized void awaitPictures(int count) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+      while (mPictures.size() < count) {
+        waitUntil(deadline, "delivered " + mPictures.size() + " of " + count + " pictures");
+      }
+    }
+
+    private void waitUntil(long deadline, String message) throws InterruptedException {
+      long remaining = deadline - System.currentTimeMillis();
+      assertTrue(message, remaining > 0);
+      wait(remaining);
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package org.reactnative.camera.utils;
+
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.lang.GeoLocation;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.drew.metadata.exif.ExifThumbnailDirectory;
+import com.drew.metadata.exif.GpsDirectory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.reactnative.camera.utils.JpegFixtures.noise;
+import static org.reactnative.camera.utils.JpegFixtures.plainJpeg;
+import static org.reactnative.camera.utils.JpegFixtures.sourceTiff;
+import static org.reactnative.camera.utils.JpegFixtures.withExif;
+
+/**
+ * Runs a corpus of camera-like pictures through the single-pass save of MutableImage: the Exif
+ * data of the original picture, updated for the re-encoded one, written in front of the encoder
+ * output while it is streamed to the file.
+ */
+public class JpegExifCorpusTest {
+  private static final int WIDTH = 64;
+  private static final int HEIGHT = 48;
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Test
+  public void streamsTheSameBytesAsWritingTheFileAndThenItsExif() throws Exception {
+    for (Sample sample : corpus()) {
+      File file = mFolder.newFile();
+      writer(sample).write(sample.encoded, file);
+      // the two passes the single pass replaces: the encoder output first, the Exif data after
+      File twoPasses = mFolder.newFile();
+      writer(sample).write(Files.readAllBytes(file.toPath()), twoPasses);
+
+      assertArrayEquals(sample.name, Files.readAllBytes(twoPasses.toPath()), stream(sample));
+    }
+  }
+
+  @Test
+  public void keepsTheEncodedPictureByteForByte() throws Exception {
+    for (Sample sample : corpus()) {
+      File stripped = mFolder.newFile();
+      new JpegExifWriter().write(stream(sample), stripped);
+
+      assertArrayEquals(sample.name, sample.encoded, Files.readAllBytes(stripped.toPath()));
+    }
+  }
+
+  @Test
+  public void describesTheReencodedPicture() throws Exception {
+    for (Sample sample : corpus()) {
+      Metadata metadata = JpegMetadataReader.readMetadata(new ByteArrayInputStream(stream(sample)));
+      assertFalse(sample.name, metadata.hasErrors());
+
+      ExifIFD0Directory ifd0 = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+      assertEquals(sample.name, "Acme", ifd0.getString(ExifIFD0Directory.TAG_MAKE));
+      assertEquals(sample.name, sample.reoriented ? 1 : sample.orientation,
+          ifd0.getInt(ExifIFD0Directory.TAG_ORIENTATION));
+
+      ExifSubIFDDirectory exif = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
+      assertEquals(sample.name, sample.width, exif.getInt(ExifSubIFDDirectory.TAG_EXIF_IMAGE_WIDTH));
+      assertEquals(sample.name, sample.height, exif.getInt(ExifSubIFDDirectory.TAG_EXIF_IMAGE_HEIGHT));
+      assertEquals(sample.name, 200, exif.getInt(ExifSubIFDDirectory.TAG_ISO_EQUIVALENT));
+      if (sample.makerNoteLength > 0) {
+        assertArrayEquals(sample.name, noise(sample.makerNoteLength, 3),
+            exif.getByteArray(ExifSubIFDDirectory.TAG_MAKERNOTE));
+      }
+
+      // the thumbnail shows the picture before it was mutated
+      assertNull(sample.name, metadata.getFirstDirectoryOfType(ExifThumbnailDirectory.class));
+
+      GeoLocation location = metadata.getFirstDirectoryOfType(GpsDirectory.class).getGeoLocation();
+      assertEquals(sample.name, sample.hasLocation ? -33.85 : 52.5, location.getLatitude(), 1e-6);
+      assertEquals(sample.name, sample.hasLocation ? 151.2 : 13.4, location.getLongitude(), 1e-6);
+    }
+  }
+
+  @Test
+  public void writesPicturesWithoutExifUnchanged() throws Exception {
+    byte[] original = plainJpeg();
+    Sample sample = new Sample("no exif", original, 1, false, 0, false);
+
+    assertArrayEquals(sample.encoded, stream(sample));
+  }
+
+  /**
+   * What MutableImage.writeDataToFile sets up for a sample.
+   */
+  private static JpegExifWriter writer(Sample sample) {
+    JpegExifWriter writer = JpegExifWriter.forReencoded(sample.original, sample.width, sample.height,
+        sample.reoriented);
+    if (sample.hasLocation) {
+      writer.setLatLong(-33.85, 151.2);
+    }
+    return writer;
+  }
+
+  /**
+   * Streams the encoded picture the way Bitmap.compress does, in chunks of varying size.
+   */
+  private byte[] stream(Sample sample) throws IOException {
+    File file = mFolder.newFile();
+    OutputStream output = writer(sample).openOutputStream(file);
+    try {
+      Random random = new Random(sample.name.hashCode());
+      int offset = 0;
+      while (offset < sample.encoded.length) {
+        int length = Math.min(1 + random.nextInt(2048), sample.encoded.length - offset);
+        output.write(sample.encoded, offset, length);
+        offset += length;
+      }
+    } finally {
+      output.close();
+    }
+    return Files.readAllBytes(file.toPath());
+  }
+
+  private static List<Sample> corpus() throws IOException {
+    List<Sample> corpus = new ArrayList<>();
+    ByteOrder[] orders = {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN};
+    int[] orientations = {1, 3, 6, 8};
+    byte[] thumbnail = plainJpeg(32, 24, 7);
+    for (ByteOrder order : orders) {
+      for (int orientation : orientations) {
+        for (int variant = 0; variant < 4; variant++) {
+          byte[] tiff = sourceTiff(order, orientation, variant % 2 == 0 ? thumbnail : null,
+              variant < 2 ? 0 : 64);
+          byte[] original = withExif(plainJpeg(), tiff);
+          if (variant == 3) {
+            // some cameras repeat the segment, only the first one counts
+            original = withExif(original, tiff);
+          }
+          String name = order + ", orientation " + orientation + ", variant " + variant;
+          // fixOrientation rotates the pixels of every orientation but the normal one
+          corpus.add(new Sample(name, original, orientation, orientation != 1,
+              variant < 2 ? 0 : 64, variant % 2 == 1));
+        }
+      }
+    }
+    return corpus;
+  }
+
+  private static class Sample {
+    final String name;
+    final byte[] original;
+    final int orientation;
+    final boolean reoriented;
+    final int makerNoteLength;
+    final boolean hasLocation;
+    final int width;
+    final int height;
+    // what the encoder wrote for the mutated picture, without Exif data
+    final byte[] encoded;
+
+    Sample(String name, byte[] original, int orientation, boolean reoriented,
+           int makerNoteLength, boolean hasLocation) throws IOException {
+      this.name = name;
+      this.original = original;
+      this.orientation = orientation;
+      this.reoriented = reoriented;
+      this.makerNoteLength = makerNoteLength;
+      this.hasLocation = hasLocation;
+      boolean transposed = reoriented && (orientation == 6 || orientation == 8);
+      width = transposed ? HEIGHT : WIDTH;
+      height = transposed ? WIDTH : HEIGHT;
+      encoded = plainJpeg(width, height, orientation);
+    }
+  }
+}
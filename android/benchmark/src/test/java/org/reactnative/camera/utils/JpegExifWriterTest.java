@@ -0,0 +1,240 @@
+package org.reactnative.camera.utils;
+
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.lang.GeoLocation;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifInteropDirectory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.drew.metadata.exif.ExifThumbnailDirectory;
+import com.drew.metadata.exif.GpsDirectory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.reactnative.camera.utils.JpegFixtures.noise;
+import static org.reactnative.camera.utils.JpegFixtures.plainJpeg;
+import static org.reactnative.camera.utils.JpegFixtures.sourceTiff;
+import static org.reactnative.camera.utils.JpegFixtures.text;
+import static org.reactnative.camera.utils.JpegFixtures.withExif;
+
+public class JpegExifWriterTest {
+  // offset of the TIFF header in a file with the Exif segment right after SOI
+  private static final int TIFF_START = 2 + 4 + 6;
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Test
+  public void roundTripsBigEndianExif() throws Exception {
+    assertRoundTrip(ByteOrder.BIG_ENDIAN, 'M');
+  }
+
+  @Test
+  public void roundTripsLittleEndianExif() throws Exception {
+    assertRoundTrip(ByteOrder.LITTLE_ENDIAN, 'I');
+  }
+
+  @Test
+  public void createsTheIfdsPointedToByNewTags() throws Exception {
+    JpegExifWriter writer = new JpegExifWriter();
+    writer.setLatLong(-33.85, 151.2);
+    writer.setAltitude(-12.5);
+    writer.setAttribute("InteroperabilityIndex", "R03");
+
+    Metadata metadata = read(write(writer, plainJpeg()));
+    GeoLocation location = metadata.getFirstDirectoryOfType(GpsDirectory.class).getGeoLocation();
+    assertEquals(-33.85, location.getLatitude(), 1e-6);
+    assertEquals(151.2, location.getLongitude(), 1e-6);
+    assertEquals(12.5, metadata.getFirstDirectoryOfType(GpsDirectory.class)
+        .getRational(GpsDirectory.TAG_ALTITUDE).doubleValue(), 1e-6);
+    // the interop IFD is only reachable through an Exif IFD that has no other tags
+    assertEquals("R03", metadata.getFirstDirectoryOfType(ExifInteropDirectory.class)
+        .getString(ExifInteropDirectory.TAG_INTEROP_INDEX));
+    assertNotNull(metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class));
+    assertFalse(metadata.hasErrors());
+  }
+
+  @Test
+  public void carriesTheThumbnailOver() throws Exception {
+    byte[] thumbnail = plainJpeg(32, 24, 7);
+    byte[] source = withExif(plainJpeg(), sourceTiff(ByteOrder.LITTLE_ENDIAN, thumbnail, 0));
+
+    JpegExifWriter writer = JpegExifWriter.fromJpeg(source);
+    writer.setAttribute("Orientation", "1");
+    byte[] output = write(writer, plainJpeg());
+
+    assertArrayEquals(thumbnail, thumbnailOf(output));
+  }
+
+  @Test
+  public void removesTheThumbnail() throws Exception {
+    byte[] source = withExif(plainJpeg(), sourceTiff(ByteOrder.BIG_ENDIAN, plainJpeg(32, 24, 7), 0));
+
+    JpegExifWriter writer = JpegExifWriter.fromJpeg(source);
+    writer.removeThumbnail();
+    byte[] output = write(writer, plainJpeg());
+
+    Metadata metadata = read(output);
+    assertNull(metadata.getFirstDirectoryOfType(ExifThumbnailDirectory.class));
+    assertEquals("Acme", metadata.getFirstDirectoryOfType(ExifIFD0Directory.class)
+        .getString(ExifIFD0Directory.TAG_MAKE));
+  }
+
+  @Test
+  public void dropsTheThumbnailFirstWhenTheSegmentIsTooLarge() throws Exception {
+    byte[] source = withExif(plainJpeg(), sourceTiff(ByteOrder.BIG_ENDIAN, noise(60000, 1), 0));
+
+    JpegExifWriter writer = JpegExifWriter.fromJpeg(source);
+    writer.setAttribute("MakerNote", text(10000));
+    byte[] output = write(writer, plainJpeg());
+
+    Metadata metadata = read(output);
+    assertNull(metadata.getFirstDirectoryOfType(ExifThumbnailDirectory.class));
+    assertEquals(10000, metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class)
+        .getByteArray(ExifSubIFDDirectory.TAG_MAKERNOTE).length);
+  }
+
+  @Test
+  public void dropsTheMakerNoteWhenTheSegmentIsStillTooLarge() throws Exception {
+    byte[] source = withExif(plainJpeg(), sourceTiff(ByteOrder.BIG_ENDIAN, noise(20000, 1), 0));
+
+    JpegExifWriter writer = JpegExifWriter.fromJpeg(source);
+    writer.setAttribute("MakerNote", text(70000));
+    byte[] output = write(writer, plainJpeg());
+
+    Metadata metadata = read(output);
+    assertNull(metadata.getFirstDirectoryOfType(ExifThumbnailDirectory.class));
+    ExifSubIFDDirectory exif = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
+    assertFalse(exif.containsTag(ExifSubIFDDirectory.TAG_MAKERNOTE));
+    assertEquals(200, exif.getInt(ExifSubIFDDirectory.TAG_ISO_EQUIVALENT));
+  }
+
+  @Test
+  public void failsWhenOtherTagsDoNotFitIntoASegment() throws Exception {
+    JpegExifWriter writer = new JpegExifWriter();
+    writer.setAttribute("ImageDescription", text(70000));
+    try {
+      writer.write(plainJpeg(), mFolder.newFile());
+      fail("Exif data larger than a segment was written");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void streamsTheSameBytesAsWrite() throws Exception {
+    byte[] jpeg = plainJpeg();
+    byte[] source = withExif(plainJpeg(), sourceTiff(ByteOrder.LITTLE_ENDIAN, plainJpeg(32, 24, 7), 64));
+    assertStreamMatchesWrite(JpegExifWriter.fromJpeg(source), jpeg);
+    // without tags nothing is inserted
+    assertStreamMatchesWrite(new JpegExifWriter(), jpeg);
+  }
+
+  @Test
+  public void stripsExifWithoutTags() throws Exception {
+    byte[] jpeg = plainJpeg();
+    byte[] tiff = sourceTiff(ByteOrder.BIG_ENDIAN, plainJpeg(32, 24, 7), 0);
+
+    assertArrayEquals(jpeg, write(new JpegExifWriter(), withExif(jpeg, tiff)));
+    // every Exif segment of the source is dropped, not just the first one
+    assertArrayEquals(jpeg, write(new JpegExifWriter(), withExif(withExif(jpeg, tiff), tiff)));
+
+    JpegExifWriter cleared = JpegExifWriter.fromJpeg(withExif(jpeg, tiff));
+    cleared.clearAttributes();
+    assertArrayEquals(jpeg, write(cleared, withExif(jpeg, tiff)));
+  }
+
+  private void assertRoundTrip(ByteOrder order, char orderMark) throws Exception {
+    byte[] jpeg = plainJpeg();
+    byte[] source = withExif(jpeg, sourceTiff(order, null, 64));
+
+    JpegExifWriter writer = JpegExifWriter.fromJpeg(source);
+    writer.setAttribute("Software", "react-native-camera");
+    writer.setImageSize(480, 640);
+    byte[] output = write(writer, jpeg);
+
+    assertEquals(orderMark, (char) output[TIFF_START]);
+    assertEquals(orderMark, (char) output[TIFF_START + 1]);
+
+    Metadata metadata = read(output);
+    assertFalse(metadata.hasErrors());
+    ExifIFD0Directory ifd0 = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+    assertEquals("Acme", ifd0.getString(ExifIFD0Directory.TAG_MAKE));
+    assertEquals(6, ifd0.getInt(ExifIFD0Directory.TAG_ORIENTATION));
+    assertEquals("react-native-camera", ifd0.getString(ExifIFD0Directory.TAG_SOFTWARE));
+
+    ExifSubIFDDirectory exif = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
+    assertEquals(0.01, exif.getRational(ExifSubIFDDirectory.TAG_EXPOSURE_TIME).doubleValue(), 1e-9);
+    assertEquals(200, exif.getInt(ExifSubIFDDirectory.TAG_ISO_EQUIVALENT));
+    assertEquals(480, exif.getInt(ExifSubIFDDirectory.TAG_EXIF_IMAGE_WIDTH));
+    assertEquals(640, exif.getInt(ExifSubIFDDirectory.TAG_EXIF_IMAGE_HEIGHT));
+    assertArrayEquals(noise(64, 3), exif.getByteArray(ExifSubIFDDirectory.TAG_MAKERNOTE));
+
+    GeoLocation location = metadata.getFirstDirectoryOfType(GpsDirectory.class).getGeoLocation();
+    assertEquals(52.5, location.getLatitude(), 1e-6);
+    assertEquals(13.4, location.getLongitude(), 1e-6);
+
+    assertEquals("R98", metadata.getFirstDirectoryOfType(ExifInteropDirectory.class)
+        .getString(ExifInteropDirectory.TAG_INTEROP_INDEX));
+
+    // the picture itself is copied unchanged
+    assertArrayEquals(jpeg, write(new JpegExifWriter(), output));
+  }
+
+  private void assertStreamMatchesWrite(JpegExifWriter writer, byte[] jpeg) throws Exception {
+    byte[] expected = write(writer, jpeg);
+
+    File file = mFolder.newFile();
+    OutputStream stream = writer.openOutputStream(file);
+    try {
+      // split the SOI marker across calls, like an encoder with a small buffer might
+      stream.write(jpeg[0]);
+      stream.write(jpeg, 1, 2);
+      Random random = new Random(5);
+      int offset = 3;
+      while (offset < jpeg.length) {
+        int length = Math.min(1 + random.nextInt(4096), jpeg.length - offset);
+        stream.write(jpeg, offset, length);
+        offset += length;
+      }
+    } finally {
+      stream.close();
+    }
+    assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+  }
+
+  private byte[] write(JpegExifWriter writer, byte[] jpeg) throws IOException {
+    File file = mFolder.newFile();
+    writer.write(jpeg, file);
+    return Files.readAllBytes(file.toPath());
+  }
+
+  private static Metadata read(byte[] jpeg) throws Exception {
+    return JpegMetadataReader.readMetadata(new ByteArrayInputStream(jpeg));
+  }
+
+  private static byte[] thumbnailOf(byte[] jpeg) throws Exception {
+    ExifThumbnailDirectory directory = read(jpeg).getFirstDirectoryOfType(ExifThumbnailDirectory.class);
+    assertNotNull(directory);
+    int offset = directory.getInt(ExifThumbnailDirectory.TAG_THUMBNAIL_OFFSET);
+    int length = directory.getInt(ExifThumbnailDirectory.TAG_THUMBNAIL_LENGTH);
+    return Arrays.copyOfRange(jpeg, TIFF_START + offset, TIFF_START + offset + length);
+  }
+}
@@ -0,0 +1,214 @@
+package org.reactnative.camera.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Builds JPEG files with camera-like Exif data for the JPEG tests.
+ */
+final class JpegFixtures {
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+
+  private JpegFixtures() {
+  }
+
+  static byte[] plainJpeg() throws IOException {
+    return plainJpeg(64, 48, 1);
+  }
+
+  static byte[] plainJpeg(int width, int height, int seed) throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Random random = new Random(seed);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, random.nextInt(0xFFFFFF));
+      }
+    }
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ImageIO.write(image, "jpg", output);
+    return output.toByteArray();
+  }
+
+  static byte[] withExif(byte[] jpeg, byte[] tiff) {
+    int payload = 6 + tiff.length;
+    ByteBuffer buffer = ByteBuffer.allocate(jpeg.length + 4 + payload);
+    buffer.put(jpeg, 0, 2);
+    buffer.put((byte) 0xFF).put((byte) 0xE1).putShort((short) (payload + 2));
+    buffer.put(new byte[]{'E', 'x', 'i', 'f', 0, 0}).put(tiff);
+    buffer.put(jpeg, 2, jpeg.length - 2);
+    return buffer.array();
+  }
+
+  /**
+   * A camera-like TIFF with all IFDs and an optional thumbnail. It is laid out in a different
+   * order than the writer uses, thumbnail first and IFD 0 last, so reading has to follow the
+   * pointers.
+   */
+  static byte[] sourceTiff(ByteOrder order, byte[] thumbnail, int makerNoteLength) {
+    return sourceTiff(order, 6, thumbnail, makerNoteLength);
+  }
+
+  static byte[] sourceTiff(ByteOrder order, int orientation, byte[] thumbnail, int makerNoteLength) {
+    Ifd ifd0 = new Ifd(order)
+        .add(0x010F, 2, ascii("Acme"))
+        .add(0x0112, 3, shorts(order, orientation));
+    Ifd exif = new Ifd(order)
+        .add(0x829A, 5, rationals(order, 1, 100))
+        .add(0x8827, 3, shorts(order, 200));
+    if (makerNoteLength > 0) {
+      exif.add(0x927C, 7, noise(makerNoteLength, 3));
+    }
+    Ifd gps = new Ifd(order)
+        .add(0x0001, 2, ascii("N"))
+        .add(0x0002, 5, rationals(order, 52, 1, 30, 1, 0, 1))
+        .add(0x0003, 2, ascii("E"))
+        .add(0x0004, 5, rationals(order, 13, 1, 24, 1, 0, 1));
+    Ifd interop = new Ifd(order)
+        .add(0x0001, 2, ascii("R98"));
+    Ifd ifd1 = null;
+
+    byte[] exifPointer = new byte[4];
+    byte[] gpsPointer = new byte[4];
+    byte[] interopPointer = new byte[4];
+    byte[] thumbnailPointer = new byte[4];
+    ifd0.add(0x8769, 4, exifPointer).add(0x8825, 4, gpsPointer);
+    exif.add(0xA005, 4, interopPointer);
+    if (thumbnail != null) {
+      ifd1 = new Ifd(order)
+          .add(0x0103, 3, shorts(order, 6))
+          .add(0x0201, 4, thumbnailPointer)
+          .add(0x0202, 4, longs(order, thumbnail.length));
+    }
+
+    int thumbnailOffset = 8;
+    int interopOffset = thumbnailOffset + (thumbnail != null ? (thumbnail.length + 1) & ~1 : 0);
+    int gpsOffset = interopOffset + interop.size();
+    int exifOffset = gpsOffset + gps.size();
+    int ifd1Offset = exifOffset + exif.size();
+    int ifd0Offset = ifd1Offset + (ifd1 != null ? ifd1.size() : 0);
+    int size = ifd0Offset + ifd0.size();
+
+    put(order, exifPointer, exifOffset);
+    put(order, gpsPointer, gpsOffset);
+    put(order, interopPointer, interopOffset);
+    put(order, thumbnailPointer, thumbnailOffset);
+
+    ByteBuffer tiff = ByteBuffer.allocate(size).order(order);
+    tiff.put(order == ByteOrder.BIG_ENDIAN ? new byte[]{'M', 'M'} : new byte[]{'I', 'I'});
+    tiff.putShort((short) 42).putInt(ifd0Offset);
+    if (thumbnail != null) {
+      tiff.put(thumbnail);
+    }
+    interop.write(tiff, interopOffset, 0);
+    gps.write(tiff, gpsOffset, 0);
+    exif.write(tiff, exifOffset, 0);
+    if (ifd1 != null) {
+      ifd1.write(tiff, ifd1Offset, 0);
+    }
+    ifd0.write(tiff, ifd0Offset, ifd1 != null ? ifd1Offset : 0);
+    return tiff.array();
+  }
+
+  private static class Ifd {
+    private final ByteOrder mOrder;
+    private final List<int[]> mEntries = new ArrayList<>();
+    private final List<byte[]> mValues = new ArrayList<>();
+
+    Ifd(ByteOrder order) {
+      mOrder = order;
+    }
+
+    Ifd add(int tag, int type, byte[] value) {
+      int unit = type == 3 ? 2 : type == 4 ? 4 : type == 5 ? 8 : 1;
+      mEntries.add(new int[]{tag, type, value.length / unit});
+      mValues.add(value);
+      return this;
+    }
+
+    int size() {
+      int size = 2 + mEntries.size() * 12 + 4;
+      for (byte[] value : mValues) {
+        if (value.length > 4) {
+          size += (value.length + 1) & ~1;
+        }
+      }
+      return size;
+    }
+
+    void write(ByteBuffer tiff, int offset, int nextIfdOffset) {
+      tiff.position(offset);
+      int dataOffset = offset + 2 + mEntries.size() * 12 + 4;
+      tiff.putShort((short) mEntries.size());
+      for (int i = 0; i < mEntries.size(); i++) {
+        int[] entry = mEntries.get(i);
+        byte[] value = mValues.get(i);
+        tiff.putShort((short) entry[0]).putShort((short) entry[1]).putInt(entry[2]);
+        if (value.length > 4) {
+          tiff.putInt(dataOffset);
+          dataOffset += (value.length + 1) & ~1;
+        } else {
+          tiff.put(Arrays.copyOf(value, 4));
+        }
+      }
+      tiff.putInt(nextIfdOffset);
+      for (byte[] value : mValues) {
+        if (value.length > 4) {
+          tiff.put(value);
+          if ((value.length & 1) != 0) {
+            tiff.put((byte) 0);
+          }
+        }
+      }
+    }
+  }
+
+  private static byte[] ascii(String value) {
+    return (value + '\0').getBytes(ASCII);
+  }
+
+  private static byte[] shorts(ByteOrder order, int... values) {
+    ByteBuffer buffer = ByteBuffer.allocate(values.length * 2).order(order);
+    for (int value : values) {
+      buffer.putShort((short) value);
+    }
+    return buffer.array();
+  }
+
+  private static byte[] longs(ByteOrder order, int... values) {
+    ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(order);
+    for (int value : values) {
+      buffer.putInt(value);
+    }
+    return buffer.array();
+  }
+
+  private static byte[] rationals(ByteOrder order, int... values) {
+    return longs(order, values);
+  }
+
+  private static void put(ByteOrder order, byte[] target, int value) {
+    ByteBuffer.wrap(target).order(order).putInt(value);
+  }
+
+  static byte[] noise(int length, int seed) {
+    byte[] bytes = new byte[length];
+    new Random(seed).nextBytes(bytes);
+    return bytes;
+  }
+
+  static String text(int length) {
+    char[] chars = new char[length];
+    Arrays.fill(chars, 'x');
+    return new String(chars);
+  }
+}
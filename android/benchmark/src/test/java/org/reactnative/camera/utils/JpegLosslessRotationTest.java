@@ -0,0 +1,207 @@
+package org.reactnative.camera.utils;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.reactnative.camera.utils.JpegFixtures.sourceTiff;
+import static org.reactnative.camera.utils.JpegFixtures.withExif;
+
+/**
+ * Rotates JPEGs written by ImageIO and compares the decoded result with the decoded original,
+ * rotated pixel by pixel.
+ */
+public class JpegLosslessRotationTest {
+  // the decoder rounds between its row and column passes, which a transposed block swaps
+  private static final int MAX_CHANNEL_ERROR = 4;
+  private static final int[] DEGREES = {90, 180, 270};
+
+  @Test
+  public void rotatesLikeTheDecodedPicture() throws Exception {
+    for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_BYTE_GRAY}) {
+      byte[] jpeg = encode(picture(64, 48, type), false);
+      BufferedImage original = decode(jpeg);
+      for (int degrees : DEGREES) {
+        byte[] rotated = JpegLosslessRotation.rotate(jpeg, degrees);
+        assertNotNull(type + " by " + degrees, rotated);
+        assertSimilar(type + " by " + degrees, rotate(original, degrees), decode(rotated));
+      }
+    }
+  }
+
+  @Test
+  public void trimsPartialBlocksThatWouldEndUpTopOrLeft() throws Exception {
+    // 16x16 blocks for the subsampled colors of ImageIO, 70x45 leaves partial ones at both edges
+    byte[] jpeg = encode(picture(70, 45, BufferedImage.TYPE_INT_RGB), false);
+    BufferedImage original = decode(jpeg);
+    for (int degrees : DEGREES) {
+      int keptWidth = degrees == 90 ? 70 : 64;
+      int keptHeight = degrees == 270 ? 45 : 32;
+      BufferedImage expected = rotate(original.getSubimage(0, 0, keptWidth, keptHeight), degrees);
+
+      BufferedImage rotated = decode(JpegLosslessRotation.rotate(jpeg, degrees));
+      assertEquals("by " + degrees, expected.getWidth(), rotated.getWidth());
+      assertEquals("by " + degrees, expected.getHeight(), rotated.getHeight());
+      // the colors along the cut were upsampled from the dropped blocks in the original
+      assertSimilar("by " + degrees, inner(expected), inner(rotated));
+    }
+  }
+
+  @Test
+  public void dropsTheExifSegment() throws Exception {
+    byte[] jpeg = withExif(encode(picture(32, 32, BufferedImage.TYPE_INT_RGB), false),
+        sourceTiff(ByteOrder.BIG_ENDIAN, null, 0));
+
+    byte[] rotated = JpegLosslessRotation.rotate(jpeg, 90);
+
+    assertFalse(hasSegment(rotated, 0xE1));
+    assertEquals(32, decode(rotated).getWidth());
+  }
+
+  @Test
+  public void fullTurnsComeBackUnchanged() throws Exception {
+    byte[] jpeg = encode(picture(48, 32, BufferedImage.TYPE_INT_RGB), false);
+    byte[] turned = jpeg;
+    for (int i = 0; i < 4; i++) {
+      turned = JpegLosslessRotation.rotate(turned, 90);
+    }
+
+    // the coefficients go back where they were, so the decoded pixels are the same
+    assertSimilar("four quarter turns", decode(jpeg), decode(turned), 0);
+  }
+
+  @Test
+  public void refusesWhatItCannotRotate() throws Exception {
+    byte[] jpeg = encode(picture(32, 32, BufferedImage.TYPE_INT_RGB), false);
+
+    assertNull(JpegLosslessRotation.rotate(jpeg, 0));
+    assertNull(JpegLosslessRotation.rotate(jpeg, 45));
+    assertNull(JpegLosslessRotation.rotate(encode(picture(32, 32, BufferedImage.TYPE_INT_RGB), true), 90));
+    byte[] truncated = new byte[jpeg.length / 2];
+    System.arraycopy(jpeg, 0, truncated, 0, truncated.length);
+    assertNull(JpegLosslessRotation.rotate(truncated, 90));
+    assertNull(JpegLosslessRotation.rotate(new byte[]{1, 2, 3}, 90));
+    assertNotNull(JpegLosslessRotation.rotate(jpeg, -90));
+  }
+
+  /**
+   * Smooth gradients with a few hard edges, roughly what a camera produces.
+   */
+  private static BufferedImage picture(int width, int height, int type) {
+    BufferedImage image = new BufferedImage(width, height, type);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int r = x * 255 / width;
+        int g = y * 255 / height;
+        int b = (x / 12 + y / 12) % 2 == 0 ? 60 : 200;
+        image.setRGB(x, y, (r << 16) | (g << 8) | b);
+      }
+    }
+    return image;
+  }
+
+  private static byte[] encode(BufferedImage image, boolean progressive) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+    ImageWriteParam param = writer.getDefaultWriteParam();
+    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    param.setCompressionQuality(0.9f);
+    if (progressive) {
+      param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+    }
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ImageOutputStream stream = ImageIO.createImageOutputStream(output);
+    try {
+      writer.setOutput(stream);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      stream.close();
+      writer.dispose();
+    }
+    return output.toByteArray();
+  }
+
+  private static BufferedImage decode(byte[] jpeg) throws IOException {
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+    assertNotNull("not a readable JPEG", image);
+    return image;
+  }
+
+  private static BufferedImage rotate(BufferedImage source, int degrees) {
+    boolean transposed = degrees == 90 || degrees == 270;
+    int width = transposed ? source.getHeight() : source.getWidth();
+    int height = transposed ? source.getWidth() : source.getHeight();
+    BufferedImage rotated = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int sourceX;
+        int sourceY;
+        if (degrees == 90) {
+          sourceX = y;
+          sourceY = source.getHeight() - 1 - x;
+        } else if (degrees == 180) {
+          sourceX = source.getWidth() - 1 - x;
+          sourceY = source.getHeight() - 1 - y;
+        } else {
+          sourceX = source.getWidth() - 1 - y;
+          sourceY = x;
+        }
+        rotated.setRGB(x, y, source.getRGB(sourceX, sourceY));
+      }
+    }
+    return rotated;
+  }
+
+  private static BufferedImage inner(BufferedImage image) {
+    return image.getSubimage(1, 1, image.getWidth() - 1, image.getHeight() - 1);
+  }
+
+  private static void assertSimilar(String message, BufferedImage expected, BufferedImage actual) {
+    assertSimilar(message, expected, actual, MAX_CHANNEL_ERROR);
+  }
+
+  private static void assertSimilar(String message, BufferedImage expected, BufferedImage actual,
+                                    int maxError) {
+    assertEquals(message + ": width", expected.getWidth(), actual.getWidth());
+    assertEquals(message + ": height", expected.getHeight(), actual.getHeight());
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        int a = expected.getRGB(x, y);
+        int b = actual.getRGB(x, y);
+        for (int shift = 0; shift <= 16; shift += 8) {
+          int error = Math.abs(((a >> shift) & 0xFF) - ((b >> shift) & 0xFF));
+          assertTrue(message + ": pixel " + x + "," + y + " off by " + error, error <= maxError);
+        }
+      }
+    }
+  }
+
+  private static boolean hasSegment(byte[] jpeg, int marker) {
+    int pos = 2;
+    while (pos + 4 <= jpeg.length && (jpeg[pos] & 0xFF) == 0xFF) {
+      int type = jpeg[pos + 1] & 0xFF;
+      if (type == marker) {
+        return true;
+      }
+      if (type == 0xDA) {
+        return false;
+      }
+      pos += 2 + (((jpeg[pos + 2] & 0xFF) << 8) | (jpeg[pos + 3] & 0xFF));
+    }
+    return false;
+  }
+}
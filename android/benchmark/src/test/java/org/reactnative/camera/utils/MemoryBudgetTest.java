@@ -0,0 +1,117 @@
+package org.reactnative.camera.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryBudgetTest {
+  private static final long TIMEOUT_SECONDS = 5;
+
+  @Test
+  public void waitsUntilTheBytesAreReleased() throws Exception {
+    MemoryBudget budget = new MemoryBudget(100);
+    budget.acquire(60);
+    Waiter waiter = new Waiter(budget, 60, null);
+    waiter.start();
+
+    waitUntilWaiting(budget, 1);
+    assertFalse(waiter.mDone.await(50, TimeUnit.MILLISECONDS));
+    budget.release(60);
+
+    assertTrue(waiter.mDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertTrue(waiter.mResult.get());
+    assertEquals(60, budget.getUsed());
+    assertEquals(60, budget.getPeak());
+  }
+
+  @Test
+  public void stopsWaitingOnceCancelled() throws Exception {
+    MemoryBudget budget = new MemoryBudget(100);
+    budget.acquire(80);
+    final AtomicBoolean cancelled = new AtomicBoolean();
+    Waiter waiter = new Waiter(budget, 50, new MemoryBudget.Cancellable() {
+      @Override
+      public boolean isCancelled() {
+        return cancelled.get();
+      }
+    });
+    waiter.start();
+
+    waitUntilWaiting(budget, 1);
+    cancelled.set(true);
+    // nothing is released, only the wake up ends the wait
+    budget.wakeUp();
+
+    assertTrue(waiter.mDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertFalse(waiter.mResult.get());
+    assertEquals(80, budget.getUsed());
+  }
+
+  @Test
+  public void takesNothingForACancelledRequest() throws Exception {
+    MemoryBudget budget = new MemoryBudget(100);
+    assertFalse(budget.acquire(10, new MemoryBudget.Cancellable() {
+      @Override
+      public boolean isCancelled() {
+        return true;
+      }
+    }));
+    assertEquals(0, budget.getUsed());
+    assertEquals(0, budget.getWaits());
+  }
+
+  @Test
+  public void grantsAnOversizedRequestWhenNothingIsHeld() throws Exception {
+    MemoryBudget budget = new MemoryBudget(100);
+    budget.acquire(250);
+    assertEquals(250, budget.getUsed());
+
+    budget.forceAcquire(30);
+    budget.release(250);
+    budget.release(100);
+    assertEquals(0, budget.getUsed());
+    assertEquals(280, budget.getPeak());
+    assertEquals(0, budget.getWaits());
+  }
+
+  private static void waitUntilWaiting(MemoryBudget budget, long waits) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+    while (budget.getWaits() < waits) {
+      assertTrue("acquire did not wait", System.nanoTime() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
+  private static class Waiter extends Thread {
+    private final MemoryBudget mBudget;
+    private final long mBytes;
+    private final MemoryBudget.Cancellable mRequest;
+    final AtomicReference<Boolean> mResult = new AtomicReference<>();
+    final CountDownLatch mDone = new CountDownLatch(1);
+
+    Waiter(MemoryBudget budget, long bytes, MemoryBudget.Cancellable request) {
+      mBudget = budget;
+      mBytes = bytes;
+      mRequest = request;
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      try {
+        mResult.set(mBudget.acquire(mBytes, mRequest));
+      } catch (InterruptedException e) {
+        mResult.set(false);
+      } finally {
+        mDone.countDown();
+      }
+    }
+  }
+}
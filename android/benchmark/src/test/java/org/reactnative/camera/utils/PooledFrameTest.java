@@ -0,0 +1,68 @@
+package org.reactnative.camera.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PooledFrameTest {
+
+  @Test
+  public void keepsTheFrameOutOfThePoolUntilReleased() {
+    FrameBufferPool pool = new FrameBufferPool(2);
+    byte[] data = pool.acquire(100);
+    PooledFrame frame = new PooledFrame(data);
+    frame.borrow(pool);
+
+    // the callback that delivered the frame returns
+    pool.release(data);
+    assertTrue(frame.isBorrowed());
+    assertEquals(1, pool.getInUseCount());
+
+    frame.release();
+    assertFalse(frame.isBorrowed());
+    assertEquals(0, pool.getInUseCount());
+    assertSame(data, pool.acquire(100));
+  }
+
+  @Test
+  public void handsTheFrameBackOnlyOnce() {
+    FrameBufferPool pool = new FrameBufferPool(2);
+    byte[] data = pool.acquire(100);
+    PooledFrame frame = new PooledFrame(data);
+    frame.borrow(pool);
+
+    // cancelled after it already finished
+    frame.release();
+    frame.release();
+    assertEquals(1, pool.getInUseCount());
+
+    pool.release(data);
+    assertEquals(0, pool.getInUseCount());
+  }
+
+  @Test
+  public void takesOverTheReferenceOfAFreshlyAcquiredFrame() {
+    FrameBufferPool pool = new FrameBufferPool(2);
+    PooledFrame frame = new PooledFrame(pool.acquire(100), pool);
+    assertTrue(frame.isBorrowed());
+
+    frame.release();
+    assertEquals(0, pool.getInUseCount());
+    assertEquals(1, pool.getFreeCount());
+  }
+
+  @Test
+  public void ignoresFramesThePoolDoesNotOwn() {
+    FrameBufferPool pool = new FrameBufferPool(2);
+    PooledFrame frame = new PooledFrame(new byte[100]);
+    frame.borrow(pool);
+    assertFalse(frame.isBorrowed());
+
+    frame.borrow(null);
+    frame.release();
+    assertEquals(0, pool.getBufferCount());
+  }
+}
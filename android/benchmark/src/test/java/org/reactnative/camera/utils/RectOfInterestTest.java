@@ -0,0 +1,114 @@
+package org.reactnative.camera.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RectOfInterestTest {
+  // a landscape sensor frame, displayed in portrait for 90 and 270
+  private static final int WIDTH = 640;
+  private static final int HEIGHT = 480;
+
+  private final RectOfInterest mRect = new RectOfInterest(0.1f, 0.2f, 0.3f, 0.4f);
+
+  @Test
+  public void mapsAnUprightFrameAsIs() {
+    assertArrayEquals(new int[] { 64, 96, 192, 192 }, mRect.getFrameRect(WIDTH, HEIGHT, 0));
+  }
+
+  @Test
+  public void mapsAFrameRotatedBy90() {
+    // the left edge of the display is the bottom of the frame
+    assertArrayEquals(new int[] { 128, 288, 256, 144 }, mRect.getFrameRect(WIDTH, HEIGHT, 90));
+  }
+
+  @Test
+  public void mapsAFrameRotatedBy180() {
+    assertArrayEquals(new int[] { 384, 192, 192, 192 }, mRect.getFrameRect(WIDTH, HEIGHT, 180));
+  }
+
+  @Test
+  public void mapsAFrameRotatedBy270() {
+    // the left edge of the display is the top of the frame
+    assertArrayEquals(new int[] { 256, 48, 256, 144 }, mRect.getFrameRect(WIDTH, HEIGHT, 270));
+    assertArrayEquals(mRect.getFrameRect(WIDTH, HEIGHT, 270), mRect.getFrameRect(WIDTH, HEIGHT, -90));
+  }
+
+  @Test
+  public void agreesWithRotatingEveryPixel() {
+    for (int rotation = 0; rotation < 360; rotation += 90) {
+      int[] rect = mRect.getFrameRect(WIDTH, HEIGHT, rotation);
+      boolean transposed = rotation % 180 != 0;
+      int uprightWidth = transposed ? HEIGHT : WIDTH;
+      int uprightHeight = transposed ? WIDTH : HEIGHT;
+      for (int y = 0; y < HEIGHT; y += 8) {
+        for (int x = 0; x < WIDTH; x += 8) {
+          // where the pixel ends up once the frame is rotated clockwise by rotation
+          int uprightX;
+          int uprightY;
+          switch (rotation) {
+            case 90:
+              uprightX = HEIGHT - 1 - y;
+              uprightY = x;
+              break;
+            case 180:
+              uprightX = WIDTH - 1 - x;
+              uprightY = HEIGHT - 1 - y;
+              break;
+            case 270:
+              uprightX = y;
+              uprightY = WIDTH - 1 - x;
+              break;
+            default:
+              uprightX = x;
+              uprightY = y;
+          }
+          float displayedX = (uprightX + 0.5f) / uprightWidth;
+          float displayedY = (uprightY + 0.5f) / uprightHeight;
+          boolean displayed = displayedX >= 0.1f && displayedX < 0.4f
+              && displayedY >= 0.2f && displayedY < 0.6f;
+          boolean inFrameRect = x >= rect[0] && x < rect[0] + rect[2]
+              && y >= rect[1] && y < rect[1] + rect[3];
+          assertEquals("rotation " + rotation + " at " + x + "," + y, displayed, inFrameRect);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void mirrorsTheRectOfAFrontCameraPreview() {
+    RectOfInterest mirrored = mRect.mirrored();
+    assertEquals(0.6f, mirrored.getX(), 1e-6f);
+    assertEquals(0.2f, mirrored.getY(), 1e-6f);
+    assertEquals(0.3f, mirrored.getWidth(), 1e-6f);
+    assertEquals(0.4f, mirrored.getHeight(), 1e-6f);
+
+    // front cameras are usually turned upright by 270
+    assertArrayEquals(new int[] { 256, 288, 256, 144 }, mirrored.getFrameRect(WIDTH, HEIGHT, 270));
+  }
+
+  @Test
+  public void keepsTheRectInsideTheFrame() {
+    RectOfInterest rect = new RectOfInterest(-0.5f, 0.9f, 2, 0.5f);
+    assertEquals(0, rect.getX(), 0);
+    assertEquals(1, rect.getWidth(), 0);
+    assertEquals(0.1f, rect.getHeight(), 1e-6f);
+
+    for (int rotation = 0; rotation < 360; rotation += 90) {
+      int[] frameRect = new RectOfInterest(1, 1, 0, 0).getFrameRect(WIDTH, HEIGHT, rotation);
+      assertTrue(frameRect[2] >= 1 && frameRect[3] >= 1);
+      assertTrue(frameRect[0] + frameRect[2] <= WIDTH && frameRect[1] + frameRect[3] <= HEIGHT);
+    }
+  }
+
+  @Test
+  public void coversTheWholeFrameByDefault() {
+    RectOfInterest full = new RectOfInterest(0, 0, 1, 1);
+    assertTrue(full.isFullFrame());
+    for (int rotation = 0; rotation < 360; rotation += 90) {
+      assertArrayEquals(new int[] { 0, 0, WIDTH, HEIGHT }, full.getFrameRect(WIDTH, HEIGHT, rotation));
+    }
+  }
+}
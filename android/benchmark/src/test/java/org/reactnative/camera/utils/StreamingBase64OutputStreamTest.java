@@ -0,0 +1,85 @@
+package org.reactnative.camera.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingBase64OutputStreamTest {
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+
+  @Test
+  public void encodesLikeTheJdk() throws Exception {
+    Random random = new Random(25);
+    for (int length = 0; length < 300; length++) {
+      byte[] data = new byte[length];
+      random.nextBytes(data);
+      assertEquals("length " + length, Base64.getEncoder().encodeToString(data), encode(data, random));
+    }
+    byte[] picture = JpegFixtures.plainJpeg(320, 240, 3);
+    assertEquals(Base64.getEncoder().encodeToString(picture), encode(picture, random));
+  }
+
+  @Test
+  public void passesTheTextOnAsItGoes() throws Exception {
+    ByteArrayOutputStream text = new ByteArrayOutputStream();
+    StreamingBase64OutputStream stream = new StreamingBase64OutputStream(text);
+    byte[] data = new byte[100 * 1024 + 2];
+    new Random(3).nextBytes(data);
+
+    stream.write(data);
+    // only what does not fit the internal buffer has been passed on
+    assertTrue(text.size() > 4 * (data.length / 3) - 4 * 1024);
+    stream.flush();
+    // complete groups of three are out, the last two bytes wait for the padding
+    assertEquals(4 * (data.length / 3), text.size());
+
+    stream.close();
+    stream.close();
+    assertEquals(Base64.getEncoder().encodeToString(data), new String(text.toByteArray(), ASCII));
+  }
+
+  @Test
+  public void closesTheUnderlyingStream() throws Exception {
+    final boolean[] closed = new boolean[1];
+    ByteArrayOutputStream text = new ByteArrayOutputStream() {
+      @Override
+      public void close() throws IOException {
+        closed[0] = true;
+      }
+    };
+    StreamingBase64OutputStream stream = new StreamingBase64OutputStream(text);
+    stream.write('a');
+    stream.close();
+
+    assertTrue(closed[0]);
+    assertEquals("YQ==", new String(text.toByteArray(), ASCII));
+  }
+
+  /**
+   * Writes {@code data} the way Bitmap.compress and the file copy do, in chunks of varying size
+   * with the odd single byte in between.
+   */
+  private static String encode(byte[] data, Random random) throws IOException {
+    ByteArrayOutputStream text = new ByteArrayOutputStream();
+    StreamingBase64OutputStream stream = new StreamingBase64OutputStream(text);
+    int offset = 0;
+    while (offset < data.length) {
+      if (random.nextInt(4) == 0) {
+        stream.write(data[offset++]);
+      } else {
+        int length = Math.min(random.nextInt(9000), data.length - offset);
+        stream.write(data, offset, length);
+        offset += length;
+      }
+    }
+    stream.close();
+    return new String(text.toByteArray(), ASCII);
+  }
+}
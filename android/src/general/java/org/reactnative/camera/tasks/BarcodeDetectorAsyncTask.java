@@ -6,17 +6,27 @@ import android.util.SparseArray;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
+import com.google.android.cameraview.CameraView;
 import com.google.android.gms.vision.barcode.Barcode;
 
 import org.reactnative.barcodedetector.BarcodeFormatUtils;
+import org.reactnative.camera.utils.FrameBufferPool;
 import org.reactnative.camera.utils.ImageDimensions;
+import org.reactnative.camera.utils.LuminanceUtils;
+import org.reactnative.camera.utils.PooledFrame;
+import org.reactnative.camera.utils.RectOfInterest;
 import org.reactnative.frame.RNFrame;
 import org.reactnative.frame.RNFrameFactory;
 import org.reactnative.barcodedetector.RNBarcodeDetector;
 
 public class BarcodeDetectorAsyncTask extends android.os.AsyncTask<Void, Void, SparseArray<Barcode>> {
 
+  // Crops of the rect of interest; kept apart from the camera's pool so they are never queued
+  // as preview buffers
+  private static final FrameBufferPool sCroppedFramePool = new FrameBufferPool(3);
+
   private byte[] mImageData;
+  private final PooledFrame mFrame;
   private int mWidth;
   private int mHeight;
   private int mRotation;
@@ -27,6 +37,10 @@ public class BarcodeDetectorAsyncTask extends android.os.AsyncTask<Void, Void, S
   private ImageDimensions mImageDimensions;
   private int mPaddingLeft;
   private int mPaddingTop;
+  private int[] mFrameRect;
+  private volatile PooledFrame mCroppedFrame;
+  private int mCropOffsetX;
+  private int mCropOffsetY;
 
   public BarcodeDetectorAsyncTask(
       BarcodeDetectorAsyncTaskDelegate delegate,
@@ -43,6 +57,7 @@ public class BarcodeDetectorAsyncTask extends android.os.AsyncTask<Void, Void, S
       int viewPaddingTop
   ) {
     mImageData = imageData;
+    mFrame = new PooledFrame(imageData);
     mWidth = width;
     mHeight = height;
     mRotation = rotation;
@@ -55,19 +70,62 @@ public class BarcodeDetectorAsyncTask extends android.os.AsyncTask<Void, Void, S
     mPaddingTop = viewPaddingTop;
   }
 
+  /**
+   * Borrows the frame from {@code frameBufferPool} until this task is done. Call before
+   * {@link #execute}.
+   */
+  public void setFrameBufferPool(FrameBufferPool frameBufferPool) {
+    mFrame.borrow(frameBufferPool);
+  }
+
+  /**
+   * Only runs the detector on {@code rectOfInterest}, cropped out of the frame. Call before
+   * {@link #execute}.
+   */
+  public void setRectOfInterest(RectOfInterest rectOfInterest) {
+    if (rectOfInterest == null || rectOfInterest.isFullFrame()) {
+      mFrameRect = null;
+      return;
+    }
+    // the front camera preview is displayed mirrored, detected bounds are not
+    RectOfInterest upright = mImageDimensions.getFacing() == CameraView.FACING_FRONT
+        ? rectOfInterest.mirrored() : rectOfInterest;
+    mFrameRect = upright.getFrameRect(mWidth, mHeight, mRotation);
+    // detected bounds are relative to the upright crop
+    mCropOffsetX = (int) (upright.getX() * mImageDimensions.getWidth());
+    mCropOffsetY = (int) (upright.getY() * mImageDimensions.getHeight());
+  }
+
+  private void releaseFrames() {
+    mFrame.release();
+    PooledFrame croppedFrame = mCroppedFrame;
+    if (croppedFrame != null) {
+      croppedFrame.release();
+    }
+  }
+
   @Override
   protected SparseArray<Barcode> doInBackground(Void... ignored) {
     if (isCancelled() || mDelegate == null || mBarcodeDetector == null || !mBarcodeDetector.isOperational()) {
       return null;
     }
 
-    RNFrame frame = RNFrameFactory.buildFrame(mImageData, mWidth, mHeight, mRotation);
+    RNFrame frame;
+    if (mFrameRect != null) {
+      PooledFrame croppedFrame = new PooledFrame(
+          LuminanceUtils.cropToNv21(mImageData, mWidth, mFrameRect, sCroppedFramePool), sCroppedFramePool);
+      mCroppedFrame = croppedFrame;
+      frame = RNFrameFactory.buildFrame(croppedFrame.getData(), mFrameRect[2], mFrameRect[3], mRotation);
+    } else {
+      frame = RNFrameFactory.buildFrame(mImageData, mWidth, mHeight, mRotation);
+    }
     return mBarcodeDetector.detect(frame);
   }
 
   @Override
   protected void onPostExecute(SparseArray<Barcode> barcodes) {
     super.onPostExecute(barcodes);
+    releaseFrames();
 
     if (barcodes == null) {
       mDelegate.onBarcodeDetectionError(mBarcodeDetector);
@@ -79,6 +137,12 @@ public class BarcodeDetectorAsyncTask extends android.os.AsyncTask<Void, Void, S
     }
   }
 
+  @Override
+  protected void onCancelled() {
+    super.onCancelled();
+    releaseFrames();
+  }
+
   private WritableArray serializeEventData(SparseArray<Barcode> barcodes) {
     WritableArray barcodesList = Arguments.createArray();
 
@@ -98,18 +162,20 @@ public class BarcodeDetectorAsyncTask extends android.os.AsyncTask<Void, Void, S
 
   private WritableMap processBounds(Rect frame) {
     WritableMap origin = Arguments.createMap();
-    int x = frame.left;
-    int y = frame.top;
+    int left = frame.left + mCropOffsetX;
+    int top = frame.top + mCropOffsetY;
+    int x = left;
+    int y = top;
 
-    if (frame.left < mWidth / 2) {
+    if (left < mWidth / 2) {
       x = x + mPaddingLeft / 2;
-    } else if (frame.left > mWidth /2) {
+    } else if (left > mWidth /2) {
       x = x - mPaddingLeft / 2;
     }
 
-    if (frame.top < mHeight / 2) {
+    if (top < mHeight / 2) {
       y = y + mPaddingTop / 2;
-    } else if (frame.top > mHeight / 2) {
+    } else if (top > mHeight / 2) {
       y = y - mPaddingTop / 2;
     }
 
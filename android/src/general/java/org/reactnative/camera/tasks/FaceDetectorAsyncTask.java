@@ -8,7 +8,9 @@ import com.facebook.react.bridge.WritableMap;
 import com.google.android.cameraview.CameraView;
 import com.google.android.gms.vision.face.Face;
 
+import org.reactnative.camera.utils.FrameBufferPool;
 import org.reactnative.camera.utils.ImageDimensions;
+import org.reactnative.camera.utils.PooledFrame;
 import org.reactnative.facedetector.FaceDetectorUtils;
 import org.reactnative.frame.RNFrame;
 import org.reactnative.frame.RNFrameFactory;
@@ -16,6 +18,7 @@ import org.reactnative.facedetector.RNFaceDetector;
 
 public class FaceDetectorAsyncTask extends android.os.AsyncTask<Void, Void, SparseArray<Face>> {
   private byte[] mImageData;
+  private final PooledFrame mFrame;
   private int mWidth;
   private int mHeight;
   private int mRotation;
@@ -42,6 +45,7 @@ public class FaceDetectorAsyncTask extends android.os.AsyncTask<Void, Void, Spar
       int viewPaddingTop
   ) {
     mImageData = imageData;
+    mFrame = new PooledFrame(imageData);
     mWidth = width;
     mHeight = height;
     mRotation = rotation;
@@ -54,6 +58,14 @@ public class FaceDetectorAsyncTask extends android.os.AsyncTask<Void, Void, Spar
     mPaddingTop = viewPaddingTop;
   }
 
+  /**
+   * Borrows the frame from {@code frameBufferPool} until this task is done. Call before
+   * {@link #execute}.
+   */
+  public void setFrameBufferPool(FrameBufferPool frameBufferPool) {
+    mFrame.borrow(frameBufferPool);
+  }
+
   @Override
   protected SparseArray<Face> doInBackground(Void... ignored) {
     if (isCancelled() || mDelegate == null || mFaceDetector == null || !mFaceDetector.isOperational()) {
@@ -67,6 +79,7 @@ public class FaceDetectorAsyncTask extends android.os.AsyncTask<Void, Void, Spar
   @Override
   protected void onPostExecute(SparseArray<Face> faces) {
     super.onPostExecute(faces);
+    mFrame.release();
 
     if (faces == null) {
       mDelegate.onFaceDetectionError(mFaceDetector);
@@ -78,6 +91,12 @@ public class FaceDetectorAsyncTask extends android.os.AsyncTask<Void, Void, Spar
     }
   }
 
+  @Override
+  protected void onCancelled() {
+    super.onCancelled();
+    mFrame.release();
+  }
+
   private WritableArray serializeEventData(SparseArray<Face> faces) {
     WritableArray facesList = Arguments.createArray();
 
@@ -14,7 +14,9 @@ import com.google.android.gms.vision.text.Text;
 import com.google.android.gms.vision.text.TextBlock;
 import com.google.android.gms.vision.text.TextRecognizer;
 
+import org.reactnative.camera.utils.FrameBufferPool;
 import org.reactnative.camera.utils.ImageDimensions;
+import org.reactnative.camera.utils.PooledFrame;
 import org.reactnative.facedetector.FaceDetectorUtils;
 import org.reactnative.frame.RNFrame;
 import org.reactnative.frame.RNFrameFactory;
@@ -26,6 +28,7 @@ public class TextRecognizerAsyncTask extends android.os.AsyncTask<Void, Void, Sp
   private ThemedReactContext mThemedReactContext;
   private TextRecognizer mTextRecognizer;
   private byte[] mImageData;
+  private final PooledFrame mFrame;
   private int mWidth;
   private int mHeight;
   private int mRotation;
@@ -52,6 +55,7 @@ public class TextRecognizerAsyncTask extends android.os.AsyncTask<Void, Void, Sp
     mDelegate = delegate;
     mThemedReactContext = themedReactContext;
     mImageData = imageData;
+    mFrame = new PooledFrame(imageData);
     mWidth = width;
     mHeight = height;
     mRotation = rotation;
@@ -62,6 +66,14 @@ public class TextRecognizerAsyncTask extends android.os.AsyncTask<Void, Void, Sp
     mPaddingTop = viewPaddingTop;
   }
 
+  /**
+   * Borrows the frame from {@code frameBufferPool} until this task is done. Call before
+   * {@link #execute}.
+   */
+  public void setFrameBufferPool(FrameBufferPool frameBufferPool) {
+    mFrame.borrow(frameBufferPool);
+  }
+
   @Override
   protected SparseArray<TextBlock> doInBackground(Void... ignored) {
     if (isCancelled() || mDelegate == null) {
@@ -75,6 +87,7 @@ public class TextRecognizerAsyncTask extends android.os.AsyncTask<Void, Void, Sp
   @Override
   protected void onPostExecute(SparseArray<TextBlock> textBlocks) {
     super.onPostExecute(textBlocks);
+    mFrame.release();
     if (mTextRecognizer != null) {
       mTextRecognizer.release();
     }
@@ -93,6 +106,12 @@ public class TextRecognizerAsyncTask extends android.os.AsyncTask<Void, Void, Sp
     mDelegate.onTextRecognizerTaskCompleted();
   }
 
+  @Override
+  protected void onCancelled() {
+    super.onCancelled();
+    mFrame.release();
+  }
+
   private WritableMap serializeText(Text text) {
     WritableMap encodedText = Arguments.createMap();
 
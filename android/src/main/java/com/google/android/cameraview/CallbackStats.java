@@ -0,0 +1,88 @@
+package com.google.android.cameraview;
+
+/**
+ * Counts how often a camera callback ran and how long it took, together with the thread it ran
+ * on. Recording is cheap enough to be done for every frame.
+ */
+public class CallbackStats {
+
+    private final String mName;
+
+    private String mThreadName;
+
+    private long mCount;
+
+    private long mTotalNanos;
+
+    private long mMaxNanos;
+
+    private long mDropped;
+
+    public CallbackStats(String name) {
+        mName = name;
+    }
+
+    /**
+     * @param startNanos {@link System#nanoTime()} taken when the callback started.
+     */
+    public synchronized void record(long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        mThreadName = Thread.currentThread().getName();
+        mCount++;
+        mTotalNanos += elapsed;
+        mMaxNanos = Math.max(mMaxNanos, elapsed);
+    }
+
+    /**
+     * Counts an event (e.g. a frame) that was dropped instead of being handed to the callback.
+     */
+    public synchronized void recordDropped() {
+        mDropped++;
+    }
+
+    public synchronized void reset() {
+        mDropped = 0;
+        mCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+    }
+
+    public synchronized CallbackStats snapshot() {
+        CallbackStats copy = new CallbackStats(mName);
+        copy.mThreadName = mThreadName;
+        copy.mCount = mCount;
+        copy.mTotalNanos = mTotalNanos;
+        copy.mMaxNanos = mMaxNanos;
+        copy.mDropped = mDropped;
+        return copy;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /** Thread the callback last ran on, {@code null} if it never ran. */
+    public synchronized String getThreadName() {
+        return mThreadName;
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    public synchronized long getDropped() {
+        return mDropped;
+    }
+
+    public synchronized double getTotalMillis() {
+        return mTotalNanos / 1e6;
+    }
+
+    public synchronized double getAverageMillis() {
+        return mCount > 0 ? mTotalNanos / 1e6 / mCount : 0;
+    }
+
+    public synchronized double getMaxMillis() {
+        return mMaxNanos / 1e6;
+    }
+}
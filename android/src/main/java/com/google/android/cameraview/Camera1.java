@@ -17,6 +17,7 @@
 package com.google.android.cameraview;
 
 import android.annotation.SuppressLint;
+import android.graphics.ImageFormat;
 import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
 import android.hardware.Camera;
@@ -33,12 +34,18 @@ import com.facebook.react.bridge.ReadableMap;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.reactnative.camera.utils.FrameBufferPool;
 import org.reactnative.camera.utils.ObjectUtils;
 
 
@@ -73,6 +80,15 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
     private static final int FOCUS_METERING_AREA_WEIGHT_DEFAULT = 1000;
     private static final int DELAY_MILLIS_BEFORE_RESETTING_FOCUS = 3000;
 
+    // number of buffers queued to the camera when the pooled preview callback is installed
+    private static final int PREVIEW_CALLBACK_BUFFER_COUNT = 3;
+
+    // parameter changes within one frame are applied with a single setParameters call
+    private static final int APPLY_PARAMETERS_DELAY_MS = 16;
+
+    // preview frames kept for zero shutter lag pictures
+    private static final int ZSL_FRAME_COUNT = 3;
+
     private Handler mHandler = new Handler();
 
     private int mCameraId;
@@ -84,6 +100,43 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
 
     private Camera.Parameters mCameraParameters;
 
+    private final ParameterBatch mParameterBatch = new ParameterBatch(this,
+            new ParameterBatch.Target() {
+                @Override
+                public String flatten() {
+                    return mCamera != null && mCameraParameters != null
+                            ? mCameraParameters.flatten() : null;
+                }
+
+                @Override
+                public boolean apply() {
+                    try{
+                        mCamera.setParameters(mCameraParameters);
+                        return true;
+                    }
+                    catch(RuntimeException e ) {
+                        Log.e("CAMERA_1::", "setParameters failed", e);
+                        return false;
+                    }
+                }
+            },
+            new ParameterBatch.Scheduler() {
+                @Override
+                public void postDelayed(Runnable runnable, long delayMillis) {
+                    mBgHandler.postDelayed(runnable, delayMillis);
+                }
+
+                @Override
+                public void removeCallbacks(Runnable runnable) {
+                    mBgHandler.removeCallbacks(runnable);
+                }
+            },
+            APPLY_PARAMETERS_DELAY_MS);
+
+    // supported sizes and modes of the open camera, from the capability cache when possible so
+    // the parameters do not have to be parsed again
+    private CameraCapabilities mCapabilities;
+
     private final Camera.CameraInfo mCameraInfo = new Camera.CameraInfo();
 
     private MediaRecorder mMediaRecorder;
@@ -123,6 +176,30 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
 
     private boolean mIsScanning;
 
+    private boolean mUsingFrameBufferPool;
+
+    private boolean mZeroShutterLag;
+
+    private final ZslRingBuffer mZslBuffer = new ZslRingBuffer(ZSL_FRAME_COUNT);
+
+    private Size mAnalysisSize;
+
+    private int mAnalysisMaxImages = Constants.DEFAULT_ANALYSIS_MAX_IMAGES;
+
+    private boolean mAnalysisKeepLatest = true;
+
+    private int mAnalysisThreadPriority = Constants.DEFAULT_ANALYSIS_THREAD_PRIORITY;
+
+    private final CallbackStats mPreviewCallbackStats = new CallbackStats("preview");
+
+    private final CallbackStats mPictureCallbackStats = new CallbackStats("picture");
+
+    // buffers currently queued to the camera with addCallbackBuffer
+    private final Set<byte[]> mQueuedPreviewBuffers =
+            Collections.newSetFromMap(new IdentityHashMap<byte[], Boolean>());
+
+    private volatile int mPreviewBufferSize;
+
     private boolean mustUpdateSurface;
     private boolean surfaceWasDestroyed;
 
@@ -131,6 +208,14 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
     Camera1(Callback callback, PreviewImpl preview, Handler bgHandler) {
         super(callback, preview, bgHandler);
 
+        mFrameBufferPool.setListener(new FrameBufferPool.Listener() {
+            @Override
+            public void onBufferAvailable(FrameBufferPool pool) {
+                // the last reader of a frame released it, give the camera a buffer back
+                queuePreviewBuffer();
+            }
+        });
+
         preview.setCallback(new PreviewImpl.Callback() {
             @Override
             public void onSurfaceChanged() {
@@ -169,7 +254,7 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
                         surfaceWasDestroyed = true;
 
                         try{
-                            mCamera.setPreviewCallback(null);
+                            clearPreviewCallback();
                             // note: this might give a debug message that can be ignored.
                             mCamera.setPreviewDisplay(null);
                         }
@@ -284,7 +369,7 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
                 mIsPreviewActive = false;
                 try{
                     mCamera.stopPreview();
-                    mCamera.setPreviewCallback(null);
+                    clearPreviewCallback();
                 }
                 catch(Exception e){
                     Log.e("CAMERA_1::", "stop preview cleanup failed", e);
@@ -329,8 +414,8 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
             try{
                 mIsPreviewActive = true;
                 mCamera.startPreview();
-                if (mIsScanning) {
-                    mCamera.setPreviewCallback(this);
+                if (needsPreviewCallback()) {
+                    installPreviewCallback();
                 }
             }
             catch(Exception e){
@@ -444,7 +529,7 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
 
         for (int i = 0, count = Camera.getNumberOfCameras(); i < count; i++) {
             Properties p = new Properties();
-            Camera.getCameraInfo(i, info);
+            getCameraInfo(i, info);
             p.put("id", String.valueOf(i));
             p.put("type", String.valueOf(info.facing));
             ids.add(p);
@@ -474,13 +559,7 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         synchronized(this){
             if (mCameraParameters != null && mCamera != null) {
                 mCameraParameters.setPictureSize(mPictureSize.getWidth(), mPictureSize.getHeight());
-                try{
-                    mCamera.setParameters(mCameraParameters);
-                }
-                catch(RuntimeException e ) {
-                    Log.e("CAMERA_1::", "setParameters failed", e);
-                }
-
+                scheduleApplyParameters();
             }
         }
     }
@@ -531,14 +610,7 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         }
         synchronized(this){
             if (setAutoFocusInternal(autoFocus)) {
-                try{
-                    if(mCamera != null){
-                        mCamera.setParameters(mCameraParameters);
-                    }
-                }
-                catch(RuntimeException e ) {
-                    Log.e("CAMERA_1::", "setParameters failed", e);
-                }
+                scheduleApplyParameters();
             }
         }
     }
@@ -557,14 +629,9 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         if (flash == mFlash) {
             return;
         }
-        if (setFlashInternal(flash)) {
-            try{
-                if(mCamera != null){
-                    mCamera.setParameters(mCameraParameters);
-                }
-            }
-            catch(RuntimeException e ) {
-                Log.e("CAMERA_1::", "setParameters failed", e);
+        synchronized(this){
+            if (setFlashInternal(flash)) {
+                scheduleApplyParameters();
             }
         }
     }
@@ -585,14 +652,9 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         if (exposure == mExposure) {
             return;
         }
-        if (setExposureInternal(exposure)) {
-            try{
-                if(mCamera != null){
-                    mCamera.setParameters(mCameraParameters);
-                }
-            }
-            catch(RuntimeException e ) {
-                Log.e("CAMERA_1::", "setParameters failed", e);
+        synchronized(this){
+            if (setExposureInternal(exposure)) {
+                scheduleApplyParameters();
             }
         }
 
@@ -613,14 +675,9 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         if (zoom == mZoom) {
             return;
         }
-        if (setZoomInternal(zoom)) {
-            try{
-                if(mCamera != null){
-                    mCamera.setParameters(mCameraParameters);
-                }
-            }
-            catch(RuntimeException e ) {
-                Log.e("CAMERA_1::", "setParameters failed", e);
+        synchronized(this){
+            if (setZoomInternal(zoom)) {
+                scheduleApplyParameters();
             }
         }
     }
@@ -636,14 +693,9 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         if (whiteBalance == mWhiteBalance) {
             return;
         }
-        if (setWhiteBalanceInternal(whiteBalance)) {
-            try{
-                if(mCamera != null){
-                    mCamera.setParameters(mCameraParameters);
-                }
-            }
-            catch(RuntimeException e ) {
-                Log.e("CAMERA_1::", "setParameters failed", e);
+        synchronized(this){
+            if (setWhiteBalanceInternal(whiteBalance)) {
+                scheduleApplyParameters();
             }
         }
     }
@@ -666,6 +718,102 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         return mIsScanning;
     }
 
+    @Override
+    void setAnalysisSize(Size size) {
+        // not supported for Camera1, preview callbacks always come at the preview size
+        mAnalysisSize = size;
+    }
+
+    @Override
+    Size getAnalysisSize() {
+        return mAnalysisSize;
+    }
+
+    @Override
+    void setAnalysisMaxImages(int maxImages) {
+        // not supported for Camera1, see PREVIEW_CALLBACK_BUFFER_COUNT
+        mAnalysisMaxImages = maxImages;
+    }
+
+    @Override
+    int getAnalysisMaxImages() {
+        return mAnalysisMaxImages;
+    }
+
+    @Override
+    void setAnalysisKeepLatest(boolean keepLatest) {
+        // not supported for Camera1, frames are dropped by the camera while no buffer is queued
+        mAnalysisKeepLatest = keepLatest;
+    }
+
+    @Override
+    boolean getAnalysisKeepLatest() {
+        return mAnalysisKeepLatest;
+    }
+
+    @Override
+    void setAnalysisThreadPriority(int priority) {
+        // not supported for Camera1, preview callbacks come on the thread that opened the camera
+        mAnalysisThreadPriority = priority;
+    }
+
+    @Override
+    int getAnalysisThreadPriority() {
+        return mAnalysisThreadPriority;
+    }
+
+    @Override
+    Map<String, CallbackStats> getCallbackStats() {
+        Map<String, CallbackStats> stats = new LinkedHashMap<>();
+        stats.put(mPreviewCallbackStats.getName(), mPreviewCallbackStats.snapshot());
+        stats.put(mPictureCallbackStats.getName(), mPictureCallbackStats.snapshot());
+        return stats;
+    }
+
+    @Override
+    void resetCallbackStats() {
+        mPreviewCallbackStats.reset();
+        mPictureCallbackStats.reset();
+    }
+
+    @Override
+    void setUsingFrameBufferPool(boolean usingFrameBufferPool) {
+        if (usingFrameBufferPool == mUsingFrameBufferPool) {
+            return;
+        }
+        mUsingFrameBufferPool = usingFrameBufferPool;
+        if (needsPreviewCallback()) {
+            setScanningInternal(mIsScanning);
+        }
+    }
+
+    @Override
+    boolean getUsingFrameBufferPool() {
+        return mUsingFrameBufferPool;
+    }
+
+    @Override
+    void setZeroShutterLag(boolean zeroShutterLag) {
+        if (zeroShutterLag == mZeroShutterLag) {
+            return;
+        }
+        synchronized(this){
+            mZeroShutterLag = zeroShutterLag;
+            if (!zeroShutterLag) {
+                mZslBuffer.clear();
+            }
+            if (mIsPreviewActive) {
+                // installs or removes the preview callback as needed
+                setScanningInternal(mIsScanning);
+            }
+        }
+    }
+
+    @Override
+    boolean getZeroShutterLag() {
+        return mZeroShutterLag;
+    }
+
     @Override
     void takePicture(final ReadableMap options) {
         if (!isCameraOpened()) {
@@ -681,9 +829,75 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         // and will capture whatever is on the preview without changing the camera focus.
         // This change will also help with autoFocusPointOfInterest not being usable to capture (Issue #2420)
         // and with takePicture never returning/resolving if the focus was reset (Issue #2421)
+        if (mZeroShutterLag && takeZeroShutterLagPicture(options)) {
+            return;
+        }
         takePictureInternal(options);
     }
 
+    /**
+     * Encodes the preview frame closest to now instead of capturing a still picture.
+     *
+     * @return {@code false} if there is no recent frame and a regular capture is needed.
+     */
+    private boolean takeZeroShutterLagPicture(final ReadableMap options) {
+        if (mIsRecording.get() || !isPictureCaptureInProgress.compareAndSet(false, true)) {
+            return false;
+        }
+        final long start = System.nanoTime();
+        ZslRingBuffer.Frame frame = mZslBuffer.take(start);
+        if (frame == null) {
+            isPictureCaptureInProgress.set(false);
+            return false;
+        }
+
+        int rotation = getFrameRotation(options);
+        int quality = getJpegQuality(options);
+        final int deviceOrientation = displayOrientationToOrientationEnum(mDeviceOrientation);
+
+        if (options.hasKey("pauseAfterCapture") && options.getBoolean("pauseAfterCapture")) {
+            synchronized(this){
+                if (mCamera != null && mIsPreviewActive) {
+                    mCamera.stopPreview();
+                    mIsPreviewActive = false;
+                    clearPreviewCallback();
+                }
+            }
+        }
+
+        ZslRingBuffer.encode(frame, quality, rotation, new ZslRingBuffer.Callback() {
+            @Override
+            public void onPictureEncoded(byte[] jpeg) {
+                isPictureCaptureInProgress.set(false);
+                if (jpeg == null) {
+                    // fall back to a regular capture on the camera thread
+                    mBgHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (isCameraOpened()) {
+                                takePictureInternal(options);
+                            }
+                        }
+                    });
+                    return;
+                }
+                mCallback.onPictureTaken(jpeg, deviceOrientation);
+                mPictureCallbackStats.record(start);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return Clockwise rotation that makes a preview frame upright in the requested orientation.
+     */
+    private int getFrameRotation(ReadableMap options) {
+        if (options.hasKey("orientation") && options.getInt("orientation") != Constants.ORIENTATION_AUTO) {
+            return calcCameraRotation(orientationEnumToRotation(options.getInt("orientation")));
+        }
+        return calcCameraRotation(mDeviceOrientation);
+    }
+
     int orientationEnumToRotation(int orientation) {
         switch(orientation) {
             case Constants.ORIENTATION_UP:
@@ -699,21 +913,6 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         }
     }
 
-    int displayOrientationToOrientationEnum(int rotation) {
-        switch (rotation) {
-            case 0:
-                return Constants.ORIENTATION_UP;
-            case 90:
-                return Constants.ORIENTATION_RIGHT;
-            case 180:
-                return Constants.ORIENTATION_DOWN;
-            case 270:
-                return Constants.ORIENTATION_LEFT;
-            default:
-                return 1;
-        }
-    }
-
     void takePictureInternal(final ReadableMap options) {
         // if not capturing already, atomically set it to true
         if (!mIsRecording.get() && isPictureCaptureInProgress.compareAndSet(false, true)) {
@@ -723,29 +922,24 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
                     mOrientation = options.getInt("orientation");
                     int rotation = orientationEnumToRotation(mOrientation);
                     mCameraParameters.setRotation(calcCameraRotation(rotation));
-                    try{
-                        mCamera.setParameters(mCameraParameters);
-                    }
-                    catch(RuntimeException e ) {
-                        Log.e("CAMERA_1::", "setParameters rotation failed", e);
-                    }
                 }
 
                 // set quality on capture since we might not process the image bitmap if not needed now.
                 // This also achieves a much faster JPEG compression speed since it's done on the hardware
                 if(options.hasKey("quality")){
                     mCameraParameters.setJpegQuality((int) (options.getDouble("quality") * 100));
-                    try{
-                        mCamera.setParameters(mCameraParameters);
-                    }
-                    catch(RuntimeException e ) {
-                        Log.e("CAMERA_1::", "setParameters quality failed", e);
-                    }
+                }
+
+                // one call for rotation, quality and any pending change, skipped if the camera
+                // already has them from the last picture
+                synchronized(this){
+                    applyParameters(false);
                 }
 
                 mCamera.takePicture(null, null, null, new Camera.PictureCallback() {
                     @Override
                     public void onPictureTaken(byte[] data, Camera camera) {
+                        long start = System.nanoTime();
 
                         // this shouldn't be needed and messes up autoFocusPointOfInterest
                         // camera.cancelAutoFocus();
@@ -753,13 +947,13 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
                         if (options.hasKey("pauseAfterCapture") && !options.getBoolean("pauseAfterCapture")) {
                             camera.startPreview();
                             mIsPreviewActive = true;
-                            if (mIsScanning) {
-                                camera.setPreviewCallback(Camera1.this);
+                            if (needsPreviewCallback()) {
+                                installPreviewCallback();
                             }
                         } else {
                             camera.stopPreview();
                             mIsPreviewActive = false;
-                            camera.setPreviewCallback(null);
+                            clearPreviewCallback();
                         }
 
                         isPictureCaptureInProgress.set(false);
@@ -770,6 +964,7 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
                         if(mustUpdateSurface){
                             updateSurface();
                         }
+                        mPictureCallbackStats.record(start);
                     }
                 });
             }
@@ -802,10 +997,8 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
                 // This should also be safe to call since both recording and
                 // camera parameters are getting set by the same thread and process.
                 // https://stackoverflow.com/a/14855668/1777914
-                try{
-                    mCamera.setParameters(mCameraParameters);
-                } catch (Exception e) {
-                    Log.e("CAMERA_1::", "Record setParameters failed", e);
+                synchronized(this){
+                    applyParameters(true);
                 }
 
                 int deviceOrientation = displayOrientationToOrientationEnum(mDeviceOrientation);
@@ -876,12 +1069,7 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
             mDeviceOrientation = deviceOrientation;
             if (isCameraOpened() && mOrientation == Constants.ORIENTATION_AUTO && !mIsRecording.get() && !isPictureCaptureInProgress.get()) {
                 mCameraParameters.setRotation(calcCameraRotation(deviceOrientation));
-                try{
-                    mCamera.setParameters(mCameraParameters);
-                }
-                catch(RuntimeException e ) {
-                    Log.e("CAMERA_1::", "setParameters failed", e);
-                }
+                scheduleApplyParameters();
             }
         }
     }
@@ -936,7 +1124,7 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
             }
 
             for (int i = 0; i < count; i++) {
-                Camera.getCameraInfo(i, mCameraInfo);
+                getCameraInfo(i, mCameraInfo);
                 if (mCameraInfo.facing == mFacing) {
                     mCameraId = i;
                     return;
@@ -944,12 +1132,12 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
             }
             // no camera found, set the one we have
             mCameraId = 0;
-            Camera.getCameraInfo(mCameraId, mCameraInfo);
+            getCameraInfo(mCameraId, mCameraInfo);
         }
         else{
             try{
                 mCameraId = Integer.parseInt(_mCameraId);
-                Camera.getCameraInfo(mCameraId, mCameraInfo);
+                getCameraInfo(mCameraId, mCameraInfo);
             }
             catch(Exception e){
                 mCameraId = INVALID_CAMERA_ID;
@@ -957,6 +1145,87 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         }
     }
 
+    /**
+     * Like {@link Camera#getCameraInfo}, but answered from the capability cache if possible.
+     */
+    private static void getCameraInfo(int cameraId, Camera.CameraInfo info) {
+        CameraCapabilities cached = CameraCapabilityCache.getInstance().get(
+                CameraCapabilities.API_CAMERA1, String.valueOf(cameraId));
+        if (cached != null) {
+            info.facing = cached.getFacing();
+            info.orientation = cached.getSensorOrientation();
+        } else {
+            Camera.getCameraInfo(cameraId, info);
+        }
+    }
+
+    /**
+     * Makes sure the capability cache knows the camera with {@code cameraId}, or the first one
+     * facing {@code facing} if the id is {@code null}, opening it briefly if it does not. Must not
+     * be called while another client holds the camera.
+     */
+    static void cacheCapabilities(String cameraId, int facing) {
+        int id = INVALID_CAMERA_ID;
+        Camera.CameraInfo info = new Camera.CameraInfo();
+        if (cameraId != null) {
+            try {
+                id = Integer.parseInt(cameraId);
+            } catch (NumberFormatException e) {
+                return;
+            }
+        } else {
+            for (int i = 0, count = Camera.getNumberOfCameras(); i < count; i++) {
+                getCameraInfo(i, info);
+                if (info.facing == facing) {
+                    id = i;
+                    break;
+                }
+            }
+        }
+        CameraCapabilityCache cache = CameraCapabilityCache.getInstance();
+        if (id == INVALID_CAMERA_ID
+                || cache.get(CameraCapabilities.API_CAMERA1, String.valueOf(id)) != null) {
+            return;
+        }
+
+        Camera camera = null;
+        try {
+            Camera.getCameraInfo(id, info);
+            camera = Camera.open(id);
+            cache.put(collectCapabilities(id, info, camera.getParameters()));
+        } catch (RuntimeException e) {
+            Log.w("CAMERA_1::", "cacheCapabilities: failed to open camera " + id, e);
+        } finally {
+            if (camera != null) {
+                camera.release();
+            }
+        }
+    }
+
+    private static CameraCapabilities collectCapabilities(int cameraId, Camera.CameraInfo info,
+                                                          Camera.Parameters parameters) {
+        List<Size> previewSizes = new ArrayList<>();
+        for (Camera.Size size : parameters.getSupportedPreviewSizes()) {
+            previewSizes.add(new Size(size.width, size.height));
+        }
+        List<Size> pictureSizes = new ArrayList<>();
+        for (Camera.Size size : parameters.getSupportedPictureSizes()) {
+            pictureSizes.add(new Size(size.width, size.height));
+        }
+        return new CameraCapabilities(
+                CameraCapabilities.API_CAMERA1,
+                String.valueOf(cameraId),
+                info.facing,
+                info.orientation,
+                CameraCapabilities.HARDWARE_LEVEL_UNKNOWN,
+                "",
+                previewSizes,
+                pictureSizes,
+                parameters.getSupportedFocusModes(),
+                parameters.getSupportedFlashModes(),
+                parameters.getSupportedWhiteBalance());
+    }
+
     private boolean openCamera() {
         if (mCamera != null) {
             releaseCamera();
@@ -972,17 +1241,25 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         try {
             mCamera = Camera.open(mCameraId);
             mCameraParameters = mCamera.getParameters();
+            mParameterBatch.reset(mCameraParameters.flatten());
+
+            CameraCapabilityCache capabilityCache = CameraCapabilityCache.getInstance();
+            mCapabilities = capabilityCache.get(CameraCapabilities.API_CAMERA1, String.valueOf(mCameraId));
+            if (mCapabilities == null) {
+                mCapabilities = collectCapabilities(mCameraId, mCameraInfo, mCameraParameters);
+                capabilityCache.put(mCapabilities);
+            }
 
             // Supported preview sizes
             mPreviewSizes.clear();
-            for (Camera.Size size : mCameraParameters.getSupportedPreviewSizes()) {
-                mPreviewSizes.add(new Size(size.width, size.height));
+            for (Size size : mCapabilities.getPreviewSizes()) {
+                mPreviewSizes.add(size);
             }
 
             // Supported picture sizes;
             mPictureSizes.clear();
-            for (Camera.Size size : mCameraParameters.getSupportedPictureSizes()) {
-                mPictureSizes.add(new Size(size.width, size.height));
+            for (Size size : mCapabilities.getPictureSizes()) {
+                mPictureSizes.add(size);
             }
 
             // to be consistent with Camera2, and to prevent crashes on some devices
@@ -1026,9 +1303,12 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         }
         Size size = chooseOptimalSize(sizes);
 
-        // Always re-apply camera parameters
+        // Always re-apply camera parameters, but only restart the preview for a new preview size
         mPictureSize = mPictureSizes.sizes(mAspectRatio).last();
-        boolean needsToStopPreview = mIsPreviewActive;
+        Camera.Size currentSize = mCameraParameters.getPreviewSize();
+        boolean previewSizeChanged = currentSize == null
+                || currentSize.width != size.getWidth() || currentSize.height != size.getHeight();
+        boolean needsToStopPreview = mIsPreviewActive && previewSizeChanged;
         if (needsToStopPreview) {
             mCamera.stopPreview();
             mIsPreviewActive = false;
@@ -1047,18 +1327,34 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         setAspectRatio(mAspectRatio);
         setZoomInternal(mZoom);
         setWhiteBalanceInternal(mWhiteBalance);
-        setScanningInternal(mIsScanning);
-        try{
-            mCamera.setParameters(mCameraParameters);
-        }
-        catch(RuntimeException e ) {
-            Log.e("CAMERA_1::", "setParameters failed", e);
+        if (!mIsPreviewActive) {
+            // a running preview keeps its callback
+            setScanningInternal(mIsScanning);
         }
+        applyParameters(false);
         if (needsToStopPreview) {
             startCameraPreview();
         }
     }
 
+    /**
+     * Applies {@link #mCameraParameters} with a single setParameters call once the current burst of
+     * changes is over, see {@link ParameterBatch}. Guarded by this.
+     */
+    private void scheduleApplyParameters() {
+        if (mCamera != null) {
+            mParameterBatch.schedule();
+        }
+    }
+
+    /**
+     * Applies {@link #mCameraParameters} right away, see {@link ParameterBatch#apply(boolean)}.
+     * Guarded by this.
+     */
+    private void applyParameters(boolean force) {
+        mParameterBatch.apply(force);
+    }
+
     @SuppressWarnings("SuspiciousNameCombination")
     private Size chooseOptimalSize(SortedSet<Size> sizes) {
         if (!mPreview.isReady()) { // Not yet laid out
@@ -1088,6 +1384,10 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
 
     private void releaseCamera() {
         if (mCamera != null) {
+            mPreviewBufferSize = 0;
+            returnQueuedPreviewBuffers();
+            mParameterBatch.reset(null);
+            mZslBuffer.clear();
             mCamera.release();
             mCamera = null;
             mPictureSize = null;
@@ -1146,6 +1446,8 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
                             catch(RuntimeException e ) {
                                 Log.e("CAMERA_1::", "setParameters failed", e);
                             }
+                            // applied behind mCameraParameters' back
+                            mParameterBatch.invalidate();
 
                             try{
                                 mCamera.autoFocus(new Camera.AutoFocusCallback() {
@@ -1172,6 +1474,7 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
                             catch(RuntimeException e ) {
                                 Log.e("CAMERA_1::", "setParameters failed", e);
                             }
+                            mParameterBatch.invalidate();
 
                             try{
                                 mCamera.autoFocus(new Camera.AutoFocusCallback() {
@@ -1231,6 +1534,9 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
                         catch(RuntimeException e ) {
                           Log.e("CAMERA_1::", "setParameters failed", e);
                         }
+                        synchronized(Camera1.this){
+                            mParameterBatch.invalidate();
+                        }
                     }
 
                     mCamera.cancelAutoFocus();
@@ -1313,7 +1619,10 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
     private boolean setAutoFocusInternal(boolean autoFocus) {
         mAutoFocus = autoFocus;
         if (isCameraOpened()) {
-            final List<String> modes = mCameraParameters.getSupportedFocusModes();
+            final List<String> modes = mCapabilities.getFocusModes();
+            if (modes.isEmpty()) {
+                return false;
+            }
             if (autoFocus && modes.contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)) {
                 mCameraParameters.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
             } else if (modes.contains(Camera.Parameters.FOCUS_MODE_FIXED)) {
@@ -1334,9 +1643,9 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
      */
     private boolean setFlashInternal(int flash) {
         if (isCameraOpened()) {
-            List<String> modes = mCameraParameters.getSupportedFlashModes();
+            List<String> modes = mCapabilities.getFlashModes();
             String mode = FLASH_MODES.get(flash);
-            if(modes == null) {
+            if(modes.isEmpty()) {
                 return false;
             }
             if (modes.contains(mode)) {
@@ -1398,14 +1707,14 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
     private boolean setWhiteBalanceInternal(int whiteBalance) {
         mWhiteBalance = whiteBalance;
         if (isCameraOpened()) {
-            final List<String> modes = mCameraParameters.getSupportedWhiteBalance();
+            final List<String> modes = mCapabilities.getWhiteBalanceModes();
             String mode = WB_MODES.get(whiteBalance);
-            if (modes != null && modes.contains(mode)) {
+            if (modes.contains(mode)) {
                 mCameraParameters.setWhiteBalance(mode);
                 return true;
             }
             String currentMode = WB_MODES.get(mWhiteBalance);
-            if (modes == null || !modes.contains(currentMode)) {
+            if (!modes.contains(currentMode)) {
                 mCameraParameters.setWhiteBalance(Camera.Parameters.WHITE_BALANCE_AUTO);
                 return true;
             }
@@ -1418,18 +1727,151 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
     private void setScanningInternal(boolean isScanning) {
         mIsScanning = isScanning;
         if (isCameraOpened()) {
-            if (mIsScanning) {
-                mCamera.setPreviewCallback(this);
-            } else {
-                mCamera.setPreviewCallback(null);
+            try{
+                if (needsPreviewCallback()) {
+                    installPreviewCallback();
+                } else {
+                    clearPreviewCallback();
+                }
+            }
+            catch(RuntimeException e){
+                Log.e("CAMERA_1::", "setScanningInternal failed", e);
             }
         }
     }
 
+    /**
+     * @return Whether preview frames are needed, for scanning or zero shutter lag pictures.
+     */
+    private boolean needsPreviewCallback() {
+        return mIsScanning || mZeroShutterLag;
+    }
+
+    /**
+     * Registers this instance as preview callback. In pooled mode the frames are written into
+     * buffers from {@link #mFrameBufferPool} instead of a new array per frame.
+     */
+    private void installPreviewCallback() {
+        clearPreviewCallback();
+
+        if (!mUsingFrameBufferPool) {
+            mCamera.setPreviewCallback(this);
+            return;
+        }
+
+        Camera.Size previewSize = mCameraParameters.getPreviewSize();
+        int bitsPerPixel = ImageFormat.getBitsPerPixel(mCameraParameters.getPreviewFormat());
+        mPreviewBufferSize = previewSize.width * previewSize.height * bitsPerPixel / 8;
+
+        mCamera.setPreviewCallbackWithBuffer(this);
+        for (int i = 0; i < PREVIEW_CALLBACK_BUFFER_COUNT; i++) {
+            queuePreviewBuffer();
+        }
+    }
+
+    /**
+     * Removes the preview callback. This also drops any buffers still queued to the camera, so
+     * they are handed back to the pool.
+     */
+    private void clearPreviewCallback() {
+        mPreviewBufferSize = 0;
+        mCamera.setPreviewCallback(null);
+        returnQueuedPreviewBuffers();
+    }
+
+    private void returnQueuedPreviewBuffers() {
+        List<byte[]> dropped;
+        synchronized (mQueuedPreviewBuffers) {
+            dropped = new ArrayList<>(mQueuedPreviewBuffers);
+            mQueuedPreviewBuffers.clear();
+        }
+        for (byte[] buffer : dropped) {
+            mFrameBufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * The camera drops a buffer that is too small for the preview without telling which one, so
+     * every queued buffer that no longer fits is handed back to the pool. Releasing them queues
+     * buffers of the current size in their place.
+     */
+    private void returnUndersizedPreviewBuffers() {
+        final int size = mPreviewBufferSize;
+        List<byte[]> dropped = new ArrayList<>();
+        synchronized (mQueuedPreviewBuffers) {
+            Iterator<byte[]> iterator = mQueuedPreviewBuffers.iterator();
+            while (iterator.hasNext()) {
+                byte[] buffer = iterator.next();
+                if (buffer.length < size) {
+                    iterator.remove();
+                    dropped.add(buffer);
+                }
+            }
+        }
+        for (byte[] buffer : dropped) {
+            mFrameBufferPool.release(buffer);
+        }
+    }
+
+    private void queuePreviewBuffer() {
+        final Camera camera = mCamera;
+        final int size = mPreviewBufferSize;
+
+        // no pooled callback installed, the buffer just stays in the pool
+        if (camera == null || size <= 0) {
+            return;
+        }
+
+        byte[] buffer = mFrameBufferPool.acquire(size);
+        if (buffer == null) {
+            // every buffer is still being read; the camera will skip frames until one is released
+            return;
+        }
+
+        synchronized (mQueuedPreviewBuffers) {
+            mQueuedPreviewBuffers.add(buffer);
+        }
+        try{
+            camera.addCallbackBuffer(buffer);
+        }
+        catch(RuntimeException e){
+            synchronized (mQueuedPreviewBuffers) {
+                mQueuedPreviewBuffers.remove(buffer);
+            }
+            // stop queueing until the callback is installed again
+            mPreviewBufferSize = 0;
+            mFrameBufferPool.release(buffer);
+            Log.e("CAMERA_1::", "addCallbackBuffer failed", e);
+        }
+    }
+
     @Override
     public void onPreviewFrame(byte[] data, Camera camera) {
+        // null when a queued buffer was too small for the current preview size
+        if (data == null) {
+            returnUndersizedPreviewBuffers();
+            return;
+        }
+
+        boolean pooled;
+        synchronized (mQueuedPreviewBuffers) {
+            pooled = mQueuedPreviewBuffers.remove(data);
+        }
+
+        long start = System.nanoTime();
         Camera.Size previewSize = mCameraParameters.getPreviewSize();
-        mCallback.onFramePreview(data, previewSize.width, previewSize.height, mDeviceOrientation);
+        if (mZeroShutterLag) {
+            mZslBuffer.put(data, previewSize.width, previewSize.height);
+        }
+        if (mIsScanning) {
+            mCallback.onFramePreview(data, previewSize.width, previewSize.height, mDeviceOrientation);
+        }
+
+        // consumers that kept the frame retained it during the callback; drop our reference
+        if (pooled) {
+            mFrameBufferPool.release(data);
+        }
+        mPreviewCallbackStats.record(start);
     }
 
     private void setUpMediaRecorder(String path, int maxDuration, int maxFileSize, boolean recordAudio, CamcorderProfile profile) {
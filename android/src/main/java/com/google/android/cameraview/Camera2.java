@@ -42,7 +42,10 @@ import android.util.Log;
 import android.util.SparseIntArray;
 import android.view.Surface;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.Process;
+import android.os.Build;
 
 import com.facebook.react.bridge.ReadableMap;
 
@@ -52,7 +55,9 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
@@ -88,6 +93,9 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
 
     private static final int FOCUS_METERING_AREA_WEIGHT_DEFAULT = 1000;
 
+    // scan frames kept for zero shutter lag pictures
+    private static final int ZSL_FRAME_COUNT = 3;
+
     private final CameraManager mCameraManager;
 
     private final CameraDevice.StateCallback mCameraDeviceCallback
@@ -185,21 +193,89 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
 
         @Override
         public void onImageAvailable(ImageReader reader) {
-            try (Image image = reader.acquireNextImage()) {
+            long start = System.nanoTime();
+            boolean still = reader.getImageFormat() == ImageFormat.JPEG;
+            try {
+                acquireImage(reader);
+            } finally {
+                (still ? mStillCallbackStats : mAnalysisCallbackStats).record(start);
+            }
+        }
+
+        private void acquireImage(ImageReader reader) {
+            if (reader.getImageFormat() != ImageFormat.JPEG) {
+                acquireFrameImage(reader);
+                return;
+            }
+            final Image image;
+            try {
+                image = reader.acquireNextImage();
+            } catch (IllegalStateException e) {
+                // a previous picture is still being copied; this one stays queued
+                return;
+            }
+            if (image == null) {
+                return;
+            }
+
+            try {
                 Image.Plane[] planes = image.getPlanes();
                 if (planes.length > 0) {
                     ByteBuffer buffer = planes[0].getBuffer();
                     byte[] data = new byte[buffer.remaining()];
                     buffer.get(data);
-                    if (image.getFormat() == ImageFormat.JPEG) {
-                        // @TODO: implement deviceOrientation
-                        mCallback.onPictureTaken(data, 0);
+                    mCallback.onPictureTaken(data, displayOrientationToOrientationEnum(mDeviceOrientation));
+                }
+            } finally {
+                image.close();
+            }
+        }
+
+        private void acquireFrameImage(ImageReader reader) {
+            byte[] data;
+            int width;
+            int height;
+            // under the lock, so the reader is not closed while the planes are copied
+            synchronized (mScanReaderLock) {
+                final Image image;
+                try {
+                    if (mAnalysisKeepLatest) {
+                        // drops any older frames still queued so analysis never falls behind
+                        image = reader.acquireLatestImage();
                     } else {
-                        mCallback.onFramePreview(data, image.getWidth(), image.getHeight(), mDisplayOrientation);
+                        image = reader.acquireNextImage();
                     }
+                } catch (IllegalStateException e) {
+                    // the reader was closed
+                    return;
+                }
+                if (image == null) {
+                    return;
+                }
+                try {
+                    width = image.getWidth();
+                    height = image.getHeight();
+                    data = copyToNv21(image);
+                } finally {
                     image.close();
                 }
             }
+            if (data == null) {
+                return;
+            }
+
+            try {
+                if (mZeroShutterLag) {
+                    mZslBuffer.put(data, width, height);
+                }
+                // without scanning the frames are only kept for zero shutter lag pictures
+                if (mIsScanning) {
+                    mCallback.onFramePreview(data, width, height, mDisplayOrientation);
+                }
+            } finally {
+                // consumers that kept the frame retained it during the callback; drop our reference
+                mFrameBufferPool.release(data);
+            }
         }
 
     };
@@ -252,7 +328,8 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
 
     private int mDisplayOrientation;
 
-    private int mDeviceOrientation;
+    // read on the still thread when a picture is delivered
+    private volatile int mDeviceOrientation;
 
     private float mFocusDepth;
 
@@ -262,10 +339,42 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
 
     private boolean mIsScanning;
 
+    private final ScanTarget mScanTarget = new ScanTarget();
+
+    private boolean mUsingFrameBufferPool;
+
+    private boolean mZeroShutterLag;
+
+    private final ZslRingBuffer mZslBuffer = new ZslRingBuffer(ZSL_FRAME_COUNT);
+
+    private Size mAnalysisSize;
+
+    private int mAnalysisMaxImages = Constants.DEFAULT_ANALYSIS_MAX_IMAGES;
+
+    private volatile boolean mAnalysisKeepLatest = true;
+
+    private final Object mScanReaderLock = new Object();
+
     private Surface mPreviewSurface;
 
     private Rect mInitialCropRegion;
 
+    // image acquisition runs off the main looper: scan frames on the analysis thread, JPEG
+    // stills on their own thread so saving a picture never holds up analysis or the UI
+    private HandlerThread mAnalysisThread;
+
+    private Handler mAnalysisHandler;
+
+    private HandlerThread mStillThread;
+
+    private Handler mStillHandler;
+
+    private int mAnalysisThreadPriority = Constants.DEFAULT_ANALYSIS_THREAD_PRIORITY;
+
+    private final CallbackStats mAnalysisCallbackStats = new CallbackStats("analysis");
+
+    private final CallbackStats mStillCallbackStats = new CallbackStats("still");
+
     Camera2(Callback callback, PreviewImpl preview, Context context, Handler bgHandler) {
         super(callback, preview, bgHandler);
         mCameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
@@ -305,6 +414,7 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
         collectCameraInfo();
         setAspectRatio(mInitialRatio);
         mInitialRatio = null;
+        startImageThreads();
         prepareStillImageReader();
         prepareScanImageReader();
         startOpeningCamera();
@@ -327,9 +437,11 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
         }
 
         if (mScanImageReader != null) {
-            mScanImageReader.close();
+            closeScanImageReader(mScanImageReader);
             mScanImageReader = null;
         }
+        mZslBuffer.clear();
+        stopImageThreads();
 
         if (mMediaRecorder != null) {
             mMediaRecorder.stop();
@@ -546,6 +658,9 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
 
     @Override
     void takePicture(ReadableMap options) {
+        if (mZeroShutterLag && takeZeroShutterLagPicture(options)) {
+            return;
+        }
         mCaptureCallback.setOptions(options);
 
         if (mAutoFocus) {
@@ -555,6 +670,60 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
         }
     }
 
+    /**
+     * Encodes the scan frame closest to now instead of capturing a still picture.
+     *
+     * @return {@code false} if there is no recent frame and a regular capture is needed.
+     */
+    private boolean takeZeroShutterLagPicture(final ReadableMap options) {
+        if (mIsRecording || mCaptureSession == null) {
+            return false;
+        }
+        final long start = System.nanoTime();
+        final int deviceOrientation = displayOrientationToOrientationEnum(mDeviceOrientation);
+        ZslRingBuffer.Frame frame = mZslBuffer.take(start);
+        if (frame == null) {
+            return false;
+        }
+        int quality = getJpegQuality(options);
+
+        if (options.hasKey("pauseAfterCapture") && options.getBoolean("pauseAfterCapture")) {
+            try {
+                mCaptureSession.stopRepeating();
+            } catch (CameraAccessException e) {
+                Log.e(TAG, "Failed to pause the preview", e);
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Failed to pause the preview", e);
+            }
+        }
+
+        ZslRingBuffer.encode(frame, quality, getOutputRotation(), new ZslRingBuffer.Callback() {
+            @Override
+            public void onPictureEncoded(byte[] jpeg) {
+                if (jpeg == null) {
+                    // fall back to a regular capture
+                    mBgHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (isCameraOpened()) {
+                                mCaptureCallback.setOptions(options);
+                                if (mAutoFocus) {
+                                    lockFocus();
+                                } else {
+                                    captureStillPicture();
+                                }
+                            }
+                        }
+                    });
+                    return;
+                }
+                mCallback.onPictureTaken(jpeg, deviceOrientation);
+                mStillCallbackStats.record(start);
+            }
+        });
+        return true;
+    }
+
     @Override
     boolean record(String path, int maxDuration, int maxFileSize, boolean recordAudio, CamcorderProfile profile, int orientation) {
         if (!mIsRecording) {
@@ -577,6 +746,7 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
                 mPreviewRequestBuilder.addTarget(mMediaRecorderSurface);
                 mCamera.createCaptureSession(Arrays.asList(surface, mMediaRecorderSurface),
                     mSessionCallback, null);
+                mScanTarget.onSessionWithoutOutput();
                 mMediaRecorder.start();
                 mIsRecording = true;
 
@@ -686,11 +856,41 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
         } else {
             mImageFormat = ImageFormat.YUV_420_888;
         }
-        if (mCaptureSession != null) {
-            mCaptureSession.close();
-            mCaptureSession = null;
+        updateScanTarget();
+    }
+
+    /**
+     * Adds or removes the scan reader as target of the repeating request, see {@link ScanTarget}.
+     */
+    private void updateScanTarget() {
+        if (mPreviewRequestBuilder == null || mScanImageReader == null) {
+            return;
+        }
+        switch (mScanTarget.update(needsScanFrames())) {
+            case ScanTarget.ADD:
+                mPreviewRequestBuilder.addTarget(mScanImageReader.getSurface());
+                break;
+            case ScanTarget.REMOVE:
+                mPreviewRequestBuilder.removeTarget(mScanImageReader.getSurface());
+                break;
+            default:
+                // already right, or the next session picks up mIsScanning and mZeroShutterLag
+                return;
+        }
+        // while configuring, onConfigured starts the updated request; while taking a picture,
+        // unlockFocus does
+        if (mCaptureSession == null
+                || mCaptureCallback.getState() != PictureCaptureCallback.STATE_PREVIEW) {
+            return;
+        }
+        try {
+            mCaptureSession.setRepeatingRequest(mPreviewRequestBuilder.build(),
+                    mCaptureCallback, null);
+        } catch (CameraAccessException e) {
+            Log.e(TAG, "Failed to update the scan target", e);
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Failed to update the scan target", e);
         }
-        startCaptureSession();
     }
 
     @Override
@@ -698,6 +898,112 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
         return mIsScanning;
     }
 
+    /**
+     * @return Whether the scan reader has to receive frames, for scanning or zero shutter lag
+     *         pictures.
+     */
+    private boolean needsScanFrames() {
+        return mIsScanning || mZeroShutterLag;
+    }
+
+    @Override
+    void setAnalysisSize(Size size) {
+        if (ObjectUtils.equals(mAnalysisSize, size)) {
+            return;
+        }
+        mAnalysisSize = size;
+        restartScanImageReader();
+    }
+
+    @Override
+    Size getAnalysisSize() {
+        return mAnalysisSize;
+    }
+
+    @Override
+    void setAnalysisMaxImages(int maxImages) {
+        if (maxImages < 1 || maxImages == mAnalysisMaxImages) {
+            return;
+        }
+        mAnalysisMaxImages = maxImages;
+        restartScanImageReader();
+    }
+
+    @Override
+    int getAnalysisMaxImages() {
+        return mAnalysisMaxImages;
+    }
+
+    @Override
+    void setAnalysisKeepLatest(boolean keepLatest) {
+        mAnalysisKeepLatest = keepLatest;
+    }
+
+    @Override
+    boolean getAnalysisKeepLatest() {
+        return mAnalysisKeepLatest;
+    }
+
+    @Override
+    void setAnalysisThreadPriority(int priority) {
+        mAnalysisThreadPriority = priority;
+        HandlerThread thread = mAnalysisThread;
+        if (thread != null && thread.getThreadId() != -1) {
+            try {
+                Process.setThreadPriority(thread.getThreadId(), priority);
+            } catch (IllegalArgumentException | SecurityException e) {
+                Log.e(TAG, "setAnalysisThreadPriority: failed to set priority " + priority, e);
+            }
+        }
+    }
+
+    @Override
+    int getAnalysisThreadPriority() {
+        return mAnalysisThreadPriority;
+    }
+
+    @Override
+    Map<String, CallbackStats> getCallbackStats() {
+        Map<String, CallbackStats> stats = new LinkedHashMap<>();
+        stats.put(mAnalysisCallbackStats.getName(), mAnalysisCallbackStats.snapshot());
+        stats.put(mStillCallbackStats.getName(), mStillCallbackStats.snapshot());
+        return stats;
+    }
+
+    @Override
+    void resetCallbackStats() {
+        mAnalysisCallbackStats.reset();
+        mStillCallbackStats.reset();
+    }
+
+    @Override
+    void setZeroShutterLag(boolean zeroShutterLag) {
+        if (mZeroShutterLag == zeroShutterLag) {
+            return;
+        }
+        mZeroShutterLag = zeroShutterLag;
+        if (!zeroShutterLag) {
+            mZslBuffer.clear();
+        }
+        updateScanTarget();
+    }
+
+    @Override
+    boolean getZeroShutterLag() {
+        return mZeroShutterLag;
+    }
+
+    @Override
+    void setUsingFrameBufferPool(boolean usingFrameBufferPool) {
+        // scan frames are always copied into pooled buffers; nothing to reconfigure
+        mUsingFrameBufferPool = usingFrameBufferPool;
+    }
+
+    @Override
+    boolean getUsingFrameBufferPool() {
+        return mUsingFrameBufferPool;
+    }
+
     @Override
     int getCameraOrientation() {
         return mCameraOrientation;
@@ -729,7 +1035,19 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
                 if (ids.length == 0) { // No camera
                     throw new RuntimeException("No camera available.");
                 }
+                CameraCapabilityCache capabilityCache = CameraCapabilityCache.getInstance();
                 for (String id : ids) {
+                    CameraCapabilities cached = capabilityCache.get(CameraCapabilities.API_CAMERA2, id);
+                    if (cached != null) {
+                        // only the characteristics of the chosen camera are queried
+                        if (isLegacyHardwareLevel(cached.getHardwareLevel())
+                                || cached.getFacing() != mFacing) {
+                            continue;
+                        }
+                        mCameraId = id;
+                        mCameraCharacteristics = mCameraManager.getCameraCharacteristics(id);
+                        return true;
+                    }
                     CameraCharacteristics characteristics = mCameraManager.getCameraCharacteristics(id);
                     Integer level = characteristics.get(
                             CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL);
@@ -815,21 +1133,29 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
      * {@link #mCameraOrientation}, and optionally, {@link #mAspectRatio}.</p>
      */
     private void collectCameraInfo() {
-        StreamConfigurationMap map = mCameraCharacteristics.get(
-                CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
-        if (map == null) {
-            throw new IllegalStateException("Failed to get configuration map: " + mCameraId);
+        CameraCapabilityCache capabilityCache = CameraCapabilityCache.getInstance();
+        CameraCapabilities capabilities = capabilityCache.get(CameraCapabilities.API_CAMERA2, mCameraId);
+        String configuration = getOutputConfiguration(mPreview.getOutputClass(), mImageFormat);
+        if (capabilities == null || !capabilities.getOutputConfiguration().equals(configuration)) {
+            StreamConfigurationMap map = mCameraCharacteristics.get(
+                    CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+            if (map == null) {
+                throw new IllegalStateException("Failed to get configuration map: " + mCameraId);
+            }
+            SizeMap pictureSizes = new SizeMap();
+            collectPictureSizes(pictureSizes, map);
+            capabilities = collectCapabilities(mCameraId, mCameraCharacteristics,
+                    mPreview.getOutputClass(), mImageFormat, toList(pictureSizes));
+            capabilityCache.put(capabilities);
         }
         mPreviewSizes.clear();
-        for (android.util.Size size : map.getOutputSizes(mPreview.getOutputClass())) {
-            int width = size.getWidth();
-            int height = size.getHeight();
-            if (width <= MAX_PREVIEW_WIDTH && height <= MAX_PREVIEW_HEIGHT) {
-                mPreviewSizes.add(new Size(width, height));
-            }
+        for (Size size : capabilities.getPreviewSizes()) {
+            mPreviewSizes.add(size);
         }
         mPictureSizes.clear();
-        collectPictureSizes(mPictureSizes, map);
+        for (Size size : capabilities.getPictureSizes()) {
+            mPictureSizes.add(size);
+        }
         if (mPictureSize == null) {
             mPictureSize = mPictureSizes.sizes(mAspectRatio).last();
         }
@@ -843,12 +1169,166 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
             mAspectRatio = mPreviewSizes.ratios().iterator().next();
         }
 
-        mCameraOrientation = mCameraCharacteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        mCameraOrientation = capabilities.getSensorOrientation();
     }
 
     protected void collectPictureSizes(SizeMap sizes, StreamConfigurationMap map) {
         for (android.util.Size size : map.getOutputSizes(mImageFormat)) {
-            mPictureSizes.add(new Size(size.getWidth(), size.getHeight()));
+            sizes.add(new Size(size.getWidth(), size.getHeight()));
+        }
+    }
+
+    private static boolean isLegacyHardwareLevel(int level) {
+        return level == CameraCapabilities.HARDWARE_LEVEL_UNKNOWN
+                || level == CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY;
+    }
+
+    private static String getOutputConfiguration(Class<?> previewClass, int imageFormat) {
+        return previewClass.getName() + "/" + imageFormat;
+    }
+
+    private static List<Size> toList(SizeMap sizeMap) {
+        List<Size> sizes = new ArrayList<>();
+        for (AspectRatio ratio : sizeMap.ratios()) {
+            sizes.addAll(sizeMap.sizes(ratio));
+        }
+        return sizes;
+    }
+
+    private static List<String> toStrings(int[] values) {
+        List<String> strings = new ArrayList<>();
+        if (values != null) {
+            for (int value : values) {
+                strings.add(String.valueOf(value));
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * Turns the characteristics of a camera into {@link CameraCapabilities}.
+     *
+     * @param pictureSizes Picture sizes as {@link #collectPictureSizes} finds them.
+     */
+    static CameraCapabilities collectCapabilities(String cameraId, CameraCharacteristics characteristics,
+                                                  Class<?> previewClass, int imageFormat,
+                                                  List<Size> pictureSizes) {
+        StreamConfigurationMap map = characteristics.get(
+                CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        if (map == null) {
+            throw new IllegalStateException("Failed to get configuration map: " + cameraId);
+        }
+        List<Size> previewSizes = new ArrayList<>();
+        for (android.util.Size size : map.getOutputSizes(previewClass)) {
+            int width = size.getWidth();
+            int height = size.getHeight();
+            if (width <= MAX_PREVIEW_WIDTH && height <= MAX_PREVIEW_HEIGHT) {
+                previewSizes.add(new Size(width, height));
+            }
+        }
+
+        Integer internal = characteristics.get(CameraCharacteristics.LENS_FACING);
+        int facing = CameraCapabilities.FACING_EXTERNAL;
+        for (int i = 0, count = INTERNAL_FACINGS.size(); internal != null && i < count; i++) {
+            if (INTERNAL_FACINGS.valueAt(i) == internal) {
+                facing = INTERNAL_FACINGS.keyAt(i);
+            }
+        }
+        Integer level = characteristics.get(CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL);
+        Integer orientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        Boolean flashAvailable = characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
+
+        return new CameraCapabilities(
+                CameraCapabilities.API_CAMERA2,
+                cameraId,
+                facing,
+                orientation != null ? orientation : 0,
+                level != null ? level : CameraCapabilities.HARDWARE_LEVEL_UNKNOWN,
+                getOutputConfiguration(previewClass, imageFormat),
+                previewSizes,
+                pictureSizes,
+                toStrings(characteristics.get(CameraCharacteristics.CONTROL_AF_AVAILABLE_MODES)),
+                // Camera2 flashes through the auto-exposure modes
+                Boolean.TRUE.equals(flashAvailable)
+                        ? toStrings(characteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_MODES))
+                        : new ArrayList<String>(),
+                toStrings(characteristics.get(CameraCharacteristics.CONTROL_AWB_AVAILABLE_MODES)));
+    }
+
+    /**
+     * Collects the capabilities of every camera that is not cached yet, the way Camera2 (or
+     * Camera2Api23 on Android M and later) would for a {@link SurfaceTexture} preview and JPEG
+     * pictures. Only queries characteristics, no camera is opened.
+     */
+    static List<CameraCapabilities> collectCapabilities(Context context, CameraCapabilityCache cache) {
+        CameraManager manager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        List<CameraCapabilities> collected = new ArrayList<>();
+        try {
+            collectCapabilities(manager, cache, collected);
+        } catch (CameraAccessException e) {
+            Log.w(TAG, "Failed to collect camera capabilities", e);
+        }
+        return collected;
+    }
+
+    private static void collectCapabilities(CameraManager manager, CameraCapabilityCache cache,
+                                            List<CameraCapabilities> collected)
+            throws CameraAccessException {
+        for (String id : manager.getCameraIdList()) {
+            if (cache.get(CameraCapabilities.API_CAMERA2, id) != null) {
+                continue;
+            }
+            CameraCharacteristics characteristics = manager.getCameraCharacteristics(id);
+            StreamConfigurationMap map = characteristics.get(
+                    CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+            if (map == null) {
+                continue;
+            }
+            List<Size> pictureSizes = new ArrayList<>();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                android.util.Size[] highResolutionSizes = map.getHighResolutionOutputSizes(ImageFormat.JPEG);
+                if (highResolutionSizes != null) {
+                    for (android.util.Size size : highResolutionSizes) {
+                        pictureSizes.add(new Size(size.getWidth(), size.getHeight()));
+                    }
+                }
+            }
+            if (pictureSizes.isEmpty()) {
+                for (android.util.Size size : map.getOutputSizes(ImageFormat.JPEG)) {
+                    pictureSizes.add(new Size(size.getWidth(), size.getHeight()));
+                }
+            }
+            collected.add(collectCapabilities(id, characteristics, SurfaceTexture.class,
+                    ImageFormat.JPEG, pictureSizes));
+        }
+    }
+
+    private void startImageThreads() {
+        if (mAnalysisThread == null) {
+            mAnalysisThread = new HandlerThread("RNCamera-Analysis-Thread", mAnalysisThreadPriority);
+            mAnalysisThread.start();
+            mAnalysisHandler = new Handler(mAnalysisThread.getLooper());
+        }
+        if (mStillThread == null) {
+            mStillThread = new HandlerThread("RNCamera-Still-Thread");
+            mStillThread.start();
+            mStillHandler = new Handler(mStillThread.getLooper());
+        }
+    }
+
+    /**
+     * Lets the threads finish the images already delivered. Call after the readers are closed.
+     */
+    private void stopImageThreads() {
+        if (mAnalysisThread != null) {
+            mAnalysisThread.quitSafely();
+            mAnalysisThread = null;
+            mAnalysisHandler = null;
+        }
+        if (mStillThread != null) {
+            mStillThread.quitSafely();
+            mStillThread = null;
+            mStillHandler = null;
         }
     }
 
@@ -858,17 +1338,109 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
         }
         mStillImageReader = ImageReader.newInstance(mPictureSize.getWidth(), mPictureSize.getHeight(),
                 ImageFormat.JPEG, 1);
-        mStillImageReader.setOnImageAvailableListener(mOnImageAvailableListener, null);
+        mStillImageReader.setOnImageAvailableListener(mOnImageAvailableListener, mStillHandler);
     }
 
     private void prepareScanImageReader() {
         if (mScanImageReader != null) {
-            mScanImageReader.close();
+            closeScanImageReader(mScanImageReader);
+        }
+        Size size = chooseAnalysisSize();
+        mScanImageReader = ImageReader.newInstance(size.getWidth(), size.getHeight(),
+                ImageFormat.YUV_420_888, mAnalysisMaxImages);
+        mScanImageReader.setOnImageAvailableListener(mOnImageAvailableListener, mAnalysisHandler);
+    }
+
+    private void closeScanImageReader(ImageReader reader) {
+        reader.setOnImageAvailableListener(null, null);
+        // under the lock, so the analysis thread is not copying one of its images meanwhile
+        synchronized (mScanReaderLock) {
+            reader.close();
         }
-        Size largest = mPreviewSizes.sizes(mAspectRatio).last();
-        mScanImageReader = ImageReader.newInstance(largest.getWidth(), largest.getHeight(),
-                ImageFormat.YUV_420_888, 1);
-        mScanImageReader.setOnImageAvailableListener(mOnImageAvailableListener, null);
+    }
+
+    /**
+     * Copies a YUV_420_888 image into an NV21 buffer from {@link #mFrameBufferPool}, honoring the
+     * row and pixel strides of its planes, so the image can be closed right away.
+     *
+     * @return {@code null} if the image has no chroma planes.
+     */
+    private byte[] copyToNv21(Image image) {
+        Image.Plane[] planes = image.getPlanes();
+        if (planes.length < 3) {
+            return null;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        int size = width * height + 2 * chromaWidth * chromaHeight;
+        byte[] out = mFrameBufferPool.acquire(size);
+        if (out == null) {
+            out = new byte[size];
+        }
+
+        ByteBuffer y = planes[0].getBuffer();
+        int yRowStride = planes[0].getRowStride();
+        if (yRowStride == width) {
+            y.position(0);
+            y.get(out, 0, width * height);
+        } else {
+            for (int row = 0; row < height; row++) {
+                y.position(row * yRowStride);
+                y.get(out, row * width, width);
+            }
+        }
+
+        ByteBuffer u = planes[1].getBuffer();
+        ByteBuffer v = planes[2].getBuffer();
+        int uvRowStride = planes[1].getRowStride();
+        int uvPixelStride = planes[1].getPixelStride();
+        int offset = width * height;
+        for (int row = 0; row < chromaHeight; row++) {
+            int rowStart = row * uvRowStride;
+            for (int col = 0; col < chromaWidth; col++) {
+                int index = rowStart + col * uvPixelStride;
+                out[offset++] = v.get(index);
+                out[offset++] = u.get(index);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Recreates the scan reader with the current analysis settings, if the camera was started.
+     */
+    private void restartScanImageReader() {
+        if (mScanImageReader == null) {
+            return;
+        }
+        prepareScanImageReader();
+        if (mCaptureSession != null) {
+            mCaptureSession.close();
+            mCaptureSession = null;
+            startCaptureSession();
+        }
+    }
+
+    /**
+     * Chooses the smallest preview size of the current aspect ratio that covers the requested
+     * analysis size, regardless of orientation. Falls back to the largest one.
+     */
+    private Size chooseAnalysisSize() {
+        SortedSet<Size> sizes = mPreviewSizes.sizes(mAspectRatio);
+        if (mAnalysisSize == null) {
+            return sizes.last();
+        }
+        int targetLong = Math.max(mAnalysisSize.getWidth(), mAnalysisSize.getHeight());
+        int targetShort = Math.min(mAnalysisSize.getWidth(), mAnalysisSize.getHeight());
+        for (Size size : sizes) { // Iterate from small to large
+            if (Math.max(size.getWidth(), size.getHeight()) >= targetLong &&
+                    Math.min(size.getWidth(), size.getHeight()) >= targetShort) {
+                return size;
+            }
+        }
+        return sizes.last();
     }
 
     /**
@@ -899,11 +1471,13 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
             mPreviewRequestBuilder = mCamera.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
             mPreviewRequestBuilder.addTarget(surface);
 
-            if (mIsScanning) {
+            boolean scanTargeted = needsScanFrames();
+            if (scanTargeted) {
                 mPreviewRequestBuilder.addTarget(mScanImageReader.getSurface());
             }
             mCamera.createCaptureSession(Arrays.asList(surface, mStillImageReader.getSurface(),
                     mScanImageReader.getSurface()), mSessionCallback, null);
+            mScanTarget.onPreviewSession(scanTargeted);
         } catch (CameraAccessException e) {
             mCallback.onMountError();
         }
@@ -1398,14 +1972,14 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
             updateFlash();
             if (mIsScanning) {
                 mImageFormat = ImageFormat.YUV_420_888;
-                startCaptureSession();
-            } else {
-                mPreviewRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER,
-                        CaptureRequest.CONTROL_AF_TRIGGER_IDLE);
-                mCaptureSession.setRepeatingRequest(mPreviewRequestBuilder.build(), mCaptureCallback,
-                        null);
-                mCaptureCallback.setState(PictureCaptureCallback.STATE_PREVIEW);
             }
+            // the preview request still targets the scan reader if scanning, only the still
+            // capture request left it out
+            mPreviewRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER,
+                    CaptureRequest.CONTROL_AF_TRIGGER_IDLE);
+            mCaptureSession.setRepeatingRequest(mPreviewRequestBuilder.build(), mCaptureCallback,
+                    null);
+            mCaptureCallback.setState(PictureCaptureCallback.STATE_PREVIEW);
         } catch (CameraAccessException e) {
             Log.e(TAG, "Failed to restart camera preview.", e);
         }
@@ -1451,6 +2025,10 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
             mState = state;
         }
 
+        int getState() {
+            return mState;
+        }
+
         void setOptions(ReadableMap options) { mOptions = options; }
 
         ReadableMap getOptions() { return mOptions; }
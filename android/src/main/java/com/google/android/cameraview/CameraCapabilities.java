@@ -0,0 +1,233 @@
+package com.google.android.cameraview;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * What a single camera supports, as far as {@link CameraViewImpl} needs it to configure the camera.
+ * Collecting this from the camera api is slow on some devices, so it is kept in a
+ * {@link CameraCapabilityCache}.
+ *
+ * Focus, flash and white balance modes are api specific: the parameter values for Camera1, and
+ * the {@code CameraMetadata} constants as decimal strings for Camera2.
+ */
+public class CameraCapabilities {
+
+    public static final String API_CAMERA1 = "camera1";
+
+    public static final String API_CAMERA2 = "camera2";
+
+    /** Facing of external (e.g. USB) cameras. */
+    public static final int FACING_EXTERNAL = -1;
+
+    public static final int HARDWARE_LEVEL_UNKNOWN = -1;
+
+    private final String mApi;
+
+    private final String mCameraId;
+
+    private final int mFacing;
+
+    private final int mSensorOrientation;
+
+    private final int mHardwareLevel;
+
+    private final String mOutputConfiguration;
+
+    private final List<Size> mPreviewSizes;
+
+    private final List<Size> mPictureSizes;
+
+    private final List<String> mFocusModes;
+
+    private final List<String> mFlashModes;
+
+    private final List<String> mWhiteBalanceModes;
+
+    /**
+     * @param outputConfiguration Identifies the outputs the sizes were queried for, if the api
+     *                            reports different sizes per output (Camera2: the preview class
+     *                            and the picture format), or an empty string.
+     */
+    public CameraCapabilities(String api, String cameraId, int facing, int sensorOrientation,
+                              int hardwareLevel, String outputConfiguration, List<Size> previewSizes,
+                              List<Size> pictureSizes, List<String> focusModes,
+                              List<String> flashModes, List<String> whiteBalanceModes) {
+        mApi = api;
+        mCameraId = cameraId;
+        mFacing = facing;
+        mSensorOrientation = sensorOrientation;
+        mHardwareLevel = hardwareLevel;
+        mOutputConfiguration = outputConfiguration != null ? outputConfiguration : "";
+        mPreviewSizes = unmodifiableCopy(previewSizes);
+        mPictureSizes = unmodifiableCopy(pictureSizes);
+        mFocusModes = unmodifiableCopy(focusModes);
+        mFlashModes = unmodifiableCopy(flashModes);
+        mWhiteBalanceModes = unmodifiableCopy(whiteBalanceModes);
+    }
+
+    public String getApi() {
+        return mApi;
+    }
+
+    public String getCameraId() {
+        return mCameraId;
+    }
+
+    /**
+     * One of {@link Constants#FACING_BACK}, {@link Constants#FACING_FRONT} and
+     * {@link #FACING_EXTERNAL}.
+     */
+    public int getFacing() {
+        return mFacing;
+    }
+
+    public int getSensorOrientation() {
+        return mSensorOrientation;
+    }
+
+    /** Camera2 hardware level, {@link #HARDWARE_LEVEL_UNKNOWN} for Camera1. */
+    public int getHardwareLevel() {
+        return mHardwareLevel;
+    }
+
+    public String getOutputConfiguration() {
+        return mOutputConfiguration;
+    }
+
+    public List<Size> getPreviewSizes() {
+        return mPreviewSizes;
+    }
+
+    public List<Size> getPictureSizes() {
+        return mPictureSizes;
+    }
+
+    public List<String> getFocusModes() {
+        return mFocusModes;
+    }
+
+    public List<String> getFlashModes() {
+        return mFlashModes;
+    }
+
+    public List<String> getWhiteBalanceModes() {
+        return mWhiteBalanceModes;
+    }
+
+    /**
+     * Aspect ratios with both preview and picture sizes, the same set
+     * {@link CameraView#getSupportedAspectRatios()} reports once the camera is open.
+     */
+    public Set<AspectRatio> getSupportedAspectRatios() {
+        Set<AspectRatio> pictureRatios = new TreeSet<>();
+        for (Size size : mPictureSizes) {
+            pictureRatios.add(AspectRatio.of(size.getWidth(), size.getHeight()));
+        }
+        Set<AspectRatio> ratios = new TreeSet<>();
+        for (Size size : mPreviewSizes) {
+            AspectRatio ratio = AspectRatio.of(size.getWidth(), size.getHeight());
+            if (pictureRatios.contains(ratio)) {
+                ratios.add(ratio);
+            }
+        }
+        return ratios;
+    }
+
+    public SortedSet<Size> getPictureSizes(AspectRatio ratio) {
+        SortedSet<Size> sizes = new TreeSet<>();
+        for (Size size : mPictureSizes) {
+            if (ratio.matches(size)) {
+                sizes.add(size);
+            }
+        }
+        return sizes;
+    }
+
+    void writeTo(DataOutputStream output) throws IOException {
+        output.writeUTF(mApi);
+        output.writeUTF(mCameraId);
+        output.writeInt(mFacing);
+        output.writeInt(mSensorOrientation);
+        output.writeInt(mHardwareLevel);
+        output.writeUTF(mOutputConfiguration);
+        writeSizes(output, mPreviewSizes);
+        writeSizes(output, mPictureSizes);
+        writeStrings(output, mFocusModes);
+        writeStrings(output, mFlashModes);
+        writeStrings(output, mWhiteBalanceModes);
+    }
+
+    static CameraCapabilities readFrom(DataInputStream input) throws IOException {
+        String api = input.readUTF();
+        String cameraId = input.readUTF();
+        int facing = input.readInt();
+        int sensorOrientation = input.readInt();
+        int hardwareLevel = input.readInt();
+        String outputConfiguration = input.readUTF();
+        List<Size> previewSizes = readSizes(input);
+        List<Size> pictureSizes = readSizes(input);
+        List<String> focusModes = readStrings(input);
+        List<String> flashModes = readStrings(input);
+        List<String> whiteBalanceModes = readStrings(input);
+        return new CameraCapabilities(api, cameraId, facing, sensorOrientation, hardwareLevel,
+                outputConfiguration, previewSizes, pictureSizes, focusModes, flashModes,
+                whiteBalanceModes);
+    }
+
+    private static void writeSizes(DataOutputStream output, List<Size> sizes) throws IOException {
+        output.writeInt(sizes.size());
+        for (Size size : sizes) {
+            output.writeInt(size.getWidth());
+            output.writeInt(size.getHeight());
+        }
+    }
+
+    private static List<Size> readSizes(DataInputStream input) throws IOException {
+        int count = readCount(input);
+        List<Size> sizes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sizes.add(new Size(input.readInt(), input.readInt()));
+        }
+        return sizes;
+    }
+
+    private static void writeStrings(DataOutputStream output, List<String> strings)
+            throws IOException {
+        output.writeInt(strings.size());
+        for (String string : strings) {
+            output.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream input) throws IOException {
+        int count = readCount(input);
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(input.readUTF());
+        }
+        return strings;
+    }
+
+    private static int readCount(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        if (count < 0 || count > 4096) {
+            throw new IOException("Corrupt capability cache");
+        }
+        return count;
+    }
+
+    private static <T> List<T> unmodifiableCopy(List<T> list) {
+        if (list == null || list.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(list));
+    }
+}
@@ -0,0 +1,302 @@
+package com.google.android.cameraview;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process wide, persistent cache of {@link CameraCapabilities}, so the camera implementations do
+ * not have to query and parse the capabilities of a camera every time it is opened.
+ *
+ * The cache is stored in a single file together with the device fingerprint; the file is ignored
+ * when the fingerprint (i.e. the system build) or {@link #VERSION} changed. Loading and saving
+ * happen on a background thread, lookups never block: until the file is loaded they simply miss.
+ */
+public class CameraCapabilityCache {
+
+    private static final String TAG = "CameraCapabilityCache";
+
+    static final String FILE_NAME = "camera-capabilities.bin";
+
+    private static final int MAGIC = 0x524E4343;
+
+    /** Bump whenever the format or the content of {@link CameraCapabilities} changes. */
+    static final int VERSION = 1;
+
+    private static final CameraCapabilityCache sInstance = new CameraCapabilityCache();
+
+    public static CameraCapabilityCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Fills the cache for cameras that are not in it yet, called on the cache thread after the
+     * file was loaded.
+     */
+    public interface Collector {
+        List<CameraCapabilities> collect(CameraCapabilityCache cache);
+    }
+
+    private final Map<String, CameraCapabilities> mCapabilities = new HashMap<>();
+
+    private final CountDownLatch mLoaded = new CountDownLatch(1);
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RNCamera-Capability-Cache");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private File mFile;
+
+    private String mFingerprint;
+
+    CameraCapabilityCache() {
+    }
+
+    /**
+     * Loads the cache from {@code directory} in the background. Only the first call has an
+     * effect.
+     *
+     * @param fingerprint Identifies the system build, e.g. {@code Build.FINGERPRINT}.
+     * @param collector   Optional, collects capabilities the file did not have.
+     */
+    public void load(File directory, String fingerprint, final Collector collector) {
+        synchronized (this) {
+            if (mFile != null) {
+                return;
+            }
+            mFile = new File(directory, FILE_NAME);
+            mFingerprint = fingerprint != null ? fingerprint : "";
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    readFile();
+                } finally {
+                    mLoaded.countDown();
+                }
+                if (collector != null) {
+                    try {
+                        List<CameraCapabilities> collected = collector.collect(CameraCapabilityCache.this);
+                        if (collected != null && !collected.isEmpty()) {
+                            put(collected);
+                        }
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "Failed to collect camera capabilities", e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits until the file is loaded, for callers that would rather wait a little than query the
+     * camera.
+     *
+     * @return {@code false} if the cache is still loading (or {@link #load} was never called).
+     */
+    public boolean awaitLoaded(long timeoutMillis) {
+        try {
+            return mLoaded.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return The cached capabilities, {@code null} if the camera is not (yet) cached.
+     */
+    public synchronized CameraCapabilities get(String api, String cameraId) {
+        return mCapabilities.get(key(api, cameraId));
+    }
+
+    /**
+     * @return All cached cameras of the given api, ordered by camera id.
+     */
+    public synchronized List<CameraCapabilities> getAll(String api) {
+        List<CameraCapabilities> all = new ArrayList<>();
+        for (CameraCapabilities capabilities : mCapabilities.values()) {
+            if (capabilities.getApi().equals(api)) {
+                all.add(capabilities);
+            }
+        }
+        Collections.sort(all, new Comparator<CameraCapabilities>() {
+            @Override
+            public int compare(CameraCapabilities a, CameraCapabilities b) {
+                return a.getCameraId().compareTo(b.getCameraId());
+            }
+        });
+        return all;
+    }
+
+    /**
+     * Finds the first cached camera with the given facing.
+     *
+     * @return {@code null} if there is none.
+     */
+    public CameraCapabilities getByFacing(String api, int facing) {
+        for (CameraCapabilities capabilities : getAll(api)) {
+            if (capabilities.getFacing() == facing) {
+                return capabilities;
+            }
+        }
+        return null;
+    }
+
+    public void put(CameraCapabilities capabilities) {
+        List<CameraCapabilities> list = new ArrayList<>(1);
+        list.add(capabilities);
+        put(list);
+    }
+
+    /**
+     * Adds or replaces capabilities and writes the cache in the background.
+     */
+    public void put(List<CameraCapabilities> capabilities) {
+        synchronized (this) {
+            for (CameraCapabilities entry : capabilities) {
+                mCapabilities.put(key(entry.getApi(), entry.getCameraId()), entry);
+            }
+            if (mFile == null) {
+                return;
+            }
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeFile();
+            }
+        });
+    }
+
+    /**
+     * Forgets all capabilities, e.g. after a camera reported different ones than cached.
+     */
+    public void clear() {
+        synchronized (this) {
+            mCapabilities.clear();
+            if (mFile == null) {
+                return;
+            }
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeFile();
+            }
+        });
+    }
+
+    private void readFile() {
+        File file;
+        String fingerprint;
+        synchronized (this) {
+            file = mFile;
+            fingerprint = mFingerprint;
+        }
+        List<CameraCapabilities> read = new ArrayList<>();
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != MAGIC || input.readInt() != VERSION
+                    || !input.readUTF().equals(fingerprint)) {
+                // stale, rewritten by the next put
+                return;
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                read.add(CameraCapabilities.readFrom(input));
+            }
+        } catch (FileNotFoundException e) {
+            return;
+        } catch (IOException e) {
+            Log.w(TAG, "Ignoring unreadable camera capability cache", e);
+            return;
+        } finally {
+            closeQuietly(input);
+        }
+        synchronized (this) {
+            for (CameraCapabilities entry : read) {
+                String key = key(entry.getApi(), entry.getCameraId());
+                // capabilities put while loading are more recent
+                if (!mCapabilities.containsKey(key)) {
+                    mCapabilities.put(key, entry);
+                }
+            }
+        }
+    }
+
+    private void writeFile() {
+        File file;
+        String fingerprint;
+        List<CameraCapabilities> entries;
+        synchronized (this) {
+            file = mFile;
+            fingerprint = mFingerprint;
+            entries = new ArrayList<>(mCapabilities.values());
+        }
+        // write to a temporary file first so a crash never leaves a truncated cache behind
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(fingerprint);
+            output.writeInt(entries.size());
+            for (CameraCapabilities entry : entries) {
+                entry.writeTo(output);
+            }
+            output.close();
+            output = null;
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write camera capability cache", e);
+            temp.delete();
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    private static String key(String api, String cameraId) {
+        return api + ":" + cameraId;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignored
+            }
+        }
+    }
+}
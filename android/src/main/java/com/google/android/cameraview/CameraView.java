@@ -40,10 +40,16 @@ import android.graphics.SurfaceTexture;
 
 import com.facebook.react.bridge.ReadableMap;
 
+import org.reactnative.camera.utils.FrameBufferPool;
+import org.reactnative.camera.utils.FrameRecorder;
+
+import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
@@ -83,6 +89,9 @@ public class CameraView extends FrameLayout {
     public @interface Flash {
     }
 
+    // how long cacheCamera1Capabilities waits for the cache file before opening the camera
+    private static final long CAPABILITY_CACHE_WAIT_MILLIS = 500;
+
     CameraViewImpl mImpl;
 
     private final CallbackBridge mCallbacks;
@@ -96,6 +105,9 @@ public class CameraView extends FrameLayout {
     protected HandlerThread mBgThread;
     protected Handler mBgHandler;
 
+    // dumps the frames and pictures passing through the callbacks, see startFrameRecording
+    private volatile FrameRecorder mFrameRecorder;
+
 
     public CameraView(Context context, boolean fallbackToOldApi) {
         this(context, null, fallbackToOldApi);
@@ -105,6 +117,36 @@ public class CameraView extends FrameLayout {
         this(context, attrs, 0, fallbackToOldApi);
     }
 
+    /**
+     * Starts loading the {@link CameraCapabilityCache} in the background, and on Lollipop and
+     * later collects the capabilities of cameras it does not know yet without opening them. Call
+     * early (e.g. at module init) so the first camera to open already finds them cached.
+     */
+    public static void preloadCapabilities(Context context) {
+        final Context appContext = context.getApplicationContext();
+        CameraCapabilityCache.getInstance().load(appContext.getCacheDir(), Build.FINGERPRINT,
+                new CameraCapabilityCache.Collector() {
+                    @Override
+                    public List<CameraCapabilities> collect(CameraCapabilityCache cache) {
+                        if (Build.VERSION.SDK_INT < 21) {
+                            return null;
+                        }
+                        return Camera2.collectCapabilities(appContext, cache);
+                    }
+                });
+    }
+
+    /**
+     * Puts the Camera1 capabilities of the camera with {@code cameraId}, or of the first one facing
+     * {@code facing} if the id is {@code null}, into the {@link CameraCapabilityCache}. If they are
+     * not cached yet the camera is opened briefly, so call it on resume before another Camera1
+     * client (e.g. a scanner preview) opens the camera. Waits a little for the cache file first.
+     */
+    public static void cacheCamera1Capabilities(String cameraId, int facing) {
+        CameraCapabilityCache.getInstance().awaitLoaded(CAPABILITY_CACHE_WAIT_MILLIS);
+        Camera1.cacheCapabilities(cameraId, facing);
+    }
+
     @SuppressWarnings("WrongConstant")
     public CameraView(Context context, AttributeSet attrs, int defStyleAttr, boolean fallbackToOldApi) {
         super(context, attrs, defStyleAttr);
@@ -257,6 +299,12 @@ public class CameraView extends FrameLayout {
         state.zoom = getZoom();
         state.whiteBalance = getWhiteBalance();
         state.scanning = getScanning();
+        state.usingFrameBufferPool = getUsingFrameBufferPool();
+        state.analysisSize = getAnalysisSize();
+        state.analysisMaxImages = getAnalysisMaxImages();
+        state.analysisKeepLatest = getAnalysisKeepLatest();
+        state.analysisThreadPriority = getAnalysisThreadPriority();
+        state.zeroShutterLag = getZeroShutterLag();
         state.pictureSize = getPictureSize();
         return state;
     }
@@ -278,6 +326,12 @@ public class CameraView extends FrameLayout {
         setFocusDepth(ss.focusDepth);
         setZoom(ss.zoom);
         setWhiteBalance(ss.whiteBalance);
+        setUsingFrameBufferPool(ss.usingFrameBufferPool);
+        setAnalysisSize(ss.analysisSize);
+        setAnalysisMaxImages(ss.analysisMaxImages);
+        setAnalysisKeepLatest(ss.analysisKeepLatest);
+        setAnalysisThreadPriority(ss.analysisThreadPriority);
+        setZeroShutterLag(ss.zeroShutterLag);
         setScanning(ss.scanning);
         setPictureSize(ss.pictureSize);
     }
@@ -314,6 +368,59 @@ public class CameraView extends FrameLayout {
         start();
     }
 
+    /**
+     * Replaces the camera with a playback of a recording made by {@link #startFrameRecording},
+     * for load testing the frame pipeline without camera hardware. Pass {@code null} to go back
+     * to the device camera.
+     *
+     * @param fps Frames per second to replay at, or 0 for as fast as the consumers allow.
+     */
+    public void setReplaySource(File recordingDirectory, float fps) {
+        boolean wasOpened = isCameraOpened();
+        Parcelable state = onSaveInstanceState();
+        if (wasOpened) {
+            stop();
+        }
+        if (recordingDirectory != null) {
+            mImpl = new ReplayCameraViewImpl(mCallbacks, mImpl.mPreview, mBgHandler, recordingDirectory, fps);
+        } else if (mImpl instanceof ReplayCameraViewImpl) {
+            mImpl = new Camera1(mCallbacks, mImpl.mPreview, mBgHandler);
+        } else {
+            return;
+        }
+        onRestoreInstanceState(state);
+        if (wasOpened) {
+            start();
+        }
+    }
+
+    /**
+     * Starts dumping preview frames and pictures into {@code directory}, in the format read by
+     * {@link #setReplaySource}. Frames are dropped rather than slowing the camera down when the
+     * storage cannot keep up.
+     *
+     * @param maxFrames Frames to record, or 0 for no limit.
+     */
+    public void startFrameRecording(File directory, int maxFrames) throws IOException {
+        stopFrameRecording();
+        mFrameRecorder = new FrameRecorder(directory, maxFrames);
+    }
+
+    /**
+     * Finishes the recording started by {@link #startFrameRecording}.
+     *
+     * @return Number of frames recorded.
+     */
+    public int stopFrameRecording() throws IOException {
+        FrameRecorder recorder = mFrameRecorder;
+        if (recorder == null) {
+            return 0;
+        }
+        mFrameRecorder = null;
+        recorder.close();
+        return recorder.getRecordedFrames();
+    }
+
     /**
      * Open a camera device and start showing camera preview. This is typically called from
      * {@link Activity#onResume()}.
@@ -589,6 +696,96 @@ public class CameraView extends FrameLayout {
 
     public boolean getScanning() { return mImpl.getScanning(); }
 
+    /**
+     * Have Camera1 write preview frames into recycled buffers instead of allocating a new
+     * array per frame. Consumers that use a frame after
+     * {@link Callback#onFramePreview(CameraView, byte[], int, int, int)} returns must
+     * {@link FrameBufferPool#retain(byte[])} it and release it when done.
+     */
+    public void setUsingFrameBufferPool(boolean usingFrameBufferPool) {
+        mImpl.setUsingFrameBufferPool(usingFrameBufferPool);
+    }
+
+    public boolean getUsingFrameBufferPool() { return mImpl.getUsingFrameBufferPool(); }
+
+    public FrameBufferPool getFrameBufferPool() {
+        return mImpl.getFrameBufferPool();
+    }
+
+    /**
+     * Sets the resolution of the frames delivered while scanning, independently of the preview.
+     * The smallest supported size covering {@code size} is used; {@code null} uses the largest
+     * preview size. Only supported by Camera2, Camera1 frames always come at the preview size.
+     */
+    public void setAnalysisSize(Size size) {
+        mImpl.setAnalysisSize(size);
+    }
+
+    public Size getAnalysisSize() {
+        return mImpl.getAnalysisSize();
+    }
+
+    /**
+     * Sets how many scan frames may be in flight (queued or retained by consumers) before the
+     * camera has to wait. Only supported by Camera2.
+     */
+    public void setAnalysisMaxImages(int maxImages) {
+        mImpl.setAnalysisMaxImages(maxImages);
+    }
+
+    public int getAnalysisMaxImages() {
+        return mImpl.getAnalysisMaxImages();
+    }
+
+    /**
+     * When {@code true} (default) only the newest scan frame is handed out and older queued
+     * frames are dropped; when {@code false} every frame is delivered in order.
+     */
+    public void setAnalysisKeepLatest(boolean keepLatest) {
+        mImpl.setAnalysisKeepLatest(keepLatest);
+    }
+
+    public boolean getAnalysisKeepLatest() {
+        return mImpl.getAnalysisKeepLatest();
+    }
+
+    /**
+     * Sets the {@link android.os.Process} priority of the thread that acquires scan frames.
+     * Only supported by Camera2, Camera1 delivers frames on the camera handler thread.
+     */
+    public void setAnalysisThreadPriority(int priority) {
+        mImpl.setAnalysisThreadPriority(priority);
+    }
+
+    public int getAnalysisThreadPriority() {
+        return mImpl.getAnalysisThreadPriority();
+    }
+
+    /**
+     * Keeps a few of the most recent preview frames and resolves {@link #takePicture} from the
+     * one closest to the call, encoded in the background, instead of starting a still capture.
+     * Pictures have the preview (Camera1) or analysis (Camera2) resolution and no Exif data. Falls
+     * back to a regular capture if there is no recent frame.
+     */
+    public void setZeroShutterLag(boolean zeroShutterLag) {
+        mImpl.setZeroShutterLag(zeroShutterLag);
+    }
+
+    public boolean getZeroShutterLag() {
+        return mImpl.getZeroShutterLag();
+    }
+
+    /**
+     * @return How often and how long each frame and picture callback ran, and on which thread.
+     */
+    public Map<String, CallbackStats> getCallbackStats() {
+        return mImpl.getCallbackStats();
+    }
+
+    public void resetCallbackStats() {
+        mImpl.resetCallbackStats();
+    }
+
     /**
      * Take a picture. The result will be returned to
      * {@link Callback#onPictureTaken(CameraView, byte[], int)}.
@@ -669,6 +866,10 @@ public class CameraView extends FrameLayout {
 
         @Override
         public void onPictureTaken(byte[] data, int deviceOrientation) {
+            FrameRecorder recorder = mFrameRecorder;
+            if (recorder != null) {
+                recorder.onPicture(data);
+            }
             for (Callback callback : mCallbacks) {
                 callback.onPictureTaken(CameraView.this, data, deviceOrientation);
             }
@@ -697,6 +898,10 @@ public class CameraView extends FrameLayout {
 
         @Override
         public void onFramePreview(byte[] data, int width, int height, int orientation) {
+            FrameRecorder recorder = mFrameRecorder;
+            if (recorder != null) {
+                recorder.onFrame(data, width, height, orientation);
+            }
             for (Callback callback : mCallbacks) {
                 callback.onFramePreview(CameraView.this, data, width, height, orientation);
             }
@@ -738,6 +943,18 @@ public class CameraView extends FrameLayout {
 
         boolean scanning;
 
+        boolean usingFrameBufferPool;
+
+        Size analysisSize;
+
+        int analysisMaxImages;
+
+        boolean analysisKeepLatest;
+
+        int analysisThreadPriority;
+
+        boolean zeroShutterLag;
+
         Size pictureSize;
 
         @SuppressWarnings("WrongConstant")
@@ -753,6 +970,12 @@ public class CameraView extends FrameLayout {
             zoom = source.readFloat();
             whiteBalance = source.readInt();
             scanning = source.readByte() != 0;
+            usingFrameBufferPool = source.readByte() != 0;
+            analysisSize = source.readParcelable(loader);
+            analysisMaxImages = source.readInt();
+            analysisKeepLatest = source.readByte() != 0;
+            analysisThreadPriority = source.readInt();
+            zeroShutterLag = source.readByte() != 0;
             pictureSize = source.readParcelable(loader);
         }
 
@@ -773,6 +996,12 @@ public class CameraView extends FrameLayout {
             out.writeFloat(zoom);
             out.writeInt(whiteBalance);
             out.writeByte((byte) (scanning ? 1 : 0));
+            out.writeByte((byte) (usingFrameBufferPool ? 1 : 0));
+            out.writeParcelable(analysisSize, flags);
+            out.writeInt(analysisMaxImages);
+            out.writeByte((byte) (analysisKeepLatest ? 1 : 0));
+            out.writeInt(analysisThreadPriority);
+            out.writeByte((byte) (zeroShutterLag ? 1 : 0));
             out.writeParcelable(pictureSize, flags);
         }
 
@@ -23,7 +23,10 @@ import android.os.Handler;
 
 import com.facebook.react.bridge.ReadableMap;
 
+import org.reactnative.camera.utils.FrameBufferPool;
+
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
@@ -31,6 +34,8 @@ import java.util.SortedSet;
 
 abstract class CameraViewImpl {
 
+    private static final int MAX_FRAME_BUFFERS = 8;
+
     protected final Callback mCallback;
     protected final PreviewImpl mPreview;
 
@@ -41,6 +46,10 @@ abstract class CameraViewImpl {
     // by itself.
     protected final Handler mBgHandler;
 
+    // Buffers for preview frames handed to onFramePreview. Consumers that keep a frame
+    // past the callback retain it here and release it once done.
+    protected final FrameBufferPool mFrameBufferPool = new FrameBufferPool(MAX_FRAME_BUFFERS);
+
     CameraViewImpl(Callback callback, PreviewImpl preview, Handler bgHandler) {
         mCallback = callback;
         mPreview = preview;
@@ -99,6 +108,25 @@ abstract class CameraViewImpl {
 
     abstract void takePicture(ReadableMap options);
 
+    /**
+     * @return The {@link Constants} orientation reported with a picture taken while the device
+     *         was rotated by {@code rotation} degrees.
+     */
+    int displayOrientationToOrientationEnum(int rotation) {
+        switch (rotation) {
+            case 0:
+                return Constants.ORIENTATION_UP;
+            case 90:
+                return Constants.ORIENTATION_RIGHT;
+            case 180:
+                return Constants.ORIENTATION_DOWN;
+            case 270:
+                return Constants.ORIENTATION_LEFT;
+            default:
+                return 1;
+        }
+    }
+
     abstract boolean record(String path, int maxDuration, int maxFileSize,
                             boolean recordAudio, CamcorderProfile profile, int orientation);
 
@@ -128,6 +156,61 @@ abstract class CameraViewImpl {
 
     abstract boolean getScanning();
 
+    /**
+     * @param size Smallest size the analysis (scan) stream should cover, or {@code null} to use
+     *             the largest preview size.
+     */
+    abstract void setAnalysisSize(Size size);
+
+    abstract Size getAnalysisSize();
+
+    abstract void setAnalysisMaxImages(int maxImages);
+
+    abstract int getAnalysisMaxImages();
+
+    /**
+     * @param keepLatest {@code true} to always hand out the newest analysis frame and drop older
+     *                   queued ones, {@code false} to deliver every frame in order.
+     */
+    abstract void setAnalysisKeepLatest(boolean keepLatest);
+
+    abstract boolean getAnalysisKeepLatest();
+
+    /**
+     * @param priority Linux thread priority (see {@link android.os.Process}) of the thread that
+     *                 acquires analysis frames.
+     */
+    abstract void setAnalysisThreadPriority(int priority);
+
+    abstract int getAnalysisThreadPriority();
+
+    /**
+     * @return Timing of the frame and picture callbacks, keyed by callback name.
+     */
+    abstract Map<String, CallbackStats> getCallbackStats();
+
+    abstract void resetCallbackStats();
+
+    abstract void setUsingFrameBufferPool(boolean usingFrameBufferPool);
+
+    abstract boolean getUsingFrameBufferPool();
+
+    /**
+     * @param zeroShutterLag {@code true} to keep the most recent preview frames and take pictures
+     *                       from them instead of starting a still capture.
+     */
+    abstract void setZeroShutterLag(boolean zeroShutterLag);
+
+    abstract boolean getZeroShutterLag();
+
+    static int getJpegQuality(ReadableMap options) {
+        return options.hasKey("quality") ? (int) (options.getDouble("quality") * 100) : 95;
+    }
+
+    FrameBufferPool getFrameBufferPool() {
+        return mFrameBufferPool;
+    }
+
     abstract public void resumePreview();
 
     abstract public void pausePreview();
@@ -20,6 +20,11 @@ public interface Constants {
 
     AspectRatio DEFAULT_ASPECT_RATIO = AspectRatio.of(4, 3);
 
+    int DEFAULT_ANALYSIS_MAX_IMAGES = 2;
+
+    // android.os.Process.THREAD_PRIORITY_DEFAULT
+    int DEFAULT_ANALYSIS_THREAD_PRIORITY = 0;
+
     int FACING_BACK = 0;
     int FACING_FRONT = 1;
 
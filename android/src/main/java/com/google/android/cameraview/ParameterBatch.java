@@ -0,0 +1,119 @@
+package com.google.android.cameraview;
+
+/**
+ * Applies Camera1 parameter changes with as few setParameters calls as possible.
+ *
+ * Prop changes coming from JS together are {@link #schedule() scheduled} and applied with one
+ * call once the batch is over. A call is skipped entirely when the camera already has exactly the
+ * parameters to apply; they are compared in their flattened form, which covers every setting
+ * including vendor keys. setParameters may glitch the preview on some devices, so skipping it
+ * matters beyond the time it takes.
+ *
+ * Every method has to be called while holding the lock passed to the constructor, which the
+ * scheduled apply takes as well.
+ */
+class ParameterBatch {
+
+    interface Target {
+        /**
+         * @return The parameters to apply, flattened, or {@code null} if there is no camera.
+         */
+        String flatten();
+
+        /**
+         * Hands the parameters to the camera.
+         *
+         * @return {@code false} if the camera rejected them.
+         */
+        boolean apply();
+    }
+
+    interface Scheduler {
+        void postDelayed(Runnable runnable, long delayMillis);
+
+        void removeCallbacks(Runnable runnable);
+    }
+
+    private final Object mLock;
+    private final Target mTarget;
+    private final Scheduler mScheduler;
+    private final long mDelayMillis;
+
+    // the parameters last accepted by the camera, flattened; null if unknown
+    private String mApplied;
+
+    private boolean mScheduled;
+
+    private final Runnable mApplyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (mLock) {
+                mScheduled = false;
+                apply(false);
+            }
+        }
+    };
+
+    ParameterBatch(Object lock, Target target, Scheduler scheduler, long delayMillis) {
+        mLock = lock;
+        mTarget = target;
+        mScheduler = scheduler;
+        mDelayMillis = delayMillis;
+    }
+
+    /**
+     * The camera was opened with these parameters.
+     */
+    void reset(String applied) {
+        cancel();
+        mApplied = applied;
+    }
+
+    /**
+     * Parameters were applied without this batch, so the next apply cannot be skipped.
+     */
+    void invalidate() {
+        mApplied = null;
+    }
+
+    /**
+     * Applies the parameters once the current batch of changes is over.
+     */
+    void schedule() {
+        if (mScheduled) {
+            return;
+        }
+        mScheduled = true;
+        mScheduler.postDelayed(mApplyRunnable, mDelayMillis);
+    }
+
+    /**
+     * Applies the parameters right away, including scheduled changes, unless the camera already
+     * has exactly these parameters.
+     *
+     * @param force Apply even if nothing changed, e.g. after the media recorder touched them.
+     */
+    void apply(boolean force) {
+        cancel();
+        String flattened = mTarget.flatten();
+        if (flattened == null || !force && flattened.equals(mApplied)) {
+            return;
+        }
+        // some drivers apply part of rejected parameters
+        mApplied = mTarget.apply() ? flattened : null;
+    }
+
+    /**
+     * Drops the scheduled apply, if any.
+     */
+    void cancel() {
+        if (mScheduled) {
+            mScheduler.removeCallbacks(mApplyRunnable);
+            mScheduled = false;
+        }
+    }
+
+    boolean isScheduled() {
+        return mScheduled;
+    }
+}
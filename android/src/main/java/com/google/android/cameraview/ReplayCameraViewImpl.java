@@ -0,0 +1,447 @@
+package com.google.android.cameraview;
+
+import android.graphics.SurfaceTexture;
+import android.media.CamcorderProfile;
+import android.os.Handler;
+import android.util.Log;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import org.reactnative.camera.utils.FrameRecording;
+import org.reactnative.camera.utils.FrameReplayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Camera without hardware: plays back a {@link FrameRecording} (see
+ * {@link org.reactnative.camera.utils.FrameRecorder}) through the same {@link Callback} as
+ * {@link Camera1}, so the frame analysis pipeline can be load tested on any machine.
+ *
+ * The timing, looping and dropping of frames is done by a {@link FrameReplayer}; drops show up in
+ * {@link #getCallbackStats()}. A rate of 0 delivers frames as fast as the consumers accept them,
+ * to measure the throughput of the pipeline itself. {@link #takePicture(ReadableMap)} delivers
+ * the recorded pictures in turn.
+ */
+class ReplayCameraViewImpl extends CameraViewImpl {
+
+    private static final String TAG = "ReplayCamera";
+
+    private static final String CAMERA_ID = "replay";
+
+    private final File mRecordingDirectory;
+
+    private final float mFps;
+
+    private final CallbackStats mPreviewCallbackStats = new CallbackStats("preview");
+
+    private final CallbackStats mPictureCallbackStats = new CallbackStats("picture");
+
+    private volatile FrameReplayer mReplayer;
+
+    private volatile boolean mPreviewPaused;
+
+    private Size mFrameSize = new Size(0, 0);
+
+    private int mFacing = Constants.FACING_BACK;
+
+    private AspectRatio mAspectRatio = Constants.DEFAULT_ASPECT_RATIO;
+
+    private Size mPictureSize;
+
+    private boolean mAutoFocus;
+
+    private int mFlash;
+
+    private float mExposure;
+
+    private float mFocusDepth;
+
+    private float mZoom;
+
+    private int mWhiteBalance;
+
+    private boolean mIsScanning;
+
+    private Size mAnalysisSize;
+
+    private int mAnalysisMaxImages = Constants.DEFAULT_ANALYSIS_MAX_IMAGES;
+
+    private boolean mAnalysisKeepLatest = true;
+
+    private int mAnalysisThreadPriority = Constants.DEFAULT_ANALYSIS_THREAD_PRIORITY;
+
+    private boolean mUsingFrameBufferPool;
+
+    private boolean mZeroShutterLag;
+
+    private int mDeviceOrientation;
+
+    /**
+     * @param fps Frames per second to replay at, or 0 for as fast as possible.
+     */
+    ReplayCameraViewImpl(Callback callback, PreviewImpl preview, Handler bgHandler,
+                         File recordingDirectory, float fps) {
+        super(callback, preview, bgHandler);
+        mRecordingDirectory = recordingDirectory;
+        mFps = Math.max(0, fps);
+    }
+
+    @Override
+    boolean start() {
+        if (mReplayer != null) {
+            return true;
+        }
+        final FrameRecording.Reader reader;
+        try {
+            reader = new FrameRecording.Reader(mRecordingDirectory);
+        } catch (IOException e) {
+            Log.e(TAG, "start: failed to open recording " + mRecordingDirectory, e);
+            mCallback.onMountError();
+            return true;
+        }
+        mFrameSize = new Size(reader.getWidth(), reader.getHeight());
+        if (mFrameSize.getWidth() > 0 && mFrameSize.getHeight() > 0) {
+            mAspectRatio = AspectRatio.of(mFrameSize.getWidth(), mFrameSize.getHeight());
+        }
+
+        FrameReplayer replayer = new FrameReplayer(reader, mFps, new FrameReplayer.Listener() {
+            @Override
+            public boolean isConsumingFrames() {
+                return mIsScanning && !mPreviewPaused;
+            }
+
+            @Override
+            public void onFrame(FrameRecording.Frame frame) {
+                if (mIsScanning) {
+                    long start = System.nanoTime();
+                    mCallback.onFramePreview(frame.data, frame.width, frame.height, mDeviceOrientation);
+                    mPreviewCallbackStats.record(start);
+                }
+            }
+
+            @Override
+            public void onFrameDropped() {
+                mPreviewCallbackStats.recordDropped();
+            }
+
+            @Override
+            public void onPicture(byte[] jpeg) {
+                long start = System.nanoTime();
+                mCallback.onPictureTaken(jpeg, Constants.ORIENTATION_UP);
+                mPictureCallbackStats.record(start);
+            }
+
+            @Override
+            public void onError(IOException e) {
+                Log.e(TAG, "replay: failed to read recording", e);
+            }
+        });
+        replayer.setFrameBufferPool(mUsingFrameBufferPool ? mFrameBufferPool : null);
+        mReplayer = replayer;
+        replayer.start();
+        mCallback.onCameraOpened();
+        return true;
+    }
+
+    @Override
+    void stop() {
+        FrameReplayer replayer = mReplayer;
+        if (replayer == null) {
+            return;
+        }
+        mReplayer = null;
+        replayer.stop();
+        mCallback.onCameraClosed();
+    }
+
+    @Override
+    boolean isCameraOpened() {
+        return mReplayer != null;
+    }
+
+    @Override
+    void setFacing(int facing) {
+        mFacing = facing;
+    }
+
+    @Override
+    int getFacing() {
+        return mFacing;
+    }
+
+    @Override
+    void setCameraId(String id) {
+        // there is only one replayed camera
+    }
+
+    @Override
+    String getCameraId() {
+        return CAMERA_ID;
+    }
+
+    @Override
+    Set<AspectRatio> getSupportedAspectRatios() {
+        return Collections.singleton(mAspectRatio);
+    }
+
+    @Override
+    List<Properties> getCameraIds() {
+        List<Properties> ids = new ArrayList<>();
+        Properties p = new Properties();
+        p.put("id", CAMERA_ID);
+        p.put("type", String.valueOf(mFacing));
+        ids.add(p);
+        return ids;
+    }
+
+    @Override
+    SortedSet<Size> getAvailablePictureSizes(AspectRatio ratio) {
+        SortedSet<Size> sizes = new TreeSet<>();
+        sizes.add(mFrameSize);
+        return sizes;
+    }
+
+    @Override
+    void setPictureSize(Size size) {
+        mPictureSize = size;
+    }
+
+    @Override
+    Size getPictureSize() {
+        return mPictureSize;
+    }
+
+    @Override
+    boolean setAspectRatio(AspectRatio ratio) {
+        // the recording decides the aspect ratio
+        return false;
+    }
+
+    @Override
+    AspectRatio getAspectRatio() {
+        return mAspectRatio;
+    }
+
+    @Override
+    void setAutoFocus(boolean autoFocus) {
+        mAutoFocus = autoFocus;
+    }
+
+    @Override
+    boolean getAutoFocus() {
+        return mAutoFocus;
+    }
+
+    @Override
+    void setFlash(int flash) {
+        mFlash = flash;
+    }
+
+    @Override
+    int getFlash() {
+        return mFlash;
+    }
+
+    @Override
+    void setExposureCompensation(float exposure) {
+        mExposure = exposure;
+    }
+
+    @Override
+    float getExposureCompensation() {
+        return mExposure;
+    }
+
+    @Override
+    void takePicture(ReadableMap options) {
+        FrameReplayer replayer = mReplayer;
+        if (replayer == null) {
+            throw new IllegalStateException(
+                    "Camera is not ready. Call start() before takePicture().");
+        }
+        if (!replayer.hasPictures()) {
+            Log.w(TAG, "takePicture: the recording has no pictures");
+            return;
+        }
+        replayer.requestPicture();
+    }
+
+    @Override
+    boolean record(String path, int maxDuration, int maxFileSize, boolean recordAudio,
+                   CamcorderProfile profile, int orientation) {
+        // video is not part of a recording
+        return false;
+    }
+
+    @Override
+    void stopRecording() {
+    }
+
+    @Override
+    int getCameraOrientation() {
+        return 0;
+    }
+
+    @Override
+    void setDisplayOrientation(int displayOrientation) {
+    }
+
+    @Override
+    void setDeviceOrientation(int deviceOrientation) {
+        mDeviceOrientation = deviceOrientation;
+    }
+
+    @Override
+    void setFocusArea(float x, float y) {
+    }
+
+    @Override
+    void setFocusDepth(float value) {
+        mFocusDepth = value;
+    }
+
+    @Override
+    float getFocusDepth() {
+        return mFocusDepth;
+    }
+
+    @Override
+    void setZoom(float zoom) {
+        mZoom = zoom;
+    }
+
+    @Override
+    float getZoom() {
+        return mZoom;
+    }
+
+    @Override
+    void setWhiteBalance(int whiteBalance) {
+        mWhiteBalance = whiteBalance;
+    }
+
+    @Override
+    int getWhiteBalance() {
+        return mWhiteBalance;
+    }
+
+    @Override
+    void setScanning(boolean isScanning) {
+        mIsScanning = isScanning;
+    }
+
+    @Override
+    boolean getScanning() {
+        return mIsScanning;
+    }
+
+    @Override
+    void setAnalysisSize(Size size) {
+        // frames are replayed at the recorded size
+        mAnalysisSize = size;
+    }
+
+    @Override
+    Size getAnalysisSize() {
+        return mAnalysisSize;
+    }
+
+    @Override
+    void setAnalysisMaxImages(int maxImages) {
+        mAnalysisMaxImages = maxImages;
+    }
+
+    @Override
+    int getAnalysisMaxImages() {
+        return mAnalysisMaxImages;
+    }
+
+    @Override
+    void setAnalysisKeepLatest(boolean keepLatest) {
+        mAnalysisKeepLatest = keepLatest;
+    }
+
+    @Override
+    boolean getAnalysisKeepLatest() {
+        return mAnalysisKeepLatest;
+    }
+
+    @Override
+    void setAnalysisThreadPriority(int priority) {
+        // not supported, frames are replayed on a normal priority thread
+        mAnalysisThreadPriority = priority;
+    }
+
+    @Override
+    int getAnalysisThreadPriority() {
+        return mAnalysisThreadPriority;
+    }
+
+    @Override
+    Map<String, CallbackStats> getCallbackStats() {
+        Map<String, CallbackStats> stats = new LinkedHashMap<>();
+        stats.put(mPreviewCallbackStats.getName(), mPreviewCallbackStats.snapshot());
+        stats.put(mPictureCallbackStats.getName(), mPictureCallbackStats.snapshot());
+        return stats;
+    }
+
+    @Override
+    void resetCallbackStats() {
+        mPreviewCallbackStats.reset();
+        mPictureCallbackStats.reset();
+    }
+
+    @Override
+    void setUsingFrameBufferPool(boolean usingFrameBufferPool) {
+        mUsingFrameBufferPool = usingFrameBufferPool;
+        FrameReplayer replayer = mReplayer;
+        if (replayer != null) {
+            replayer.setFrameBufferPool(usingFrameBufferPool ? mFrameBufferPool : null);
+        }
+    }
+
+    @Override
+    boolean getUsingFrameBufferPool() {
+        return mUsingFrameBufferPool;
+    }
+
+    @Override
+    void setZeroShutterLag(boolean zeroShutterLag) {
+        // recorded pictures are replayed as they are
+        mZeroShutterLag = zeroShutterLag;
+    }
+
+    @Override
+    boolean getZeroShutterLag() {
+        return mZeroShutterLag;
+    }
+
+    @Override
+    public void resumePreview() {
+        mPreviewPaused = false;
+    }
+
+    @Override
+    public void pausePreview() {
+        mPreviewPaused = true;
+    }
+
+    @Override
+    public void setPreviewTexture(SurfaceTexture surfaceTexture) {
+    }
+
+    @Override
+    public Size getPreviewSize() {
+        return mFrameSize;
+    }
+}
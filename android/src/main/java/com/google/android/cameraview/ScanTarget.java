@@ -0,0 +1,54 @@
+package com.google.android.cameraview;
+
+/**
+ * Tracks whether the scan reader is a target of the repeating preview request.
+ *
+ * The scan reader is an output of every preview session, so scanning is toggled by adding it to
+ * or removing it from the targets of the repeating request, which is much cheaper than creating
+ * a new session. Sessions without the scan output (recording) ignore the toggle; the next preview
+ * session picks it up when it is created.
+ */
+class ScanTarget {
+
+    static final int UNCHANGED = 0;
+    static final int ADD = 1;
+    static final int REMOVE = 2;
+
+    private boolean mSessionHasOutput;
+    private boolean mTargeted;
+
+    /**
+     * A preview session was created with the scan reader as output, and as target of the
+     * repeating request if {@code targeted}.
+     */
+    void onPreviewSession(boolean targeted) {
+        mSessionHasOutput = true;
+        mTargeted = targeted;
+    }
+
+    /**
+     * A session without the scan output replaced the preview session.
+     */
+    void onSessionWithoutOutput() {
+        mSessionHasOutput = false;
+        mTargeted = false;
+    }
+
+    /**
+     * @param needed Whether the scan reader has to receive frames.
+     * @return How the targets of the repeating request have to change, {@link #ADD},
+     *         {@link #REMOVE} or {@link #UNCHANGED}. Once a change is returned it is assumed to
+     *         be made.
+     */
+    int update(boolean needed) {
+        if (!mSessionHasOutput || mTargeted == needed) {
+            return UNCHANGED;
+        }
+        mTargeted = needed;
+        return needed ? ADD : REMOVE;
+    }
+
+    boolean isTargeted() {
+        return mTargeted;
+    }
+}
@@ -0,0 +1,159 @@
+package com.google.android.cameraview;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+import android.util.Log;
+
+import org.reactnative.camera.utils.JpegLosslessRotation;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps copies of the most recent preview frames for zero shutter lag pictures: instead of
+ * starting a still capture after the tap, the frame closest to the tap is encoded to JPEG.
+ *
+ * Frames are stamped with {@link System#nanoTime()} when they arrive, since Camera1 has no sensor
+ * timestamps and Camera2 timestamps are not guaranteed to share a time base with it.
+ */
+class ZslRingBuffer {
+
+    private static final String TAG = "ZslRingBuffer";
+
+    // older frames are considered stale, e.g. after the preview was paused
+    private static final long MAX_FRAME_AGE_NANOS = 500 * 1000 * 1000L;
+
+    private static final ExecutorService sEncoder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RNCamera-Zsl-Encoder");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    interface Callback {
+        /**
+         * Called on the encoder thread.
+         *
+         * @param jpeg Upright JPEG without Exif data, or {@code null} if encoding failed.
+         */
+        void onPictureEncoded(byte[] jpeg);
+    }
+
+    static class Frame {
+        byte[] data;
+        int width;
+        int height;
+        long timestampNanos;
+    }
+
+    private final Frame[] mFrames;
+
+    private int mNext;
+
+    ZslRingBuffer(int capacity) {
+        mFrames = new Frame[capacity];
+    }
+
+    /**
+     * Copies an NV21 frame into the buffer, replacing the oldest one.
+     */
+    synchronized void put(byte[] nv21, int width, int height) {
+        Frame frame = obtainSlot(width * height * 3 / 2);
+        System.arraycopy(nv21, 0, frame.data, 0, frame.data.length);
+        publish(frame, width, height);
+    }
+
+    private Frame obtainSlot(int size) {
+        Frame frame = mFrames[mNext];
+        if (frame == null || frame.data.length != size) {
+            frame = new Frame();
+            frame.data = new byte[size];
+            mFrames[mNext] = frame;
+        }
+        return frame;
+    }
+
+    private void publish(Frame frame, int width, int height) {
+        frame.width = width;
+        frame.height = height;
+        frame.timestampNanos = System.nanoTime();
+        mNext = (mNext + 1) % mFrames.length;
+    }
+
+    /**
+     * Removes the frame closest to {@code timestampNanos}; the buffer allocates a new one in its
+     * place, so the caller owns the returned frame.
+     *
+     * @return {@code null} if there is no recent frame.
+     */
+    synchronized Frame take(long timestampNanos) {
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < mFrames.length; i++) {
+            Frame frame = mFrames[i];
+            if (frame == null || frame.timestampNanos == 0
+                    || timestampNanos - frame.timestampNanos > MAX_FRAME_AGE_NANOS) {
+                continue;
+            }
+            long distance = Math.abs(timestampNanos - frame.timestampNanos);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+        Frame frame = mFrames[best];
+        mFrames[best] = null;
+        return frame;
+    }
+
+    synchronized void clear() {
+        for (int i = 0; i < mFrames.length; i++) {
+            mFrames[i] = null;
+        }
+        mNext = 0;
+    }
+
+    /**
+     * Encodes a frame to JPEG in the background.
+     *
+     * @param quality  JPEG quality, 0 to 100.
+     * @param rotation Clockwise rotation that makes the frame upright, a multiple of 90.
+     */
+    static void encode(final Frame frame, final int quality, final int rotation,
+                       final Callback callback) {
+        sEncoder.execute(new Runnable() {
+            @Override
+            public void run() {
+                byte[] jpeg = null;
+                try {
+                    YuvImage image = new YuvImage(frame.data, ImageFormat.NV21, frame.width,
+                            frame.height, null);
+                    ByteArrayOutputStream output = new ByteArrayOutputStream(frame.data.length / 4);
+                    if (image.compressToJpeg(new Rect(0, 0, frame.width, frame.height), quality, output)) {
+                        jpeg = output.toByteArray();
+                    }
+                    if (jpeg != null && rotation % 360 != 0) {
+                        byte[] rotated = JpegLosslessRotation.rotate(jpeg, rotation);
+                        if (rotated != null) {
+                            jpeg = rotated;
+                        } else {
+                            Log.w(TAG, "Could not rotate zero shutter lag picture by " + rotation);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Failed to encode zero shutter lag picture", e);
+                    jpeg = null;
+                }
+                callback.onPictureEncoded(jpeg);
+            }
+        });
+    }
+}
@@ -0,0 +1,304 @@
+package com.lwansbrough.RCTCamera;
+
+import android.util.Log;
+
+import org.reactnative.camera.utils.MemoryBudget;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Post-processes captured pictures (orientation, crop, mirror, encoding and saving) on a small
+ * pool of workers instead of one thread per picture queued behind a global lock.
+ *
+ * - At most {@link #MAX_PENDING} pictures wait for processing, further captures are rejected
+ *   right away instead of holding more JPEGs in memory.
+ * - A picture starts processing once its estimated decoded size fits into a {@link MemoryBudget},
+ *   so the pictures of the front and the back camera can be processed at the same time while
+ *   full size bitmaps do not pile up.
+ * - Pictures of the same camera are processed one at a time, in the order they were taken.
+ * - Waiting pictures, including one that waits for memory, can be cancelled, e.g. when the camera
+ *   view is removed.
+ */
+class CaptureProcessingQueue {
+    private static final String TAG = "CaptureProcessingQueue";
+
+    static final int MAX_PENDING = 8;
+
+    private static final int MAX_WORKERS = 2;
+
+    // never less than one 12 MP ARGB bitmap and a transformed copy of it
+    private static final long MIN_MEMORY_BUDGET = 12L * 1000 * 1000 * 4 * 2;
+
+    private static CaptureProcessingQueue ourInstance;
+
+    /**
+     * A captured picture waiting for processing.
+     */
+    static abstract class Task implements MemoryBudget.Cancellable {
+        final int cameraType;
+        final long decodedBytes;
+        long enqueuedNanos;
+        // set by cancelPending, so a runner waiting for memory on it gives up
+        volatile boolean cancelled;
+
+        /**
+         * @param decodedBytes Memory the processing needs at its peak, see
+         *                     {@link #estimateDecodedBytes(int, int)}.
+         */
+        Task(int cameraType, long decodedBytes) {
+            this.cameraType = cameraType;
+            this.decodedBytes = decodedBytes;
+        }
+
+        /**
+         * Called on a worker thread.
+         */
+        abstract void process();
+
+        /**
+         * Called instead of {@link #process()} if the picture was cancelled before processing
+         * started.
+         */
+        abstract void cancel();
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final ExecutorService mWorkers;
+    private final MemoryBudget mBudget;
+    private final Map<Integer, ArrayDeque<Task>> mLanes = new HashMap<>();
+    private final Set<Integer> mActiveLanes = new HashSet<>();
+    private int mPending;
+    private int mRunning;
+    private long mCompleted;
+    private long mCancelled;
+    private long mRejected;
+    private long mTotalWaitNanos;
+    private long mMaxWaitNanos;
+
+    static synchronized CaptureProcessingQueue getInstance() {
+        if (ourInstance == null) {
+            long budget = Math.max(MIN_MEMORY_BUDGET, Runtime.getRuntime().maxMemory() / 4);
+            ourInstance = new CaptureProcessingQueue(MAX_WORKERS, budget);
+        }
+        return ourInstance;
+    }
+
+    CaptureProcessingQueue(int workers, long memoryBudgetBytes) {
+        mBudget = new MemoryBudget(memoryBudgetBytes);
+        final AtomicInteger count = new AtomicInteger();
+        mWorkers = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "RCTCamera-Capture-Process-" + count.incrementAndGet());
+            }
+        });
+    }
+
+    /**
+     * Peak memory of processing a picture: the decoded ARGB bitmap and a transformed copy of it.
+     */
+    static long estimateDecodedBytes(int width, int height) {
+        return (long) width * height * 4 * 2;
+    }
+
+    /**
+     * @return {@code false} if too many pictures are waiting already, the task is then dropped.
+     */
+    synchronized boolean submit(Task task) {
+        if (mPending >= MAX_PENDING) {
+            mRejected++;
+            return false;
+        }
+        task.enqueuedNanos = System.nanoTime();
+        ArrayDeque<Task> lane = mLanes.get(task.cameraType);
+        if (lane == null) {
+            lane = new ArrayDeque<>();
+            mLanes.put(task.cameraType, lane);
+        }
+        lane.add(task);
+        mPending++;
+        // one runner per camera keeps its pictures in order
+        if (mActiveLanes.add(task.cameraType)) {
+            mWorkers.execute(new LaneRunner(task.cameraType));
+        }
+        return true;
+    }
+
+    /**
+     * Cancels the pictures of a camera that did not start processing yet.
+     */
+    void cancelPending(int cameraType) {
+        List<Task> cancelled = new ArrayList<>();
+        synchronized (this) {
+            ArrayDeque<Task> lane = mLanes.get(cameraType);
+            if (lane != null) {
+                cancelled.addAll(lane);
+                lane.clear();
+            }
+            mPending -= cancelled.size();
+            mCancelled += cancelled.size();
+        }
+        if (cancelled.isEmpty()) {
+            return;
+        }
+        for (Task task : cancelled) {
+            task.cancelled = true;
+        }
+        // the head of the lane may be waiting for memory
+        mBudget.wakeUp();
+        for (Task task : cancelled) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Cancels the pictures of all cameras that did not start processing yet.
+     */
+    void cancelAllPending() {
+        List<Integer> cameraTypes;
+        synchronized (this) {
+            cameraTypes = new ArrayList<>(mLanes.keySet());
+        }
+        for (int cameraType : cameraTypes) {
+            cancelPending(cameraType);
+        }
+    }
+
+    synchronized int getPending() {
+        return mPending;
+    }
+
+    synchronized int getRunning() {
+        return mRunning;
+    }
+
+    synchronized long getCompleted() {
+        return mCompleted;
+    }
+
+    synchronized long getCancelled() {
+        return mCancelled;
+    }
+
+    synchronized long getRejected() {
+        return mRejected;
+    }
+
+    /**
+     * @return Average time from capture to the start of processing, waiting for memory included.
+     */
+    synchronized double getAverageWaitMillis() {
+        long started = mCompleted + mRunning;
+        return started == 0 ? 0 : mTotalWaitNanos / 1e6 / started;
+    }
+
+    synchronized double getMaxWaitMillis() {
+        return mMaxWaitNanos / 1e6;
+    }
+
+    MemoryBudget getMemoryBudget() {
+        return mBudget;
+    }
+
+    /**
+     * The next picture stays in its lane until it got its memory, so it can still be cancelled
+     * and is counted as pending while it waits.
+     */
+    private synchronized Task peekTask(int cameraType) {
+        ArrayDeque<Task> lane = mLanes.get(cameraType);
+        Task task = lane != null ? lane.peek() : null;
+        if (task == null) {
+            mActiveLanes.remove(cameraType);
+        }
+        return task;
+    }
+
+    /**
+     * @return {@code false} if the picture was cancelled while it waited for memory.
+     */
+    private synchronized boolean startTask(Task task) {
+        if (!removeTask(task)) {
+            return false;
+        }
+        long wait = System.nanoTime() - task.enqueuedNanos;
+        mRunning++;
+        mTotalWaitNanos += wait;
+        mMaxWaitNanos = Math.max(mMaxWaitNanos, wait);
+        return true;
+    }
+
+    private synchronized boolean removeTask(Task task) {
+        ArrayDeque<Task> lane = mLanes.get(task.cameraType);
+        if (lane == null || lane.peek() != task) {
+            return false;
+        }
+        lane.poll();
+        mPending--;
+        return true;
+    }
+
+    private synchronized void onTaskFinished() {
+        mRunning--;
+        mCompleted++;
+    }
+
+    private class LaneRunner implements Runnable {
+        private final int mCameraType;
+
+        LaneRunner(int cameraType) {
+            mCameraType = cameraType;
+        }
+
+        @Override
+        public void run() {
+            Task task;
+            while ((task = peekTask(mCameraType)) != null) {
+                try {
+                    if (!mBudget.acquire(task.decodedBytes, task)) {
+                        // cancelPending already cancelled it
+                        continue;
+                    }
+                } catch (InterruptedException e) {
+                    boolean removed;
+                    synchronized (CaptureProcessingQueue.this) {
+                        removed = removeTask(task);
+                        if (removed) {
+                            mCancelled++;
+                        }
+                    }
+                    if (removed) {
+                        task.cancel();
+                    }
+                    continue;
+                }
+                if (!startTask(task)) {
+                    // cancelPending already cancelled it
+                    mBudget.release(task.decodedBytes);
+                    continue;
+                }
+                try {
+                    task.process();
+                } catch (RuntimeException | OutOfMemoryError e) {
+                    Log.e(TAG, "Failed to process picture", e);
+                } finally {
+                    mBudget.release(task.decodedBytes);
+                    onTaskFinished();
+                }
+            }
+        }
+    }
+}
@@ -2,68 +2,114 @@ package com.lwansbrough.RCTCamera;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
-import androidx.exifinterface.media.ExifInterface;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
 import android.util.Base64;
 import android.util.Log;
 
 import com.drew.imaging.ImageMetadataReader;
 import com.drew.imaging.ImageProcessingException;
-import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.MetadataException;
-import com.drew.metadata.Tag;
 import com.drew.metadata.exif.ExifIFD0Directory;
-import com.drew.metadata.exif.ExifSubIFDDirectory;
 import com.facebook.react.bridge.ReadableMap;
 
+import org.reactnative.camera.utils.Base64StreamEncoder;
+import org.reactnative.camera.utils.BitmapPool;
+import org.reactnative.camera.utils.BitmapTransforms;
+import org.reactnative.camera.utils.ExifOrientation;
+import org.reactnative.camera.utils.JpegExifWriter;
+
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 public class MutableImage {
     private static final String TAG = "RNCamera";
 
     private final byte[] originalImageData;
+    // decoded lazily, so a crop can decode only the region it keeps
     private Bitmap currentRepresentation;
+    private int originalWidth;
+    private int originalHeight;
+    // exif orientation fixed by fixOrientation() but not yet applied to the pixels
+    private int pendingOrientation = ExifOrientation.NORMAL;
+    // mirrorImage() not yet applied to the pixels, done in the same pass as the orientation
+    private boolean pendingMirror = false;
+    private final BitmapPool bitmapPool = BitmapPool.getInstance();
+    private ExifIFD0Directory pendingOrientationDirectory;
     private Metadata originalImageMetaData;
     private boolean hasBeenReoriented = false;
 
     public MutableImage(byte[] originalImageData) {
         this.originalImageData = originalImageData;
-        this.currentRepresentation = toBitmap(originalImageData);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(originalImageData, 0, originalImageData.length, options);
+        this.originalWidth = options.outWidth;
+        this.originalHeight = options.outHeight;
     }
 
     public int getWidth() {
-        return this.currentRepresentation.getWidth();
+        if (currentRepresentation != null) {
+            return currentRepresentation.getWidth();
+        }
+        return ExifOrientation.isTransposed(pendingOrientation) ? originalHeight : originalWidth;
     }
 
     public int getHeight() {
-        return this.currentRepresentation.getHeight();
+        if (currentRepresentation != null) {
+            return currentRepresentation.getHeight();
+        }
+        return ExifOrientation.isTransposed(pendingOrientation) ? originalWidth : originalHeight;
     }
 
-    public void mirrorImage() throws ImageMutationFailedException {
-        Matrix m = new Matrix();
-
-        m.preScale(-1, 1);
+    private Bitmap bitmap() {
+        if (currentRepresentation == null) {
+            currentRepresentation = toBitmap(originalImageData);
+            applyPendingTransform();
+        }
+        return currentRepresentation;
+    }
 
-        Bitmap bitmap = Bitmap.createBitmap(
-                currentRepresentation,
-                0,
-                0,
-                getWidth(),
-                getHeight(),
-                m,
-                false
-        );
+    /**
+     * Applies the pending orientation and mirroring to the decoded pixels in one pass.
+     */
+    private void applyPendingTransform() {
+        if (pendingOrientation == ExifOrientation.NORMAL && !pendingMirror) {
+            return;
+        }
+        int rotation = ExifOrientation.getRotation(pendingOrientation);
+        boolean mirror = ExifOrientation.isMirrored(pendingOrientation) != pendingMirror;
+        currentRepresentation = BitmapTransforms.transform(currentRepresentation, rotation, mirror, 0, bitmapPool);
+        if (pendingOrientation != ExifOrientation.NORMAL) {
+            pendingOrientationDirectory.setInt(ExifIFD0Directory.TAG_ORIENTATION, 1);
+            hasBeenReoriented = true;
+        }
+        pendingOrientation = ExifOrientation.NORMAL;
+        pendingOrientationDirectory = null;
+        pendingMirror = false;
+    }
 
-        if (bitmap == null)
-            throw new ImageMutationFailedException("failed to mirror");
+    public void mirrorImage() throws ImageMutationFailedException {
+        if (currentRepresentation == null) {
+            // applied together with the orientation when the pixels are first needed
+            pendingMirror = !pendingMirror;
+            return;
+        }
+        this.currentRepresentation = BitmapTransforms.transform(currentRepresentation, 0, true, 0, bitmapPool);
+    }
 
-        this.currentRepresentation = bitmap;
+    /**
+     * Hands the pixels to the shared bitmap pool once the picture was encoded.
+     */
+    public void release() {
+        bitmapPool.put(currentRepresentation);
+        currentRepresentation = null;
     }
 
     public void fixOrientation() throws ImageMutationFailedException {
@@ -75,9 +121,13 @@ public class MutableImage {
                 return;
             } else if (exifIFD0Directory.containsTag(ExifIFD0Directory.TAG_ORIENTATION)) {
                 int exifOrientation = exifIFD0Directory.getInt(ExifIFD0Directory.TAG_ORIENTATION);
-                if(exifOrientation != 1) {
-                    rotate(exifOrientation);
-                    exifIFD0Directory.setInt(ExifIFD0Directory.TAG_ORIENTATION, 1);
+                if(exifOrientation >= 2 && exifOrientation <= 8) {
+                    // applied when the pixels are first needed, see bitmap()
+                    pendingOrientation = exifOrientation;
+                    pendingOrientationDirectory = exifIFD0Directory;
+                    if (currentRepresentation != null) {
+                        applyPendingTransform();
+                    }
                 }
             }
         } catch (ImageProcessingException | IOException | MetadataException e) {
@@ -96,141 +146,95 @@ public class MutableImage {
             targetPictureHeight = pictureHeight;
             targetPictureWidth = (int) (pictureHeight * previewRatio);
         }
+        int left = (pictureWidth - targetPictureWidth) / 2;
+        int top = (pictureHeight - targetPictureHeight) / 2;
+
+        if (currentRepresentation == null) {
+            // decode only the kept region, then orient the smaller bitmap
+            Bitmap region = decodeRegion(toSourceRect(left, top, targetPictureWidth, targetPictureHeight));
+            if (region != null) {
+                this.currentRepresentation = region;
+                applyPendingTransform();
+                return;
+            }
+        }
+
         this.currentRepresentation = Bitmap.createBitmap(
-                this.currentRepresentation,
-                (pictureWidth - targetPictureWidth) / 2,
-                (pictureHeight - targetPictureHeight) / 2,
+                bitmap(),
+                left,
+                top,
                 targetPictureWidth,
                 targetPictureHeight);
     }
 
-    //see http://www.impulseadventure.com/photo/exif-orientation.html
-    private void rotate(int exifOrientation) throws ImageMutationFailedException {
-        final Matrix bitmapMatrix = new Matrix();
-        switch (exifOrientation) {
-            case 1:
-                return;//no rotation required
-            case 2:
-                bitmapMatrix.postScale(-1, 1);
-                break;
-            case 3:
-                bitmapMatrix.postRotate(180);
-                break;
-            case 4:
-                bitmapMatrix.postRotate(180);
-                bitmapMatrix.postScale(-1, 1);
-                break;
-            case 5:
-                bitmapMatrix.postRotate(90);
-                bitmapMatrix.postScale(-1, 1);
-                break;
-            case 6:
-                bitmapMatrix.postRotate(90);
-                break;
-            case 7:
-                bitmapMatrix.postRotate(270);
-                bitmapMatrix.postScale(-1, 1);
-                break;
-            case 8:
-                bitmapMatrix.postRotate(270);
-                break;
-            default:
-                break;
-        }
-
-        Bitmap transformedBitmap = Bitmap.createBitmap(
-                currentRepresentation,
-                0,
-                0,
-                getWidth(),
-                getHeight(),
-                bitmapMatrix,
-                false
-        );
-
-        if (transformedBitmap == null)
-            throw new ImageMutationFailedException("failed to rotate");
-
-        this.currentRepresentation = transformedBitmap;
-        this.hasBeenReoriented = true;
+    /**
+     * Maps a rectangle of the oriented picture (what {@link #getWidth()} and {@link #getHeight()}
+     * describe) to the stored, not yet oriented picture.
+     */
+    private Rect toSourceRect(int x, int y, int w, int h) {
+        int[] rect = ExifOrientation.toSourceRect(pendingOrientation, pendingMirror, getWidth(), getHeight(), x, y, w, h);
+        return new Rect(rect[0], rect[1], rect[0] + rect[2], rect[1] + rect[3]);
     }
 
-    private static Bitmap toBitmap(byte[] data) {
+    private Bitmap decodeRegion(Rect rect) {
+        BitmapRegionDecoder decoder = null;
         try {
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(data);
-            Bitmap photo = BitmapFactory.decodeStream(inputStream);
-            inputStream.close();
-            return photo;
-        } catch (IOException e) {
-            throw new IllegalStateException("Will not happen", e);
+            decoder = BitmapRegionDecoder.newInstance(originalImageData, 0, originalImageData.length, false);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            bitmapPool.prepareDecode(options, rect.width(), rect.height());
+            return decoder.decodeRegion(rect, options);
+        } catch (IOException | IllegalArgumentException e) {
+            Log.w(TAG, "failed to decode region, decoding the whole picture", e);
+            return null;
+        } finally {
+            if (decoder != null) {
+                decoder.recycle();
+            }
         }
     }
 
-    public String toBase64(int jpegQualityPercent) {
-        return Base64.encodeToString(toJpeg(currentRepresentation, jpegQualityPercent), Base64.NO_WRAP);
+    private Bitmap toBitmap(byte[] data) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        bitmapPool.prepareDecode(options, originalWidth, originalHeight);
+        return bitmapPool.decode(data, options);
     }
 
-    public void writeDataToFile(File file, ReadableMap options, int jpegQualityPercent) throws IOException {
-        FileOutputStream fos = new FileOutputStream(file);
-        fos.write(toJpeg(currentRepresentation, jpegQualityPercent));
-        fos.close();
+    public String toBase64(int jpegQualityPercent) {
+        return Base64.encodeToString(toJpeg(bitmap(), jpegQualityPercent), Base64.NO_WRAP);
+    }
 
+    /**
+     * Like {@link #toBase64(int)}, but the picture is encoded to base64 while it is compressed and
+     * the text goes straight to {@code file}, so neither is held in memory.
+     */
+    public void writeBase64ToFile(File file, int jpegQualityPercent) throws IOException {
+        OutputStream output = Base64StreamEncoder.openOutputStream(file);
         try {
-            ExifInterface exif = new ExifInterface(file.getAbsolutePath());
-
-            // copy original exif data to the output exif...
-            for (Directory directory : originalImageMetaData().getDirectories()) {
-                for (Tag tag : directory.getTags()) {
-                    int tagType = tag.getTagType();
-                    Object object = directory.getObject(tagType);
-                    exif.setAttribute(tag.getTagName(), object.toString());
-                }
-            }
-
-            // Add missing exif data from a sub directory
-            ExifSubIFDDirectory directory = originalImageMetaData()
-               .getFirstDirectoryOfType(ExifSubIFDDirectory.class);
-            for (Tag tag : directory.getTags()) {
-                int tagType = tag.getTagType();
-                // As some of exif data does not follow naming of the ExifInterface the names need
-                // to be transformed into Upper camel case format.
-                String tagName = tag.getTagName().replaceAll(" ", "");
-                Object object = directory.getObject(tagType);
-                if (tagName.equals(ExifInterface.TAG_EXPOSURE_TIME)) {
-                    exif.setAttribute(tagName, convertExposureTimeToDoubleFormat(object.toString()));
-                } else {
-                    exif.setAttribute(tagName, object.toString());
-                }
-            }
-
-            writeLocationExifData(options, exif);
-
-            if(hasBeenReoriented)
-                rewriteOrientation(exif);
-
-            exif.saveAttributes();
-        } catch (ImageProcessingException  | IOException e) {
-            Log.e(TAG, "failed to save exif data", e);
+            bitmap().compress(Bitmap.CompressFormat.JPEG, jpegQualityPercent, output);
+        } finally {
+            output.close();
         }
     }
 
-    // Reformats exposure time value to match ExifInterface format. Example 1/11 -> 0.0909
-    // Even the value is formatted as double it is returned as a String because exif.setAttribute requires it.
-    private String convertExposureTimeToDoubleFormat(String exposureTime) {
-        if(!exposureTime.contains("/"))
-          return "";
+    public void writeDataToFile(File file, ReadableMap options, int jpegQualityPercent) throws IOException {
+        // applies a pending fixOrientation first, the exif data has to describe the oriented pixels
+        Bitmap pixels = bitmap();
 
-        String exposureFractions[]= exposureTime.split("/");
-        double divider = Double.parseDouble(exposureFractions[1]);
-        double exposureTimeAsDouble = 1.0f / divider;
-        return Double.toString(exposureTimeAsDouble);
-    }
+        // the original exif data is carried over in memory and written together with the picture
+        JpegExifWriter exif = JpegExifWriter.forReencoded(originalImageData, pixels.getWidth(), pixels.getHeight(), hasBeenReoriented);
+
+        writeLocationExifData(options, exif);
 
-    private void rewriteOrientation(ExifInterface exif) {
-        exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(ExifInterface.ORIENTATION_NORMAL));
+        // compressed straight into the file behind the exif segment
+        OutputStream output = exif.openOutputStream(file);
+        try {
+            pixels.compress(Bitmap.CompressFormat.JPEG, jpegQualityPercent, output);
+        } finally {
+            output.close();
+        }
     }
 
-    private void writeLocationExifData(ReadableMap options, ExifInterface exif) {
+    private void writeLocationExifData(ReadableMap options, JpegExifWriter exif) {
         if(!options.hasKey("metadata"))
             return;
 
@@ -242,15 +246,11 @@ public class MutableImage {
         if(!location.hasKey("coords"))
             return;
 
-        try {
-            ReadableMap coords = location.getMap("coords");
-            double latitude = coords.getDouble("latitude");
-            double longitude = coords.getDouble("longitude");
+        ReadableMap coords = location.getMap("coords");
+        double latitude = coords.getDouble("latitude");
+        double longitude = coords.getDouble("longitude");
 
-            GPS.writeExifData(latitude, longitude, exif);
-        } catch (IOException e) {
-            Log.e(TAG, "Couldn't write location data", e);
-        }
+        exif.setLatLong(latitude, longitude);
     }
 
     private Metadata originalImageMetaData() throws ImageProcessingException, IOException {
@@ -287,41 +287,4 @@ public class MutableImage {
             super(detailMessage);
         }
     }
-
-    private static class GPS {
-        public static void writeExifData(double latitude, double longitude, ExifInterface exif) throws IOException {
-            exif.setAttribute(ExifInterface.TAG_GPS_LATITUDE, toDegreeMinuteSecods(latitude));
-            exif.setAttribute(ExifInterface.TAG_GPS_LATITUDE_REF, latitudeRef(latitude));
-            exif.setAttribute(ExifInterface.TAG_GPS_LONGITUDE, toDegreeMinuteSecods(longitude));
-            exif.setAttribute(ExifInterface.TAG_GPS_LONGITUDE_REF, longitudeRef(longitude));
-        }
-
-        private static String latitudeRef(double latitude) {
-            return latitude < 0.0d ? "S" : "N";
-        }
-
-        private static String longitudeRef(double longitude) {
-            return longitude < 0.0d ? "W" : "E";
-        }
-
-        private static String toDegreeMinuteSecods(double latitude) {
-            latitude = Math.abs(latitude);
-            int degree = (int) latitude;
-            latitude *= 60;
-            latitude -= (degree * 60.0d);
-            int minute = (int) latitude;
-            latitude *= 60;
-            latitude -= (minute * 60.0d);
-            int second = (int) (latitude * 1000.0d);
-
-            StringBuffer sb = new StringBuffer();
-            sb.append(degree);
-            sb.append("/1,");
-            sb.append(minute);
-            sb.append("/1,");
-            sb.append(second);
-            sb.append("/1000,");
-            return sb.toString();
-        }
-    }
 }
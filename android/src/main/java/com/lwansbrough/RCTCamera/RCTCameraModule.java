@@ -10,7 +10,6 @@ import android.content.res.Configuration;
 import android.hardware.Camera;
 import android.media.*;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Environment;
 import android.provider.MediaStore;
 import android.util.Base64;
@@ -26,6 +25,10 @@ import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableNativeMap;
 
+import org.reactnative.camera.utils.Base64StreamEncoder;
+import org.reactnative.camera.utils.BitmapPool;
+import org.reactnative.camera.utils.RNFileUtils;
+
 import java.io.*;
 import java.text.SimpleDateFormat;
 import java.util.Collections;
@@ -88,6 +91,7 @@ public class RCTCameraModule extends ReactContextBaseJavaModule
         _reactContext = reactContext;
         _sensorOrientationChecker = new RCTSensorOrientationChecker(_reactContext);
         _reactContext.addLifecycleEventListener(this);
+        BitmapPool.getInstance().attach(reactContext);
     }
 
     public static ReactApplicationContext getReactContextSingleton() {
@@ -549,12 +553,28 @@ public class RCTCameraModule extends ReactContextBaseJavaModule
                 camera.stopPreview();
                 camera.startPreview();
 
-                AsyncTask.execute(new Runnable() {
+                final MutableImage mutableImage = new MutableImage(data);
+                long decodedBytes = CaptureProcessingQueue.estimateDecodedBytes(mutableImage.getWidth(), mutableImage.getHeight());
+                boolean queued = CaptureProcessingQueue.getInstance().submit(new CaptureProcessingQueue.Task(options.getInt("type"), decodedBytes) {
                     @Override
-                    public void run() {
-                        processImage(new MutableImage(data), options, promise);
+                    void process() {
+                        try {
+                            processImage(mutableImage, options, promise);
+                        } catch (RuntimeException | OutOfMemoryError e) {
+                            promise.reject("E_CAPTURE_PROCESSING_FAILED", "Failed to process the picture", e);
+                        } finally {
+                            mutableImage.release();
+                        }
+                    }
+
+                    @Override
+                    void cancel() {
+                        promise.reject("E_CAPTURE_CANCELLED", "The camera was closed before the picture was processed");
                     }
                 });
+                if (!queued) {
+                    promise.reject("E_CAPTURE_QUEUE_FULL", "Too many pictures are waiting to be processed");
+                }
 
                 mSafeToCapture = true;
             }
@@ -583,10 +603,10 @@ public class RCTCameraModule extends ReactContextBaseJavaModule
     }
 
     /**
-     * synchronized in order to prevent the user crashing the app by taking many photos and them all being processed
-     * concurrently which would blow the memory (esp on smaller devices), and slow things down.
+     * Runs on the CaptureProcessingQueue, which limits how many pictures are processed at once so
+     * that taking many photos does not blow the memory (esp on smaller devices).
      */
-    private synchronized void processImage(MutableImage mutableImage, ReadableMap options, Promise promise) {
+    private void processImage(MutableImage mutableImage, ReadableMap options, Promise promise) {
         boolean shouldFixOrientation = options.hasKey("fixOrientation") && options.getBoolean("fixOrientation");
         if(shouldFixOrientation) {
             try {
@@ -634,9 +654,20 @@ public class RCTCameraModule extends ReactContextBaseJavaModule
 
         switch (options.getInt("target")) {
             case RCT_CAMERA_CAPTURE_TARGET_MEMORY:
-                String encoded = mutableImage.toBase64(jpegQualityPercent);
                 WritableMap response = new WritableNativeMap();
-                response.putString("data", encoded);
+                if (Base64StreamEncoder.isFileRequested(options)) {
+                    // large pictures are handed over as a file instead of one huge string
+                    try {
+                        File base64File = new File(RNFileUtils.getOutputFilePath(_reactContext.getCacheDir(), Base64StreamEncoder.FILE_EXTENSION));
+                        mutableImage.writeBase64ToFile(base64File, jpegQualityPercent);
+                        response.putString("dataUri", Uri.fromFile(base64File).toString());
+                    } catch (IOException e) {
+                        promise.reject("failed to save image file", e);
+                        return;
+                    }
+                } else {
+                    response.putString("data", mutableImage.toBase64(jpegQualityPercent));
+                }
                 response.putInt("width", imgWidth);
                 response.putInt("height", imgHeight);
                 promise.resolve(response);
@@ -700,6 +731,28 @@ public class RCTCameraModule extends ReactContextBaseJavaModule
         }
     }
 
+    /**
+     * Resolves with the state of the picture post-processing queue: pictures waiting and being
+     * processed, how long they waited and how much of the memory budget is in use.
+     */
+    @ReactMethod
+    public void getCaptureQueueStats(final Promise promise) {
+        CaptureProcessingQueue queue = CaptureProcessingQueue.getInstance();
+        WritableMap stats = new WritableNativeMap();
+        stats.putInt("pending", queue.getPending());
+        stats.putInt("running", queue.getRunning());
+        stats.putInt("maxPending", CaptureProcessingQueue.MAX_PENDING);
+        stats.putDouble("completed", queue.getCompleted());
+        stats.putDouble("cancelled", queue.getCancelled());
+        stats.putDouble("rejected", queue.getRejected());
+        stats.putDouble("averageWaitMs", queue.getAverageWaitMillis());
+        stats.putDouble("maxWaitMs", queue.getMaxWaitMillis());
+        stats.putDouble("memoryUsed", queue.getMemoryBudget().getUsed());
+        stats.putDouble("memoryPeak", queue.getMemoryBudget().getPeak());
+        stats.putDouble("memoryCapacity", queue.getMemoryBudget().getCapacity());
+        promise.resolve(stats);
+    }
+
     @ReactMethod
     public void stopCapture(final Promise promise) {
         if (mRecordingPromise != null) {
@@ -836,7 +889,8 @@ public class RCTCameraModule extends ReactContextBaseJavaModule
 
     @Override
     public void onHostDestroy() {
-        // ... do nothing
+        // nobody is left to receive pictures that did not start processing yet
+        CaptureProcessingQueue.getInstance().cancelAllPending();
     }
 
     private void resolveImage(final File imageFile, final int imgWidth, final int imgHeight, final Promise promise, boolean addToMediaStore) {
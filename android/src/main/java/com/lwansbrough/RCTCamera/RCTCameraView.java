@@ -86,6 +86,10 @@ public class RCTCameraView extends ViewGroup {
         }
     }
 
+    public int getCameraType() {
+        return _viewFinder != null ? _viewFinder.getCameraType() : -1;
+    }
+
     public void setCaptureMode(final int captureMode) {
         this._captureMode = captureMode;
         if (this._viewFinder != null) {
@@ -27,6 +27,13 @@ public class RCTCameraViewManager extends ViewGroupManager<RCTCameraView> {
         return new RCTCameraView(context);
     }
 
+    @Override
+    public void onDropViewInstance(RCTCameraView view) {
+        super.onDropViewInstance(view);
+        // pictures of this camera that were not processed yet have no view to return to
+        CaptureProcessingQueue.getInstance().cancelPending(view.getCameraType());
+    }
+
     @Override
     public Map<String, Integer> getCommandsMap() {
         return MapBuilder.of(
@@ -12,8 +12,12 @@ import com.facebook.react.uimanager.NativeViewHierarchyManager;
 import com.facebook.react.uimanager.UIBlock;
 import com.facebook.react.uimanager.UIManagerModule;
 import com.google.android.cameraview.AspectRatio;
+import com.google.android.cameraview.CameraCapabilities;
+import com.google.android.cameraview.CameraView;
 import com.google.zxing.BarcodeFormat;
 import org.reactnative.barcodedetector.BarcodeFormatUtils;
+import org.reactnative.camera.utils.BarCodeDecoder;
+import org.reactnative.camera.utils.BitmapPool;
 import org.reactnative.camera.utils.ScopedContext;
 import org.reactnative.facedetector.RNFaceDetector;
 import com.google.android.cameraview.Size;
@@ -69,6 +73,10 @@ public class CameraModule extends ReactContextBaseJavaModule {
   public CameraModule(ReactApplicationContext reactContext) {
     super(reactContext);
     mScopedContext = new ScopedContext(reactContext);
+    // warm the capability cache so cameras open and report their sizes without querying them
+    CameraView.preloadCapabilities(reactContext);
+    // pooled capture bitmaps are dropped when the system runs low on memory
+    BitmapPool.getInstance().attach(reactContext);
   }
 
   public ScopedContext getScopedContext() {
@@ -91,6 +99,7 @@ public class CameraModule extends ReactContextBaseJavaModule {
         put("WhiteBalance", getWhiteBalanceConstants());
         put("VideoQuality", getVideoQualityConstants());
         put("BarCodeType", getBarCodeConstants());
+        put("BarCodeScannerPass", getBarCodeScannerPassConstants());
         put("FaceDetection", Collections.unmodifiableMap(new HashMap<String, Object>() {
           {
             put("Mode", getFaceDetectionModeConstants());
@@ -209,6 +218,18 @@ public class CameraModule extends ReactContextBaseJavaModule {
       private Map<String, Object> getBarCodeConstants() {
         return VALID_BARCODE_TYPES;
       }
+
+      private Map<String, Object> getBarCodeScannerPassConstants() {
+        return Collections.unmodifiableMap(new HashMap<String, Object>() {
+          {
+            put("normal", BarCodeDecoder.PASS_NORMAL);
+            put("rotated", BarCodeDecoder.PASS_ROTATED);
+            put("inverted", BarCodeDecoder.PASS_INVERTED);
+            put("invertedRotated", BarCodeDecoder.PASS_INVERTED_ROTATED);
+            put("all", BarCodeDecoder.ALL_PASSES);
+          }
+        });
+      }
     });
   }
 
@@ -325,29 +346,32 @@ public class CameraModule extends ReactContextBaseJavaModule {
 
   @ReactMethod
   public void getSupportedRatios(final int viewTag, final Promise promise) {
-//      final ReactApplicationContext context = getReactApplicationContext();
-//      UIManagerModule uiManager = context.getNativeModule(UIManagerModule.class);
-//      uiManager.addUIBlock(new UIBlock() {
-//          @Override
-//          public void execute(NativeViewHierarchyManager nativeViewHierarchyManager) {
-//              final RNCameraView cameraView;
-//              try {
-//                  cameraView = (RNCameraView) nativeViewHierarchyManager.resolveView(viewTag);
-//                  WritableArray result = Arguments.createArray();
-//                  if (cameraView.isCameraOpened()) {
-//                      Set<AspectRatio> ratios = cameraView.getSupportedAspectRatios();
-//                      for (AspectRatio ratio : ratios) {
-//                          result.pushString(ratio.toString());
-//                      }
-//                      promise.resolve(result);
-//                  } else {
-//                      promise.reject("E_CAMERA_UNAVAILABLE", "Camera is not running");
-//                  }
-//              } catch (Exception e) {
-//                  e.printStackTrace();
-//              }
-//          }
-//      });
+      final ReactApplicationContext context = getReactApplicationContext();
+      UIManagerModule uiManager = context.getNativeModule(UIManagerModule.class);
+      uiManager.addUIBlock(new UIBlock() {
+          @Override
+          public void execute(NativeViewHierarchyManager nativeViewHierarchyManager) {
+              final RNCameraView cameraView;
+              try {
+                  cameraView = (RNCameraView) nativeViewHierarchyManager.resolveView(viewTag);
+              } catch (Exception e) {
+                  promise.reject("E_CAMERA_BAD_VIEWTAG", "getSupportedRatiosAsync: Expected a Camera component");
+                  return;
+              }
+              // answered from the capability cache, the camera does not have to be running
+              CameraCapabilities capabilities = cameraView.getCachedCapabilities();
+              if (capabilities == null) {
+                  promise.reject("E_CAMERA_UNAVAILABLE", "Camera capabilities are not known yet");
+                  return;
+              }
+              WritableArray result = Arguments.createArray();
+              Set<AspectRatio> ratios = capabilities.getSupportedAspectRatios();
+              for (AspectRatio ratio : ratios) {
+                  result.pushString(ratio.toString());
+              }
+              promise.resolve(result);
+          }
+      });
   }
 
   @ReactMethod
@@ -379,30 +403,40 @@ public class CameraModule extends ReactContextBaseJavaModule {
 
   @ReactMethod
   public void getAvailablePictureSizes(final String ratio, final int viewTag, final Promise promise) {
-//      final ReactApplicationContext context = getReactApplicationContext();
-//      UIManagerModule uiManager = context.getNativeModule(UIManagerModule.class);
-//      uiManager.addUIBlock(new UIBlock() {
-//          @Override
-//          public void execute(NativeViewHierarchyManager nativeViewHierarchyManager) {
-//              final RNCameraView cameraView;
-//
-//              try {
-//                  cameraView = (RNCameraView) nativeViewHierarchyManager.resolveView(viewTag);
-//                  WritableArray result = Arguments.createArray();
-//                  if (cameraView.isCameraOpened()) {
-//                      SortedSet<Size> sizes = cameraView.getAvailablePictureSizes(AspectRatio.parse(ratio));
-//                      for (Size size : sizes) {
-//                          result.pushString(size.toString());
-//                      }
-//                      promise.resolve(result);
-//                  } else {
-//                      promise.reject("E_CAMERA_UNAVAILABLE", "Camera is not running");
-//                  }
-//              } catch (Exception e) {
-//                  promise.reject("E_CAMERA_BAD_VIEWTAG", "getAvailablePictureSizesAsync: Expected a Camera component");
-//              }
-//          }
-//      });
+      final ReactApplicationContext context = getReactApplicationContext();
+      UIManagerModule uiManager = context.getNativeModule(UIManagerModule.class);
+      uiManager.addUIBlock(new UIBlock() {
+          @Override
+          public void execute(NativeViewHierarchyManager nativeViewHierarchyManager) {
+              final RNCameraView cameraView;
+
+              try {
+                  cameraView = (RNCameraView) nativeViewHierarchyManager.resolveView(viewTag);
+              } catch (Exception e) {
+                  promise.reject("E_CAMERA_BAD_VIEWTAG", "getAvailablePictureSizesAsync: Expected a Camera component");
+                  return;
+              }
+              // answered from the capability cache, the camera does not have to be running
+              CameraCapabilities capabilities = cameraView.getCachedCapabilities();
+              if (capabilities == null) {
+                  promise.reject("E_CAMERA_UNAVAILABLE", "Camera capabilities are not known yet");
+                  return;
+              }
+              AspectRatio aspectRatio;
+              try {
+                  aspectRatio = AspectRatio.parse(ratio);
+              } catch (IllegalArgumentException e) {
+                  promise.reject("E_CAMERA_BAD_RATIO", e.getMessage());
+                  return;
+              }
+              WritableArray result = Arguments.createArray();
+              SortedSet<Size> sizes = capabilities.getPictureSizes(aspectRatio);
+              for (Size size : sizes) {
+                  result.pushString(size.toString());
+              }
+              promise.resolve(result);
+          }
+      });
   }
 
   @ReactMethod
@@ -10,6 +10,8 @@ import com.facebook.react.uimanager.annotations.ReactProp;
 import com.google.android.cameraview.AspectRatio;
 import com.google.android.cameraview.Size;
 
+import org.reactnative.camera.utils.BarCodeDecoder;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -72,12 +74,12 @@ public class CameraViewManager extends ViewGroupManager<RNCameraView> {
 
   @ReactProp(name = "type")
   public void setType(RNCameraView view, int type) {
-//    view.setFacing(type);
+    view.setFacing(type);
   }
 
   @ReactProp(name = "cameraId")
   public void setCameraId(RNCameraView view, String id) {
-//    view.setCameraId(id);
+    view.setCameraId(id);
   }
 
   @ReactProp(name = "ratio")
@@ -129,6 +131,31 @@ public class CameraViewManager extends ViewGroupManager<RNCameraView> {
 //    view.setPictureSize(size.equals("None") ? null : Size.parse(size));
   }
 
+  @ReactProp(name = "analysisSize")
+  public void setAnalysisSize(RNCameraView view, String size) {
+    // not available in this fork, the barcode scanner preview sizes its own frames
+  }
+
+  @ReactProp(name = "analysisMaxImages", defaultInt = 2)
+  public void setAnalysisMaxImages(RNCameraView view, int maxImages) {
+    // not available in this fork, the barcode scanner preview sizes its own frames
+  }
+
+  @ReactProp(name = "analysisKeepLatest", defaultBoolean = true)
+  public void setAnalysisKeepLatest(RNCameraView view, boolean keepLatest) {
+    // not available in this fork, the barcode scanner preview sizes its own frames
+  }
+
+  @ReactProp(name = "analysisThreadPriority", defaultInt = 0)
+  public void setAnalysisThreadPriority(RNCameraView view, int priority) {
+    // not available in this fork, the barcode scanner preview decodes on its own thread
+  }
+
+  @ReactProp(name = "zeroShutterLag", defaultBoolean = false)
+  public void setZeroShutterLag(RNCameraView view, boolean zeroShutterLag) {
+    // not available in this fork, the barcode scanner preview keeps its frames to itself
+  }
+
   @ReactProp(name = "barCodeTypes")
   public void setBarCodeTypes(RNCameraView view, ReadableArray barCodeTypes) {
     if (barCodeTypes == null) {
@@ -146,6 +173,30 @@ public class CameraViewManager extends ViewGroupManager<RNCameraView> {
     view.setShouldScanBarCodes(barCodeScannerEnabled);
   }
 
+  @ReactProp(name = "barCodeScannerPasses", defaultInt = BarCodeDecoder.ALL_PASSES)
+  public void setBarCodeScannerPasses(RNCameraView view, int passes) {
+    // not available in this fork, the barcode scanner preview decodes with its own reader
+  }
+
+  @ReactProp(name = "barCodeScannerAdaptive", defaultBoolean = false)
+  public void setBarCodeScannerAdaptive(RNCameraView view, boolean adaptive) {
+    // not available in this fork, the barcode scanner preview decodes with its own reader
+  }
+
+  @ReactProp(name = "rectOfInterest")
+  public void setRectOfInterest(RNCameraView view, ReadableMap coordinates) {
+    if (coordinates == null) {
+      view.setRectOfInterest(0, 0, 1, 1);
+      return;
+    }
+    view.setRectOfInterest(
+        (float) coordinates.getDouble("x"),
+        (float) coordinates.getDouble("y"),
+        (float) coordinates.getDouble("width"),
+        (float) coordinates.getDouble("height")
+    );
+  }
+
   @ReactProp(name = "useCamera2Api")
   public void setUseCamera2Api(RNCameraView view, boolean useCamera2Api) {
 //    view.setUsingCamera2Api(useCamera2Api);
@@ -7,6 +7,7 @@ import android.graphics.Color;
 import android.media.CamcorderProfile;
 import android.media.MediaActionSound;
 import android.os.Build;
+import android.util.Log;
 
 import androidx.core.content.ContextCompat;
 
@@ -17,7 +18,10 @@ import com.aihuishou.zbarlib.CameraPreview;
 import com.aihuishou.zbarlib.ScanCallback;
 import com.facebook.react.bridge.*;
 import com.facebook.react.uimanager.ThemedReactContext;
+import com.google.android.cameraview.CameraCapabilities;
+import com.google.android.cameraview.CameraCapabilityCache;
 import com.google.android.cameraview.CameraView;
+import com.google.android.cameraview.Constants;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.DecodeHintType;
 import com.google.zxing.MultiFormatReader;
@@ -25,7 +29,10 @@ import com.google.zxing.Result;
 
 import org.reactnative.barcodedetector.RNBarcodeDetector;
 import org.reactnative.camera.tasks.*;
+import org.reactnative.camera.utils.BarCodeDecoder;
+import org.reactnative.camera.utils.FrameBufferPool;
 import org.reactnative.camera.utils.RNFileUtils;
+import org.reactnative.camera.utils.RectOfInterest;
 import org.reactnative.facedetector.RNFaceDetector;
 
 import java.io.File;
@@ -33,6 +40,7 @@ import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
 public class RNCameraView extends CameraPreview implements LifecycleEventListener, BarCodeScannerAsyncTaskDelegate, FaceDetectorAsyncTaskDelegate,
         BarcodeDetectorAsyncTaskDelegate, TextRecognizerAsyncTaskDelegate, PictureSavedDelegate {
@@ -44,20 +52,40 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
     private List<String> mBarCodeTypes = null;
     private Boolean mPlaySoundOnCapture = false;
 
+    private int mFacing = Constants.FACING_BACK;
+    private String mCameraId;
+
     private boolean mIsPaused = false;
     private boolean mIsNew = true;
     private boolean invertImageData = false;
     private Boolean mIsRecording = false;
     private Boolean mIsRecordingInterrupted = false;
 
-    // Concurrency lock for scanners to avoid flooding the runtime
-    public volatile boolean barCodeScannerTaskLock = false;
-    public volatile boolean faceDetectorTaskLock = false;
-    public volatile boolean googleBarcodeDetectorTaskLock = false;
-    public volatile boolean textRecognizerTaskLock = false;
+    private static final String TAG = "RNCameraView";
+
+    // Frames are fanned out to the enabled scanners on dedicated threads; each scanner only
+    // ever works on the latest frame so the runtime is not flooded. Not available in this fork:
+    // the barcode scanner preview does not hand out its frames, so no analyzer is registered and
+    // bar codes are reported through the ScanCallback instead
+    private static final String BAR_CODE_ANALYZER = "barCodeScanner";
+    private static final String FACE_ANALYZER = "faceDetector";
+    private static final String GOOGLE_BARCODE_ANALYZER = "googleBarcodeDetector";
+    private static final String TEXT_ANALYZER = "textRecognizer";
+    private static final int ANALYSIS_THREAD_COUNT = 2;
+
+    // runs a scanner task on the analysis thread that picked up the frame
+    private static final Executor INLINE_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private final FrameAnalysisScheduler mFrameAnalysisScheduler = new FrameAnalysisScheduler(ANALYSIS_THREAD_COUNT);
 
     // Scanning-related properties
     private MultiFormatReader mMultiFormatReader;
+    private final BarCodeDecoder mBarCodeDecoder = new BarCodeDecoder(null);
     private RNFaceDetector mFaceDetector;
     private RNBarcodeDetector mGoogleBarcodeDetector;
     private boolean mShouldDetectFaces = false;
@@ -70,6 +98,7 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
     private int mGoogleVisionBarCodeType = RNBarcodeDetector.ALL_FORMATS;
     private int mGoogleVisionBarCodeMode = RNBarcodeDetector.NORMAL_MODE;
     private boolean mTrackingEnabled = true;
+    private volatile RectOfInterest mRectOfInterest;
     private int mPaddingX;
     private int mPaddingY;
 
@@ -84,6 +113,12 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
                 onBarCodeRead(new Result(content, null, null, null), 0, 0);
             }
         });
+        mFrameAnalysisScheduler.setListener(new FrameAnalysisScheduler.Listener() {
+            @Override
+            public void onAnalyzerFailed(String name, RuntimeException e) {
+                Log.e(TAG, "Frame analyzer " + name + " failed", e);
+            }
+        });
 //        addCallback(new Callback() {
 //            @Override
 //            public void onCameraOpened(CameraView cameraView) {
@@ -148,12 +183,7 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
 //
 //            @Override
 //            public void onFramePreview(CameraView cameraView, byte[] data, int width, int height, int rotation) {
-//                int correctRotation = RNCameraViewHelper.getCorrectCameraRotation(rotation, getFacing(), getCameraOrientation());
-//                boolean willCallBarCodeTask = mShouldScanBarCodes && !barCodeScannerTaskLock && cameraView instanceof BarCodeScannerAsyncTaskDelegate;
-//                boolean willCallFaceTask = mShouldDetectFaces && !faceDetectorTaskLock && cameraView instanceof FaceDetectorAsyncTaskDelegate;
-//                boolean willCallGoogleBarcodeTask = mShouldGoogleDetectBarcodes && !googleBarcodeDetectorTaskLock && cameraView instanceof BarcodeDetectorAsyncTaskDelegate;
-//                boolean willCallTextTask = mShouldRecognizeText && !textRecognizerTaskLock && cameraView instanceof TextRecognizerAsyncTaskDelegate;
-//                if (!willCallBarCodeTask && !willCallFaceTask && !willCallGoogleBarcodeTask && !willCallTextTask) {
+//                if (!mFrameAnalysisScheduler.hasEnabledAnalyzers()) {
 //                    return;
 //                }
 //
@@ -161,41 +191,62 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
 //                    return;
 //                }
 //
-//                if (willCallBarCodeTask) {
-//                    barCodeScannerTaskLock = true;
-//                    BarCodeScannerAsyncTaskDelegate delegate = (BarCodeScannerAsyncTaskDelegate) cameraView;
-//                    new BarCodeScannerAsyncTask(delegate, mMultiFormatReader, data, width, height).execute();
-//                }
+//                // every analyzer borrows the frame so a pooled buffer is only recycled once all of them are done
+//                int correctRotation = RNCameraViewHelper.getCorrectCameraRotation(rotation, getFacing(), getCameraOrientation());
+//                mFrameAnalysisScheduler.submit(data, width, height, correctRotation, cameraView.getFrameBufferPool());
+//            }
+//        });
 //
-//                if (willCallFaceTask) {
-//                    faceDetectorTaskLock = true;
-//                    FaceDetectorAsyncTaskDelegate delegate = (FaceDetectorAsyncTaskDelegate) cameraView;
-//                    new FaceDetectorAsyncTask(delegate, mFaceDetector, data, width, height, correctRotation, getResources().getDisplayMetrics().density, getFacing(), getWidth(), getHeight(), mPaddingX, mPaddingY).execute();
-//                }
+//        mFrameAnalysisScheduler.setAnalyzer(BAR_CODE_ANALYZER, new FrameAnalysisScheduler.Analyzer() {
+//            @Override
+//            public void analyze(byte[] data, int width, int height, int rotation, FrameBufferPool pool) {
+//                BarCodeScannerAsyncTask task = new BarCodeScannerAsyncTask(RNCameraView.this, mBarCodeDecoder, data, width, height);
+//                task.setRectOfInterest(mRectOfInterest, rotation, getFacing() == CameraView.FACING_FRONT);
+//                task.executeOnExecutor(INLINE_EXECUTOR);
+//            }
+//        });
 //
-//                if (willCallGoogleBarcodeTask) {
-//                    googleBarcodeDetectorTaskLock = true;
-//                    if (mGoogleVisionBarCodeMode == RNBarcodeDetector.NORMAL_MODE) {
-//                        invertImageData = false;
-//                    } else if (mGoogleVisionBarCodeMode == RNBarcodeDetector.ALTERNATE_MODE) {
-//                        invertImageData = !invertImageData;
-//                    } else if (mGoogleVisionBarCodeMode == RNBarcodeDetector.INVERTED_MODE) {
-//                        invertImageData = true;
-//                    }
-//                    if (invertImageData) {
-//                        for (int y = 0; y < data.length; y++) {
-//                            data[y] = (byte) ~data[y];
-//                        }
+//        mFrameAnalysisScheduler.setAnalyzer(FACE_ANALYZER, new FrameAnalysisScheduler.Analyzer() {
+//            @Override
+//            public void analyze(byte[] data, int width, int height, int rotation, FrameBufferPool pool) {
+//                FaceDetectorAsyncTask task = new FaceDetectorAsyncTask(RNCameraView.this, mFaceDetector, data, width, height, rotation, getResources().getDisplayMetrics().density, getFacing(), getWidth(), getHeight(), mPaddingX, mPaddingY);
+//                // ML Kit finishes asynchronously, keep the frame until it is done
+//                task.setFrameBufferPool(pool);
+//                task.executeOnExecutor(INLINE_EXECUTOR);
+//            }
+//        });
+//
+//        mFrameAnalysisScheduler.setAnalyzer(GOOGLE_BARCODE_ANALYZER, new FrameAnalysisScheduler.Analyzer() {
+//            @Override
+//            public void analyze(byte[] data, int width, int height, int rotation, FrameBufferPool pool) {
+//                if (mGoogleVisionBarCodeMode == RNBarcodeDetector.NORMAL_MODE) {
+//                    invertImageData = false;
+//                } else if (mGoogleVisionBarCodeMode == RNBarcodeDetector.ALTERNATE_MODE) {
+//                    invertImageData = !invertImageData;
+//                } else if (mGoogleVisionBarCodeMode == RNBarcodeDetector.INVERTED_MODE) {
+//                    invertImageData = true;
+//                }
+//                if (invertImageData) {
+//                    // the frame is shared with the other analyzers, invert a copy
+//                    byte[] inverted = new byte[data.length];
+//                    for (int y = 0; y < data.length; y++) {
+//                        inverted[y] = (byte) ~data[y];
 //                    }
-//                    BarcodeDetectorAsyncTaskDelegate delegate = (BarcodeDetectorAsyncTaskDelegate) cameraView;
-//                    new BarcodeDetectorAsyncTask(delegate, mGoogleBarcodeDetector, data, width, height, correctRotation, getResources().getDisplayMetrics().density, getFacing(), getWidth(), getHeight(), mPaddingX, mPaddingY).execute();
+//                    data = inverted;
 //                }
+//                BarcodeDetectorAsyncTask task = new BarcodeDetectorAsyncTask(RNCameraView.this, mGoogleBarcodeDetector, data, width, height, rotation, getResources().getDisplayMetrics().density, getFacing(), getWidth(), getHeight(), mPaddingX, mPaddingY);
+//                task.setFrameBufferPool(pool);
+//                task.setRectOfInterest(mRectOfInterest);
+//                task.executeOnExecutor(INLINE_EXECUTOR);
+//            }
+//        });
 //
-//                if (willCallTextTask) {
-//                    textRecognizerTaskLock = true;
-//                    TextRecognizerAsyncTaskDelegate delegate = (TextRecognizerAsyncTaskDelegate) cameraView;
-//                    new TextRecognizerAsyncTask(delegate, mThemedReactContext, data, width, height, correctRotation, getResources().getDisplayMetrics().density, getFacing(), getWidth(), getHeight(), mPaddingX, mPaddingY).execute();
-//                }
+//        mFrameAnalysisScheduler.setAnalyzer(TEXT_ANALYZER, new FrameAnalysisScheduler.Analyzer() {
+//            @Override
+//            public void analyze(byte[] data, int width, int height, int rotation, FrameBufferPool pool) {
+//                TextRecognizerAsyncTask task = new TextRecognizerAsyncTask(RNCameraView.this, mThemedReactContext, data, width, height, rotation, getResources().getDisplayMetrics().density, getFacing(), getWidth(), getHeight(), mPaddingX, mPaddingY);
+//                task.setFrameBufferPool(pool);
+//                task.executeOnExecutor(INLINE_EXECUTOR);
 //            }
 //        });
     }
@@ -248,6 +299,14 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
         initBarcodeReader();
     }
 
+    /**
+     * Limits barcode scanning to a part of the preview, given in normalized (0 to 1) coordinates
+     * of the preview as displayed. Only the region is handed to ZXing and the barcode detector.
+     */
+    public void setRectOfInterest(float x, float y, float width, float height) {
+        mRectOfInterest = new RectOfInterest(x, y, width, height);
+    }
+
     public void setPlaySoundOnCapture(Boolean playSoundOnCapture) {
         mPlaySoundOnCapture = playSoundOnCapture;
     }
@@ -342,6 +401,40 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
 //
 //        hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
 //        mMultiFormatReader.setHints(hints);
+//        mBarCodeDecoder.setMultiFormatReader(mMultiFormatReader);
+    }
+
+    public void setFacing(int facing) {
+        mFacing = facing;
+    }
+
+    public int getFacing() {
+        return mFacing;
+    }
+
+    public void setCameraId(String id) {
+        mCameraId = id;
+    }
+
+    /**
+     * Capabilities of the camera this view is set up for, as far as the capability cache knows
+     * them. Never touches the camera. The Camera1 entry describes what the scanner preview
+     * actually uses, so it is preferred over the Camera2 one.
+     *
+     * @return {@code null} if the camera is not cached (yet).
+     */
+    public CameraCapabilities getCachedCapabilities() {
+        CameraCapabilityCache cache = CameraCapabilityCache.getInstance();
+        String[] apis = {CameraCapabilities.API_CAMERA1, CameraCapabilities.API_CAMERA2};
+        for (String api : apis) {
+            CameraCapabilities capabilities = mCameraId != null
+                    ? cache.get(api, mCameraId)
+                    : cache.getByFacing(api, mFacing);
+            if (capabilities != null) {
+                return capabilities;
+            }
+        }
+        return null;
     }
 
     public void setShouldScanBarCodes(boolean shouldScanBarCodes) {
@@ -349,9 +442,14 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
 //            initBarcodeReader();
 //        }
 //        this.mShouldScanBarCodes = shouldScanBarCodes;
+//        mFrameAnalysisScheduler.setAnalyzerEnabled(BAR_CODE_ANALYZER, shouldScanBarCodes);
 //        setScanning(mShouldDetectFaces || mShouldGoogleDetectBarcodes || mShouldScanBarCodes || mShouldRecognizeText);
     }
 
+    public BarCodeDecoder getBarCodeDecoder() {
+        return mBarCodeDecoder;
+    }
+
     public void onBarCodeRead(Result barCode, int width, int height) {
         String barCodeType = barCode.getBarcodeFormat().toString();
         if (!mShouldScanBarCodes || !mBarCodeTypes.contains(barCodeType)) {
@@ -362,10 +460,8 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
     }
 
     public void onBarCodeScanningTaskCompleted() {
-        barCodeScannerTaskLock = false;
-        if (mMultiFormatReader != null) {
-            mMultiFormatReader.reset();
-        }
+        // the decoder resets its reader on the analysis thread, the next frame may already be
+        // decoding with it
     }
 
     /**
@@ -412,6 +508,7 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
             setupFaceDetector();
         }
         this.mShouldDetectFaces = shouldDetectFaces;
+        mFrameAnalysisScheduler.setAnalyzerEnabled(FACE_ANALYZER, shouldDetectFaces);
 //        setScanning(mShouldDetectFaces || mShouldGoogleDetectBarcodes || mShouldScanBarCodes || mShouldRecognizeText);
     }
 
@@ -433,7 +530,7 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
 
     @Override
     public void onFaceDetectingTaskCompleted() {
-        faceDetectorTaskLock = false;
+        // nothing to do, the analysis scheduler limits each detector to one frame at a time
     }
 
     /**
@@ -449,6 +546,7 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
             setupBarcodeDetector();
         }
         this.mShouldGoogleDetectBarcodes = shouldDetectBarcodes;
+        mFrameAnalysisScheduler.setAnalyzerEnabled(GOOGLE_BARCODE_ANALYZER, shouldDetectBarcodes);
 //        setScanning(mShouldDetectFaces || mShouldGoogleDetectBarcodes || mShouldScanBarCodes || mShouldRecognizeText);
     }
 
@@ -480,7 +578,7 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
 
     @Override
     public void onBarcodeDetectingTaskCompleted() {
-        googleBarcodeDetectorTaskLock = false;
+        // nothing to do, the analysis scheduler limits each detector to one frame at a time
     }
 
     /**
@@ -489,6 +587,7 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
 
     public void setShouldRecognizeText(boolean shouldRecognizeText) {
         this.mShouldRecognizeText = shouldRecognizeText;
+        mFrameAnalysisScheduler.setAnalyzerEnabled(TEXT_ANALYZER, shouldRecognizeText);
 //        setScanning(mShouldDetectFaces || mShouldGoogleDetectBarcodes || mShouldScanBarCodes || mShouldRecognizeText);
     }
 
@@ -502,7 +601,7 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
 
     @Override
     public void onTextRecognizerTaskCompleted() {
-        textRecognizerTaskLock = false;
+        // nothing to do, the analysis scheduler limits each detector to one frame at a time
     }
 
     /**
@@ -519,6 +618,9 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
             if ((mIsPaused) || mIsNew) {
                 mIsPaused = false;
                 mIsNew = false;
+                // the scanner preview opens the camera through Camera1, cache its capabilities
+                // while it is still free; only opens the camera if they are not cached yet
+                CameraView.cacheCamera1Capabilities(mCameraId, mFacing);
                 start();
             }
 //                }
@@ -542,6 +644,7 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
 
     @Override
     public void onHostDestroy() {
+        mFrameAnalysisScheduler.shutdown();
         if (mFaceDetector != null) {
             mFaceDetector.release();
         }
@@ -549,6 +652,7 @@ public class RNCameraView extends CameraPreview implements LifecycleEventListene
             mGoogleBarcodeDetector.release();
         }
         mMultiFormatReader = null;
+        mBarCodeDecoder.setMultiFormatReader(null);
         mThemedReactContext.removeLifecycleEventListener(this);
 
         // camera release can be quite expensive. Run in on bg handler
@@ -18,6 +18,7 @@ import com.facebook.react.uimanager.UIManagerModule;
 import com.google.android.cameraview.CameraView;
 import com.google.zxing.Result;
 import org.reactnative.camera.events.*;
+import org.reactnative.camera.utils.JpegExifWriter;
 import org.reactnative.barcodedetector.RNBarcodeDetector;
 import org.reactnative.facedetector.RNFaceDetector;
 
@@ -430,6 +431,34 @@ public class RNCameraViewHelper {
     }
   }
 
+  public static void setExifData(JpegExifWriter exifWriter, ReadableMap exifMap) {
+    for (String[] tagInfo : exifTags) {
+      String name = tagInfo[1];
+      if (exifMap.hasKey(name)) {
+        String type = tagInfo[0];
+        switch (type) {
+          case "string":
+            exifWriter.setAttribute(name, exifMap.getString(name));
+            break;
+          case "int":
+            exifWriter.setAttribute(name, Integer.toString(exifMap.getInt(name)));
+            break;
+          case "double":
+            exifWriter.setAttribute(name, Double.toString(exifMap.getDouble(name)));
+            break;
+        }
+      }
+    }
+
+    if (exifMap.hasKey(ExifInterface.TAG_GPS_LATITUDE) && exifMap.hasKey(ExifInterface.TAG_GPS_LONGITUDE)) {
+      exifWriter.setLatLong(exifMap.getDouble(ExifInterface.TAG_GPS_LATITUDE),
+                            exifMap.getDouble(ExifInterface.TAG_GPS_LONGITUDE));
+    }
+    if (exifMap.hasKey(ExifInterface.TAG_GPS_ALTITUDE)) {
+      exifWriter.setAltitude(exifMap.getDouble(ExifInterface.TAG_GPS_ALTITUDE));
+    }
+  }
+
   // clears exif values in place
   public static void clearExifData(ExifInterface exifInterface) {
     for (String[] tagInfo : exifTags) {
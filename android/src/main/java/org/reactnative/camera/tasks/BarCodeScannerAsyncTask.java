@@ -1,18 +1,21 @@
 package org.reactnative.camera.tasks;
 
-import com.google.zxing.BinaryBitmap;
 import com.google.zxing.MultiFormatReader;
-import com.google.zxing.NotFoundException;
-import com.google.zxing.PlanarYUVLuminanceSource;
 import com.google.zxing.Result;
-import com.google.zxing.common.HybridBinarizer;
+
+import org.reactnative.camera.utils.BarCodeDecoder;
+import org.reactnative.camera.utils.FrameBufferPool;
+import org.reactnative.camera.utils.PooledFrame;
+import org.reactnative.camera.utils.RectOfInterest;
 
 public class BarCodeScannerAsyncTask extends android.os.AsyncTask<Void, Void, Result> {
   private byte[] mImageData;
+  private final PooledFrame mFrame;
   private int mWidth;
   private int mHeight;
+  private int[] mFrameRect;
   private BarCodeScannerAsyncTaskDelegate mDelegate;
-  private final MultiFormatReader mMultiFormatReader;
+  private final BarCodeDecoder mBarCodeDecoder;
 
   //  note(sjchmiela): From my short research it's ok to ignore rotation of the image.
   public BarCodeScannerAsyncTask(
@@ -21,12 +24,49 @@ public class BarCodeScannerAsyncTask extends android.os.AsyncTask<Void, Void, Re
       byte[] imageData,
       int width,
       int height
+  ) {
+    this(delegate, new BarCodeDecoder(multiFormatReader), imageData, width, height);
+  }
+
+  /**
+   * Decodes with a shared {@code barCodeDecoder}, so its pass settings, adaptive pass order and
+   * statistics carry over from frame to frame.
+   */
+  public BarCodeScannerAsyncTask(
+      BarCodeScannerAsyncTaskDelegate delegate,
+      BarCodeDecoder barCodeDecoder,
+      byte[] imageData,
+      int width,
+      int height
   ) {
     mImageData = imageData;
+    mFrame = new PooledFrame(imageData);
     mWidth = width;
     mHeight = height;
     mDelegate = delegate;
-    mMultiFormatReader = multiFormatReader;
+    mBarCodeDecoder = barCodeDecoder;
+  }
+
+  /**
+   * Borrows the frame from {@code frameBufferPool} until this task is done. Call before
+   * {@link #execute}.
+   */
+  public void setFrameBufferPool(FrameBufferPool frameBufferPool) {
+    mFrame.borrow(frameBufferPool);
+  }
+
+  /**
+   * Restricts scanning to {@code rectOfInterest}. {@code rotation} is the clockwise rotation that
+   * turns the frame upright and {@code mirrored} whether the preview is displayed mirrored, so the
+   * rectangle can be mapped from view to frame coordinates.
+   */
+  public void setRectOfInterest(RectOfInterest rectOfInterest, int rotation, boolean mirrored) {
+    if (rectOfInterest == null || rectOfInterest.isFullFrame()) {
+      mFrameRect = null;
+    } else {
+      RectOfInterest upright = mirrored ? rectOfInterest.mirrored() : rectOfInterest;
+      mFrameRect = upright.getFrameRect(mWidth, mHeight, rotation);
+    }
   }
 
   @Override
@@ -38,44 +78,10 @@ public class BarCodeScannerAsyncTask extends android.os.AsyncTask<Void, Void, Re
     Result result = null;
 
     try {
-      BinaryBitmap bitmap = generateBitmapFromImageData(
-              mImageData,
-              mWidth,
-              mHeight,
-              false
-      );
-      result = mMultiFormatReader.decodeWithState(bitmap);
-    } catch (NotFoundException e) {
-      BinaryBitmap bitmap = generateBitmapFromImageData(
-              rotateImage(mImageData,mWidth, mHeight),
-              mHeight,
-              mWidth,
-              false
-      );
-      try {
-        result = mMultiFormatReader.decodeWithState(bitmap);
-      } catch (NotFoundException e1) {
-          BinaryBitmap invertedBitmap = generateBitmapFromImageData(
-                  mImageData,
-                  mWidth,
-                  mHeight,
-                  true
-          );
-        try {
-          result = mMultiFormatReader.decodeWithState(invertedBitmap);
-        } catch (NotFoundException e2) {
-          BinaryBitmap invertedRotatedBitmap = generateBitmapFromImageData(
-                  rotateImage(mImageData,mWidth, mHeight),
-                  mHeight,
-                  mWidth,
-                  true
-          );
-          try {
-            result = mMultiFormatReader.decodeWithState(invertedRotatedBitmap);
-          } catch (NotFoundException e3) {
-            //no barcode Found
-          }
-        }
+      if (mFrameRect != null) {
+        result = mBarCodeDecoder.decode(mImageData, mWidth, mHeight, mFrameRect[0], mFrameRect[1], mFrameRect[2], mFrameRect[3]);
+      } else {
+        result = mBarCodeDecoder.decode(mImageData, mWidth, mHeight);
       }
     } catch (Throwable t) {
       t.printStackTrace();
@@ -83,39 +89,20 @@ public class BarCodeScannerAsyncTask extends android.os.AsyncTask<Void, Void, Re
 
     return result;
   }
-  private byte[] rotateImage(byte[]imageData,int width, int height) {
-    byte[] rotated = new byte[imageData.length];
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        rotated[x * height + height - y - 1] = imageData[x + y * width];
-      }
-    }
-    return rotated;
-  }
+
   @Override
   protected void onPostExecute(Result result) {
     super.onPostExecute(result);
+    mFrame.release();
     if (result != null) {
       mDelegate.onBarCodeRead(result, mWidth, mHeight);
     }
     mDelegate.onBarCodeScanningTaskCompleted();
   }
 
-  private BinaryBitmap generateBitmapFromImageData(byte[] imageData, int width, int height, boolean inverse) {
-    PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(
-        imageData, // byte[] yuvData
-        width, // int dataWidth
-        height, // int dataHeight
-        0, // int left
-        0, // int top
-        width, // int width
-        height, // int height
-        false // boolean reverseHorizontal
-    );
-    if (inverse) {
-      return new BinaryBitmap(new HybridBinarizer(source.invert()));
-    } else {
-      return new BinaryBitmap(new HybridBinarizer(source));
-    }
+  @Override
+  protected void onCancelled() {
+    super.onCancelled();
+    mFrame.release();
   }
 }
@@ -0,0 +1,412 @@
+package org.reactnative.camera.tasks;
+
+import org.reactnative.camera.utils.FrameBufferPool;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans preview frames out to a set of named analyzers (barcode scanner, face detector, ...) on a
+ * dedicated, bounded thread pool.
+ *
+ * Every analyzer has a one-slot mailbox: while it is busy, a newer frame replaces the pending one
+ * (latest frame wins) and the replaced frame is counted as dropped. Analyzers therefore run in
+ * parallel with each other but never queue up more than one frame, and a slow analyzer does not
+ * hold back the others. An analyzer never runs on two frames at the same time, so it may keep
+ * per-frame state such as a decoder. Exceptions thrown by an analyzer are counted as failures and
+ * reported to the {@link Listener}.
+ *
+ * Frames from a {@link FrameBufferPool} are retained while they sit in a mailbox or are being
+ * analyzed, so pooled buffers are only recycled once every analyzer is done with them.
+ */
+public class FrameAnalysisScheduler {
+
+  public interface Analyzer {
+    /**
+     * Called on a scheduler thread. {@code data} must not be used after this method returns,
+     * unless the analyzer retains it in {@code pool} (e.g. to finish detection asynchronously).
+     */
+    void analyze(byte[] data, int width, int height, int rotation, FrameBufferPool pool);
+  }
+
+  public interface Listener {
+    /**
+     * Called on the scheduler thread the analyzer failed on, after the failure was counted.
+     */
+    void onAnalyzerFailed(String name, RuntimeException e);
+  }
+
+  private static final int MAX_ANALYZERS = 8;
+
+  private final Executor mExecutor;
+  private final ExecutorService mOwnedExecutor;
+  private final Map<String, Slot> mSlots = new LinkedHashMap<>();
+  private volatile Listener mListener;
+
+  /**
+   * @param threadCount Number of analyzers that may run at the same time.
+   */
+  public FrameAnalysisScheduler(int threadCount) {
+    final AtomicInteger threadNumber = new AtomicInteger(1);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        threadCount,
+        threadCount,
+        1,
+        TimeUnit.SECONDS,
+        // at most one runnable per analyzer is ever queued, see Slot
+        new ArrayBlockingQueue<Runnable>(MAX_ANALYZERS),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RNCamera-Analysis-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+    mExecutor = executor;
+    mOwnedExecutor = executor;
+  }
+
+  /**
+   * Runs the analyzers on the given executor instead of an owned thread pool.
+   */
+  public FrameAnalysisScheduler(Executor executor) {
+    mExecutor = executor;
+    mOwnedExecutor = null;
+  }
+
+  public void setListener(Listener listener) {
+    mListener = listener;
+  }
+
+  /**
+   * Registers (or replaces) an analyzer. New analyzers start disabled.
+   */
+  public synchronized void setAnalyzer(String name, Analyzer analyzer) {
+    Slot slot = mSlots.get(name);
+    if (slot == null) {
+      if (mSlots.size() >= MAX_ANALYZERS) {
+        throw new IllegalStateException("Too many analyzers");
+      }
+      slot = new Slot(name);
+      mSlots.put(name, slot);
+    }
+    slot.setAnalyzer(analyzer);
+  }
+
+  public synchronized void setAnalyzerEnabled(String name, boolean enabled) {
+    Slot slot = mSlots.get(name);
+    if (slot != null) {
+      slot.setEnabled(enabled);
+    }
+  }
+
+  public synchronized boolean isAnalyzerEnabled(String name) {
+    Slot slot = mSlots.get(name);
+    return slot != null && slot.isEnabled();
+  }
+
+  /**
+   * @return {@code true} if at least one analyzer would receive a submitted frame.
+   */
+  public synchronized boolean hasEnabledAnalyzers() {
+    for (Slot slot : mSlots.values()) {
+      if (slot.isEnabled()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Hands a frame to every enabled analyzer. Returns immediately; {@code data} is retained in
+   * {@code pool} (if it belongs to it) until all analyzers are done with it.
+   */
+  public void submit(byte[] data, int width, int height, int rotation, FrameBufferPool pool) {
+    Slot[] slots;
+    synchronized (this) {
+      slots = mSlots.values().toArray(new Slot[mSlots.size()]);
+    }
+    for (Slot slot : slots) {
+      if (slot.isEnabled()) {
+        slot.offer(new Frame(data, width, height, rotation, pool));
+      }
+    }
+  }
+
+  public synchronized AnalyzerStats getStats(String name) {
+    Slot slot = mSlots.get(name);
+    return slot != null ? slot.snapshot() : null;
+  }
+
+  public synchronized Map<String, AnalyzerStats> getAllStats() {
+    Map<String, AnalyzerStats> stats = new LinkedHashMap<>();
+    for (Slot slot : mSlots.values()) {
+      stats.put(slot.mName, slot.snapshot());
+    }
+    return stats;
+  }
+
+  public synchronized void resetStats() {
+    for (Slot slot : mSlots.values()) {
+      slot.resetStats();
+    }
+  }
+
+  /**
+   * Drops pending frames and stops the owned thread pool. Analyzers already running finish
+   * their current frame.
+   */
+  public void shutdown() {
+    Slot[] slots;
+    synchronized (this) {
+      slots = mSlots.values().toArray(new Slot[mSlots.size()]);
+    }
+    for (Slot slot : slots) {
+      slot.setEnabled(false);
+    }
+    if (mOwnedExecutor != null) {
+      mOwnedExecutor.shutdown();
+    }
+  }
+
+  private static class Frame {
+    final byte[] data;
+    final int width;
+    final int height;
+    final int rotation;
+    final FrameBufferPool pool;
+
+    Frame(byte[] data, int width, int height, int rotation, FrameBufferPool pool) {
+      this.data = data;
+      this.width = width;
+      this.height = height;
+      this.rotation = rotation;
+      this.pool = pool;
+      if (pool != null) {
+        pool.retain(data);
+      }
+    }
+
+    void release() {
+      if (pool != null) {
+        pool.release(data);
+      }
+    }
+  }
+
+  private class Slot implements Runnable {
+    private final String mName;
+    private Analyzer mAnalyzer;
+    private boolean mEnabled;
+    private boolean mRunning;
+    private Frame mPending;
+
+    private long mSubmitted;
+    private long mAnalyzed;
+    private long mDropped;
+    private long mFailed;
+    private long mBusyNanos;
+    private long mMaxNanos;
+    private long mStartedAt;
+
+    Slot(String name) {
+      mName = name;
+      mStartedAt = System.nanoTime();
+    }
+
+    synchronized void setAnalyzer(Analyzer analyzer) {
+      mAnalyzer = analyzer;
+    }
+
+    synchronized boolean isEnabled() {
+      return mEnabled && mAnalyzer != null;
+    }
+
+    void setEnabled(boolean enabled) {
+      Frame dropped = null;
+      synchronized (this) {
+        mEnabled = enabled;
+        if (!enabled && mPending != null) {
+          dropped = mPending;
+          mPending = null;
+          mDropped++;
+        }
+      }
+      if (dropped != null) {
+        dropped.release();
+      }
+    }
+
+    void offer(Frame frame) {
+      Frame dropped = null;
+      boolean dispatch = false;
+      synchronized (this) {
+        mSubmitted++;
+        if (mRunning) {
+          dropped = mPending;
+          mPending = frame;
+          if (dropped != null) {
+            mDropped++;
+          }
+        } else {
+          mRunning = true;
+          mPending = frame;
+          dispatch = true;
+        }
+      }
+      if (dropped != null) {
+        dropped.release();
+      }
+      if (dispatch) {
+        dispatch();
+      }
+    }
+
+    private void dispatch() {
+      try {
+        mExecutor.execute(this);
+      } catch (RejectedExecutionException e) {
+        Frame dropped;
+        synchronized (this) {
+          dropped = mPending;
+          mPending = null;
+          mRunning = false;
+          if (dropped != null) {
+            mDropped++;
+          }
+        }
+        if (dropped != null) {
+          dropped.release();
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        Frame frame;
+        Analyzer analyzer;
+        synchronized (this) {
+          frame = mPending;
+          mPending = null;
+          analyzer = mEnabled ? mAnalyzer : null;
+          if (frame == null) {
+            mRunning = false;
+            return;
+          }
+        }
+
+        if (analyzer != null) {
+          long start = System.nanoTime();
+          RuntimeException failure = null;
+          try {
+            analyzer.analyze(frame.data, frame.width, frame.height, frame.rotation, frame.pool);
+          } catch (RuntimeException e) {
+            failure = e;
+          }
+          long elapsed = System.nanoTime() - start;
+          synchronized (this) {
+            if (failure != null) {
+              mFailed++;
+            } else {
+              mAnalyzed++;
+            }
+            mBusyNanos += elapsed;
+            mMaxNanos = Math.max(mMaxNanos, elapsed);
+          }
+          Listener listener = mListener;
+          if (failure != null && listener != null) {
+            listener.onAnalyzerFailed(mName, failure);
+          }
+        }
+        frame.release();
+      }
+    }
+
+    synchronized AnalyzerStats snapshot() {
+      return new AnalyzerStats(mName, mSubmitted, mAnalyzed, mDropped, mFailed, mBusyNanos, mMaxNanos,
+          System.nanoTime() - mStartedAt);
+    }
+
+    synchronized void resetStats() {
+      mSubmitted = 0;
+      mAnalyzed = 0;
+      mDropped = 0;
+      mFailed = 0;
+      mBusyNanos = 0;
+      mMaxNanos = 0;
+      mStartedAt = System.nanoTime();
+    }
+  }
+
+  /**
+   * Counters of a single analyzer since it was registered or the stats were last reset.
+   */
+  public static class AnalyzerStats {
+    private final String mName;
+    private final long mSubmitted;
+    private final long mAnalyzed;
+    private final long mDropped;
+    private final long mFailed;
+    private final long mBusyNanos;
+    private final long mMaxNanos;
+    private final long mElapsedNanos;
+
+    AnalyzerStats(String name, long submitted, long analyzed, long dropped, long failed, long busyNanos,
+                  long maxNanos, long elapsedNanos) {
+      mName = name;
+      mSubmitted = submitted;
+      mAnalyzed = analyzed;
+      mDropped = dropped;
+      mFailed = failed;
+      mBusyNanos = busyNanos;
+      mMaxNanos = maxNanos;
+      mElapsedNanos = elapsedNanos;
+    }
+
+    public String getName() {
+      return mName;
+    }
+
+    public long getSubmitted() {
+      return mSubmitted;
+    }
+
+    public long getAnalyzed() {
+      return mAnalyzed;
+    }
+
+    /** Frames replaced in the mailbox by a newer one before the analyzer got to them. */
+    public long getDropped() {
+      return mDropped;
+    }
+
+    public long getFailed() {
+      return mFailed;
+    }
+
+    public double getAverageMillis() {
+      long count = mAnalyzed + mFailed;
+      return count > 0 ? mBusyNanos / 1e6 / count : 0;
+    }
+
+    public double getMaxMillis() {
+      return mMaxNanos / 1e6;
+    }
+
+    /** Analyzed frames per second of wall-clock time. */
+    public double getThroughput() {
+      return mElapsedNanos > 0 ? mAnalyzed * 1e9 / mElapsedNanos : 0;
+    }
+  }
+}
@@ -3,13 +3,18 @@ package org.reactnative.camera.tasks;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
 import android.net.Uri;
 import android.os.AsyncTask;
 import androidx.exifinterface.media.ExifInterface;
 import android.util.Base64;
+import android.util.Log;
 
 import org.reactnative.camera.RNCameraViewHelper;
+import org.reactnative.camera.utils.Base64StreamEncoder;
+import org.reactnative.camera.utils.BitmapPool;
+import org.reactnative.camera.utils.BitmapTransforms;
+import org.reactnative.camera.utils.JpegExifWriter;
+import org.reactnative.camera.utils.JpegLosslessRotation;
 import org.reactnative.camera.utils.RNFileUtils;
 
 import com.facebook.react.bridge.Arguments;
@@ -18,17 +23,22 @@ import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.ReadableType;
 import com.facebook.react.bridge.WritableMap;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 public class ResolveTakenPictureAsyncTask extends AsyncTask<Void, Void, WritableMap> {
     private static final String ERROR_TAG = "E_TAKING_PICTURE_FAILED";
+    private static final String TAG = "ResolveTakenPicture";
     private Promise mPromise;
     private Bitmap mBitmap;
+    private final BitmapPool mBitmapPool = BitmapPool.getInstance();
     private byte[] mImageData;
+    // true if mImageData was rewritten without its exif segment (lossless rotation)
+    private boolean mImageDataRewritten;
     private ReadableMap mOptions;
     private File mCacheDirectory;
     private int mDeviceOrientation;
@@ -47,25 +57,56 @@ public class ResolveTakenPictureAsyncTask extends AsyncTask<Void, Void, Writable
         return (int) (mOptions.getDouble("quality") * 100);
     }
 
-    // loads bitmap only if necessary
-    private void loadBitmap() throws IOException {
+    // loads bitmap only if necessary.
+    // rotation is the rotation applied right after loading, so a requested width can be honored
+    // by decoding a subsampled bitmap instead of the full resolution picture
+    private void loadBitmap(int rotation) throws IOException {
         if(mBitmap == null){
-            mBitmap = BitmapFactory.decodeByteArray(mImageData, 0, mImageData.length);
+            BitmapFactory.Options bounds = decodeBounds();
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            if (mOptions.hasKey("width")) {
+                options.inSampleSize = getSampleSize(mOptions.getInt("width"), rotation, bounds);
+            }
+            mBitmapPool.prepareDecode(options, bounds.outWidth, bounds.outHeight);
+            mBitmap = mBitmapPool.decode(mImageData, options);
         }
         if(mBitmap == null){
             throw new IOException("Failed to decode Image Bitmap");
         }
     }
 
+    // largest power of two that keeps the decoded picture at least targetWidth wide,
+    // the transform then scales it to the exact size
+    private int getSampleSize(int targetWidth, int rotation, BitmapFactory.Options bounds) {
+        int width = rotation == 90 || rotation == 270 ? bounds.outHeight : bounds.outWidth;
+        int sampleSize = 1;
+        while (targetWidth > 0 && width / (sampleSize * 2) >= targetWidth) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private BitmapFactory.Options decodeBounds() {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(mImageData, 0, mImageData.length, options);
+        return options;
+    }
+
     @Override
     protected WritableMap doInBackground(Void... voids) {
         WritableMap response = Arguments.createMap();
         ByteArrayInputStream inputStream = null;
         ExifInterface exifInterface = null;
+        // tags of the picture as taken, kept when lossless rotation drops them from mImageData
+        JpegExifWriter exifWriter = null;
         WritableMap exifData = null;
         ReadableMap exifExtraData = null;
 
         boolean orientationChanged = false;
+        // rotation still to be applied to the decoded bitmap
+        int bitmapRotation = 0;
+        boolean transformBitmap = false;
 
         response.putInt("deviceOrientation", mDeviceOrientation);
         response.putInt("pictureOrientation", mOptions.hasKey("orientation") ? mOptions.getInt("orientation") : mDeviceOrientation);
@@ -81,29 +122,46 @@ public class ResolveTakenPictureAsyncTask extends AsyncTask<Void, Void, Writable
             inputStream = new ByteArrayInputStream(mImageData);
 
 
-            // Rotate the bitmap to the proper orientation if requested
-            if(mOptions.hasKey("fixOrientation") && mOptions.getBoolean("fixOrientation")){
+            int targetWidth = mOptions.hasKey("width") ? mOptions.getInt("width") : 0;
+            boolean mirror = mOptions.hasKey("mirrorImage") && mOptions.getBoolean("mirrorImage");
+            boolean needsBitmap = targetWidth > 0 || mirror;
 
+            // Get orientation of the image from mImageData via inputStream, if it has to be fixed
+            int orientation = ExifInterface.ORIENTATION_UNDEFINED;
+            if(mOptions.hasKey("fixOrientation") && mOptions.getBoolean("fixOrientation")){
                 exifInterface = new ExifInterface(inputStream);
+                orientation = exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_UNDEFINED);
+            }
+            boolean fixOrientation = orientation != ExifInterface.ORIENTATION_UNDEFINED && orientation != ExifInterface.ORIENTATION_NORMAL;
+            int rotation = fixOrientation ? getImageRotation(orientation) : 0;
 
-                // Get orientation of the image from mImageData via inputStream
-                int orientation = exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_UNDEFINED);
-
-                if(orientation != ExifInterface.ORIENTATION_UNDEFINED){
-                    loadBitmap();
-                    mBitmap = rotateBitmap(mBitmap, getImageRotation(orientation));
-                    orientationChanged = true;
+            // Rotate the bitmap to the proper orientation if requested
+            if(fixOrientation){
+                // a plain rotation is done on the compressed data, which avoids decoding
+                // the full picture and re-compressing it at a lower quality
+                byte[] rotated = null;
+                if (rotation != 0 && !needsBitmap) {
+                    rotated = JpegLosslessRotation.rotate(mImageData, rotation);
+                    if (rotated == null) {
+                        Log.w(TAG, "Lossless rotation not supported for this picture, decoding it instead");
+                    }
                 }
-            }
 
-            if (mOptions.hasKey("width")) {
-                loadBitmap();
-                mBitmap = resizeBitmap(mBitmap, mOptions.getInt("width"));
+                if (rotated != null) {
+                    exifWriter = JpegExifWriter.fromJpeg(mImageData);
+                    mImageData = rotated;
+                    mImageDataRewritten = true;
+                } else {
+                    bitmapRotation = rotation;
+                    transformBitmap = true;
+                }
+                orientationChanged = true;
             }
 
-            if (mOptions.hasKey("mirrorImage") && mOptions.getBoolean("mirrorImage")) {
-                loadBitmap();
-                mBitmap = flipHorizontally(mBitmap);
+            // rotation, resizing and mirroring are applied in a single pass into one pooled bitmap
+            if (transformBitmap || targetWidth > 0 || mirror) {
+                loadBitmap(bitmapRotation);
+                mBitmap = BitmapTransforms.transform(mBitmap, bitmapRotation, mirror, targetWidth, mBitmapPool);
             }
 
 
@@ -132,7 +190,7 @@ public class ResolveTakenPictureAsyncTask extends AsyncTask<Void, Void, Writable
                 // if we manipulated the image, or need to add extra data, or need to add it to the response,
                 // then we need to load the actual exif data.
                 // Otherwise we can just use w/e exif data we have right now in our byte array
-                if(mBitmap != null || exifExtraData != null || writeExifToResponse){
+                if(mBitmap != null || mImageDataRewritten || exifExtraData != null || writeExifToResponse){
                     if(exifInterface == null){
                         exifInterface = new ExifInterface(inputStream);
                     }
@@ -152,6 +210,12 @@ public class ResolveTakenPictureAsyncTask extends AsyncTask<Void, Void, Writable
                         exifData.putInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
                     }
                 }
+                else if(mImageDataRewritten){
+                    BitmapFactory.Options options = decodeBounds();
+                    exifData.putInt("width", options.outWidth);
+                    exifData.putInt("height", options.outHeight);
+                    exifData.putInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+                }
 
                 // Write Exif data to the response if requested
                 if (writeExifToResponse) {
@@ -167,13 +231,9 @@ public class ResolveTakenPictureAsyncTask extends AsyncTask<Void, Void, Writable
 
                 // set response dimensions. If we haven't read our bitmap, get it efficiently
                 // without loading the actual bitmap into memory
-                BitmapFactory.Options options = new BitmapFactory.Options();
-                options.inJustDecodeBounds = true;
-                BitmapFactory.decodeByteArray(mImageData, 0, mImageData.length, options);
-                if(options != null){
-                    response.putInt("width", options.outWidth);
-                    response.putInt("height", options.outHeight);
-                }
+                BitmapFactory.Options options = decodeBounds();
+                response.putInt("width", options.outWidth);
+                response.putInt("height", options.outHeight);
 
 
                 // save to file if requested
@@ -181,36 +241,49 @@ public class ResolveTakenPictureAsyncTask extends AsyncTask<Void, Void, Writable
 
                     // Prepare file output
                     File imageFile = new File(RNFileUtils.getOutputFilePath(mCacheDirectory, ".jpg"));
-                    imageFile.createNewFile();
-                    FileOutputStream fOut = new FileOutputStream(imageFile);
-
-                    // Save byte array (it is already a JPEG)
-                    fOut.write(mImageData);
-                    fOut.flush();
-                    fOut.close();
-
-                    // update exif data if needed.
-                    // Since we didn't modify the image, we only update if we have extra exif info
-                    if (writeExifToFile && exifExtraData != null) {
-                        ExifInterface fileExifInterface = new ExifInterface(imageFile.getAbsolutePath());
-                        RNCameraViewHelper.setExifData(fileExifInterface, exifExtraData);
-                        fileExifInterface.saveAttributes();
+
+                    // exif data is updated in memory and written together with the picture.
+                    // A rotated image lost its exif segment and gets it back with the adjusted
+                    // orientation and size, otherwise we only update if we have extra exif info
+                    if (writeExifToFile && (mImageDataRewritten || exifExtraData != null)) {
+                        if (exifWriter == null) {
+                            exifWriter = JpegExifWriter.fromJpeg(mImageData);
+                        }
+                        if (mImageDataRewritten) {
+                            exifWriter.removeThumbnail();
+                            exifWriter.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(ExifInterface.ORIENTATION_NORMAL));
+                            exifWriter.setImageSize(options.outWidth, options.outHeight);
+                        }
+                        if (exifExtraData != null) {
+                            RNCameraViewHelper.setExifData(exifWriter, exifExtraData);
+                        }
+                        exifWriter.write(mImageData, imageFile);
                     }
                     else if (!writeExifToFile){
-                        // if we were requested to NOT store exif, we actually need to
-                        // clear the exif tags
-                        ExifInterface fileExifInterface = new ExifInterface(imageFile.getAbsolutePath());
-                        RNCameraViewHelper.clearExifData(fileExifInterface);
-                        fileExifInterface.saveAttributes();
+                        // if we were requested to NOT store exif, the picture is written
+                        // without its exif segment
+                        new JpegExifWriter().write(mImageData, imageFile);
+                    }
+                    else {
+                        // exif is unmodified, save byte array (it is already a JPEG)
+                        FileOutputStream fOut = new FileOutputStream(imageFile);
+                        try {
+                            fOut.write(mImageData);
+                        } finally {
+                            fOut.close();
+                        }
                     }
-                    // else: exif is unmodified, no need to update anything
 
                     // Return file system URI
                     String fileUri = Uri.fromFile(imageFile).toString();
                     response.putString("uri", fileUri);
                 }
 
-                if (mOptions.hasKey("base64") && mOptions.getBoolean("base64")) {
+                if (Base64StreamEncoder.isFileRequested(mOptions)) {
+                    File base64File = new File(RNFileUtils.getOutputFilePath(mCacheDirectory, Base64StreamEncoder.FILE_EXTENSION));
+                    Base64StreamEncoder.encode(mImageData, base64File);
+                    response.putString("base64Uri", Uri.fromFile(base64File).toString());
+                } else if (Base64StreamEncoder.isRequested(mOptions)) {
                     response.putString("base64", Base64.encodeToString(mImageData, Base64.NO_WRAP));
                 }
 
@@ -221,32 +294,62 @@ public class ResolveTakenPictureAsyncTask extends AsyncTask<Void, Void, Writable
                 response.putInt("width", mBitmap.getWidth());
                 response.putInt("height", mBitmap.getHeight());
 
-                // Cache compressed image in imageStream
-                ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
-                mBitmap.compress(Bitmap.CompressFormat.JPEG, getQuality(), imageStream);
+                boolean saveToFile = !mOptions.hasKey("doNotSave") || !mOptions.getBoolean("doNotSave");
+                boolean base64 = Base64StreamEncoder.isRequested(mOptions);
 
-
-                // Write compressed image to file in cache directory unless otherwise specified
-                if (!mOptions.hasKey("doNotSave") || !mOptions.getBoolean("doNotSave")) {
-                    String filePath = writeStreamToFile(imageStream);
+                // the picture is compressed straight into the file, so it is never held in memory
+                // compressed. Without saving, the file only lives until base64 is encoded from it
+                if (saveToFile || base64) {
+                    File imageFile = new File(RNFileUtils.getOutputFilePath(mCacheDirectory, ".jpg"));
+                    OutputStream output;
 
                     // since we lost any exif data on bitmap creation, we only need
-                    // to add it if requested
-                    if (writeExifToFile && exifData != null) {
-                        ExifInterface fileExifInterface = new ExifInterface(filePath);
-                        RNCameraViewHelper.setExifData(fileExifInterface, exifData);
-                        fileExifInterface.saveAttributes();
+                    // to add it if requested. The bitmap was decoded from mImageData,
+                    // so its exif segment is the one of the picture as taken
+                    if (saveToFile && writeExifToFile && exifData != null) {
+                        if (exifWriter == null) {
+                            exifWriter = JpegExifWriter.fromJpeg(mImageData);
+                        }
+                        exifWriter.removeThumbnail();
+                        if (orientationChanged) {
+                            exifWriter.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(ExifInterface.ORIENTATION_NORMAL));
+                        }
+                        exifWriter.setImageSize(mBitmap.getWidth(), mBitmap.getHeight());
+                        if (exifExtraData != null) {
+                            RNCameraViewHelper.setExifData(exifWriter, exifExtraData);
+                        }
+                        output = exifWriter.openOutputStream(imageFile);
+                    } else {
+                        output = new BufferedOutputStream(new FileOutputStream(imageFile));
+                    }
+                    try {
+                        mBitmap.compress(Bitmap.CompressFormat.JPEG, getQuality(), output);
+                    } finally {
+                        output.close();
+                    }
+
+                    if (saveToFile) {
+                        String fileUri = Uri.fromFile(imageFile).toString();
+                        response.putString("uri", fileUri);
                     }
-                    File imageFile = new File(filePath);
-                    String fileUri = Uri.fromFile(imageFile).toString();
-                    response.putString("uri", fileUri);
-                }
 
-                // Write base64-encoded image to the response if requested
-                if (mOptions.hasKey("base64") && mOptions.getBoolean("base64")) {
-                    response.putString("base64", Base64.encodeToString(imageStream.toByteArray(), Base64.NO_WRAP));
+                    // Write base64-encoded image to the response if requested
+                    if (Base64StreamEncoder.isFileRequested(mOptions)) {
+                        File base64File = new File(RNFileUtils.getOutputFilePath(mCacheDirectory, Base64StreamEncoder.FILE_EXTENSION));
+                        Base64StreamEncoder.encode(imageFile, base64File);
+                        response.putString("base64Uri", Uri.fromFile(base64File).toString());
+                    } else if (base64) {
+                        response.putString("base64", Base64StreamEncoder.encodeToString(imageFile));
+                    }
+
+                    if (!saveToFile && !imageFile.delete()) {
+                        Log.w(TAG, "Could not delete temporary picture " + imageFile);
+                    }
                 }
 
+                // the pixels are no longer needed, the next capture can reuse them
+                mBitmapPool.put(mBitmap);
+                mBitmap = null;
             }
 
             return response;
@@ -273,26 +376,6 @@ public class ResolveTakenPictureAsyncTask extends AsyncTask<Void, Void, Writable
         return null;
     }
 
-    private Bitmap rotateBitmap(Bitmap source, int angle) {
-        Matrix matrix = new Matrix();
-        matrix.postRotate(angle);
-        return Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(), matrix, true);
-    }
-
-    private Bitmap resizeBitmap(Bitmap bm, int newWidth) {
-        int width = bm.getWidth();
-        int height = bm.getHeight();
-        float scaleRatio = (float) newWidth / (float) width;
-
-        return Bitmap.createScaledBitmap(bm, newWidth, (int) (height * scaleRatio), true);
-    }
-
-    private Bitmap flipHorizontally(Bitmap source) {
-        Matrix matrix = new Matrix();
-        matrix.preScale(-1.0f, 1.0f);
-        return Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(), matrix, true);
-    }
-
     // Get rotation degrees from Exif orientation enum
 
     private int getImageRotation(int orientation) {
@@ -311,35 +394,6 @@ public class ResolveTakenPictureAsyncTask extends AsyncTask<Void, Void, Writable
         return rotationDegrees;
     }
 
-    private String writeStreamToFile(ByteArrayOutputStream inputStream) throws IOException {
-        String outputPath = null;
-        IOException exception = null;
-        FileOutputStream outputStream = null;
-
-        try {
-            outputPath = RNFileUtils.getOutputFilePath(mCacheDirectory, ".jpg");
-            outputStream = new FileOutputStream(outputPath);
-            inputStream.writeTo(outputStream);
-        } catch (IOException e) {
-            e.printStackTrace();
-            exception = e;
-        } finally {
-            try {
-                if (outputStream != null) {
-                    outputStream.close();
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-
-        if (exception != null) {
-            throw exception;
-        }
-
-        return outputPath;
-    }
-
     @Override
     protected void onPostExecute(WritableMap response) {
         super.onPostExecute(response);
@@ -0,0 +1,338 @@
+package org.reactnative.camera.utils;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.HybridBinarizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes a barcode from the luminance plane of a preview frame, trying the frame as is, rotated
+ * by 90 degrees, inverted, and inverted and rotated, until one of the passes finds a code.
+ *
+ * Passes can be disabled. In adaptive mode the pass that found the last code is tried first, and
+ * after {@link #IDLE_FRAME_COUNT} frames without a code only one pass runs per frame, cycling
+ * through the enabled passes, which cuts the cost of empty frames by up to the number of passes.
+ * Per-pass hit and time statistics are kept either way.
+ *
+ * Kept free of Android dependencies so it can be benchmarked on the JVM.
+ */
+public class BarCodeDecoder {
+  public static final int PASS_NORMAL = 1;
+  public static final int PASS_ROTATED = 1 << 1;
+  public static final int PASS_INVERTED = 1 << 2;
+  public static final int PASS_INVERTED_ROTATED = 1 << 3;
+  public static final int ALL_PASSES = PASS_NORMAL | PASS_ROTATED | PASS_INVERTED | PASS_INVERTED_ROTATED;
+
+  // Consecutive frames without a code after which adaptive mode only runs one pass per frame
+  public static final int IDLE_FRAME_COUNT = 10;
+
+  private static final int PASS_COUNT = 4;
+  private static final String[] PASS_NAMES = { "normal", "rotated", "inverted", "invertedRotated" };
+
+  private static final ThreadLocal<byte[]> sRotationBuffer = new ThreadLocal<>();
+
+  private volatile MultiFormatReader mMultiFormatReader;
+
+  private int mEnabledPasses = ALL_PASSES;
+  private boolean mAdaptive = false;
+  // pass indices, most recently successful first
+  private final int[] mPassOrder = { 0, 1, 2, 3 };
+  private int mMissedFrames;
+  private int mIdleCursor;
+
+  private final long[] mAttempts = new long[PASS_COUNT];
+  private final long[] mHits = new long[PASS_COUNT];
+  private final long[] mNanos = new long[PASS_COUNT];
+  private long mFrames;
+  private long mDecodedFrames;
+
+  public BarCodeDecoder(MultiFormatReader multiFormatReader) {
+    mMultiFormatReader = multiFormatReader;
+  }
+
+  public void setMultiFormatReader(MultiFormatReader multiFormatReader) {
+    mMultiFormatReader = multiFormatReader;
+  }
+
+  /**
+   * @param passes Bitwise combination of the {@code PASS_*} constants. At least the normal pass
+   * runs if none is given.
+   */
+  public synchronized void setEnabledPasses(int passes) {
+    mEnabledPasses = (passes & ALL_PASSES) != 0 ? passes & ALL_PASSES : PASS_NORMAL;
+    mIdleCursor = 0;
+  }
+
+  public synchronized int getEnabledPasses() {
+    return mEnabledPasses;
+  }
+
+  public synchronized void setAdaptive(boolean adaptive) {
+    mAdaptive = adaptive;
+    if (!adaptive) {
+      for (int i = 0; i < PASS_COUNT; i++) {
+        mPassOrder[i] = i;
+      }
+    }
+    mMissedFrames = 0;
+  }
+
+  public synchronized boolean isAdaptive() {
+    return mAdaptive;
+  }
+
+  /**
+   * @return The decoded barcode, or {@code null} if none of the passes found one.
+   */
+  public Result decode(byte[] imageData, int width, int height) {
+    return decode(imageData, width, height, 0, 0, width, height);
+  }
+
+  /**
+   * Only looks at the {@code cropWidth} x {@code cropHeight} region at {@code left}, {@code top}
+   * of the frame, so the work scales with the size of the region rather than the frame. Result
+   * points are translated back to frame coordinates (of the rotated frame for the rotated passes).
+   *
+   * The reader is reset on the calling thread once the frame is done, so callers must not decode
+   * more than one frame at a time with the same reader.
+   *
+   * @return The decoded barcode, or {@code null} if none of the passes found one.
+   */
+  public Result decode(byte[] imageData, int width, int height, int left, int top, int cropWidth, int cropHeight) {
+    MultiFormatReader reader = mMultiFormatReader;
+    if (reader == null) {
+      return null;
+    }
+    try {
+      return decode(reader, imageData, width, height, left, top, cropWidth, cropHeight);
+    } finally {
+      reader.reset();
+    }
+  }
+
+  private Result decode(MultiFormatReader reader, byte[] imageData, int width, int height, int left, int top,
+                        int cropWidth, int cropHeight) {
+    int[] passes = nextPasses();
+
+    // The sources are created lazily and shared between a pass and its inverted counterpart, so
+    // the rotated region is only computed once. The inverted passes binarize the inverted source:
+    // HybridBinarizer thresholds are not symmetric, so flipping the bits of the normal matrix
+    // would not give the same result.
+    LuminanceSource source = null;
+    LuminanceSource rotatedSource = null;
+    // origin of the region within the whole rotated frame
+    int rotatedLeft = height - top - cropHeight;
+    int rotatedTop = left;
+
+    for (int pass : passes) {
+      long start = System.nanoTime();
+      // pass indices are the bit positions of the PASS_* constants
+      boolean rotated = (1 << pass & (PASS_ROTATED | PASS_INVERTED_ROTATED)) != 0;
+      boolean inverted = (1 << pass & (PASS_INVERTED | PASS_INVERTED_ROTATED)) != 0;
+      LuminanceSource passSource;
+      if (rotated) {
+        if (rotatedSource == null) {
+          rotatedSource = generateSourceFromImageData(
+              rotateImage(imageData, width, left, top, cropWidth, cropHeight),
+              cropHeight, cropWidth, 0, 0, cropHeight, cropWidth);
+        }
+        passSource = rotatedSource;
+      } else {
+        if (source == null) {
+          source = generateSourceFromImageData(imageData, width, height, left, top, cropWidth, cropHeight);
+        }
+        passSource = source;
+      }
+
+      Result result = decode(reader, new HybridBinarizer(inverted ? passSource.invert() : passSource));
+      onPassFinished(pass, System.nanoTime() - start, result != null);
+      if (result != null) {
+        return rotated ? translate(result, rotatedLeft, rotatedTop) : translate(result, left, top);
+      }
+    }
+    onFrameMissed();
+    return null;
+  }
+
+  public synchronized List<PassStats> getStats() {
+    List<PassStats> stats = new ArrayList<>(PASS_COUNT);
+    for (int i = 0; i < PASS_COUNT; i++) {
+      stats.add(new PassStats(PASS_NAMES[i], (mEnabledPasses & (1 << i)) != 0, mAttempts[i], mHits[i], mNanos[i]));
+    }
+    return stats;
+  }
+
+  /** Frames handed to {@link #decode} since the stats were last reset. */
+  public synchronized long getFrameCount() {
+    return mFrames;
+  }
+
+  public synchronized long getDecodedFrameCount() {
+    return mDecodedFrames;
+  }
+
+  public synchronized void resetStats() {
+    for (int i = 0; i < PASS_COUNT; i++) {
+      mAttempts[i] = 0;
+      mHits[i] = 0;
+      mNanos[i] = 0;
+    }
+    mFrames = 0;
+    mDecodedFrames = 0;
+  }
+
+  private synchronized int[] nextPasses() {
+    mFrames++;
+    int count = Integer.bitCount(mEnabledPasses);
+    int[] passes = new int[count];
+    int index = 0;
+    for (int pass : mPassOrder) {
+      if ((mEnabledPasses & (1 << pass)) != 0) {
+        passes[index++] = pass;
+      }
+    }
+    if (mAdaptive && count > 1 && mMissedFrames >= IDLE_FRAME_COUNT) {
+      // nothing found for a while, spread the passes over consecutive frames
+      return new int[] { passes[mIdleCursor++ % count] };
+    }
+    return passes;
+  }
+
+  private synchronized void onPassFinished(int pass, long nanos, boolean found) {
+    mAttempts[pass]++;
+    mNanos[pass] += nanos;
+    if (!found) {
+      return;
+    }
+    mHits[pass]++;
+    mDecodedFrames++;
+    mMissedFrames = 0;
+    mIdleCursor = 0;
+    if (mAdaptive) {
+      // move the successful pass to the front
+      int position = 0;
+      while (mPassOrder[position] != pass) {
+        position++;
+      }
+      System.arraycopy(mPassOrder, 0, mPassOrder, 1, position);
+      mPassOrder[0] = pass;
+    }
+  }
+
+  private synchronized void onFrameMissed() {
+    mMissedFrames++;
+  }
+
+  private static Result decode(MultiFormatReader reader, Binarizer binarizer) {
+    try {
+      return reader.decodeWithState(new BinaryBitmap(binarizer));
+    } catch (NotFoundException e) {
+      //no barcode Found
+      return null;
+    }
+  }
+
+  private static Result translate(Result result, int dx, int dy) {
+    ResultPoint[] points = result.getResultPoints();
+    if ((dx == 0 && dy == 0) || points == null) {
+      return result;
+    }
+    ResultPoint[] translated = new ResultPoint[points.length];
+    for (int i = 0; i < points.length; i++) {
+      translated[i] = points[i] != null ? new ResultPoint(points[i].getX() + dx, points[i].getY() + dy) : null;
+    }
+    Result translatedResult = new Result(
+        result.getText(),
+        result.getRawBytes(),
+        result.getNumBits(),
+        translated,
+        result.getBarcodeFormat(),
+        result.getTimestamp()
+    );
+    translatedResult.putAllMetadata(result.getResultMetadata());
+    return translatedResult;
+  }
+
+  /**
+   * Rotates the region of the luminance plane into a per-thread scratch buffer, so scanning does
+   * not allocate a full frame per pass. The buffer is only valid until the next call on the same
+   * thread.
+   */
+  private static byte[] rotateImage(byte[] imageData, int width, int left, int top, int cropWidth, int cropHeight) {
+    int size = cropWidth * cropHeight;
+    byte[] rotated = sRotationBuffer.get();
+    if (rotated == null || rotated.length < size) {
+      rotated = new byte[size];
+      sRotationBuffer.set(rotated);
+    }
+    LuminanceUtils.rotateClockwise(imageData, width, left, top, cropWidth, cropHeight, rotated);
+    return rotated;
+  }
+
+  private static PlanarYUVLuminanceSource generateSourceFromImageData(byte[] imageData, int width, int height,
+                                                                      int left, int top, int cropWidth,
+                                                                      int cropHeight) {
+    return new PlanarYUVLuminanceSource(
+        imageData, // byte[] yuvData
+        width, // int dataWidth
+        height, // int dataHeight
+        left, // int left
+        top, // int top
+        cropWidth, // int width
+        cropHeight, // int height
+        false // boolean reverseHorizontal
+    );
+  }
+
+  /**
+   * Counters of a single decode pass since the stats were last reset.
+   */
+  public static class PassStats {
+    private final String mName;
+    private final boolean mEnabled;
+    private final long mAttempts;
+    private final long mHits;
+    private final long mNanos;
+
+    PassStats(String name, boolean enabled, long attempts, long hits, long nanos) {
+      mName = name;
+      mEnabled = enabled;
+      mAttempts = attempts;
+      mHits = hits;
+      mNanos = nanos;
+    }
+
+    public String getName() {
+      return mName;
+    }
+
+    public boolean isEnabled() {
+      return mEnabled;
+    }
+
+    public long getAttempts() {
+      return mAttempts;
+    }
+
+    /** Frames this pass found a code in. */
+    public long getHits() {
+      return mHits;
+    }
+
+    public double getTotalMillis() {
+      return mNanos / 1e6;
+    }
+
+    public double getAverageMillis() {
+      return mAttempts > 0 ? mNanos / 1e6 / mAttempts : 0;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package org.reactnative.camera.utils;
+
+import android.util.Base64;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * Encodes pictures to base64 in fixed size chunks straight into a file, so neither the picture
+ * nor its base64 text has to be held in memory as a whole or sent over the bridge as one string.
+ *
+ * The {@code base64} capture option selects the mode: {@code true} returns the text as a string,
+ * {@code "file"} writes it to a file and returns its uri, see {@link #isFileRequested(ReadableMap)}.
+ */
+public class Base64StreamEncoder {
+  public static final String FILE_MODE = "file";
+  public static final String FILE_EXTENSION = ".base64";
+
+  // a multiple of 3, so chunks encode without padding in between
+  private static final int CHUNK_SIZE = 3 * 16 * 1024;
+
+  /**
+   * @return {@code true} if {@code options} ask for base64 in any mode.
+   */
+  public static boolean isRequested(ReadableMap options) {
+    if (!options.hasKey("base64")) {
+      return false;
+    }
+    if (options.getType("base64") == ReadableType.Boolean) {
+      return options.getBoolean("base64");
+    }
+    return isFileRequested(options);
+  }
+
+  /**
+   * @return {@code true} if {@code options} ask for base64 written to a file.
+   */
+  public static boolean isFileRequested(ReadableMap options) {
+    return options.hasKey("base64")
+        && options.getType("base64") == ReadableType.String
+        && FILE_MODE.equals(options.getString("base64"));
+  }
+
+  /**
+   * Opens {@code file} for writing base64 text. Bytes written to the stream are encoded as they
+   * arrive, e.g. from {@code Bitmap.compress}.
+   */
+  public static OutputStream openOutputStream(File file) throws IOException {
+    return new StreamingBase64OutputStream(new BufferedOutputStream(new FileOutputStream(file), CHUNK_SIZE));
+  }
+
+  public static void encode(byte[] data, File output) throws IOException {
+    OutputStream stream = openOutputStream(output);
+    try {
+      for (int offset = 0; offset < data.length; offset += CHUNK_SIZE) {
+        stream.write(data, offset, Math.min(CHUNK_SIZE, data.length - offset));
+      }
+    } finally {
+      stream.close();
+    }
+  }
+
+  public static void encode(File input, File output) throws IOException {
+    InputStream source = new FileInputStream(input);
+    try {
+      OutputStream stream = openOutputStream(output);
+      try {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int read;
+        while ((read = source.read(chunk)) != -1) {
+          stream.write(chunk, 0, read);
+        }
+      } finally {
+        stream.close();
+      }
+    } finally {
+      source.close();
+    }
+  }
+
+  /**
+   * For consumers that need the text as a string, which takes memory in proportion to the file.
+   */
+  public static String encodeToString(File input) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(input, "r");
+    try {
+      byte[] data = new byte[(int) file.length()];
+      file.readFully(data);
+      return Base64.encodeToString(data, Base64.NO_WRAP);
+    } finally {
+      file.close();
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package org.reactnative.camera.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Pool of mutable bitmaps shared by the capture post-processing paths, so decoding and
+ * transforming consecutive pictures of the same size reuses the same large allocations instead of
+ * churning several full size bitmaps per capture.
+ *
+ * Bitmaps are matched by exact width, height and config, which makes them usable as
+ * {@link BitmapFactory.Options#inBitmap} on every API level. The pool holds at most
+ * {@link #getMaxBytes()} and evicts the least recently returned bitmaps first; it shrinks or
+ * empties itself when the system asks the app to trim memory, see {@link #attach(Context)}.
+ */
+public class BitmapPool implements ComponentCallbacks2 {
+  private static final String TAG = "BitmapPool";
+
+  private static BitmapPool sInstance;
+
+  private final long mMaxBytes;
+  // least recently returned first
+  private final LinkedList<Bitmap> mBitmaps = new LinkedList<>();
+  private long mBytes;
+  private boolean mAttached;
+
+  private long mHits;
+  private long mMisses;
+  private long mEvictions;
+
+  public static synchronized BitmapPool getInstance() {
+    if (sInstance == null) {
+      sInstance = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+    }
+    return sInstance;
+  }
+
+  public BitmapPool(long maxBytes) {
+    mMaxBytes = maxBytes;
+  }
+
+  /**
+   * Registers the pool for {@link #onTrimMemory(int)} callbacks, calling it more than once is
+   * harmless.
+   */
+  public synchronized void attach(Context context) {
+    if (!mAttached) {
+      context.getApplicationContext().registerComponentCallbacks(this);
+      mAttached = true;
+    }
+  }
+
+  /**
+   * @return A pooled bitmap of exactly this size and config, or {@code null}. Its pixels are
+   * undefined, callers overwrite or erase them.
+   */
+  public synchronized Bitmap poll(int width, int height, Bitmap.Config config) {
+    Iterator<Bitmap> iterator = mBitmaps.iterator();
+    while (iterator.hasNext()) {
+      Bitmap bitmap = iterator.next();
+      if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+        iterator.remove();
+        mBytes -= byteCount(bitmap);
+        mHits++;
+        return bitmap;
+      }
+    }
+    mMisses++;
+    return null;
+  }
+
+  /**
+   * @return A pooled bitmap, or a new one if none matches.
+   */
+  public Bitmap get(int width, int height, Bitmap.Config config) {
+    Bitmap bitmap = poll(width, height, config);
+    if (bitmap != null) {
+      bitmap.eraseColor(0);
+      return bitmap;
+    }
+    return Bitmap.createBitmap(width, height, config);
+  }
+
+  /**
+   * Hands a bitmap back for reuse. The caller must not use it afterwards. Bitmaps that cannot be
+   * reused (immutable, recycled, larger than the whole pool) are recycled right away.
+   */
+  public void put(Bitmap bitmap) {
+    if (bitmap == null || bitmap.isRecycled()) {
+      return;
+    }
+    long size = byteCount(bitmap);
+    if (!bitmap.isMutable() || size > mMaxBytes) {
+      bitmap.recycle();
+      return;
+    }
+    synchronized (this) {
+      mBitmaps.addLast(bitmap);
+      mBytes += size;
+      trimTo(mMaxBytes);
+    }
+  }
+
+  /**
+   * Sets {@code options.inBitmap} to a pooled bitmap the decoded picture fits into exactly, if
+   * there is one. {@code options.inSampleSize} has to be set already.
+   */
+  public void prepareDecode(BitmapFactory.Options options, int sourceWidth, int sourceHeight) {
+    options.inMutable = true;
+    int sampleSize = Math.max(1, options.inSampleSize);
+    // before KitKat only pictures decoded at full size can reuse a bitmap
+    if (sampleSize > 1 && Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+      return;
+    }
+    int width = (sourceWidth + sampleSize - 1) / sampleSize;
+    int height = (sourceHeight + sampleSize - 1) / sampleSize;
+    Bitmap.Config config = options.inPreferredConfig != null ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+    options.inBitmap = poll(width, height, config);
+  }
+
+  /**
+   * Decodes a JPEG into a pooled bitmap if possible.
+   */
+  public Bitmap decode(byte[] data, BitmapFactory.Options options) {
+    if (options.inBitmap == null) {
+      return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+    try {
+      return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    } catch (IllegalArgumentException e) {
+      // the decoder rejected the bitmap, e.g. the picture is not a plain JPEG
+      Log.w(TAG, "Could not decode into a pooled bitmap", e);
+      put(options.inBitmap);
+      options.inBitmap = null;
+      return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+  }
+
+  public long getMaxBytes() {
+    return mMaxBytes;
+  }
+
+  public synchronized long getBytes() {
+    return mBytes;
+  }
+
+  public synchronized long getHits() {
+    return mHits;
+  }
+
+  public synchronized long getMisses() {
+    return mMisses;
+  }
+
+  public synchronized long getEvictions() {
+    return mEvictions;
+  }
+
+  public synchronized void clear() {
+    trimTo(0);
+  }
+
+  @Override
+  public void onTrimMemory(int level) {
+    if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+      clear();
+    } else if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_LOW) {
+      synchronized (this) {
+        trimTo(mMaxBytes / 2);
+      }
+    }
+  }
+
+  @Override
+  public void onLowMemory() {
+    clear();
+  }
+
+  @Override
+  public void onConfigurationChanged(Configuration configuration) {
+  }
+
+  private void trimTo(long maxBytes) {
+    while (mBytes > maxBytes && !mBitmaps.isEmpty()) {
+      Bitmap bitmap = mBitmaps.removeFirst();
+      mBytes -= byteCount(bitmap);
+      mEvictions++;
+      bitmap.recycle();
+    }
+  }
+
+  private static long byteCount(Bitmap bitmap) {
+    return (long) bitmap.getRowBytes() * bitmap.getHeight();
+  }
+}
@@ -0,0 +1,96 @@
+package org.reactnative.camera.utils;
+
+/**
+ * Size and affine matrix of a {@link BitmapTransforms#transform} call, kept free of Android
+ * classes so the math can be checked on the JVM. The matrix maps source pixel coordinates to
+ * destination ones: rotate clockwise around the center, mirror horizontally, scale, then move
+ * into the destination.
+ */
+public class BitmapTransformGeometry {
+  private final int mWidth;
+  private final int mHeight;
+  private final boolean mScaled;
+  private final boolean mIdentity;
+  private final float[] mValues;
+
+  /**
+   * @param width Width of the source.
+   * @param height Height of the source.
+   * @param rotation Clockwise rotation, a multiple of 90.
+   * @param targetWidth Width of the result, {@code 0} keeps the size.
+   */
+  public BitmapTransformGeometry(int width, int height, int rotation, boolean mirror, int targetWidth) {
+    rotation = ((rotation % 360) + 360) % 360;
+    boolean transposed = rotation == 90 || rotation == 270;
+    int rotatedWidth = transposed ? height : width;
+    int rotatedHeight = transposed ? width : height;
+
+    int destinationWidth = rotatedWidth;
+    int destinationHeight = rotatedHeight;
+    if (targetWidth > 0) {
+      float ratio = (float) targetWidth / rotatedWidth;
+      destinationWidth = targetWidth;
+      destinationHeight = Math.max(1, (int) (rotatedHeight * ratio));
+    }
+    mWidth = destinationWidth;
+    mHeight = destinationHeight;
+    mScaled = destinationWidth != rotatedWidth || destinationHeight != rotatedHeight;
+    mIdentity = rotation == 0 && !mirror && !mScaled;
+
+    int cos = rotation == 0 ? 1 : rotation == 180 ? -1 : 0;
+    int sin = rotation == 90 ? 1 : rotation == 270 ? -1 : 0;
+    float scaleX = (mirror ? -1f : 1f) * destinationWidth / rotatedWidth;
+    float scaleY = (float) destinationHeight / rotatedHeight;
+    float a = scaleX * cos;
+    float b = -scaleX * sin;
+    float c = scaleY * sin;
+    float d = scaleY * cos;
+    // the source center lands on the destination center
+    float centerX = width / 2f;
+    float centerY = height / 2f;
+    mValues = new float[]{
+        a, b, destinationWidth / 2f - (a * centerX + b * centerY),
+        c, d, destinationHeight / 2f - (c * centerX + d * centerY),
+        0, 0, 1
+    };
+  }
+
+  public int getWidth() {
+    return mWidth;
+  }
+
+  public int getHeight() {
+    return mHeight;
+  }
+
+  /**
+   * @return {@code true} if the pixels do not map one to one and need filtering.
+   */
+  public boolean isScaled() {
+    return mScaled;
+  }
+
+  /**
+   * @return {@code true} if the destination would be a plain copy of the source.
+   */
+  public boolean isIdentity() {
+    return mIdentity;
+  }
+
+  /**
+   * @return The 3x3 matrix in row-major order, as taken by {@code Matrix.setValues}.
+   */
+  public float[] getValues() {
+    return mValues.clone();
+  }
+
+  /**
+   * @return {@code {x, y}} in the destination for a point of the source.
+   */
+  public float[] map(float x, float y) {
+    return new float[]{
+        mValues[0] * x + mValues[1] * y + mValues[2],
+        mValues[3] * x + mValues[4] * y + mValues[5]
+    };
+  }
+}
@@ -0,0 +1,41 @@
+package org.reactnative.camera.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+
+/**
+ * Applies rotation, mirroring and scaling of a captured picture with a single {@link Matrix}, so
+ * a capture that needs all three allocates and fills one destination bitmap instead of one per
+ * step.
+ */
+public class BitmapTransforms {
+
+  /**
+   * Rotates {@code source} clockwise, then mirrors it horizontally, then scales it to
+   * {@code targetWidth} keeping the aspect ratio.
+   *
+   * @param targetWidth Width of the result, {@code 0} keeps the size.
+   * @return A bitmap from {@code pool}, {@code source} having been put back into it, or
+   * {@code source} itself if there is nothing to do.
+   */
+  public static Bitmap transform(Bitmap source, int rotation, boolean mirror, int targetWidth, BitmapPool pool) {
+    BitmapTransformGeometry geometry = new BitmapTransformGeometry(source.getWidth(), source.getHeight(),
+        rotation, mirror, targetWidth);
+    if (geometry.isIdentity()) {
+      return source;
+    }
+
+    Matrix matrix = new Matrix();
+    matrix.setValues(geometry.getValues());
+
+    Bitmap.Config config = source.getConfig() != null ? source.getConfig() : Bitmap.Config.ARGB_8888;
+    Bitmap destination = pool.get(geometry.getWidth(), geometry.getHeight(), config);
+    Canvas canvas = new Canvas(destination);
+    // plain rotations and flips map pixels one to one and need no filtering
+    canvas.drawBitmap(source, matrix, geometry.isScaled() ? new Paint(Paint.FILTER_BITMAP_FLAG) : null);
+    pool.put(source);
+    return destination;
+  }
+}
@@ -0,0 +1,72 @@
+package org.reactnative.camera.utils;
+
+/**
+ * Geometry of the Exif orientation tag (1 to 8). The stored picture is shown upright by rotating
+ * it clockwise by {@link #getRotation(int)} and then, if {@link #isMirrored(int)}, flipping it
+ * horizontally, see http://www.impulseadventure.com/photo/exif-orientation.html. Values outside
+ * 1 to 8 are treated as 1, the picture is already upright.
+ */
+public class ExifOrientation {
+  public static final int NORMAL = 1;
+
+  public static int getRotation(int orientation) {
+    switch (orientation) {
+      case 3:
+      case 4:
+        return 180;
+      case 5:
+      case 6:
+        return 90;
+      case 7:
+      case 8:
+        return 270;
+      default:
+        return 0;
+    }
+  }
+
+  public static boolean isMirrored(int orientation) {
+    return orientation == 2 || orientation == 4 || orientation == 5 || orientation == 7;
+  }
+
+  /**
+   * @return {@code true} if width and height of the stored picture are swapped when it is shown.
+   */
+  public static boolean isTransposed(int orientation) {
+    return orientation >= 5 && orientation <= 8;
+  }
+
+  /**
+   * Maps a rectangle of the upright picture back to the stored one, so only that part has to be
+   * decoded.
+   *
+   * @param mirror {@code true} if the upright picture is flipped horizontally once more.
+   * @param width Width of the upright picture.
+   * @param height Height of the upright picture.
+   * @return {@code {left, top, width, height}} of the rectangle in the stored picture.
+   */
+  public static int[] toSourceRect(int orientation, boolean mirror, int width, int height,
+                                   int x, int y, int w, int h) {
+    if (mirror) {
+      x = width - x - w;
+    }
+    switch (orientation) {
+      case 2:
+        return new int[]{width - x - w, y, w, h};
+      case 3:
+        return new int[]{width - x - w, height - y - h, w, h};
+      case 4:
+        return new int[]{x, height - y - h, w, h};
+      case 5:
+        return new int[]{y, x, h, w};
+      case 6:
+        return new int[]{y, width - x - w, h, w};
+      case 7:
+        return new int[]{height - y - h, width - x - w, h, w};
+      case 8:
+        return new int[]{height - y - h, x, h, w};
+      default:
+        return new int[]{x, y, w, h};
+    }
+  }
+}
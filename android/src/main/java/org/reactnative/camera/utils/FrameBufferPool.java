@@ -0,0 +1,169 @@
+package org.reactnative.camera.utils;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Bounded, size-keyed pool of preview frame buffers.
+ *
+ * Every buffer handed out by {@link #acquire(int)} starts with a reference count of one. Consumers
+ * that keep using a frame after the callback that delivered it returns (e.g. an AsyncTask reading
+ * the bytes) {@link #retain(byte[])} it and {@link #release(byte[])} it once they are done. When
+ * the count drops to zero the buffer goes back to the free list and the {@link Listener}, if any,
+ * is told a buffer is available again (Camera1 uses this to hand it back via addCallbackBuffer).
+ *
+ * Buffers that were not obtained from this pool are ignored by retain/release, so callers can use
+ * them unconditionally whether or not the frame came from a pooled source.
+ */
+public class FrameBufferPool {
+
+  public interface Listener {
+    void onBufferAvailable(FrameBufferPool pool);
+  }
+
+  private final int mMaxBuffers;
+  private final Map<Integer, ArrayDeque<byte[]>> mFreeBuffers = new HashMap<>();
+  private final IdentityHashMap<byte[], int[]> mReferenceCounts = new IdentityHashMap<>();
+  private int mBufferCount;
+  private Listener mListener;
+
+  private long mAllocationCount;
+  private long mReuseCount;
+  private long mExhaustedCount;
+
+  public FrameBufferPool(int maxBuffers) {
+    if (maxBuffers <= 0) {
+      throw new IllegalArgumentException("maxBuffers must be positive");
+    }
+    mMaxBuffers = maxBuffers;
+  }
+
+  public synchronized void setListener(Listener listener) {
+    mListener = listener;
+  }
+
+  /**
+   * Returns a buffer of exactly {@code size} bytes with a reference count of one, reusing a free
+   * buffer when possible. Free buffers of other sizes are dropped to make room when the pool is at
+   * capacity. Returns {@code null} if every buffer is still referenced.
+   */
+  public synchronized byte[] acquire(int size) {
+    ArrayDeque<byte[]> free = mFreeBuffers.get(size);
+    byte[] buffer = free != null ? free.poll() : null;
+
+    if (buffer != null) {
+      mReuseCount++;
+    } else {
+      if (mBufferCount >= mMaxBuffers && !evictFreeBuffer()) {
+        mExhaustedCount++;
+        return null;
+      }
+      buffer = new byte[size];
+      mBufferCount++;
+      mAllocationCount++;
+    }
+
+    mReferenceCounts.put(buffer, new int[] { 1 });
+    return buffer;
+  }
+
+  /**
+   * Adds a reference to a buffer obtained from {@link #acquire(int)}.
+   *
+   * @return {@code false} if the buffer is not currently owned by this pool.
+   */
+  public synchronized boolean retain(byte[] buffer) {
+    int[] count = buffer != null ? mReferenceCounts.get(buffer) : null;
+    if (count == null) {
+      return false;
+    }
+    count[0]++;
+    return true;
+  }
+
+  /**
+   * Drops a reference to a buffer. When the last reference is released the buffer is returned to
+   * the free list and the listener is notified.
+   *
+   * @return {@code false} if the buffer is not currently owned by this pool.
+   */
+  public boolean release(byte[] buffer) {
+    Listener listener;
+    synchronized (this) {
+      int[] count = buffer != null ? mReferenceCounts.get(buffer) : null;
+      if (count == null) {
+        return false;
+      }
+      if (--count[0] > 0) {
+        return true;
+      }
+      mReferenceCounts.remove(buffer);
+      ArrayDeque<byte[]> free = mFreeBuffers.get(buffer.length);
+      if (free == null) {
+        free = new ArrayDeque<>();
+        mFreeBuffers.put(buffer.length, free);
+      }
+      free.push(buffer);
+      listener = mListener;
+    }
+
+    // notify outside of the lock so the listener may acquire right away
+    if (listener != null) {
+      listener.onBufferAvailable(this);
+    }
+    return true;
+  }
+
+  /**
+   * Forgets every buffer, free or in use. Buffers still referenced elsewhere are simply left to the
+   * garbage collector; releasing them afterwards is a no-op.
+   */
+  public synchronized void clear() {
+    mFreeBuffers.clear();
+    mReferenceCounts.clear();
+    mBufferCount = 0;
+  }
+
+  public synchronized int getBufferCount() {
+    return mBufferCount;
+  }
+
+  public synchronized int getInUseCount() {
+    return mReferenceCounts.size();
+  }
+
+  public synchronized int getFreeCount() {
+    return mBufferCount - mReferenceCounts.size();
+  }
+
+  public synchronized long getAllocationCount() {
+    return mAllocationCount;
+  }
+
+  public synchronized long getReuseCount() {
+    return mReuseCount;
+  }
+
+  public synchronized long getExhaustedCount() {
+    return mExhaustedCount;
+  }
+
+  private boolean evictFreeBuffer() {
+    Iterator<ArrayDeque<byte[]>> iterator = mFreeBuffers.values().iterator();
+    while (iterator.hasNext()) {
+      ArrayDeque<byte[]> free = iterator.next();
+      if (free.poll() != null) {
+        if (free.isEmpty()) {
+          iterator.remove();
+        }
+        mBufferCount--;
+        return true;
+      }
+      iterator.remove();
+    }
+    return false;
+  }
+}
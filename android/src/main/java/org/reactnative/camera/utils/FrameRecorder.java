@@ -0,0 +1,149 @@
+package org.reactnative.camera.utils;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dumps live preview frames and pictures into a {@link FrameRecording}, so a session can later be
+ * replayed without a device.
+ *
+ * Frames are copied on the calling thread and written on a background thread. When the writer
+ * falls behind, frames are dropped instead of slowing the camera down.
+ */
+public class FrameRecorder {
+
+  private static final int MAX_PENDING_FRAMES = 4;
+
+  private final FrameRecording.Writer mWriter;
+  private final int mMaxFrames;
+  private final FrameBufferPool mCopyPool = new FrameBufferPool(MAX_PENDING_FRAMES + 1);
+  private final ThreadPoolExecutor mExecutor;
+  private final long mStartNanos = System.nanoTime();
+
+  private int mAcceptedFrames;
+  private long mDroppedFrames;
+  private IOException mError;
+
+  /**
+   * @param maxFrames Frames to record before further frames are ignored, or 0 for no limit.
+   */
+  public FrameRecorder(File directory, int maxFrames) throws IOException {
+    mWriter = new FrameRecording.Writer(directory);
+    mMaxFrames = maxFrames;
+    mExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<Runnable>(MAX_PENDING_FRAMES),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RNCamera-Frame-Recorder");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+  }
+
+  public void onFrame(byte[] data, int width, int height, int rotation) {
+    int size = width * height * 3 / 2;
+    byte[] copy = acquireCopy(Math.min(size, data.length));
+    if (copy != null) {
+      System.arraycopy(data, 0, copy, 0, copy.length);
+      enqueueFrame(copy, width, height, rotation);
+    }
+  }
+
+  public void onPicture(final byte[] jpeg) {
+    try {
+      mExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            mWriter.writePicture(jpeg);
+          } catch (IOException e) {
+            setError(e);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      synchronized (this) {
+        mDroppedFrames++;
+      }
+    }
+  }
+
+  private synchronized byte[] acquireCopy(int size) {
+    if (mError != null || (mMaxFrames > 0 && mAcceptedFrames >= mMaxFrames)) {
+      return null;
+    }
+    byte[] copy = mCopyPool.acquire(size);
+    if (copy == null) {
+      mDroppedFrames++;
+      return null;
+    }
+    mAcceptedFrames++;
+    return copy;
+  }
+
+  private void enqueueFrame(final byte[] data, final int width, final int height, final int rotation) {
+    final long timestamp = System.nanoTime() - mStartNanos;
+    try {
+      mExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            mWriter.writeFrame(data, data.length, width, height, rotation, timestamp);
+          } catch (IOException e) {
+            setError(e);
+          } finally {
+            mCopyPool.release(data);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      mCopyPool.release(data);
+      synchronized (this) {
+        mAcceptedFrames--;
+        mDroppedFrames++;
+      }
+    }
+  }
+
+  private synchronized void setError(IOException e) {
+    if (mError == null) {
+      mError = e;
+    }
+  }
+
+  public synchronized int getRecordedFrames() {
+    return mAcceptedFrames;
+  }
+
+  public synchronized long getDroppedFrames() {
+    return mDroppedFrames;
+  }
+
+  /**
+   * Writes the pending frames and closes the recording.
+   *
+   * @throws IOException if writing any frame failed.
+   */
+  public void close() throws IOException {
+    mExecutor.shutdown();
+    try {
+      mExecutor.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    mWriter.close();
+    synchronized (this) {
+      if (mError != null) {
+        throw mError;
+      }
+    }
+  }
+}
@@ -0,0 +1,234 @@
+package org.reactnative.camera.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * On-disk format of a recorded camera session, so it can be replayed without camera hardware.
+ *
+ * A recording is a directory holding the NV21 preview frames in {@value #FRAMES_FILE} and every
+ * picture as {@code picture-<nnnnn>.jpg}. The frames file starts with the magic {@code RNCF} and a
+ * version number, followed by one record per frame: width, height, rotation, timestamp in
+ * nanoseconds, data length and the NV21 data itself.
+ */
+public class FrameRecording {
+
+  public static final String FRAMES_FILE = "frames.bin";
+
+  private static final int MAGIC = 0x524E4346;
+  private static final int VERSION = 1;
+  private static final String PICTURE_PREFIX = "picture-";
+  private static final String PICTURE_SUFFIX = ".jpg";
+
+  /**
+   * A frame read back from a recording.
+   */
+  public static class Frame {
+    public byte[] data;
+    public int width;
+    public int height;
+    public int rotation;
+    public long timestampNanos;
+  }
+
+  /**
+   * Appends frames and pictures to a recording. Not thread safe.
+   */
+  public static class Writer implements Closeable {
+    private final File mDirectory;
+    private final DataOutputStream mFrames;
+    private int mFrameCount;
+    private int mPictureCount;
+
+    public Writer(File directory) throws IOException {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Could not create " + directory);
+      }
+      mDirectory = directory;
+      mFrames = new DataOutputStream(new BufferedOutputStream(
+          new FileOutputStream(new File(directory, FRAMES_FILE)), 1 << 16));
+      mFrames.writeInt(MAGIC);
+      mFrames.writeInt(VERSION);
+    }
+
+    public void writeFrame(byte[] data, int length, int width, int height, int rotation, long timestampNanos)
+        throws IOException {
+      mFrames.writeInt(width);
+      mFrames.writeInt(height);
+      mFrames.writeInt(rotation);
+      mFrames.writeLong(timestampNanos);
+      mFrames.writeInt(length);
+      mFrames.write(data, 0, length);
+      mFrameCount++;
+    }
+
+    public void writePicture(byte[] jpeg) throws IOException {
+      // zero padded so the pictures sort in capture order
+      String name = String.format(Locale.US, "%s%05d%s", PICTURE_PREFIX, mPictureCount, PICTURE_SUFFIX);
+      File file = new File(mDirectory, name);
+      FileOutputStream output = new FileOutputStream(file);
+      try {
+        output.write(jpeg);
+      } finally {
+        output.close();
+      }
+      mPictureCount++;
+    }
+
+    public int getFrameCount() {
+      return mFrameCount;
+    }
+
+    public int getPictureCount() {
+      return mPictureCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+      mFrames.close();
+    }
+  }
+
+  /**
+   * Streams the frames of a recording, so recordings larger than the heap can be replayed.
+   */
+  public static class Reader implements Closeable {
+    private final File mDirectory;
+    private final File[] mPictures;
+    private DataInputStream mFrames;
+    private int mWidth;
+    private int mHeight;
+
+    public Reader(File directory) throws IOException {
+      mDirectory = directory;
+      File[] pictures = directory.listFiles();
+      int count = 0;
+      for (int i = 0; pictures != null && i < pictures.length; i++) {
+        String name = pictures[i].getName();
+        if (name.startsWith(PICTURE_PREFIX) && name.endsWith(PICTURE_SUFFIX)) {
+          pictures[count++] = pictures[i];
+        }
+      }
+      mPictures = pictures != null ? Arrays.copyOf(pictures, count) : new File[0];
+      Arrays.sort(mPictures);
+      rewind();
+
+      // peek at the first frame for the stream size
+      Frame first = new Frame();
+      if (next(first, null)) {
+        mWidth = first.width;
+        mHeight = first.height;
+      }
+      rewind();
+    }
+
+    /**
+     * Starts reading from the first frame again.
+     */
+    public void rewind() throws IOException {
+      if (mFrames != null) {
+        mFrames.close();
+      }
+      mFrames = new DataInputStream(new BufferedInputStream(
+          new FileInputStream(new File(mDirectory, FRAMES_FILE)), 1 << 16));
+      if (mFrames.readInt() != MAGIC || mFrames.readInt() != VERSION) {
+        throw new IOException("Not a frame recording: " + mDirectory);
+      }
+    }
+
+    /**
+     * Reads the next frame into {@code frame}. The data buffer is acquired from {@code pool} when
+     * given; if the pool is exhausted the frame is skipped and {@code frame.data} set to
+     * {@code null}, the same way a camera drops frames while all its buffers are in use.
+     *
+     * @return {@code false} at the end of the recording.
+     */
+    public boolean next(Frame frame, FrameBufferPool pool) throws IOException {
+      try {
+        frame.width = mFrames.readInt();
+      } catch (EOFException e) {
+        return false;
+      }
+      frame.height = mFrames.readInt();
+      frame.rotation = mFrames.readInt();
+      frame.timestampNanos = mFrames.readLong();
+      int length = mFrames.readInt();
+      frame.data = pool != null ? pool.acquire(length) : new byte[length];
+      if (frame.data != null) {
+        mFrames.readFully(frame.data, 0, length);
+      } else {
+        skipFully(mFrames, length);
+      }
+      return true;
+    }
+
+    /**
+     * Skips the next frame without reading its data.
+     *
+     * @return {@code false} at the end of the recording.
+     */
+    public boolean skip() throws IOException {
+      try {
+        mFrames.readInt();
+      } catch (EOFException e) {
+        return false;
+      }
+      skipFully(mFrames, 4 + 4 + 8);
+      skipFully(mFrames, mFrames.readInt());
+      return true;
+    }
+
+    public int getWidth() {
+      return mWidth;
+    }
+
+    public int getHeight() {
+      return mHeight;
+    }
+
+    public int getPictureCount() {
+      return mPictures.length;
+    }
+
+    public byte[] readPicture(int index) throws IOException {
+      File file = mPictures[index];
+      byte[] jpeg = new byte[(int) file.length()];
+      DataInputStream input = new DataInputStream(new FileInputStream(file));
+      try {
+        input.readFully(jpeg);
+      } finally {
+        input.close();
+      }
+      return jpeg;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (mFrames != null) {
+        mFrames.close();
+        mFrames = null;
+      }
+    }
+
+    private static void skipFully(InputStream input, int length) throws IOException {
+      while (length > 0) {
+        long skipped = input.skip(length);
+        if (skipped <= 0) {
+          throw new EOFException();
+        }
+        length -= skipped;
+      }
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package org.reactnative.camera.utils;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays back a {@link FrameRecording} on its own thread the way a camera delivers frames: at a
+ * fixed rate, looping over the recording, and dropping a frame when its slot has already passed
+ * or when every pooled buffer is still held by a consumer. A rate of 0 delivers frames as fast as
+ * the listener accepts them. Recorded pictures are delivered in turn on request.
+ *
+ * Kept free of Android dependencies so replays can be tested on the JVM.
+ */
+public class FrameReplayer {
+
+  public interface Listener {
+    /**
+     * @return {@code false} to consume the next frame without reading it, like a camera that
+     *         keeps running while nobody listens.
+     */
+    boolean isConsumingFrames();
+
+    /**
+     * Called on the replay thread. {@code frame.data} must not be used after this method returns,
+     * unless it is retained in the pool it came from.
+     */
+    void onFrame(FrameRecording.Frame frame);
+
+    void onFrameDropped();
+
+    void onPicture(byte[] jpeg);
+
+    /**
+     * Called on the replay thread when the recording could not be read; replay stops.
+     */
+    void onError(IOException e);
+  }
+
+  private final FrameRecording.Reader mReader;
+  private final long mPeriodNanos;
+  private final Listener mListener;
+
+  private volatile FrameBufferPool mFrameBufferPool;
+  private volatile Thread mThread;
+  private volatile boolean mPictureRequested;
+  private int mNextPicture;
+
+  /**
+   * @param fps Frames per second to replay at, or 0 for as fast as possible.
+   */
+  public FrameReplayer(FrameRecording.Reader reader, float fps, Listener listener) {
+    mReader = reader;
+    mPeriodNanos = fps > 0 ? (long) (1e9 / fps) : 0;
+    mListener = listener;
+  }
+
+  /**
+   * Frames are read into buffers of {@code pool} from the next frame on, or into new arrays if
+   * it is {@code null}.
+   */
+  public void setFrameBufferPool(FrameBufferPool pool) {
+    mFrameBufferPool = pool;
+  }
+
+  public int getWidth() {
+    return mReader.getWidth();
+  }
+
+  public int getHeight() {
+    return mReader.getHeight();
+  }
+
+  public boolean hasPictures() {
+    return mReader.getPictureCount() > 0;
+  }
+
+  public synchronized void start() {
+    if (mThread != null) {
+      return;
+    }
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        replay();
+      }
+    }, "RNCamera-Replay-Thread");
+    thread.setPriority(Thread.NORM_PRIORITY);
+    mThread = thread;
+    thread.start();
+  }
+
+  /**
+   * Stops the replay thread and waits for it to finish, the recording is closed afterwards.
+   */
+  public void stop() {
+    Thread thread;
+    synchronized (this) {
+      thread = mThread;
+      mThread = null;
+    }
+    if (thread == null) {
+      return;
+    }
+    thread.interrupt();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public boolean isRunning() {
+    return mThread != null;
+  }
+
+  /**
+   * Delivers the next recorded picture instead of the next frame.
+   */
+  public void requestPicture() {
+    mPictureRequested = true;
+    Thread thread = mThread;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  private void replay() {
+    long next = System.nanoTime();
+    FrameRecording.Frame frame = new FrameRecording.Frame();
+    try {
+      while (mThread == Thread.currentThread()) {
+        if (mPeriodNanos > 0) {
+          long wait = next - System.nanoTime();
+          while (wait > 0 && !mPictureRequested && mThread == Thread.currentThread()) {
+            LockSupport.parkNanos(wait);
+            wait = next - System.nanoTime();
+          }
+        }
+        if (mThread != Thread.currentThread()) {
+          break;
+        }
+        if (mPictureRequested) {
+          mPictureRequested = false;
+          deliverPicture();
+          continue;
+        }
+
+        if (mListener.isConsumingFrames()) {
+          deliverFrame(frame);
+        } else {
+          skipFrame();
+        }
+
+        if (mPeriodNanos > 0) {
+          next += mPeriodNanos;
+          // frames whose slot passed while the listener was busy are lost
+          long now = System.nanoTime();
+          while (now - next > mPeriodNanos) {
+            skipFrame();
+            mListener.onFrameDropped();
+            next += mPeriodNanos;
+          }
+        }
+      }
+    } catch (IOException e) {
+      mListener.onError(e);
+    } finally {
+      try {
+        mReader.close();
+      } catch (IOException e) {
+        mListener.onError(e);
+      }
+    }
+  }
+
+  private void deliverFrame(FrameRecording.Frame frame) throws IOException {
+    FrameBufferPool pool = mFrameBufferPool;
+    if (!mReader.next(frame, pool)) {
+      mReader.rewind();
+      if (!mReader.next(frame, pool)) {
+        // empty recording
+        return;
+      }
+    }
+    if (frame.data == null) {
+      // every buffer is still held by a consumer
+      mListener.onFrameDropped();
+      return;
+    }
+    try {
+      mListener.onFrame(frame);
+    } finally {
+      // consumers that kept the frame retained it during the callback; drop our reference
+      if (pool != null) {
+        pool.release(frame.data);
+      }
+      frame.data = null;
+    }
+  }
+
+  private void skipFrame() throws IOException {
+    if (!mReader.skip()) {
+      mReader.rewind();
+      mReader.skip();
+    }
+  }
+
+  private void deliverPicture() throws IOException {
+    int count = mReader.getPictureCount();
+    if (count == 0) {
+      return;
+    }
+    byte[] jpeg = mReader.readPicture(mNextPicture);
+    mNextPicture = (mNextPicture + 1) % count;
+    mListener.onPicture(jpeg);
+  }
+}
@@ -0,0 +1,793 @@
+package org.reactnative.camera.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes a JPEG and its Exif data to disk in one pass. The Exif (APP1) segment is built in memory
+ * from the tags of a source picture plus the changes made through {@link #setAttribute}, and is
+ * spliced in right after SOI while the rest of the JPEG is streamed to the file with a single
+ * gathering write.
+ *
+ * This replaces writing the file first and then updating it with
+ * {@code ExifInterface.saveAttributes()}, which reads and rewrites the whole file a second time.
+ *
+ * Attribute names and value formats are the ones of {@code ExifInterface}, so the same maps can be
+ * used for both ({@code "1/100"} or {@code "0.01"} for rationals, comma separated lists for
+ * multiple values). Tags of the source picture are copied as they are, in its original byte order.
+ */
+public class JpegExifWriter {
+
+  private static final int SOI = 0xD8;
+  private static final int SOS = 0xDA;
+  private static final int EOI = 0xD9;
+  private static final int APP1 = 0xE1;
+
+  private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+  // payload of a segment is limited by its 16 bit length field
+  private static final int MAX_SEGMENT_PAYLOAD = 0xFFFF - 2;
+
+  private static final int IFD_0 = 0;
+  private static final int IFD_EXIF = 1;
+  private static final int IFD_GPS = 2;
+  private static final int IFD_INTEROP = 3;
+  private static final int IFD_1 = 4;
+  private static final int IFD_COUNT = 5;
+
+  private static final int TAG_EXIF_IFD_POINTER = 0x8769;
+  private static final int TAG_GPS_IFD_POINTER = 0x8825;
+  private static final int TAG_INTEROP_IFD_POINTER = 0xA005;
+  private static final int TAG_THUMBNAIL_OFFSET = 0x0201;
+  private static final int TAG_THUMBNAIL_LENGTH = 0x0202;
+  private static final int TAG_STRIP_OFFSETS = 0x0111;
+  private static final int TAG_STRIP_BYTE_COUNTS = 0x0117;
+
+  private static final int TYPE_BYTE = 1;
+  private static final int TYPE_ASCII = 2;
+  private static final int TYPE_SHORT = 3;
+  private static final int TYPE_LONG = 4;
+  private static final int TYPE_RATIONAL = 5;
+  private static final int TYPE_UNDEFINED = 7;
+  private static final int TYPE_SRATIONAL = 10;
+
+  private static final int[] TYPE_SIZES = {0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8};
+
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+
+  private static class TagInfo {
+    final int ifd;
+    final int tag;
+    final int type;
+
+    TagInfo(int ifd, int tag, int type) {
+      this.ifd = ifd;
+      this.tag = tag;
+      this.type = type;
+    }
+  }
+
+  private static class Entry {
+    final int tag;
+    final int type;
+    final int count;
+    final byte[] value;
+
+    Entry(int tag, int type, int count, byte[] value) {
+      this.tag = tag;
+      this.type = type;
+      this.count = count;
+      this.value = value;
+    }
+  }
+
+  // the tags RNCameraViewHelper.exifTags can set, offsets and pointers are managed by the writer
+  private static final Map<String, TagInfo> TAGS = new HashMap<>();
+
+  static {
+    tag("NewSubfileType", IFD_0, 0x00FE, TYPE_LONG);
+    tag("SubfileType", IFD_0, 0x00FF, TYPE_SHORT);
+    tag("ImageWidth", IFD_0, 0x0100, TYPE_LONG);
+    tag("ImageLength", IFD_0, 0x0101, TYPE_LONG);
+    tag("BitsPerSample", IFD_0, 0x0102, TYPE_SHORT);
+    tag("Compression", IFD_0, 0x0103, TYPE_SHORT);
+    tag("PhotometricInterpretation", IFD_0, 0x0106, TYPE_SHORT);
+    tag("ImageDescription", IFD_0, 0x010E, TYPE_ASCII);
+    tag("Make", IFD_0, 0x010F, TYPE_ASCII);
+    tag("Model", IFD_0, 0x0110, TYPE_ASCII);
+    tag("Orientation", IFD_0, 0x0112, TYPE_SHORT);
+    tag("SamplesPerPixel", IFD_0, 0x0115, TYPE_SHORT);
+    tag("RowsPerStrip", IFD_0, 0x0116, TYPE_LONG);
+    tag("XResolution", IFD_0, 0x011A, TYPE_RATIONAL);
+    tag("YResolution", IFD_0, 0x011B, TYPE_RATIONAL);
+    tag("PlanarConfiguration", IFD_0, 0x011C, TYPE_SHORT);
+    tag("ResolutionUnit", IFD_0, 0x0128, TYPE_SHORT);
+    tag("TransferFunction", IFD_0, 0x012D, TYPE_SHORT);
+    tag("Software", IFD_0, 0x0131, TYPE_ASCII);
+    tag("DateTime", IFD_0, 0x0132, TYPE_ASCII);
+    tag("Artist", IFD_0, 0x013B, TYPE_ASCII);
+    tag("WhitePoint", IFD_0, 0x013E, TYPE_RATIONAL);
+    tag("PrimaryChromaticities", IFD_0, 0x013F, TYPE_RATIONAL);
+    tag("YCbCrCoefficients", IFD_0, 0x0211, TYPE_RATIONAL);
+    tag("YCbCrSubSampling", IFD_0, 0x0212, TYPE_SHORT);
+    tag("YCbCrPositioning", IFD_0, 0x0213, TYPE_SHORT);
+    tag("ReferenceBlackWhite", IFD_0, 0x0214, TYPE_RATIONAL);
+    tag("Copyright", IFD_0, 0x8298, TYPE_ASCII);
+
+    tag("ExposureTime", IFD_EXIF, 0x829A, TYPE_RATIONAL);
+    tag("FNumber", IFD_EXIF, 0x829D, TYPE_RATIONAL);
+    tag("ExposureProgram", IFD_EXIF, 0x8822, TYPE_SHORT);
+    tag("SpectralSensitivity", IFD_EXIF, 0x8824, TYPE_ASCII);
+    tag("ISOSpeedRatings", IFD_EXIF, 0x8827, TYPE_SHORT);
+    tag("OECF", IFD_EXIF, 0x8828, TYPE_UNDEFINED);
+    tag("ExifVersion", IFD_EXIF, 0x9000, TYPE_UNDEFINED);
+    tag("DateTimeOriginal", IFD_EXIF, 0x9003, TYPE_ASCII);
+    tag("DateTimeDigitized", IFD_EXIF, 0x9004, TYPE_ASCII);
+    tag("ComponentsConfiguration", IFD_EXIF, 0x9101, TYPE_UNDEFINED);
+    tag("CompressedBitsPerPixel", IFD_EXIF, 0x9102, TYPE_RATIONAL);
+    tag("ShutterSpeedValue", IFD_EXIF, 0x9201, TYPE_SRATIONAL);
+    tag("ApertureValue", IFD_EXIF, 0x9202, TYPE_RATIONAL);
+    tag("BrightnessValue", IFD_EXIF, 0x9203, TYPE_SRATIONAL);
+    tag("ExposureBiasValue", IFD_EXIF, 0x9204, TYPE_SRATIONAL);
+    tag("MaxApertureValue", IFD_EXIF, 0x9205, TYPE_RATIONAL);
+    tag("SubjectDistance", IFD_EXIF, 0x9206, TYPE_RATIONAL);
+    tag("MeteringMode", IFD_EXIF, 0x9207, TYPE_SHORT);
+    tag("LightSource", IFD_EXIF, 0x9208, TYPE_SHORT);
+    tag("Flash", IFD_EXIF, 0x9209, TYPE_SHORT);
+    tag("FocalLength", IFD_EXIF, 0x920A, TYPE_RATIONAL);
+    tag("SubjectArea", IFD_EXIF, 0x9214, TYPE_SHORT);
+    tag("MakerNote", IFD_EXIF, 0x927C, TYPE_UNDEFINED);
+    tag("UserComment", IFD_EXIF, 0x9286, TYPE_UNDEFINED);
+    tag("SubSecTime", IFD_EXIF, 0x9290, TYPE_ASCII);
+    tag("SubSecTimeOriginal", IFD_EXIF, 0x9291, TYPE_ASCII);
+    tag("SubSecTimeDigitized", IFD_EXIF, 0x9292, TYPE_ASCII);
+    tag("FlashpixVersion", IFD_EXIF, 0xA000, TYPE_UNDEFINED);
+    tag("ColorSpace", IFD_EXIF, 0xA001, TYPE_SHORT);
+    tag("PixelXDimension", IFD_EXIF, 0xA002, TYPE_LONG);
+    tag("PixelYDimension", IFD_EXIF, 0xA003, TYPE_LONG);
+    tag("RelatedSoundFile", IFD_EXIF, 0xA004, TYPE_ASCII);
+    tag("FlashEnergy", IFD_EXIF, 0xA20B, TYPE_RATIONAL);
+    tag("SpatialFrequencyResponse", IFD_EXIF, 0xA20C, TYPE_UNDEFINED);
+    tag("FocalPlaneXResolution", IFD_EXIF, 0xA20E, TYPE_RATIONAL);
+    tag("FocalPlaneYResolution", IFD_EXIF, 0xA20F, TYPE_RATIONAL);
+    tag("FocalPlaneResolutionUnit", IFD_EXIF, 0xA210, TYPE_SHORT);
+    tag("SubjectLocation", IFD_EXIF, 0xA214, TYPE_SHORT);
+    tag("ExposureIndex", IFD_EXIF, 0xA215, TYPE_RATIONAL);
+    tag("SensingMethod", IFD_EXIF, 0xA217, TYPE_SHORT);
+    tag("FileSource", IFD_EXIF, 0xA300, TYPE_UNDEFINED);
+    tag("SceneType", IFD_EXIF, 0xA301, TYPE_UNDEFINED);
+    tag("CFAPattern", IFD_EXIF, 0xA302, TYPE_UNDEFINED);
+    tag("CustomRendered", IFD_EXIF, 0xA401, TYPE_SHORT);
+    tag("ExposureMode", IFD_EXIF, 0xA402, TYPE_SHORT);
+    tag("WhiteBalance", IFD_EXIF, 0xA403, TYPE_SHORT);
+    tag("DigitalZoomRatio", IFD_EXIF, 0xA404, TYPE_RATIONAL);
+    tag("FocalLengthIn35mmFilm", IFD_EXIF, 0xA405, TYPE_SHORT);
+    tag("SceneCaptureType", IFD_EXIF, 0xA406, TYPE_SHORT);
+    tag("GainControl", IFD_EXIF, 0xA407, TYPE_SHORT);
+    tag("Contrast", IFD_EXIF, 0xA408, TYPE_SHORT);
+    tag("Saturation", IFD_EXIF, 0xA409, TYPE_SHORT);
+    tag("Sharpness", IFD_EXIF, 0xA40A, TYPE_SHORT);
+    tag("DeviceSettingDescription", IFD_EXIF, 0xA40B, TYPE_UNDEFINED);
+    tag("SubjectDistanceRange", IFD_EXIF, 0xA40C, TYPE_SHORT);
+    tag("ImageUniqueID", IFD_EXIF, 0xA420, TYPE_ASCII);
+
+    tag("GPSVersionID", IFD_GPS, 0x0000, TYPE_BYTE);
+    tag("GPSLatitudeRef", IFD_GPS, 0x0001, TYPE_ASCII);
+    tag("GPSLatitude", IFD_GPS, 0x0002, TYPE_RATIONAL);
+    tag("GPSLongitudeRef", IFD_GPS, 0x0003, TYPE_ASCII);
+    tag("GPSLongitude", IFD_GPS, 0x0004, TYPE_RATIONAL);
+    tag("GPSAltitudeRef", IFD_GPS, 0x0005, TYPE_BYTE);
+    tag("GPSAltitude", IFD_GPS, 0x0006, TYPE_RATIONAL);
+    tag("GPSTimeStamp", IFD_GPS, 0x0007, TYPE_RATIONAL);
+    tag("GPSSatellites", IFD_GPS, 0x0008, TYPE_ASCII);
+    tag("GPSStatus", IFD_GPS, 0x0009, TYPE_ASCII);
+    tag("GPSMeasureMode", IFD_GPS, 0x000A, TYPE_ASCII);
+    tag("GPSDOP", IFD_GPS, 0x000B, TYPE_RATIONAL);
+    tag("GPSSpeedRef", IFD_GPS, 0x000C, TYPE_ASCII);
+    tag("GPSSpeed", IFD_GPS, 0x000D, TYPE_RATIONAL);
+    tag("GPSTrackRef", IFD_GPS, 0x000E, TYPE_ASCII);
+    tag("GPSTrack", IFD_GPS, 0x000F, TYPE_RATIONAL);
+    tag("GPSImgDirectionRef", IFD_GPS, 0x0010, TYPE_ASCII);
+    tag("GPSImgDirection", IFD_GPS, 0x0011, TYPE_RATIONAL);
+    tag("GPSMapDatum", IFD_GPS, 0x0012, TYPE_ASCII);
+    tag("GPSDestLatitudeRef", IFD_GPS, 0x0013, TYPE_ASCII);
+    tag("GPSDestLatitude", IFD_GPS, 0x0014, TYPE_RATIONAL);
+    tag("GPSDestLongitudeRef", IFD_GPS, 0x0015, TYPE_ASCII);
+    tag("GPSDestLongitude", IFD_GPS, 0x0016, TYPE_RATIONAL);
+    tag("GPSDestBearingRef", IFD_GPS, 0x0017, TYPE_ASCII);
+    tag("GPSDestBearing", IFD_GPS, 0x0018, TYPE_RATIONAL);
+    tag("GPSDestDistanceRef", IFD_GPS, 0x0019, TYPE_ASCII);
+    tag("GPSDestDistance", IFD_GPS, 0x001A, TYPE_RATIONAL);
+    tag("GPSProcessingMethod", IFD_GPS, 0x001B, TYPE_UNDEFINED);
+    tag("GPSAreaInformation", IFD_GPS, 0x001C, TYPE_UNDEFINED);
+    tag("GPSDateStamp", IFD_GPS, 0x001D, TYPE_ASCII);
+    tag("GPSDifferential", IFD_GPS, 0x001E, TYPE_SHORT);
+
+    tag("InteroperabilityIndex", IFD_INTEROP, 0x0001, TYPE_ASCII);
+
+    tag("ThumbnailImageWidth", IFD_1, 0x0100, TYPE_LONG);
+    tag("ThumbnailImageLength", IFD_1, 0x0101, TYPE_LONG);
+  }
+
+  private static void tag(String name, int ifd, int tag, int type) {
+    TAGS.put(name, new TagInfo(ifd, tag, type));
+  }
+
+  private final List<TreeMap<Integer, Entry>> mIfds = new ArrayList<>(IFD_COUNT);
+  private ByteOrder mOrder = ByteOrder.BIG_ENDIAN;
+  private byte[] mThumbnail;
+
+  /**
+   * Creates a writer without any tags, writing with it strips the Exif data of a picture.
+   */
+  public JpegExifWriter() {
+    for (int i = 0; i < IFD_COUNT; i++) {
+      mIfds.add(new TreeMap<Integer, Entry>());
+    }
+  }
+
+  /**
+   * Creates a writer with the Exif tags and thumbnail of {@code jpeg}. Exif data that cannot be
+   * parsed is dropped, just like a picture without Exif data.
+   */
+  public static JpegExifWriter fromJpeg(byte[] jpeg) {
+    JpegExifWriter writer = new JpegExifWriter();
+    int[] range = findExifSegment(jpeg);
+    if (range != null) {
+      try {
+        writer.readTiff(ByteBuffer.wrap(jpeg, range[0], range[1]).slice());
+      } catch (RuntimeException e) {
+        // corrupt or truncated, keep what was read so far out of the output
+        writer.clearAttributes();
+      }
+    }
+    return writer;
+  }
+
+  /**
+   * Creates a writer for a picture that was decoded from {@code jpeg} and encoded again. The tags
+   * are carried over with the new size, the thumbnail is dropped as it no longer matches, and the
+   * orientation is reset to normal if the pixels were rotated to it. A picture without Exif data
+   * gets none.
+   */
+  public static JpegExifWriter forReencoded(byte[] jpeg, int width, int height, boolean reoriented) {
+    JpegExifWriter writer = fromJpeg(jpeg);
+    writer.removeThumbnail();
+    if (writer.hasAttributes()) {
+      writer.setImageSize(width, height);
+    }
+    if (reoriented) {
+      writer.setAttribute("Orientation", "1");
+    }
+    return writer;
+  }
+
+  /**
+   * Sets a tag the way {@code ExifInterface.setAttribute} does, {@code null} removes it.
+   *
+   * @return {@code false} if the tag is not supported or the value could not be converted.
+   */
+  public boolean setAttribute(String name, String value) {
+    TagInfo info = TAGS.get(name);
+    if (info == null) {
+      return false;
+    }
+    TreeMap<Integer, Entry> ifd = mIfds.get(info.ifd);
+    if (value == null) {
+      ifd.remove(info.tag);
+      return true;
+    }
+    Entry entry;
+    try {
+      entry = encode(info, value);
+    } catch (NumberFormatException e) {
+      return false;
+    }
+    if (entry == null) {
+      return false;
+    }
+    ifd.put(info.tag, entry);
+    return true;
+  }
+
+  public void setLatLong(double latitude, double longitude) {
+    setAttribute("GPSLatitude", toDegreesMinutesSeconds(latitude));
+    setAttribute("GPSLatitudeRef", latitude >= 0 ? "N" : "S");
+    setAttribute("GPSLongitude", toDegreesMinutesSeconds(longitude));
+    setAttribute("GPSLongitudeRef", longitude >= 0 ? "E" : "W");
+  }
+
+  public void setAltitude(double altitude) {
+    setAttribute("GPSAltitude", Math.round(Math.abs(altitude) * 10000) + "/10000");
+    setAttribute("GPSAltitudeRef", altitude >= 0 ? "0" : "1");
+  }
+
+  /**
+   * Updates the dimensions of the primary picture after it was rotated, cropped or resized.
+   */
+  public void setImageSize(int width, int height) {
+    setAttribute("PixelXDimension", Integer.toString(width));
+    setAttribute("PixelYDimension", Integer.toString(height));
+    TreeMap<Integer, Entry> ifd0 = mIfds.get(IFD_0);
+    if (ifd0.containsKey(TAGS.get("ImageWidth").tag)) {
+      setAttribute("ImageWidth", Integer.toString(width));
+      setAttribute("ImageLength", Integer.toString(height));
+    }
+  }
+
+  /**
+   * Drops the thumbnail, e.g. because it no longer matches the rotated or edited picture.
+   */
+  public void removeThumbnail() {
+    mThumbnail = null;
+    mIfds.get(IFD_1).clear();
+  }
+
+  public boolean hasAttributes() {
+    for (TreeMap<Integer, Entry> ifd : mIfds) {
+      if (!ifd.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public void clearAttributes() {
+    for (TreeMap<Integer, Entry> ifd : mIfds) {
+      ifd.clear();
+    }
+    mThumbnail = null;
+  }
+
+  /**
+   * Writes {@code jpeg} to {@code file} with the Exif segment of this writer in place of its own.
+   * Without any tags the picture is written without Exif data.
+   */
+  public void write(byte[] jpeg, File file) throws IOException {
+    if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != SOI) {
+      throw new IOException("Not a JPEG");
+    }
+    List<ByteBuffer> buffers = new ArrayList<>();
+    buffers.add(ByteBuffer.wrap(jpeg, 0, 2));
+    byte[] app1 = buildApp1();
+    if (app1 != null) {
+      buffers.add(ByteBuffer.wrap(app1));
+    }
+    // everything after SOI except for Exif segments
+    int start = 2;
+    int[] range = findExifSegment(jpeg);
+    while (range != null) {
+      // range is the TIFF payload, the segment starts with marker, length and header
+      int segmentStart = range[0] - EXIF_HEADER.length - 4;
+      if (segmentStart > start) {
+        buffers.add(ByteBuffer.wrap(jpeg, start, segmentStart - start));
+      }
+      start = range[0] + range[1];
+      range = findExifSegment(jpeg, start);
+    }
+    buffers.add(ByteBuffer.wrap(jpeg, start, jpeg.length - start));
+
+    ByteBuffer[] array = buffers.toArray(new ByteBuffer[buffers.size()]);
+    FileOutputStream output = new FileOutputStream(file);
+    try {
+      FileChannel channel = output.getChannel();
+      long remaining = 0;
+      for (ByteBuffer buffer : array) {
+        remaining += buffer.remaining();
+      }
+      while (remaining > 0) {
+        remaining -= channel.write(array);
+      }
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * Opens {@code file} for an encoder that writes a JPEG without Exif data, such as
+   * {@code Bitmap.compress}. The Exif segment of this writer is inserted right after the SOI
+   * marker of the encoded data, which goes to the file as it arrives instead of being collected
+   * in memory first.
+   */
+  public OutputStream openOutputStream(File file) throws IOException {
+    final byte[] app1 = buildApp1();
+    return new FilterOutputStream(new BufferedOutputStream(new FileOutputStream(file))) {
+      // bytes of the SOI marker written so far
+      private int mSoiWritten;
+
+      @Override
+      public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] buffer, int offset, int length) throws IOException {
+        if (mSoiWritten < 2 && length > 0) {
+          int head = Math.min(2 - mSoiWritten, length);
+          out.write(buffer, offset, head);
+          mSoiWritten += head;
+          offset += head;
+          length -= head;
+          if (mSoiWritten == 2 && app1 != null) {
+            out.write(app1);
+          }
+        }
+        out.write(buffer, offset, length);
+      }
+    };
+  }
+
+  /**
+   * @return The complete APP1 segment including marker and length, or {@code null} if there are
+   *         no tags to write.
+   */
+  byte[] buildApp1() throws IOException {
+    byte[] tiff = buildTiff();
+    if (tiff == null) {
+      return null;
+    }
+    // the thumbnail and the maker note are the only large tags, dropped in that order
+    if (EXIF_HEADER.length + tiff.length > MAX_SEGMENT_PAYLOAD && mThumbnail != null) {
+      removeThumbnail();
+      tiff = buildTiff();
+    }
+    if (tiff != null && EXIF_HEADER.length + tiff.length > MAX_SEGMENT_PAYLOAD) {
+      setAttribute("MakerNote", null);
+      tiff = buildTiff();
+    }
+    if (tiff == null) {
+      return null;
+    }
+    int payload = EXIF_HEADER.length + tiff.length;
+    if (payload > MAX_SEGMENT_PAYLOAD) {
+      throw new IOException("Exif data does not fit into a JPEG segment (" + payload + " bytes)");
+    }
+    ByteBuffer segment = ByteBuffer.allocate(4 + payload);
+    segment.put((byte) 0xFF).put((byte) APP1).putShort((short) (payload + 2));
+    segment.put(EXIF_HEADER).put(tiff);
+    return segment.array();
+  }
+
+  private byte[] buildTiff() {
+    TreeMap<Integer, Entry> ifd0 = new TreeMap<>(mIfds.get(IFD_0));
+    TreeMap<Integer, Entry> exif = new TreeMap<>(mIfds.get(IFD_EXIF));
+    TreeMap<Integer, Entry> gps = mIfds.get(IFD_GPS);
+    TreeMap<Integer, Entry> interop = mIfds.get(IFD_INTEROP);
+    TreeMap<Integer, Entry> ifd1 = new TreeMap<>(mIfds.get(IFD_1));
+
+    // pointers are written as placeholders first, so the sizes below include them
+    if (!interop.isEmpty()) {
+      exif.put(TAG_INTEROP_IFD_POINTER, longEntry(TAG_INTEROP_IFD_POINTER, 0));
+    }
+    if (!exif.isEmpty()) {
+      ifd0.put(TAG_EXIF_IFD_POINTER, longEntry(TAG_EXIF_IFD_POINTER, 0));
+    }
+    if (!gps.isEmpty()) {
+      ifd0.put(TAG_GPS_IFD_POINTER, longEntry(TAG_GPS_IFD_POINTER, 0));
+    }
+    boolean hasIfd1 = !ifd1.isEmpty() || mThumbnail != null;
+    if (mThumbnail != null) {
+      ifd1.put(TAG_THUMBNAIL_OFFSET, longEntry(TAG_THUMBNAIL_OFFSET, 0));
+      ifd1.put(TAG_THUMBNAIL_LENGTH, longEntry(TAG_THUMBNAIL_LENGTH, mThumbnail.length));
+    }
+    if (ifd0.isEmpty() && !hasIfd1) {
+      return null;
+    }
+
+    int ifd0Offset = 8;
+    int exifOffset = ifd0Offset + sizeOf(ifd0);
+    int gpsOffset = exifOffset + sizeOf(exif);
+    int interopOffset = gpsOffset + sizeOf(gps);
+    int ifd1Offset = interopOffset + sizeOf(interop);
+    int thumbnailOffset = ifd1Offset + (hasIfd1 ? sizeOf(ifd1) : 0);
+    int size = thumbnailOffset + (mThumbnail != null ? mThumbnail.length : 0);
+
+    if (!interop.isEmpty()) {
+      exif.put(TAG_INTEROP_IFD_POINTER, longEntry(TAG_INTEROP_IFD_POINTER, interopOffset));
+    }
+    if (!exif.isEmpty()) {
+      ifd0.put(TAG_EXIF_IFD_POINTER, longEntry(TAG_EXIF_IFD_POINTER, exifOffset));
+    }
+    if (!gps.isEmpty()) {
+      ifd0.put(TAG_GPS_IFD_POINTER, longEntry(TAG_GPS_IFD_POINTER, gpsOffset));
+    }
+    if (mThumbnail != null) {
+      ifd1.put(TAG_THUMBNAIL_OFFSET, longEntry(TAG_THUMBNAIL_OFFSET, thumbnailOffset));
+    }
+
+    ByteBuffer tiff = ByteBuffer.allocate(size).order(mOrder);
+    if (mOrder == ByteOrder.BIG_ENDIAN) {
+      tiff.put((byte) 'M').put((byte) 'M');
+    } else {
+      tiff.put((byte) 'I').put((byte) 'I');
+    }
+    tiff.putShort((short) 42).putInt(ifd0Offset);
+    writeIfd(tiff, ifd0, hasIfd1 ? ifd1Offset : 0);
+    writeIfd(tiff, exif, 0);
+    writeIfd(tiff, gps, 0);
+    writeIfd(tiff, interop, 0);
+    if (hasIfd1) {
+      writeIfd(tiff, ifd1, 0);
+    }
+    if (mThumbnail != null) {
+      tiff.put(mThumbnail);
+    }
+    return tiff.array();
+  }
+
+  private static int sizeOf(TreeMap<Integer, Entry> ifd) {
+    if (ifd.isEmpty()) {
+      return 0;
+    }
+    int size = 2 + ifd.size() * 12 + 4;
+    for (Entry entry : ifd.values()) {
+      if (entry.value.length > 4) {
+        size += (entry.value.length + 1) & ~1;
+      }
+    }
+    return size;
+  }
+
+  private static void writeIfd(ByteBuffer tiff, TreeMap<Integer, Entry> ifd, int nextIfdOffset) {
+    if (ifd.isEmpty()) {
+      return;
+    }
+    int dataOffset = tiff.position() + 2 + ifd.size() * 12 + 4;
+    tiff.putShort((short) ifd.size());
+    for (Entry entry : ifd.values()) {
+      tiff.putShort((short) entry.tag).putShort((short) entry.type).putInt(entry.count);
+      if (entry.value.length > 4) {
+        tiff.putInt(dataOffset);
+        dataOffset += (entry.value.length + 1) & ~1;
+      } else {
+        tiff.put(entry.value);
+        for (int i = entry.value.length; i < 4; i++) {
+          tiff.put((byte) 0);
+        }
+      }
+    }
+    tiff.putInt(nextIfdOffset);
+    for (Entry entry : ifd.values()) {
+      if (entry.value.length > 4) {
+        tiff.put(entry.value);
+        if ((entry.value.length & 1) != 0) {
+          tiff.put((byte) 0);
+        }
+      }
+    }
+  }
+
+  private Entry longEntry(int tag, long value) {
+    return new Entry(tag, TYPE_LONG, 1, ByteBuffer.allocate(4).order(mOrder).putInt((int) value).array());
+  }
+
+  private Entry encode(TagInfo info, String value) {
+    switch (info.type) {
+      case TYPE_ASCII: {
+        byte[] text = value.getBytes(ASCII);
+        byte[] bytes = new byte[text.length + 1];
+        System.arraycopy(text, 0, bytes, 0, text.length);
+        return new Entry(info.tag, TYPE_ASCII, bytes.length, bytes);
+      }
+      case TYPE_UNDEFINED: {
+        byte[] bytes = value.getBytes(ASCII);
+        return new Entry(info.tag, TYPE_UNDEFINED, bytes.length, bytes);
+      }
+      case TYPE_BYTE: {
+        String[] values = split(value, "[,.]");
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+          bytes[i] = (byte) parseInteger(values[i]);
+        }
+        return new Entry(info.tag, TYPE_BYTE, bytes.length, bytes);
+      }
+      case TYPE_SHORT:
+      case TYPE_LONG: {
+        String[] values = split(value, ",");
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * TYPE_SIZES[info.type]).order(mOrder);
+        for (String item : values) {
+          long number = parseInteger(item);
+          if (info.type == TYPE_SHORT) {
+            buffer.putShort((short) number);
+          } else {
+            buffer.putInt((int) number);
+          }
+        }
+        return new Entry(info.tag, info.type, values.length, buffer.array());
+      }
+      case TYPE_RATIONAL:
+      case TYPE_SRATIONAL: {
+        // GPSTimeStamp is given as hh:mm:ss
+        String[] values = split(value, value.indexOf(':') >= 0 ? ":" : ",");
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 8).order(mOrder);
+        for (String item : values) {
+          long numerator;
+          long denominator;
+          int slash = item.indexOf('/');
+          if (slash >= 0) {
+            numerator = (long) Double.parseDouble(item.substring(0, slash).trim());
+            denominator = (long) Double.parseDouble(item.substring(slash + 1).trim());
+          } else {
+            double number = Double.parseDouble(item.trim());
+            if (number == Math.rint(number) && Math.abs(number) < Integer.MAX_VALUE) {
+              numerator = (long) number;
+              denominator = 1;
+            } else {
+              numerator = Math.round(number * 10000);
+              denominator = 10000;
+            }
+          }
+          if (info.type == TYPE_RATIONAL && (numerator < 0 || denominator < 0)) {
+            return null;
+          }
+          buffer.putInt((int) numerator).putInt((int) denominator);
+        }
+        return new Entry(info.tag, info.type, values.length, buffer.array());
+      }
+      default:
+        return null;
+    }
+  }
+
+  private static String[] split(String value, String separator) {
+    List<String> items = new ArrayList<>();
+    for (String item : value.split(separator)) {
+      if (!item.trim().isEmpty()) {
+        items.add(item.trim());
+      }
+    }
+    if (items.isEmpty()) {
+      throw new NumberFormatException("No values in \"" + value + "\"");
+    }
+    return items.toArray(new String[items.size()]);
+  }
+
+  private static long parseInteger(String value) {
+    return (long) Double.parseDouble(value);
+  }
+
+  private static String toDegreesMinutesSeconds(double coordinate) {
+    coordinate = Math.abs(coordinate);
+    int degrees = (int) coordinate;
+    coordinate = (coordinate - degrees) * 60;
+    int minutes = (int) coordinate;
+    coordinate = (coordinate - minutes) * 60;
+    int seconds = (int) Math.round(coordinate * 1000);
+    return degrees + "/1," + minutes + "/1," + seconds + "/1000";
+  }
+
+  private void readTiff(ByteBuffer tiff) {
+    if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+      mOrder = ByteOrder.LITTLE_ENDIAN;
+    } else if (tiff.get(0) == 'M' && tiff.get(1) == 'M') {
+      mOrder = ByteOrder.BIG_ENDIAN;
+    } else {
+      return;
+    }
+    tiff.order(mOrder);
+    if (tiff.getShort(2) != 42) {
+      return;
+    }
+    int ifd1Offset = readIfd(tiff, tiff.getInt(4), IFD_0);
+    if (ifd1Offset > 0 && ifd1Offset < tiff.limit()) {
+      readIfd(tiff, ifd1Offset, IFD_1);
+    }
+  }
+
+  /**
+   * @return The offset of the next IFD.
+   */
+  private int readIfd(ByteBuffer tiff, int offset, int ifd) {
+    TreeMap<Integer, Entry> entries = mIfds.get(ifd);
+    int count = tiff.getShort(offset) & 0xFFFF;
+    int thumbnailOffset = -1;
+    int thumbnailLength = -1;
+    boolean hasStrips = false;
+    for (int i = 0; i < count; i++) {
+      int position = offset + 2 + i * 12;
+      int tag = tiff.getShort(position) & 0xFFFF;
+      int type = tiff.getShort(position + 2) & 0xFFFF;
+      int components = tiff.getInt(position + 4);
+      if (type <= 0 || type >= TYPE_SIZES.length || components < 0) {
+        continue;
+      }
+      long length = (long) components * TYPE_SIZES[type];
+      if (length > tiff.limit()) {
+        continue;
+      }
+      int valueOffset = length > 4 ? tiff.getInt(position + 8) : position + 8;
+      if (tag == TAG_EXIF_IFD_POINTER && ifd == IFD_0) {
+        readIfd(tiff, tiff.getInt(position + 8), IFD_EXIF);
+      } else if (tag == TAG_GPS_IFD_POINTER && ifd == IFD_0) {
+        readIfd(tiff, tiff.getInt(position + 8), IFD_GPS);
+      } else if (tag == TAG_INTEROP_IFD_POINTER && ifd == IFD_EXIF) {
+        readIfd(tiff, tiff.getInt(position + 8), IFD_INTEROP);
+      } else if (tag == TAG_THUMBNAIL_OFFSET && ifd == IFD_1) {
+        thumbnailOffset = tiff.getInt(position + 8);
+      } else if (tag == TAG_THUMBNAIL_LENGTH && ifd == IFD_1) {
+        thumbnailLength = tiff.getInt(position + 8);
+      } else if (tag == TAG_STRIP_OFFSETS || tag == TAG_STRIP_BYTE_COUNTS) {
+        // uncompressed thumbnails are not carried over
+        hasStrips = true;
+      } else {
+        byte[] value = new byte[(int) length];
+        ByteBuffer source = tiff.duplicate();
+        source.position(valueOffset);
+        source.get(value);
+        entries.put(tag, new Entry(tag, type, components, value));
+      }
+    }
+    if (ifd == IFD_1) {
+      if (hasStrips) {
+        entries.clear();
+      } else if (thumbnailOffset > 0 && thumbnailLength > 0
+          && (long) thumbnailOffset + thumbnailLength <= tiff.limit()) {
+        mThumbnail = new byte[thumbnailLength];
+        ByteBuffer source = tiff.duplicate();
+        source.position(thumbnailOffset);
+        source.get(mThumbnail);
+      }
+    }
+    return tiff.getInt(offset + 2 + count * 12);
+  }
+
+  private static int[] findExifSegment(byte[] jpeg) {
+    return findExifSegment(jpeg, 2);
+  }
+
+  /**
+   * @return Offset and length of the TIFF data of the first Exif segment at or after
+   *         {@code from}, or {@code null} if there is none before the image data.
+   */
+  private static int[] findExifSegment(byte[] jpeg, int from) {
+    if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != SOI) {
+      return null;
+    }
+    int pos = from;
+    while (pos + 4 <= jpeg.length) {
+      if ((jpeg[pos] & 0xFF) != 0xFF) {
+        return null;
+      }
+      int marker = jpeg[pos + 1] & 0xFF;
+      if (marker == 0xFF) {
+        pos++;
+        continue;
+      }
+      if (marker == SOS || marker == EOI) {
+        return null;
+      }
+      int length = ((jpeg[pos + 2] & 0xFF) << 8) | (jpeg[pos + 3] & 0xFF);
+      if (length < 2 || pos + 2 + length > jpeg.length) {
+        return null;
+      }
+      if (marker == APP1 && length >= 2 + EXIF_HEADER.length && hasExifHeader(jpeg, pos + 4)) {
+        int tiffStart = pos + 4 + EXIF_HEADER.length;
+        return new int[]{tiffStart, length - 2 - EXIF_HEADER.length};
+      }
+      pos += 2 + length;
+    }
+    return null;
+  }
+
+  private static boolean hasExifHeader(byte[] jpeg, int offset) {
+    for (int i = 0; i < EXIF_HEADER.length; i++) {
+      if (jpeg[offset + i] != EXIF_HEADER[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,878 @@
+package org.reactnative.camera.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rotates a baseline JPEG by 90, 180 or 270 degrees without decoding it to pixels, by moving and
+ * transposing the quantized DCT blocks (the same technique as jpegtran). The picture is not
+ * re-compressed, so there is no quality loss, and memory use is bounded by the coefficients
+ * instead of a full ARGB bitmap and its rotated copy.
+ *
+ * Like {@code jpegtran -trim}, partial MCUs at the edges that would end up at the top/left
+ * after the rotation are dropped, so the result can be up to 15 pixels smaller in one
+ * dimension. The Exif (APP1) segment is dropped because its orientation, dimensions and
+ * thumbnail no longer apply; callers write fresh Exif data afterwards. Other APP segments (JFIF,
+ * ICC profile, ...) and comments are kept.
+ *
+ * Only 8-bit Huffman-coded sequential JPEGs with a single interleaved scan are supported, which
+ * is what camera HALs produce; {@link #rotate(byte[], int)} returns {@code null} for anything
+ * else so callers can fall back to decoding the picture.
+ */
+public class JpegLosslessRotation {
+
+  private static final int[] ZIGZAG = {
+      0, 1, 8, 16, 9, 2, 3, 10,
+      17, 24, 32, 25, 18, 11, 4, 5,
+      12, 19, 26, 33, 40, 48, 41, 34,
+      27, 20, 13, 6, 7, 14, 21, 28,
+      35, 42, 49, 56, 57, 50, 43, 36,
+      29, 22, 15, 23, 30, 37, 44, 51,
+      58, 59, 52, 45, 38, 31, 39, 46,
+      53, 60, 61, 54, 47, 55, 62, 63
+  };
+
+  private static final int SOF0 = 0xC0;
+  private static final int SOF1 = 0xC1;
+  private static final int DHT = 0xC4;
+  private static final int SOI = 0xD8;
+  private static final int EOI = 0xD9;
+  private static final int SOS = 0xDA;
+  private static final int DQT = 0xDB;
+  private static final int DRI = 0xDD;
+  private static final int APP1 = 0xE1;
+
+  /**
+   * @param jpeg The JPEG file contents.
+   * @param degrees Clockwise rotation, 90, 180 or 270.
+   * @return The rotated JPEG, or {@code null} if the picture is not supported (progressive,
+   * arithmetic coded, 12-bit, corrupt, ...) or the rotation is not a multiple of 90 degrees.
+   */
+  public static byte[] rotate(byte[] jpeg, int degrees) {
+    degrees = ((degrees % 360) + 360) % 360;
+    if (degrees != 90 && degrees != 180 && degrees != 270) {
+      return null;
+    }
+    try {
+      Image image = Image.parse(jpeg);
+      if (image == null) {
+        return null;
+      }
+      return image.rotate(degrees);
+    } catch (RuntimeException e) {
+      // truncated or corrupt data
+      return null;
+    }
+  }
+
+  private static class Component {
+    int id;
+    int h;
+    int v;
+    int quantTable;
+    int dcTable;
+    int acTable;
+    int blocksWide;
+    int blocksHigh;
+    short[] coefficients;
+  }
+
+  private static class HuffmanTable {
+    final int[] counts = new int[17];
+    final int[] symbols;
+    // decoding tables, see JPEG spec F.2.2.3
+    final int[] minCode = new int[17];
+    final int[] maxCode = new int[18];
+    final int[] valPtr = new int[17];
+
+    HuffmanTable(int[] counts, int[] symbols) {
+      System.arraycopy(counts, 0, this.counts, 0, 17);
+      this.symbols = symbols;
+      int code = 0;
+      int k = 0;
+      for (int length = 1; length <= 16; length++) {
+        valPtr[length] = k;
+        minCode[length] = code;
+        code += counts[length];
+        k += counts[length];
+        maxCode[length] = counts[length] > 0 ? code - 1 : -1;
+        code <<= 1;
+      }
+      maxCode[17] = Integer.MAX_VALUE;
+    }
+  }
+
+  private static class Image {
+    final List<byte[]> keptSegments = new ArrayList<>();
+    final int[][] quantTables = new int[4][];
+    final boolean[] quantTable16Bit = new boolean[4];
+    final HuffmanTable[] dcTables = new HuffmanTable[4];
+    final HuffmanTable[] acTables = new HuffmanTable[4];
+    int frameMarker;
+    int width;
+    int height;
+    Component[] components;
+    int maxH;
+    int maxV;
+    int restartInterval;
+
+    static Image parse(byte[] data) {
+      if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != SOI) {
+        return null;
+      }
+      Image image = new Image();
+      int pos = 2;
+      while (pos + 4 <= data.length) {
+        if ((data[pos] & 0xFF) != 0xFF) {
+          return null;
+        }
+        int marker = data[pos + 1] & 0xFF;
+        if (marker == 0xFF) {
+          // fill byte
+          pos++;
+          continue;
+        }
+        if (marker == EOI) {
+          return null;
+        }
+        int length = ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+        int segmentStart = pos + 4;
+        int segmentEnd = pos + 2 + length;
+        if (length < 2 || segmentEnd > data.length) {
+          return null;
+        }
+
+        if (marker == SOF0 || marker == SOF1) {
+          if (!image.parseFrame(data, segmentStart, marker)) {
+            return null;
+          }
+        } else if (marker >= 0xC2 && marker <= 0xCF && marker != DHT && marker != 0xC8) {
+          // progressive, lossless, hierarchical or arithmetic coding
+          return null;
+        } else if (marker == DHT) {
+          image.parseHuffmanTables(data, segmentStart, segmentEnd);
+        } else if (marker == DQT) {
+          image.parseQuantTables(data, segmentStart, segmentEnd);
+        } else if (marker == DRI) {
+          image.restartInterval = ((data[segmentStart] & 0xFF) << 8) | (data[segmentStart + 1] & 0xFF);
+        } else if (marker == SOS) {
+          if (image.components == null || !image.parseScanHeader(data, segmentStart)) {
+            return null;
+          }
+          image.decodeScan(data, segmentEnd);
+          return image;
+        } else if ((marker >= 0xE0 && marker <= 0xEF) || marker == 0xFE) {
+          boolean exif = marker == APP1 && length >= 8
+              && data[segmentStart] == 'E' && data[segmentStart + 1] == 'x'
+              && data[segmentStart + 2] == 'i' && data[segmentStart + 3] == 'f';
+          if (!exif) {
+            image.keptSegments.add(Arrays.copyOfRange(data, pos, segmentEnd));
+          }
+        }
+        pos = segmentEnd;
+      }
+      return null;
+    }
+
+    boolean parseFrame(byte[] data, int pos, int marker) {
+      if ((data[pos] & 0xFF) != 8) {
+        return false;
+      }
+      frameMarker = marker;
+      height = ((data[pos + 1] & 0xFF) << 8) | (data[pos + 2] & 0xFF);
+      width = ((data[pos + 3] & 0xFF) << 8) | (data[pos + 4] & 0xFF);
+      int count = data[pos + 5] & 0xFF;
+      if (width == 0 || height == 0 || count == 0 || count > 4) {
+        return false;
+      }
+      components = new Component[count];
+      pos += 6;
+      for (int i = 0; i < count; i++) {
+        Component component = new Component();
+        component.id = data[pos] & 0xFF;
+        component.h = (data[pos + 1] >> 4) & 0x0F;
+        component.v = data[pos + 1] & 0x0F;
+        component.quantTable = data[pos + 2] & 0x03;
+        if (component.h < 1 || component.h > 4 || component.v < 1 || component.v > 4) {
+          return false;
+        }
+        components[i] = component;
+        pos += 3;
+      }
+      if (count == 1) {
+        // a single component is never interleaved, its MCU is one block
+        components[0].h = 1;
+        components[0].v = 1;
+      }
+      for (Component component : components) {
+        maxH = Math.max(maxH, component.h);
+        maxV = Math.max(maxV, component.v);
+      }
+      int mcusWide = ceilDiv(width, 8 * maxH);
+      int mcusHigh = ceilDiv(height, 8 * maxV);
+      for (Component component : components) {
+        component.blocksWide = mcusWide * component.h;
+        component.blocksHigh = mcusHigh * component.v;
+        component.coefficients = new short[component.blocksWide * component.blocksHigh * 64];
+      }
+      return true;
+    }
+
+    void parseHuffmanTables(byte[] data, int pos, int end) {
+      while (pos < end) {
+        int tableClass = (data[pos] >> 4) & 0x0F;
+        int id = data[pos] & 0x03;
+        int[] counts = new int[17];
+        int total = 0;
+        for (int i = 1; i <= 16; i++) {
+          counts[i] = data[pos + i] & 0xFF;
+          total += counts[i];
+        }
+        pos += 17;
+        int[] symbols = new int[total];
+        for (int i = 0; i < total; i++) {
+          symbols[i] = data[pos + i] & 0xFF;
+        }
+        pos += total;
+        if (tableClass == 0) {
+          dcTables[id] = new HuffmanTable(counts, symbols);
+        } else {
+          acTables[id] = new HuffmanTable(counts, symbols);
+        }
+      }
+    }
+
+    void parseQuantTables(byte[] data, int pos, int end) {
+      while (pos < end) {
+        boolean sixteenBit = ((data[pos] >> 4) & 0x0F) != 0;
+        int id = data[pos] & 0x03;
+        pos++;
+        int[] table = new int[64];
+        for (int i = 0; i < 64; i++) {
+          // stored in zigzag order, kept in natural order
+          if (sixteenBit) {
+            table[ZIGZAG[i]] = ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+            pos += 2;
+          } else {
+            table[ZIGZAG[i]] = data[pos] & 0xFF;
+            pos++;
+          }
+        }
+        quantTables[id] = table;
+        quantTable16Bit[id] = sixteenBit;
+      }
+    }
+
+    boolean parseScanHeader(byte[] data, int pos) {
+      int count = data[pos] & 0xFF;
+      if (count != components.length) {
+        // multi-scan sequential files are rare enough not to bother
+        return false;
+      }
+      pos++;
+      for (int i = 0; i < count; i++) {
+        int id = data[pos] & 0xFF;
+        Component component = null;
+        for (Component candidate : components) {
+          if (candidate.id == id) {
+            component = candidate;
+          }
+        }
+        if (component == null) {
+          return false;
+        }
+        component.dcTable = (data[pos + 1] >> 4) & 0x03;
+        component.acTable = data[pos + 1] & 0x03;
+        if (dcTables[component.dcTable] == null || acTables[component.acTable] == null
+            || quantTables[component.quantTable] == null) {
+          return false;
+        }
+        pos += 2;
+      }
+      int spectralStart = data[pos] & 0xFF;
+      int spectralEnd = data[pos + 1] & 0xFF;
+      int approximation = data[pos + 2] & 0xFF;
+      return spectralStart == 0 && spectralEnd == 63 && approximation == 0;
+    }
+
+    void decodeScan(byte[] data, int pos) {
+      BitReader reader = new BitReader(data, pos);
+      int mcusWide = components[0].blocksWide / components[0].h;
+      int mcusHigh = components[0].blocksHigh / components[0].v;
+      int[] predictions = new int[components.length];
+      int mcuCount = 0;
+      for (int mcuY = 0; mcuY < mcusHigh; mcuY++) {
+        for (int mcuX = 0; mcuX < mcusWide; mcuX++) {
+          if (restartInterval > 0 && mcuCount > 0 && mcuCount % restartInterval == 0) {
+            reader.restart();
+            Arrays.fill(predictions, 0);
+          }
+          for (int c = 0; c < components.length; c++) {
+            Component component = components[c];
+            for (int v = 0; v < component.v; v++) {
+              for (int h = 0; h < component.h; h++) {
+                int blockX = mcuX * component.h + h;
+                int blockY = mcuY * component.v + v;
+                int offset = (blockY * component.blocksWide + blockX) * 64;
+                predictions[c] = decodeBlock(reader, component, component.coefficients, offset, predictions[c]);
+              }
+            }
+          }
+          mcuCount++;
+        }
+      }
+    }
+
+    int decodeBlock(BitReader reader, Component component, short[] out, int offset, int prediction) {
+      int size = reader.decode(dcTables[component.dcTable]);
+      int dc = prediction + (size == 0 ? 0 : extend(reader.receive(size), size));
+      out[offset] = (short) dc;
+      HuffmanTable ac = acTables[component.acTable];
+      for (int k = 1; k < 64; ) {
+        int symbol = reader.decode(ac);
+        int run = symbol >> 4;
+        int acSize = symbol & 0x0F;
+        if (acSize == 0) {
+          if (run != 15) {
+            break;
+          }
+          k += 16;
+          continue;
+        }
+        k += run;
+        if (k > 63) {
+          throw new IllegalStateException("Bad AC coefficient index");
+        }
+        out[offset + ZIGZAG[k]] = (short) extend(reader.receive(acSize), acSize);
+        k++;
+      }
+      return dc;
+    }
+
+    byte[] rotate(int degrees) {
+      boolean transpose = degrees != 180;
+      int mcuWidth = 8 * maxH;
+      int mcuHeight = 8 * maxV;
+      // edges that would move to the top or left are trimmed to whole MCUs
+      boolean trimWidth = degrees != 90;
+      boolean trimHeight = degrees != 270;
+      int sourceWidth = trimWidth ? width / mcuWidth * mcuWidth : width;
+      int sourceHeight = trimHeight ? height / mcuHeight * mcuHeight : height;
+      if (sourceWidth == 0 || sourceHeight == 0) {
+        return null;
+      }
+      int outputWidth = transpose ? sourceHeight : sourceWidth;
+      int outputHeight = transpose ? sourceWidth : sourceHeight;
+      int outputMaxH = transpose ? maxV : maxH;
+      int outputMaxV = transpose ? maxH : maxV;
+      int outputMcusWide = ceilDiv(outputWidth, 8 * outputMaxH);
+      int outputMcusHigh = ceilDiv(outputHeight, 8 * outputMaxV);
+
+      // luminance gets tables 0, all other components share tables 1 (baseline allows two)
+      int tableCount = components.length > 1 ? 2 : 1;
+      int[][] dcFrequencies = new int[tableCount][257];
+      int[][] acFrequencies = new int[tableCount][257];
+      encodeScan(degrees, outputMcusWide, outputMcusHigh, dcFrequencies, acFrequencies, null, null, null);
+
+      int[][] dcCodes = new int[tableCount][];
+      int[][] dcLengths = new int[tableCount][];
+      int[][] acCodes = new int[tableCount][];
+      int[][] acLengths = new int[tableCount][];
+      HuffmanTable[] outputDcTables = new HuffmanTable[tableCount];
+      HuffmanTable[] outputAcTables = new HuffmanTable[tableCount];
+      for (int t = 0; t < tableCount; t++) {
+        outputDcTables[t] = HuffmanBuilder.build(dcFrequencies[t]);
+        outputAcTables[t] = HuffmanBuilder.build(acFrequencies[t]);
+        dcCodes[t] = new int[256];
+        dcLengths[t] = new int[256];
+        acCodes[t] = new int[256];
+        acLengths[t] = new int[256];
+        HuffmanBuilder.assignCodes(outputDcTables[t], dcCodes[t], dcLengths[t]);
+        HuffmanBuilder.assignCodes(outputAcTables[t], acCodes[t], acLengths[t]);
+      }
+
+      ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(1024, estimateSize()));
+      output.write(0xFF);
+      output.write(SOI);
+      for (byte[] segment : keptSegments) {
+        output.write(segment, 0, segment.length);
+      }
+      writeQuantTables(output, transpose);
+      writeFrameHeader(output, outputWidth, outputHeight, transpose);
+      for (int t = 0; t < tableCount; t++) {
+        writeHuffmanTable(output, 0, t, outputDcTables[t]);
+        writeHuffmanTable(output, 1, t, outputAcTables[t]);
+      }
+      writeScanHeader(output);
+
+      BitWriter writer = new BitWriter(output);
+      encodeScan(degrees, outputMcusWide, outputMcusHigh, null, null, writer, new int[][][] { dcCodes, acCodes },
+          new int[][][] { dcLengths, acLengths });
+      writer.flush();
+      output.write(0xFF);
+      output.write(EOI);
+      return output.toByteArray();
+    }
+
+    /**
+     * Walks the rotated image in MCU order. Either counts the Huffman symbols into
+     * {@code dcFrequencies}/{@code acFrequencies}, or writes them with {@code writer}.
+     */
+    void encodeScan(int degrees, int mcusWide, int mcusHigh, int[][] dcFrequencies, int[][] acFrequencies,
+                    BitWriter writer, int[][][] codes, int[][][] lengths) {
+      boolean transpose = degrees != 180;
+      int[] predictions = new int[components.length];
+      short[] block = new short[64];
+      for (int mcuY = 0; mcuY < mcusHigh; mcuY++) {
+        for (int mcuX = 0; mcuX < mcusWide; mcuX++) {
+          for (int c = 0; c < components.length; c++) {
+            Component component = components[c];
+            int table = c == 0 ? 0 : 1;
+            int outputH = transpose ? component.v : component.h;
+            int outputV = transpose ? component.h : component.v;
+            // number of source blocks kept in each direction, see rotate()
+            int keptWide = degrees == 90 ? component.blocksWide : width / (8 * maxH) * component.h;
+            int keptHigh = degrees == 270 ? component.blocksHigh : height / (8 * maxV) * component.v;
+            for (int v = 0; v < outputV; v++) {
+              for (int h = 0; h < outputH; h++) {
+                int x = mcuX * outputH + h;
+                int y = mcuY * outputV + v;
+                int sourceX;
+                int sourceY;
+                if (degrees == 90) {
+                  sourceX = y;
+                  sourceY = keptHigh - 1 - x;
+                } else if (degrees == 270) {
+                  sourceX = keptWide - 1 - y;
+                  sourceY = x;
+                } else {
+                  sourceX = keptWide - 1 - x;
+                  sourceY = keptHigh - 1 - y;
+                }
+                transformBlock(component.coefficients, (sourceY * component.blocksWide + sourceX) * 64, block, degrees);
+
+                int dc = block[0];
+                int diff = dc - predictions[c];
+                predictions[c] = dc;
+                if (writer == null) {
+                  countBlock(block, diff, dcFrequencies[table], acFrequencies[table]);
+                } else {
+                  writeBlock(writer, block, diff, codes[0][table], lengths[0][table], codes[1][table],
+                      lengths[1][table]);
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+
+    int estimateSize() {
+      int size = 0;
+      for (byte[] segment : keptSegments) {
+        size += segment.length;
+      }
+      return size + width * height / 4;
+    }
+
+    void writeQuantTables(ByteArrayOutputStream output, boolean transpose) {
+      for (int id = 0; id < 4; id++) {
+        int[] table = quantTables[id];
+        if (table == null) {
+          continue;
+        }
+        boolean sixteenBit = quantTable16Bit[id];
+        writeMarker(output, DQT, 1 + (sixteenBit ? 128 : 64));
+        output.write((sixteenBit ? 0x10 : 0) | id);
+        for (int i = 0; i < 64; i++) {
+          int index = ZIGZAG[i];
+          int value = transpose ? table[(index % 8) * 8 + index / 8] : table[index];
+          if (sixteenBit) {
+            output.write(value >> 8);
+          }
+          output.write(value & 0xFF);
+        }
+      }
+    }
+
+    void writeFrameHeader(ByteArrayOutputStream output, int outputWidth, int outputHeight, boolean transpose) {
+      writeMarker(output, frameMarker, 6 + 3 * components.length);
+      output.write(8);
+      output.write(outputHeight >> 8);
+      output.write(outputHeight & 0xFF);
+      output.write(outputWidth >> 8);
+      output.write(outputWidth & 0xFF);
+      output.write(components.length);
+      for (Component component : components) {
+        int h = transpose ? component.v : component.h;
+        int v = transpose ? component.h : component.v;
+        output.write(component.id);
+        output.write((h << 4) | v);
+        output.write(component.quantTable);
+      }
+    }
+
+    void writeScanHeader(ByteArrayOutputStream output) {
+      writeMarker(output, SOS, 4 + 2 * components.length);
+      output.write(components.length);
+      for (int c = 0; c < components.length; c++) {
+        int table = c == 0 ? 0 : 1;
+        output.write(components[c].id);
+        output.write((table << 4) | table);
+      }
+      output.write(0);
+      output.write(63);
+      output.write(0);
+    }
+  }
+
+  /**
+   * Moves the coefficients of one 8x8 block into {@code out} for a clockwise rotation. A
+   * transpose swaps horizontal and vertical frequencies, a mirror negates the odd frequencies
+   * along the mirrored axis.
+   */
+  private static void transformBlock(short[] in, int offset, short[] out, int degrees) {
+    for (int v = 0; v < 8; v++) {
+      for (int u = 0; u < 8; u++) {
+        int value;
+        if (degrees == 90) {
+          // transpose, then mirror horizontally
+          value = in[offset + u * 8 + v];
+          if ((u & 1) != 0) {
+            value = -value;
+          }
+        } else if (degrees == 270) {
+          // transpose, then mirror vertically
+          value = in[offset + u * 8 + v];
+          if ((v & 1) != 0) {
+            value = -value;
+          }
+        } else {
+          value = in[offset + v * 8 + u];
+          if (((u + v) & 1) != 0) {
+            value = -value;
+          }
+        }
+        out[v * 8 + u] = (short) value;
+      }
+    }
+  }
+
+  private static void countBlock(short[] block, int diff, int[] dcFrequencies, int[] acFrequencies) {
+    dcFrequencies[bitLength(diff)]++;
+    int run = 0;
+    for (int k = 1; k < 64; k++) {
+      int value = block[ZIGZAG[k]];
+      if (value == 0) {
+        run++;
+        continue;
+      }
+      while (run > 15) {
+        acFrequencies[0xF0]++;
+        run -= 16;
+      }
+      acFrequencies[(run << 4) | bitLength(value)]++;
+      run = 0;
+    }
+    if (run > 0) {
+      acFrequencies[0x00]++;
+    }
+  }
+
+  private static void writeBlock(BitWriter writer, short[] block, int diff, int[] dcCodes, int[] dcLengths,
+                                 int[] acCodes, int[] acLengths) {
+    int size = bitLength(diff);
+    writer.write(dcCodes[size], dcLengths[size]);
+    if (size > 0) {
+      writer.write(diff < 0 ? diff - 1 : diff, size);
+    }
+    int run = 0;
+    for (int k = 1; k < 64; k++) {
+      int value = block[ZIGZAG[k]];
+      if (value == 0) {
+        run++;
+        continue;
+      }
+      while (run > 15) {
+        writer.write(acCodes[0xF0], acLengths[0xF0]);
+        run -= 16;
+      }
+      int valueSize = bitLength(value);
+      int symbol = (run << 4) | valueSize;
+      writer.write(acCodes[symbol], acLengths[symbol]);
+      writer.write(value < 0 ? value - 1 : value, valueSize);
+      run = 0;
+    }
+    if (run > 0) {
+      writer.write(acCodes[0x00], acLengths[0x00]);
+    }
+  }
+
+  private static void writeHuffmanTable(ByteArrayOutputStream output, int tableClass, int id, HuffmanTable table) {
+    writeMarker(output, DHT, 1 + 16 + table.symbols.length);
+    output.write((tableClass << 4) | id);
+    for (int i = 1; i <= 16; i++) {
+      output.write(table.counts[i]);
+    }
+    for (int symbol : table.symbols) {
+      output.write(symbol);
+    }
+  }
+
+  private static void writeMarker(ByteArrayOutputStream output, int marker, int payloadLength) {
+    int length = payloadLength + 2;
+    output.write(0xFF);
+    output.write(marker);
+    output.write(length >> 8);
+    output.write(length & 0xFF);
+  }
+
+  private static int bitLength(int value) {
+    value = Math.abs(value);
+    return 32 - Integer.numberOfLeadingZeros(value);
+  }
+
+  private static int extend(int value, int size) {
+    return value < (1 << (size - 1)) ? value - (1 << size) + 1 : value;
+  }
+
+  private static int ceilDiv(int value, int divisor) {
+    return (value + divisor - 1) / divisor;
+  }
+
+  /**
+   * Builds length-limited optimal Huffman tables, as described in JPEG spec K.2.
+   */
+  private static class HuffmanBuilder {
+
+    static HuffmanTable build(int[] frequencies) {
+      int[] freq = Arrays.copyOf(frequencies, 257);
+      // reserved symbol so no code consists of only 1 bits
+      freq[256] = 1;
+      int[] codeSize = new int[257];
+      int[] others = new int[257];
+      Arrays.fill(others, -1);
+
+      while (true) {
+        int c1 = -1;
+        int c2 = -1;
+        long v1 = Long.MAX_VALUE;
+        long v2 = Long.MAX_VALUE;
+        for (int i = 0; i <= 256; i++) {
+          if (freq[i] == 0) {
+            continue;
+          }
+          if (freq[i] <= v1) {
+            v2 = v1;
+            c2 = c1;
+            v1 = freq[i];
+            c1 = i;
+          } else if (freq[i] <= v2) {
+            v2 = freq[i];
+            c2 = i;
+          }
+        }
+        if (c2 < 0) {
+          break;
+        }
+        freq[c1] += freq[c2];
+        freq[c2] = 0;
+        codeSize[c1]++;
+        while (others[c1] >= 0) {
+          c1 = others[c1];
+          codeSize[c1]++;
+        }
+        others[c1] = c2;
+        codeSize[c2]++;
+        while (others[c2] >= 0) {
+          c2 = others[c2];
+          codeSize[c2]++;
+        }
+      }
+
+      int[] bits = new int[33];
+      for (int i = 0; i <= 256; i++) {
+        if (codeSize[i] > 0) {
+          bits[codeSize[i]]++;
+        }
+      }
+      // limit code lengths to 16 bits
+      for (int i = 32; i > 16; i--) {
+        while (bits[i] > 0) {
+          int j = i - 2;
+          while (bits[j] == 0) {
+            j--;
+          }
+          bits[i] -= 2;
+          bits[i - 1]++;
+          bits[j + 1] += 2;
+          bits[j]--;
+        }
+      }
+      // drop the reserved symbol from the longest length
+      int longest = 16;
+      while (bits[longest] == 0) {
+        longest--;
+      }
+      bits[longest]--;
+
+      int total = 0;
+      int[] counts = new int[17];
+      for (int i = 1; i <= 16; i++) {
+        counts[i] = bits[i];
+        total += bits[i];
+      }
+      int[] symbols = new int[total];
+      int k = 0;
+      for (int length = 1; length <= 32 && k < total; length++) {
+        for (int symbol = 0; symbol < 256 && k < total; symbol++) {
+          if (codeSize[symbol] == length) {
+            symbols[k++] = symbol;
+          }
+        }
+      }
+      return new HuffmanTable(counts, symbols);
+    }
+
+    static void assignCodes(HuffmanTable table, int[] codes, int[] lengths) {
+      int code = 0;
+      int k = 0;
+      for (int length = 1; length <= 16; length++) {
+        for (int i = 0; i < table.counts[length]; i++) {
+          int symbol = table.symbols[k++];
+          codes[symbol] = code;
+          lengths[symbol] = length;
+          code++;
+        }
+        code <<= 1;
+      }
+    }
+  }
+
+  private static class BitReader {
+    private final byte[] mData;
+    private int mPosition;
+    private int mBuffer;
+    private int mBitCount;
+    private boolean mMarkerReached;
+
+    BitReader(byte[] data, int position) {
+      mData = data;
+      mPosition = position;
+    }
+
+    int readBit() {
+      if (mBitCount == 0) {
+        fill();
+      }
+      mBitCount--;
+      return (mBuffer >> mBitCount) & 1;
+    }
+
+    int receive(int count) {
+      int value = 0;
+      for (int i = 0; i < count; i++) {
+        value = (value << 1) | readBit();
+      }
+      return value;
+    }
+
+    int decode(HuffmanTable table) {
+      int code = readBit();
+      int length = 1;
+      while (code > table.maxCode[length]) {
+        code = (code << 1) | readBit();
+        length++;
+        if (length > 16) {
+          throw new IllegalStateException("Bad Huffman code");
+        }
+      }
+      return table.symbols[table.valPtr[length] + code - table.minCode[length]];
+    }
+
+    /**
+     * Skips to the restart marker that ends the current interval.
+     */
+    void restart() {
+      mBitCount = 0;
+      mMarkerReached = false;
+      while (mPosition + 1 < mData.length) {
+        if ((mData[mPosition] & 0xFF) == 0xFF) {
+          int marker = mData[mPosition + 1] & 0xFF;
+          if (marker >= 0xD0 && marker <= 0xD7) {
+            mPosition += 2;
+            return;
+          }
+        }
+        mPosition++;
+      }
+      throw new IllegalStateException("Missing restart marker");
+    }
+
+    private void fill() {
+      int value = 0;
+      if (!mMarkerReached) {
+        if (mPosition >= mData.length) {
+          throw new IllegalStateException("Unexpected end of data");
+        }
+        value = mData[mPosition] & 0xFF;
+        if (value == 0xFF) {
+          int next = mPosition + 1 < mData.length ? mData[mPosition + 1] & 0xFF : 0xD9;
+          if (next == 0x00) {
+            mPosition += 2;
+          } else {
+            // a marker ends the entropy coded segment, pad with zeros
+            mMarkerReached = true;
+            value = 0;
+          }
+        } else {
+          mPosition++;
+        }
+      }
+      mBuffer = value;
+      mBitCount = 8;
+    }
+  }
+
+  private static class BitWriter {
+    private final ByteArrayOutputStream mOutput;
+    private int mBuffer;
+    private int mBitCount;
+
+    BitWriter(ByteArrayOutputStream output) {
+      mOutput = output;
+    }
+
+    void write(int value, int count) {
+      for (int i = count - 1; i >= 0; i--) {
+        mBuffer = (mBuffer << 1) | ((value >> i) & 1);
+        mBitCount++;
+        if (mBitCount == 8) {
+          emit();
+        }
+      }
+    }
+
+    void flush() {
+      // pad the last byte with 1 bits
+      while (mBitCount != 0) {
+        mBuffer = (mBuffer << 1) | 1;
+        mBitCount++;
+        if (mBitCount == 8) {
+          emit();
+        }
+      }
+    }
+
+    private void emit() {
+      mOutput.write(mBuffer);
+      if (mBuffer == 0xFF) {
+        mOutput.write(0);
+      }
+      mBuffer = 0;
+      mBitCount = 0;
+    }
+  }
+}
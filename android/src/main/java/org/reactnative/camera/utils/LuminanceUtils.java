@@ -0,0 +1,74 @@
+package org.reactnative.camera.utils;
+
+import java.util.Arrays;
+
+public class LuminanceUtils {
+
+  // 32x32 tiles keep both the rows being read and the rows being written in cache
+  private static final int TILE_SIZE = 32;
+
+  /**
+   * Rotates the luminance plane (the first {@code width * height} bytes of an NV21/YUV frame)
+   * 90 degrees clockwise into {@code rotated}, which becomes {@code height} pixels wide.
+   * Works tile by tile so it stays cache friendly on large frames.
+   */
+  public static void rotateClockwise(byte[] data, int width, int height, byte[] rotated) {
+    rotateClockwise(data, width, 0, 0, width, height, rotated);
+  }
+
+  /**
+   * Rotates the {@code width} x {@code height} region at {@code left}, {@code top} of a luminance
+   * plane that is {@code dataWidth} pixels wide 90 degrees clockwise into {@code rotated}, which
+   * becomes {@code height} pixels wide.
+   */
+  public static void rotateClockwise(byte[] data, int dataWidth, int left, int top, int width, int height,
+                                     byte[] rotated) {
+    if (rotated.length < width * height) {
+      throw new IllegalArgumentException("Rotation buffer too small: " + rotated.length);
+    }
+    for (int tileY = 0; tileY < height; tileY += TILE_SIZE) {
+      int endY = Math.min(tileY + TILE_SIZE, height);
+      for (int tileX = 0; tileX < width; tileX += TILE_SIZE) {
+        int endX = Math.min(tileX + TILE_SIZE, width);
+        for (int y = tileY; y < endY; y++) {
+          int sourceRow = (top + y) * dataWidth + left;
+          int destColumn = height - y - 1;
+          for (int x = tileX; x < endX; x++) {
+            rotated[x * height + destColumn] = data[sourceRow + x];
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Copies the {@code width} x {@code height} region at {@code left}, {@code top} of a luminance
+   * plane that is {@code dataWidth} pixels wide into the start of {@code cropped}.
+   */
+  public static void crop(byte[] data, int dataWidth, int left, int top, int width, int height, byte[] cropped) {
+    if (cropped.length < width * height) {
+      throw new IllegalArgumentException("Crop buffer too small: " + cropped.length);
+    }
+    for (int y = 0; y < height; y++) {
+      System.arraycopy(data, (top + y) * dataWidth + left, cropped, y * width, width);
+    }
+  }
+
+  /**
+   * Copies the {@code {left, top, width, height}} region of a frame into an NV21 frame of its own,
+   * taken from {@code pool} when possible. Only the luminance is copied, the chroma is set to
+   * neutral grey, which is all the detectors look at.
+   */
+  public static byte[] cropToNv21(byte[] data, int dataWidth, int[] rect, FrameBufferPool pool) {
+    int width = rect[2];
+    int height = rect[3];
+    int size = width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    byte[] cropped = pool != null ? pool.acquire(size) : null;
+    if (cropped == null) {
+      cropped = new byte[size];
+    }
+    crop(data, dataWidth, rect[0], rect[1], width, height, cropped);
+    Arrays.fill(cropped, width * height, size, (byte) 128);
+    return cropped;
+  }
+}
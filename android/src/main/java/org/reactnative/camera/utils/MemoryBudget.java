@@ -0,0 +1,110 @@
+package org.reactnative.camera.utils;
+
+/**
+ * Limits the bytes held by a pipeline, e.g. the pictures of the capture queue that are decoded
+ * but not saved yet. Producers {@link #acquire(long)} before they allocate and block while the
+ * budget is used up, so a slow consumer slows the producer down instead of requests being
+ * rejected or memory running out.
+ *
+ * A single request larger than the whole budget is granted once nothing else is held, so it can
+ * never wait forever.
+ */
+public class MemoryBudget {
+
+  /**
+   * Lets a request that waits in {@link #acquire(long, Cancellable)} give up.
+   */
+  public interface Cancellable {
+    boolean isCancelled();
+  }
+
+  private final long mCapacity;
+  private long mUsed;
+  private long mPeak;
+  private long mWaits;
+
+  public MemoryBudget(long capacityBytes) {
+    if (capacityBytes <= 0) {
+      throw new IllegalArgumentException("capacityBytes must be positive");
+    }
+    mCapacity = capacityBytes;
+  }
+
+  /**
+   * Waits until {@code bytes} fit into the budget and takes them.
+   */
+  public synchronized void acquire(long bytes) throws InterruptedException {
+    acquire(bytes, null);
+  }
+
+  /**
+   * Waits until {@code bytes} fit into the budget and takes them, unless {@code request} is
+   * cancelled first. Whoever cancels it has to call {@link #wakeUp()} so the wait ends.
+   *
+   * @return {@code false} if the request was cancelled, nothing is taken then.
+   */
+  public synchronized boolean acquire(long bytes, Cancellable request) throws InterruptedException {
+    if (!fits(bytes)) {
+      mWaits++;
+      while (!fits(bytes) && !isCancelled(request)) {
+        wait();
+      }
+    }
+    if (isCancelled(request)) {
+      return false;
+    }
+    take(bytes);
+    return true;
+  }
+
+  /**
+   * Takes {@code bytes} without waiting, for memory that is already allocated.
+   */
+  public synchronized void forceAcquire(long bytes) {
+    take(bytes);
+  }
+
+  public synchronized void release(long bytes) {
+    mUsed = Math.max(0, mUsed - bytes);
+    notifyAll();
+  }
+
+  /**
+   * Makes the waiting requests check whether they were cancelled.
+   */
+  public synchronized void wakeUp() {
+    notifyAll();
+  }
+
+  public long getCapacity() {
+    return mCapacity;
+  }
+
+  public synchronized long getUsed() {
+    return mUsed;
+  }
+
+  public synchronized long getPeak() {
+    return mPeak;
+  }
+
+  /**
+   * @return How often {@link #acquire(long)} had to wait for memory to be released.
+   */
+  public synchronized long getWaits() {
+    return mWaits;
+  }
+
+  private static boolean isCancelled(Cancellable request) {
+    return request != null && request.isCancelled();
+  }
+
+  private boolean fits(long bytes) {
+    return mUsed == 0 || mUsed + bytes <= mCapacity;
+  }
+
+  private void take(long bytes) {
+    mUsed += Math.max(0, bytes);
+    mPeak = Math.max(mPeak, mUsed);
+  }
+}
@@ -0,0 +1,52 @@
+package org.reactnative.camera.utils;
+
+/**
+ * A preview frame that a detector task reads after the callback that delivered it has returned.
+ *
+ * While the frame is borrowed from its {@link FrameBufferPool} the camera cannot fill it with the
+ * next picture. A task has several ways to finish (result, failure, cancellation) and may reach
+ * more than one of them, so {@link #release()} hands the frame back only the first time.
+ */
+public class PooledFrame {
+  private final byte[] mData;
+  private FrameBufferPool mPool;
+
+  public PooledFrame(byte[] data) {
+    mData = data;
+  }
+
+  /**
+   * Wraps a frame that was just acquired from {@code pool}, taking over the reference
+   * {@link FrameBufferPool#acquire(int)} returned it with.
+   */
+  public PooledFrame(byte[] data, FrameBufferPool pool) {
+    mData = data;
+    mPool = data != null ? pool : null;
+  }
+
+  public byte[] getData() {
+    return mData;
+  }
+
+  /**
+   * Keeps the frame out of {@code pool} until {@link #release()}. Does nothing if {@code pool} is
+   * null or does not own the frame.
+   */
+  public synchronized void borrow(FrameBufferPool pool) {
+    release();
+    if (pool != null && pool.retain(mData)) {
+      mPool = pool;
+    }
+  }
+
+  public synchronized void release() {
+    if (mPool != null) {
+      mPool.release(mData);
+      mPool = null;
+    }
+  }
+
+  public synchronized boolean isBorrowed() {
+    return mPool != null;
+  }
+}
@@ -0,0 +1,100 @@
+package org.reactnative.camera.utils;
+
+/**
+ * Part of the camera preview the scanners should look at, in normalized coordinates (0 to 1) of
+ * the preview as it is displayed, i.e. after the frame has been rotated upright. Frames are
+ * delivered in sensor orientation, so {@link #getFrameRect(int, int, int)} maps the rectangle
+ * back onto the frame for a given display rotation. The front camera preview is also displayed
+ * mirrored, which {@link #mirrored()} undoes.
+ */
+public class RectOfInterest {
+  private final float mX;
+  private final float mY;
+  private final float mWidth;
+  private final float mHeight;
+
+  public RectOfInterest(float x, float y, float width, float height) {
+    mX = clamp(x);
+    mY = clamp(y);
+    mWidth = Math.min(clamp(width), 1 - mX);
+    mHeight = Math.min(clamp(height), 1 - mY);
+  }
+
+  public float getX() {
+    return mX;
+  }
+
+  public float getY() {
+    return mY;
+  }
+
+  public float getWidth() {
+    return mWidth;
+  }
+
+  public float getHeight() {
+    return mHeight;
+  }
+
+  /**
+   * @return This rectangle in the upright frame of a preview that is displayed mirrored, like the
+   * one of the front camera.
+   */
+  public RectOfInterest mirrored() {
+    return new RectOfInterest(1 - mX - mWidth, mY, mWidth, mHeight);
+  }
+
+  public boolean isFullFrame() {
+    return mX == 0 && mY == 0 && mWidth == 1 && mHeight == 1;
+  }
+
+  /**
+   * @param frameWidth Width of the frame as delivered by the camera.
+   * @param frameHeight Height of the frame as delivered by the camera.
+   * @param rotation Clockwise rotation (0, 90, 180 or 270, -90 is accepted for 270) that turns
+   * the frame upright.
+   * @return {@code {left, top, width, height}} of the rectangle in frame pixels, at least one
+   * pixel in each dimension and always within the frame.
+   */
+  public int[] getFrameRect(int frameWidth, int frameHeight, int rotation) {
+    float left;
+    float top;
+    float width;
+    float height;
+    switch (((rotation % 360) + 360) % 360) {
+      case 90:
+        left = mY;
+        top = 1 - mX - mWidth;
+        width = mHeight;
+        height = mWidth;
+        break;
+      case 180:
+        left = 1 - mX - mWidth;
+        top = 1 - mY - mHeight;
+        width = mWidth;
+        height = mHeight;
+        break;
+      case 270:
+        left = 1 - mY - mHeight;
+        top = mX;
+        width = mHeight;
+        height = mWidth;
+        break;
+      default:
+        left = mX;
+        top = mY;
+        width = mWidth;
+        height = mHeight;
+    }
+
+    int frameLeft = Math.min(Math.round(left * frameWidth), frameWidth - 1);
+    int frameTop = Math.min(Math.round(top * frameHeight), frameHeight - 1);
+    int frameRight = Math.max(Math.min(Math.round((left + width) * frameWidth), frameWidth), frameLeft + 1);
+    int frameBottom = Math.max(Math.min(Math.round((top + height) * frameHeight), frameHeight), frameTop + 1);
+    return new int[] { frameLeft, frameTop, frameRight - frameLeft, frameBottom - frameTop };
+  }
+
+  private static float clamp(float value) {
+    return Math.max(0, Math.min(value, 1));
+  }
+}
@@ -0,0 +1,99 @@
+package org.reactnative.camera.utils;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Encodes the bytes written to it as base64 without line breaks (like {@code Base64.NO_WRAP})
+ * and passes the text on as it goes, so only up to two bytes of input are held back. The padding
+ * is written by {@link #close()}.
+ */
+public class StreamingBase64OutputStream extends FilterOutputStream {
+  private static final byte[] ALPHABET =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(Charset.forName("US-ASCII"));
+  private static final int BUFFER_SIZE = 4 * 1024;
+
+  private final byte[] mBuffer = new byte[BUFFER_SIZE];
+  private int mBuffered;
+  // input bytes that do not make a full group of three yet
+  private final int[] mPending = new int[3];
+  private int mPendingCount;
+  private boolean mClosed;
+
+  public StreamingBase64OutputStream(OutputStream out) {
+    super(out);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    mPending[mPendingCount++] = b & 0xFF;
+    if (mPendingCount == 3) {
+      encodeGroup(mPending[0], mPending[1], mPending[2]);
+      mPendingCount = 0;
+    }
+  }
+
+  @Override
+  public void write(byte[] data, int offset, int length) throws IOException {
+    int end = offset + length;
+    while (mPendingCount != 0 && offset < end) {
+      write(data[offset++]);
+    }
+    for (; offset + 3 <= end; offset += 3) {
+      encodeGroup(data[offset] & 0xFF, data[offset + 1] & 0xFF, data[offset + 2] & 0xFF);
+    }
+    while (offset < end) {
+      write(data[offset++]);
+    }
+  }
+
+  /**
+   * Passes on the text of all complete groups of three bytes written so far.
+   */
+  @Override
+  public void flush() throws IOException {
+    out.write(mBuffer, 0, mBuffered);
+    mBuffered = 0;
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (mClosed) {
+      return;
+    }
+    mClosed = true;
+    try {
+      if (mPendingCount > 0) {
+        int b0 = mPending[0];
+        int b1 = mPendingCount > 1 ? mPending[1] : 0;
+        reserve(4);
+        mBuffer[mBuffered++] = ALPHABET[b0 >> 2];
+        mBuffer[mBuffered++] = ALPHABET[((b0 & 0x03) << 4) | (b1 >> 4)];
+        mBuffer[mBuffered++] = mPendingCount > 1 ? ALPHABET[(b1 & 0x0F) << 2] : (byte) '=';
+        mBuffer[mBuffered++] = '=';
+        mPendingCount = 0;
+      }
+      flush();
+    } finally {
+      out.close();
+    }
+  }
+
+  private void encodeGroup(int b0, int b1, int b2) throws IOException {
+    reserve(4);
+    mBuffer[mBuffered++] = ALPHABET[b0 >> 2];
+    mBuffer[mBuffered++] = ALPHABET[((b0 & 0x03) << 4) | (b1 >> 4)];
+    mBuffer[mBuffered++] = ALPHABET[((b1 & 0x0F) << 2) | (b2 >> 6)];
+    mBuffer[mBuffered++] = ALPHABET[b2 & 0x3F];
+  }
+
+  private void reserve(int count) throws IOException {
+    if (mBuffered + count > mBuffer.length) {
+      out.write(mBuffer, 0, mBuffered);
+      mBuffered = 0;
+    }
+  }
+}
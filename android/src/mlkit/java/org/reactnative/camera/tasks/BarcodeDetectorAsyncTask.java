@@ -7,6 +7,7 @@ import android.util.Log;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
+import com.google.android.cameraview.CameraView;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.firebase.ml.vision.barcode.FirebaseVisionBarcode;
@@ -16,13 +17,22 @@ import com.google.firebase.ml.vision.common.FirebaseVisionImageMetadata;
 
 import org.reactnative.barcodedetector.BarcodeFormatUtils;
 import org.reactnative.barcodedetector.RNBarcodeDetector;
+import org.reactnative.camera.utils.FrameBufferPool;
 import org.reactnative.camera.utils.ImageDimensions;
+import org.reactnative.camera.utils.LuminanceUtils;
+import org.reactnative.camera.utils.PooledFrame;
+import org.reactnative.camera.utils.RectOfInterest;
 
 import java.util.List;
 
 public class BarcodeDetectorAsyncTask extends android.os.AsyncTask<Void, Void, Void> {
 
+  // Crops of the rect of interest; kept apart from the camera's pool so they are never queued
+  // as preview buffers
+  private static final FrameBufferPool sCroppedFramePool = new FrameBufferPool(3);
+
   private byte[] mImageData;
+  private final PooledFrame mFrame;
   private int mWidth;
   private int mHeight;
   private int mRotation;
@@ -33,6 +43,10 @@ public class BarcodeDetectorAsyncTask extends android.os.AsyncTask<Void, Void, V
   private ImageDimensions mImageDimensions;
   private int mPaddingLeft;
   private int mPaddingTop;
+  private int[] mFrameRect;
+  private volatile PooledFrame mCroppedFrame;
+  private int mCropOffsetX;
+  private int mCropOffsetY;
   private String TAG = "RNCamera";
 
   public BarcodeDetectorAsyncTask(
@@ -50,6 +64,7 @@ public class BarcodeDetectorAsyncTask extends android.os.AsyncTask<Void, Void, V
       int viewPaddingTop
   ) {
     mImageData = imageData;
+    mFrame = new PooledFrame(imageData);
     mWidth = width;
     mHeight = height;
     mRotation = rotation;
@@ -62,25 +77,73 @@ public class BarcodeDetectorAsyncTask extends android.os.AsyncTask<Void, Void, V
     mPaddingTop = viewPaddingTop;
   }
 
+  /**
+   * Borrows the frame from {@code frameBufferPool} until this task is done. Call before
+   * {@link #execute}.
+   */
+  public void setFrameBufferPool(FrameBufferPool frameBufferPool) {
+    mFrame.borrow(frameBufferPool);
+  }
+
+  /**
+   * Only runs the detector on {@code rectOfInterest}, cropped out of the frame. Call before
+   * {@link #execute}.
+   */
+  public void setRectOfInterest(RectOfInterest rectOfInterest) {
+    if (rectOfInterest == null || rectOfInterest.isFullFrame()) {
+      mFrameRect = null;
+      return;
+    }
+    // the front camera preview is displayed mirrored, detected bounds are not
+    RectOfInterest upright = mImageDimensions.getFacing() == CameraView.FACING_FRONT
+        ? rectOfInterest.mirrored() : rectOfInterest;
+    mFrameRect = upright.getFrameRect(mWidth, mHeight, mRotation);
+    // detected bounds are relative to the upright crop
+    mCropOffsetX = (int) (upright.getX() * mImageDimensions.getWidth());
+    mCropOffsetY = (int) (upright.getY() * mImageDimensions.getHeight());
+  }
+
+  private void releaseFrames() {
+    mFrame.release();
+    PooledFrame croppedFrame = mCroppedFrame;
+    if (croppedFrame != null) {
+      croppedFrame.release();
+    }
+  }
+
   @Override
   protected Void doInBackground(Void... ignored) {
     if (isCancelled() || mDelegate == null || mBarcodeDetector == null) {
+      releaseFrames();
       return null;
     }
 
+    byte[] imageData = mImageData;
+    int width = mWidth;
+    int height = mHeight;
+    if (mFrameRect != null) {
+      PooledFrame croppedFrame = new PooledFrame(
+          LuminanceUtils.cropToNv21(mImageData, mWidth, mFrameRect, sCroppedFramePool), sCroppedFramePool);
+      mCroppedFrame = croppedFrame;
+      imageData = croppedFrame.getData();
+      width = mFrameRect[2];
+      height = mFrameRect[3];
+    }
+
     final FirebaseVisionImageMetadata metadata = new FirebaseVisionImageMetadata.Builder()
-            .setWidth(mWidth)
-            .setHeight(mHeight)
+            .setWidth(width)
+            .setHeight(height)
             .setFormat(FirebaseVisionImageMetadata.IMAGE_FORMAT_YV12)
             .setRotation(getFirebaseRotation())
             .build();
-    FirebaseVisionImage image = FirebaseVisionImage.fromByteArray(mImageData, metadata);
+    FirebaseVisionImage image = FirebaseVisionImage.fromByteArray(imageData, metadata);
 
     FirebaseVisionBarcodeDetector barcode = mBarcodeDetector.getDetector();
     barcode.detectInImage(image)
             .addOnSuccessListener(new OnSuccessListener<List<FirebaseVisionBarcode>>() {
               @Override
               public void onSuccess(List<FirebaseVisionBarcode> barcodes) {
+                releaseFrames();
                 WritableArray serializedBarcodes = serializeEventData(barcodes);
                 mDelegate.onBarcodesDetected(serializedBarcodes);
                 mDelegate.onBarcodeDetectingTaskCompleted();
@@ -89,6 +152,7 @@ public class BarcodeDetectorAsyncTask extends android.os.AsyncTask<Void, Void, V
             .addOnFailureListener(new OnFailureListener() {
               @Override
               public void onFailure(Exception e) {
+                releaseFrames();
                 Log.e(TAG, "Text recognition task failed" + e);
                 mDelegate.onBarcodeDetectingTaskCompleted();
               }
@@ -96,6 +160,12 @@ public class BarcodeDetectorAsyncTask extends android.os.AsyncTask<Void, Void, V
     return null;
   }
 
+  @Override
+  protected void onCancelled() {
+    super.onCancelled();
+    releaseFrames();
+  }
+
   private int getFirebaseRotation(){
     int result;
     switch (mRotation) {
@@ -327,12 +397,14 @@ public class BarcodeDetectorAsyncTask extends android.os.AsyncTask<Void, Void, V
 
   private WritableMap processBounds(Rect frame) {
     WritableMap origin = Arguments.createMap();
-    int x = frame.left;
-    int y = frame.top;
+    int left = frame.left + mCropOffsetX;
+    int top = frame.top + mCropOffsetY;
+    int x = left;
+    int y = top;
 
-    if (frame.left < mWidth / 2) {
+    if (left < mWidth / 2) {
       x = x + mPaddingLeft / 2;
-    } else if (frame.left > mWidth /2) {
+    } else if (left > mWidth /2) {
       x = x - mPaddingLeft / 2;
     }
 
@@ -13,7 +13,9 @@ import com.google.firebase.ml.vision.common.FirebaseVisionImageMetadata;
 import com.google.firebase.ml.vision.face.FirebaseVisionFace;
 import com.google.firebase.ml.vision.face.FirebaseVisionFaceDetector;
 
+import org.reactnative.camera.utils.FrameBufferPool;
 import org.reactnative.camera.utils.ImageDimensions;
+import org.reactnative.camera.utils.PooledFrame;
 import org.reactnative.facedetector.FaceDetectorUtils;
 import org.reactnative.facedetector.RNFaceDetector;
 
@@ -21,6 +23,7 @@ import java.util.List;
 
 public class FaceDetectorAsyncTask extends android.os.AsyncTask<Void, Void, Void> {
   private byte[] mImageData;
+  private final PooledFrame mFrame;
   private int mWidth;
   private int mHeight;
   private int mRotation;
@@ -48,6 +51,7 @@ public class FaceDetectorAsyncTask extends android.os.AsyncTask<Void, Void, Void
       int viewPaddingTop
   ) {
     mImageData = imageData;
+    mFrame = new PooledFrame(imageData);
     mWidth = width;
     mHeight = height;
     mRotation = rotation;
@@ -60,9 +64,18 @@ public class FaceDetectorAsyncTask extends android.os.AsyncTask<Void, Void, Void
     mPaddingTop = viewPaddingTop;
   }
 
+  /**
+   * Borrows the frame from {@code frameBufferPool} until this task is done. Call before
+   * {@link #execute}.
+   */
+  public void setFrameBufferPool(FrameBufferPool frameBufferPool) {
+    mFrame.borrow(frameBufferPool);
+  }
+
   @Override
   protected Void doInBackground(Void... ignored) {
     if (isCancelled() || mDelegate == null || mFaceDetector == null) {
+      mFrame.release();
       return null;
     }
     FirebaseVisionImageMetadata metadata = new FirebaseVisionImageMetadata.Builder()
@@ -79,6 +92,7 @@ public class FaceDetectorAsyncTask extends android.os.AsyncTask<Void, Void, Void
                     new OnSuccessListener<List<FirebaseVisionFace>>() {
                       @Override
                       public void onSuccess(List<FirebaseVisionFace> faces) {
+                        mFrame.release();
                         WritableArray facesList = serializeEventData(faces);
                         mDelegate.onFacesDetected(facesList);
                         mDelegate.onFaceDetectingTaskCompleted();
@@ -88,6 +102,7 @@ public class FaceDetectorAsyncTask extends android.os.AsyncTask<Void, Void, Void
                     new OnFailureListener() {
                       @Override
                       public void onFailure(Exception e) {
+                        mFrame.release();
                         Log.e(TAG, "Text recognition task failed" + e);
                         mDelegate.onFaceDetectingTaskCompleted();
                       }
@@ -95,6 +110,12 @@ public class FaceDetectorAsyncTask extends android.os.AsyncTask<Void, Void, Void
     return null;
   }
 
+  @Override
+  protected void onCancelled() {
+    super.onCancelled();
+    mFrame.release();
+  }
+
   private int getFirebaseRotation(){
     int result;
     switch (mRotation) {
@@ -19,7 +19,9 @@ import com.google.firebase.ml.vision.common.FirebaseVisionImageMetadata;
 import com.google.firebase.ml.vision.text.FirebaseVisionText;
 import com.google.firebase.ml.vision.text.FirebaseVisionTextRecognizer;
 
+import org.reactnative.camera.utils.FrameBufferPool;
 import org.reactnative.camera.utils.ImageDimensions;
+import org.reactnative.camera.utils.PooledFrame;
 
 import java.util.List;
 
@@ -29,6 +31,7 @@ public class TextRecognizerAsyncTask extends android.os.AsyncTask<Void, Void, Vo
   private TextRecognizerAsyncTaskDelegate mDelegate;
   private ThemedReactContext mThemedReactContext;
   private byte[] mImageData;
+  private final PooledFrame mFrame;
   private int mWidth;
   private int mHeight;
   private int mRotation;
@@ -55,6 +58,7 @@ public class TextRecognizerAsyncTask extends android.os.AsyncTask<Void, Void, Vo
   ) {
     mDelegate = delegate;
     mImageData = imageData;
+    mFrame = new PooledFrame(imageData);
     mWidth = width;
     mHeight = height;
     mRotation = rotation;
@@ -65,9 +69,18 @@ public class TextRecognizerAsyncTask extends android.os.AsyncTask<Void, Void, Vo
     mPaddingTop = viewPaddingTop;
   }
 
+  /**
+   * Borrows the frame from {@code frameBufferPool} until this task is done. Call before
+   * {@link #execute}.
+   */
+  public void setFrameBufferPool(FrameBufferPool frameBufferPool) {
+    mFrame.borrow(frameBufferPool);
+  }
+
   @Override
   protected Void doInBackground(Void... ignored) {
     if (isCancelled() || mDelegate == null) {
+      mFrame.release();
       return null;
     }
 
@@ -84,6 +97,7 @@ public class TextRecognizerAsyncTask extends android.os.AsyncTask<Void, Void, Vo
             .addOnSuccessListener(new OnSuccessListener<FirebaseVisionText>() {
               @Override
               public void onSuccess(FirebaseVisionText firebaseVisionText) {
+                mFrame.release();
                 List<FirebaseVisionText.TextBlock> textBlocks = firebaseVisionText.getTextBlocks();
                 WritableArray serializedData = serializeEventData(textBlocks);
                 mDelegate.onTextRecognized(serializedData);
@@ -94,6 +108,7 @@ public class TextRecognizerAsyncTask extends android.os.AsyncTask<Void, Void, Vo
                     new OnFailureListener() {
                       @Override
                       public void onFailure(Exception e) {
+                        mFrame.release();
                         Log.e(TAG, "Text recognition task failed" + e);
                         mDelegate.onTextRecognizerTaskCompleted();
                         }
@@ -102,6 +117,12 @@ public class TextRecognizerAsyncTask extends android.os.AsyncTask<Void, Void, Vo
     return null;
   }
 
+  @Override
+  protected void onCancelled() {
+    super.onCancelled();
+    mFrame.release();
+  }
+
   private int getFirebaseRotation(){
     int result;
     switch (mRotation) {
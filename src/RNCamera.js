@@ -100,7 +100,7 @@ type OrientationNumber = 1 | 2 | 3 | 4;
 type PictureOptions = {
   quality?: number,
   orientation?: Orientation | OrientationNumber,
-  base64?: boolean,
+  base64?: boolean | 'file',
   mirrorImage?: boolean,
   exif?: boolean,
   writeExif?: boolean | { [name: string]: any },
@@ -282,7 +282,14 @@ type PropsType = typeof View.props & {
   playSoundOnCapture?: boolean,
   videoStabilizationMode?: number | string,
   pictureSize?: string,
+  analysisSize?: string,
+  analysisMaxImages?: number,
+  analysisKeepLatest?: boolean,
+  analysisThreadPriority?: number,
+  zeroShutterLag?: boolean,
   rectOfInterest: Rect,
+  barCodeScannerPasses?: number,
+  barCodeScannerAdaptive?: boolean,
 };
 
 type StateType = {
@@ -323,6 +330,7 @@ const CameraManager: Object = NativeModules.RNCameraManager ||
     },
     WhiteBalance: {},
     BarCodeType: {},
+    BarCodeScannerPass: {},
     FaceDetection: {
       fast: 1,
       Mode: {},
@@ -358,6 +366,7 @@ export default class Camera extends React.Component<PropsType, StateType> {
     VideoQuality: CameraManager.VideoQuality,
     VideoCodec: CameraManager.VideoCodec,
     BarCodeType: CameraManager.BarCodeType,
+    BarCodeScannerPass: CameraManager.BarCodeScannerPass,
     GoogleVisionBarcodeDetection: CameraManager.GoogleVisionBarcodeDetection,
     FaceDetection: CameraManager.FaceDetection,
     CameraStatus,
@@ -432,8 +441,15 @@ export default class Camera extends React.Component<PropsType, StateType> {
     playSoundOnCapture: PropTypes.bool,
     videoStabilizationMode: PropTypes.oneOfType([PropTypes.string, PropTypes.number]),
     pictureSize: PropTypes.string,
+    analysisSize: PropTypes.string,
+    analysisMaxImages: PropTypes.number,
+    analysisKeepLatest: PropTypes.bool,
+    analysisThreadPriority: PropTypes.number,
+    zeroShutterLag: PropTypes.bool,
     mirrorVideo: PropTypes.bool,
     rectOfInterest: PropTypes.any,
+    barCodeScannerPasses: PropTypes.number,
+    barCodeScannerAdaptive: PropTypes.bool,
     defaultVideoQuality: PropTypes.oneOfType([PropTypes.string, PropTypes.number]),
   };
 
@@ -481,6 +497,12 @@ export default class Camera extends React.Component<PropsType, StateType> {
     useCamera2Api: false,
     playSoundOnCapture: false,
     pictureSize: 'None',
+    analysisSize: 'None',
+    analysisMaxImages: 2,
+    analysisKeepLatest: true,
+    analysisThreadPriority: 0,
+    zeroShutterLag: false,
+    barCodeScannerAdaptive: false,
     videoStabilizationMode: 0,
     mirrorVideo: false,
   };
@@ -83,6 +83,13 @@ type GoogleVisionBarcodeType = Readonly<{
   AZTEC: any;
   ALL: any;
 }>;
+type BarCodeScannerPass = Readonly<{
+  normal: any;
+  rotated: any;
+  inverted: any;
+  invertedRotated: any;
+  all: any;
+}>;
 type GoogleVisionBarcodeMode = Readonly<{ NORMAL: any; ALTERNATE: any; INVERTED: any }>;
 
 // FaCC (Function as Child Components)
@@ -112,6 +119,8 @@ export interface Constants {
   WhiteBalance: WhiteBalance;
   VideoQuality: VideoQuality;
   BarCodeType: BarCodeType;
+  /** Not available in this fork, the values are ignored */
+  BarCodeScannerPass: BarCodeScannerPass;
   FaceDetection: {
     Classifications: FaceDetectionClassifications;
     Landmarks: FaceDetectionLandmarks;
@@ -137,6 +146,20 @@ export interface RNCameraProps {
   autoFocus?: keyof AutoFocus;
   autoFocusPointOfInterest?: Point;
   pictureSize?: string;
+  /** iOS only in this fork, ignored on Android */
+  rectOfInterest?: { x: number; y: number; width: number; height: number };
+
+  /* Android only */
+  /** Not available in this fork, ignored */
+  analysisSize?: string;
+  /** Not available in this fork, ignored */
+  analysisMaxImages?: number;
+  /** Not available in this fork, ignored */
+  analysisKeepLatest?: boolean;
+  /** Not available in this fork, ignored */
+  analysisThreadPriority?: number;
+  /** Not available in this fork, ignored */
+  zeroShutterLag?: boolean;
 
   /* iOS only */
   onSubjectAreaChanged?: (event: { nativeEvent: { prevPoint: { x: number; y: number; } } }) => void;
@@ -182,6 +205,10 @@ export interface RNCameraProps {
 
   // -- BARCODE PROPS
   barCodeTypes?: Array<keyof BarCodeType>;
+  /** Not available in this fork, ignored */
+  barCodeScannerPasses?: number;
+  /** Not available in this fork, ignored */
+  barCodeScannerAdaptive?: boolean;
   googleVisionBarcodeType?: Constants['GoogleVisionBarcodeDetection']['BarcodeType'];
   googleVisionBarcodeMode?: Constants['GoogleVisionBarcodeDetection']['BarcodeMode'];
   onBarCodeRead?(event: {
@@ -375,7 +402,8 @@ export interface TrackedTextFeature {
 interface TakePictureOptions {
   quality?: number;
   orientation?: keyof Orientation | OrientationNumber;
-  base64?: boolean;
+  /** 'file' is Android only */
+  base64?: boolean | 'file';
   exif?: boolean;
   width?: number;
   mirrorImage?: boolean;
@@ -395,6 +423,7 @@ export interface TakePictureResponse {
   height: number;
   uri: string;
   base64?: string;
+  base64Uri?: string;
   exif?: { [name: string]: any };
   pictureOrientation: number;
   deviceOrientation: number;